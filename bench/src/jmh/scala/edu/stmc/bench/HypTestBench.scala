@@ -0,0 +1,161 @@
+/*+++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+ + STMC - Statistical Model Checker                                                               +
+ +                                                                                                +
+ + Copyright (C) 2019                                                                             +
+ + Authors:                                                                                       +
+ +   Nima Roohi <nroohi@ucsd.edu> (University of California San Diego)                            +
+ +                                                                                                +
+ + This program is free software: you can redistribute it and/or modify it under the terms        +
+ + of the GNU General Public License as published by the Free Software Foundation, either         +
+ + version 3 of the License, or (at your option) any later version.                               +
+ +                                                                                                +
+ + This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;      +
+ + without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.      +
+ + See the GNU General Public License for more details.                                           +
+ +                                                                                                +
+ + You should have received a copy of the GNU General Public License along with this program.     +
+ + If not, see <https://www.gnu.org/licenses/>.                                                   +
+ +++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++*/
+
+package edu.stmc.bench
+
+import java.util.concurrent.TimeUnit
+
+import edu.stmc._
+import org.openjdk.jmh.annotations._
+import simulator.sampler.Sampler
+
+/** Per-sample (and per-block) cost of the hypothesis tests, ie. the loops that run once for every sample an engine generates.
+  *
+  * Samples are generated in advance (with a fixed seed) and replayed cyclically, so only the tests are measured. Whenever a test is decided, it is reset
+  * and keeps going, so every invocation sees a test in the middle of a run, as the engines do. The default parameters are a hard but realistic instance:
+  * the actual probability is at the edge of the indifference region, so the tests take thousands of samples to decide.
+  *
+  * Run with the `gc` profiler (the default in `build.gradle`) to see allocation rates: `gc.alloc.rate.norm` should be `0` for every benchmark. */
+@State(Scope.Thread)
+@BenchmarkMode(Array(Mode.AverageTime))
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+class HypTestBench {
+
+  /** Name of the test (as in `-hyp_test_method`). `SSPRT` consumes batch means instead of individual samples. */
+  @Param(Array("SPRT", "GLRT", "TSPRT", "SSPRT"))
+  var method: String = _
+
+  /** Threshold of the property. */
+  @Param(Array("0.3"))
+  var threshold: Double = _
+
+  /** Actual probability of a positive sample. */
+  @Param(Array("0.31"))
+  var p: Double = _
+
+  private[this] final val Size = 1 << 16
+  private[this] final val Mask = Size - 1
+  private[this] final val BlockBits = 1024
+
+  private[this] var test: HypTest = _
+  // the test, if it consumes batch means (and `null` otherwise)
+  private[this] var batch: HypTest.BatchMeans = _
+  private[this] val samples = Array.ofDim[Boolean](Size)
+  private[this] val means = Array.ofDim[Double](Size)
+  private[this] val words = Array.ofDim[Long](Size / 64)
+  private[this] val block = Array.ofDim[Long](BlockBits / 64)
+  private[this] var next = 0
+  private[this] var iters = 0L
+
+  @Setup
+  def setup(): Unit = {
+    STMCConfig.minIters = 10
+    STMCConfig.strataTotalSize = 16
+    test = method match {
+    case "SPRT"  => new HypTestSPRT().init(threshold, 0.01, 0.01, 0.01)
+    case "GLRT"  => new HypTestGLRT().init(threshold, 0.01, 0.01, 10)
+    case "TSPRT" => new HypTestSPRTTernary().init(threshold, 0.01, 0.01, 0.01, 0.02)
+    case "SSPRT" => new HypTestSPRTStratified().init(threshold, 0.01, 0.01, 0.01)
+    case _       => throw new IllegalArgumentException(s"Unknown test $method")
+    }
+    batch = test match {
+    case t: HypTest.BatchMeans => t
+    case _                     => null
+    }
+    val rnd = new java.util.Random(42)
+    for (i <- 0 until Size) {
+      samples(i) = rnd.nextDouble() < p
+      if (samples(i))
+        words(i >>> 6) |= 1L << (i & 63)
+      // mean of a batch of `strataTotalSize` samples
+      var positive = 0
+      for (_ <- 0 until STMCConfig.strataTotalSize)
+        if (rnd.nextDouble() < p) positive += 1
+      means(i) = positive / STMCConfig.strataTotalSize.toDouble
+    }
+    next = 0
+    iters = 0
+  }
+
+  @inline
+  private[this] def restartIfCompleted(): Unit =
+    if (test.completed) {
+      test.reset()
+      iters = 0
+    }
+
+  /** One sample (or batch mean), without checking the stopping rule. */
+  @Benchmark
+  def update(): Unit = {
+    if (batch != null) batch.updateMean(means(next)) else test.update(samples(next))
+    next = (next + 1) & Mask
+    if ((next & 1023) == 0)
+      restartIfCompleted()
+  }
+
+  /** One sample followed by the status of the test (the statistic is computed on every call). */
+  @Benchmark
+  def updateAndStatus(): Boolean = {
+    if (batch != null) batch.updateMean(means(next)) else test.update(samples(next))
+    next = (next + 1) & Mask
+    val done = test.completed
+    if (done)
+      test.reset()
+    done
+  }
+
+  /** One sample as the engines pass it: the stopping rule decides how often the statistic is actually looked at. */
+  @Benchmark
+  def shouldStopNow(): Boolean = {
+    iters += 1
+    val done =
+      if (batch != null) {
+        batch.updateMean(means(next))
+        test.shouldStopNow(iters, null: Sampler)
+      } else test.shouldStopNow(iters, samples(next))
+    next = (next + 1) & Mask
+    if (done) {
+      test.reset()
+      iters = 0
+    }
+    done
+  }
+
+  /** A block of `1024` samples packed in a bit vector (see `HypTest.update(words, bits)`). Reported per sample.
+    *
+    * When the test is decided inside the block, it is reset and the rest of the block is made of a prefix of it again, so every invocation consumes exactly
+    * `1024` samples. */
+  @Benchmark
+  @OperationsPerInvocation(1024)
+  def block(): Int = {
+    System.arraycopy(words, (next & Mask) >>> 6, block, 0, block.length)
+    next = (next + BlockBits) & Mask
+    var consumed = test.update(block, BlockBits)
+    while (consumed < BlockBits) {
+      test.reset()
+      consumed += test.update(block, BlockBits - consumed)
+    }
+    restartIfCompleted()
+    consumed
+  }
+
+}
@@ -0,0 +1,169 @@
+/*+++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+ + STMC - Statistical Model Checker                                                               +
+ +                                                                                                +
+ + Copyright (C) 2019                                                                             +
+ + Authors:                                                                                       +
+ +   Nima Roohi <nroohi@ucsd.edu> (University of California San Diego)                            +
+ +                                                                                                +
+ + This program is free software: you can redistribute it and/or modify it under the terms        +
+ + of the GNU General Public License as published by the Free Software Foundation, either         +
+ + version 3 of the License, or (at your option) any later version.                               +
+ +                                                                                                +
+ + This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;      +
+ + without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.      +
+ + See the GNU General Public License for more details.                                           +
+ +                                                                                                +
+ + You should have received a copy of the GNU General Public License along with this program.     +
+ + If not, see <https://www.gnu.org/licenses/>.                                                   +
+ +++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++*/
+
+package edu.stmc.bench
+
+import java.io.File
+import java.util.concurrent.TimeUnit
+
+import edu.stmc._
+import org.openjdk.jmh.annotations._
+import parser.ast.{ModulesFile, PropertiesFile}
+import prism.{Prism, PrismDevNullLog, UndefinedConstants}
+import simulator.sampler.Sampler
+import simulator.{Path, SimulatorEngine, TransitionList}
+
+/** Stepping throughput of the simulators on the models under `examples` (smallest instance of every model, with the constants and the property used in
+  * its `run.sh`).
+  *
+  * Every invocation of [[path]] generates one path (independent sampling) or one iteration of paths (antithetic and stratified sampling), while the
+  * property is evaluated on every step, exactly as during sampling (but no test is updated). Paths and steps per second are reported as auxiliary
+  * counters. [[samplerUpdate]] measures a single update of the sampler of the property, on a state in the middle of a path.
+  *
+  * Models are loaded once per trial, and only the parser of PRISM is used (no native library is needed). The folder of the examples is given by the
+  * `stmc.examples` system property (set by `build.gradle`). */
+@State(Scope.Thread)
+@BenchmarkMode(Array(Mode.Throughput))
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+class SimulatorBench {
+
+  /** One of the models in [[SimulatorBench.models]]. */
+  @Param(Array("brp", "cluster", "crowds", "egl", "embedded", "fms", "nand", "peer2peer", "polling", "tandem"))
+  var model: String = _
+
+  /** `independent`, `antithetic`, or `stratified:<strata sizes>` with sizes separated by `x` (eg. `stratified:4x4` is the same as `-strata_size 4,4`). */
+  @Param(Array("independent", "antithetic", "stratified:2", "stratified:16", "stratified:4x4", "stratified:256"))
+  var sampling: String = _
+
+  /** Same as the default of `-simpathlen` in PRISM. */
+  private[this] final val MaxPathLength = 10000L
+
+  private[this] var engine: SimulatorEngine = _
+  private[this] var stratified: SimulatorEngineStratified = _
+
+  // state of `samplerUpdate`
+  private[this] var sampler: Sampler = _
+  private[this] var samplerPath: Path = _
+  private[this] var samplerTransitions: TransitionList = _
+
+  @Setup(Level.Trial)
+  def setup(): Unit = {
+    val (mf, pf) = SimulatorBench.load(model)
+    STMCConfig.enabled = true
+    sampling.split(':') match {
+    case Array("independent")       => STMCConfig.samplingMethod = NameSmplMethod.INDEPENDENT
+    case Array("antithetic")        =>
+      STMCConfig.samplingMethod = NameSmplMethod.ANTITHETIC
+      STMCConfig.strataSizes = Array(2)
+    case Array("stratified", sizes) =>
+      STMCConfig.samplingMethod = NameSmplMethod.STRATIFIED
+      STMCConfig.strataSizes = sizes.split('x').map(_.toInt)
+    case _                          => throw new IllegalArgumentException(s"Unknown sampling $sampling")
+    }
+    if (STMCConfig.samplingMethod != NameSmplMethod.INDEPENDENT)
+      STMCConfig.strataTotalSize = STMCConfig.strataSizes.product
+
+    val prism = new Prism(new PrismDevNullLog())
+    stratified = if (STMCConfig.samplingMethod == NameSmplMethod.INDEPENDENT) null else new SimulatorEngineStratified(prism)
+    engine = if (stratified == null) new SimulatorEngine(prism) else stratified
+    engine.createNewOnTheFlyPath(mf)
+    engine.addProperty(pf.getProperty(0), pf)
+    if (stratified != null)
+      stratified.startSampling()
+
+    // a separate engine, stopped in the middle of a path, for `samplerUpdate`
+    val other = new SimulatorEngine(prism)
+    other.createNewOnTheFlyPath(mf)
+    other.addProperty(pf.getProperty(0), pf)
+    other.initialisePath(null)
+    var steps = 0
+    while (steps < 10 && other.automaticTransition())
+      steps += 1
+    sampler = other.scalaPropertySamplers.head
+    samplerPath = other.getPath
+    samplerTransitions = other.getTransitionList
+  }
+
+  @Benchmark
+  def path(counters: PathCounters): Long = {
+    val (len, paths) =
+      if (stratified == null) (engine.samplePath(null, MaxPathLength), 1)
+      else (stratified.sampleIteration(MaxPathLength), stratified.pathsPerIteration)
+    counters.paths += paths
+    if (len > 0)
+      counters.steps += len * paths
+    len
+  }
+
+  @Benchmark
+  def samplerUpdate(): Boolean = {
+    sampler.reset()
+    sampler.update(samplerPath, samplerTransitions)
+    sampler.isCurrentValueKnown
+  }
+
+}
+
+/** Paths and steps generated in the current iteration of [[SimulatorBench.path]] (reported per second). */
+@State(Scope.Thread)
+@AuxCounters(AuxCounters.Type.OPERATIONS)
+class PathCounters {
+  var paths: Long = 0
+  var steps: Long = 0
+
+  @Setup(Level.Iteration)
+  def clear(): Unit = {
+    paths = 0
+    steps = 0
+  }
+}
+
+object SimulatorBench {
+
+  /** File (relative to the examples), constants and property of the smallest instance of every model in its `run.sh`. */
+  val models: Map[String, (String, String, String)] = Map(
+    "brp"       -> ("brp/brp.pm", "MAX=15,N=4096", "P<0.39[F<100s=3]"),
+    "cluster"   -> ("cluster/cluster.sm", "N=512", "P<0.12[\"minimum\"U<=200(!\"minimum\"|!\"premium\")]"),
+    "crowds"    -> ("crowds/crowds.pm", "CrowdSize=20,TotalRuns=6", "P<0.15[F<100observe0>1]"),
+    "egl"       -> ("egl/egl.pm", "L=2,N=10", "P<0.51[F<100!kA&kB]"),
+    "embedded"  -> ("embedded/embedded.sm", "MAX_COUNT=1000", "P<0.1[F<=3600!down&(i=1|o=1)]"),
+    "fms"       -> ("fms/fms.sm", "n=7", "P<0.5[F<4P1=0&P2=0&P3=0]"),
+    "nand"      -> ("nand/nand.pm", "N=60,K=2", "P>0.7[F<100z>3&z<20]"),
+    "peer2peer" -> ("peer2peer/peer2peer5_5.sm", "", "P<0.9[F<1\"done\"]"),
+    "polling"   -> ("polling/poll10.sm", "", "P>0.04[!(s=2&a=1)U<1(s=1&a=1)]"),
+    "tandem"    -> ("tandem/tandem.sm", "c=511", "P>0.55[F<=0.25sc=c]"))
+
+  /** Parse a model and its property, and define their constants. */
+  def load(name: String): (ModulesFile, PropertiesFile) = {
+    val (file, constants, property) = models.getOrElse(name, throw new IllegalArgumentException(s"Unknown model $name"))
+    val examples = new File(System.getProperty("stmc.examples", "../examples"))
+    val prism = new Prism(new PrismDevNullLog())
+    val mf = prism.parseModelFile(new File(examples, file))
+    val pf = prism.parsePropertiesString(mf, property)
+    val undefined = new UndefinedConstants(mf, pf)
+    undefined.defineUsingConstSwitch(constants)
+    mf.setSomeUndefinedConstants(undefined.getMFConstantValues)
+    pf.setSomeUndefinedConstants(undefined.getPFConstantValues)
+    (mf, pf)
+  }
+
+}
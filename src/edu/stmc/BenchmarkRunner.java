@@ -0,0 +1,589 @@
+/*+++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+ + STMC - Statistical Model Checker                                                               +
+ +                                                                                                +
+ + Copyright (C) 2019                                                                             +
+ + Authors:                                                                                       +
+ +   Nima Roohi <nroohi@ucsd.edu> (University of California San Diego)                            +
+ +                                                                                                +
+ + This program is free software: you can redistribute it and/or modify it under the terms        +
+ + of the GNU General Public License as published by the Free Software Foundation, either         +
+ + version 3 of the License, or (at your option) any later version.                               +
+ +                                                                                                +
+ + This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;      +
+ + without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.      +
+ + See the GNU General Public License for more details.                                           +
+ +                                                                                                +
+ + You should have received a copy of the GNU General Public License along with this program.     +
+ + If not, see <https://www.gnu.org/licenses/>.                                                   +
+ +++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++*/
+
+package edu.stmc;
+
+import prism.PrismCL;
+import prism.PrismException;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Runs a matrix of benchmarks in a single JVM and writes the statistics of every cell (as JSON and CSV). Statistics can be compared with the CSV file of
+ * a previous run, in which case slowdowns and new failures are reported (and the exit code is 2).
+ * <p>
+ * Usage: {@code BenchmarkRunner <matrix-file> [-out <prefix>] [-baseline <csv-file>] [-tolerance <fraction>] [-only <regex>]}
+ * <p>
+ * Results are written to {@code <prefix>.json} and {@code <prefix>.csv} (after every cell, so a crash keeps the finished cells), and the log of the last
+ * run of every cell (and of every failed run) goes to {@code <prefix>-logs}. The prefix is the matrix file without its extension by default.
+ * <p>
+ * A matrix file has one setting per line ({@code #} starts a comment):
+ * <pre>
+ * repeat   &lt;n&gt;                        number of runs of every cell (default 1)
+ * warmup   &lt;n&gt;                        number of runs of every cell that are not measured (default 0)
+ * let      &lt;name&gt; &lt;value&gt;             define variable $name
+ * method   &lt;name&gt; &lt;options&gt;           a method (options of PRISM and STMC, in which $strata and other variables are replaced)
+ * strata   &lt;sizes&gt; [&lt;options&gt;]        $strata in methods is replaced by "-strata_size &lt;sizes&gt; &lt;options&gt;" (a cell for each strata line)
+ * model    &lt;file&gt; [&lt;options&gt;]         start a new block for a model (settings above the first block are shared by all of them)
+ * const    &lt;constants&gt; [expect &lt;v&gt;]   an instance of the model (eg. MAX=15,N=4096), and optionally its expected result
+ * expect   &lt;v&gt;                        expected result of instances with no expect
+ * property &lt;property&gt;                 the property that is checked in the block
+ * </pre>
+ * A block creates a cell for every instance, method and (if the method uses $strata) strata. Methods and strata of a block replace the shared ones,
+ * and the other settings override them. Options {@code -repeat} and {@code -mt} of {@link Main} are not supported in methods.
+ * <p>
+ * For every cell, the runner reports average and standard error of sampling time (as reported by the simulator, or the whole run if nothing is
+ * sampled) and number of samples, the number of times each decision is made, and the error rate. The error rate is the fraction of decisions that
+ * differ from the expected result, or from the most frequent decision if no result is expected. Quantitative results are averaged instead.
+ */
+public final class BenchmarkRunner {
+  private BenchmarkRunner() { }
+
+  /** A cell of the matrix, which is a single command line of PRISM that is run several times. */
+  static final class Cell {
+    final String       id;
+    final List<String> args;
+    final int          warmup;
+    final int          repeat;
+    final String       expected;
+
+    Cell(final String id, final List<String> args, final int warmup, final int repeat, final String expected) {
+      this.id = id;
+      this.args = args;
+      this.warmup = warmup;
+      this.repeat = repeat;
+      this.expected = expected;
+    }
+  }
+
+  /** Mean and standard error of a sequence of values (using Welford's algorithm, as in {@link Main}). */
+  static final class Summary {
+    private int    n    = 0;
+    private double mean = 0;
+    private double m2   = 0;
+
+    void add(final double x) {
+      n++;
+      final double delta = x - mean;
+      mean += delta / n;
+      m2 += delta * (x - mean);
+    }
+    double mean() { return n == 0 ? Double.NaN : mean; }
+    double se()   { return n < 2 ? Double.NaN : Math.sqrt(m2 / (n - 1) / n); }
+  }
+
+  /** Statistics of a cell. */
+  static final class Stats {
+    final String id;
+    int    runs       = 0;
+    int    failures   = 0;
+    double time       = Double.NaN;
+    double timeSe     = Double.NaN;
+    double samples    = Double.NaN;
+    double samplesSe  = Double.NaN;
+    double wall       = Double.NaN;
+    double estimate   = Double.NaN;
+    double estimateSe = Double.NaN;
+    double errorRate  = Double.NaN;
+    String reference  = "";
+    String decisions  = "";
+
+    Stats(final String id) { this.id = id; }
+  }
+
+  // ===================================================================================================================================================
+  // Matrix
+
+  private static final Pattern VARIABLE = Pattern.compile("\\$([A-Za-z_][A-Za-z0-9_]*)");
+
+  /** Settings of a block (or the shared settings, before the first block). */
+  private static final class Block {
+    int                 warmup    = 0;
+    int                 repeat    = 1;
+    Map<String, String> variables = new LinkedHashMap<>();
+    List<String[]>      methods   = new ArrayList<>();
+    List<String[]>      strata    = new ArrayList<>();
+    boolean             ownMethods;
+    boolean             ownStrata;
+    String              model;
+    List<String>        modelArgs = new ArrayList<>();
+    List<String[]>      instances = new ArrayList<>();
+    String              expected;
+    String              property;
+
+    Block copy() {
+      final Block res = new Block();
+      res.warmup = warmup;
+      res.repeat = repeat;
+      res.variables = new LinkedHashMap<>(variables);
+      res.methods = new ArrayList<>(methods);
+      res.strata = new ArrayList<>(strata);
+      return res;
+    }
+  }
+
+  private static List<String> words(final String text) {
+    final List<String> res = new ArrayList<>();
+    for (String w : text.trim().split("\\s+"))
+      if (!w.isEmpty())
+        res.add(w);
+    return res;
+  }
+
+  /**
+   * Parse a matrix (see {@link BenchmarkRunner}).
+   * @param lines lines of the matrix file
+   * @return cells of the matrix, in the order they are given
+   * @throws PrismException if the matrix is not well-formed
+   */
+  static List<Cell> parse(final List<String> lines) throws PrismException {
+    final Block       shared = new Block();
+    final List<Block> blocks = new ArrayList<>();
+    Block             block  = shared;
+    for (int i = 0; i < lines.size(); i++) {
+      String line = lines.get(i);
+      final int comment = line.indexOf('#');
+      if (comment >= 0)
+        line = line.substring(0, comment);
+      line = line.trim();
+      if (line.isEmpty())
+        continue;
+      final String   where = " (line " + (i + 1) + ")";
+      final String[] parts = line.split("\\s+", 2);
+      final String   key   = parts[0];
+      final String   value = parts.length > 1 ? parts[1].trim() : "";
+      if (value.isEmpty())
+        throw new PrismException("Missing value for " + key + where);
+      switch (key) {
+        case "repeat":
+        case "warmup":
+          final int n;
+          try {
+            n = Integer.parseInt(value);
+          } catch (NumberFormatException e) {
+            throw new PrismException("Invalid integer value '" + value + "' for " + key + where);
+          }
+          if (n < (key.equals("repeat") ? 1 : 0))
+            throw new PrismException("Invalid value " + n + " for " + key + where);
+          if (key.equals("repeat")) block.repeat = n;
+          else block.warmup = n;
+          break;
+        case "let":
+          final String[] let = value.split("\\s+", 2);
+          if (let.length != 2 || !VARIABLE.matcher("$" + let[0]).matches() || let[0].equals("strata"))
+            throw new PrismException("Invalid variable definition '" + value + "'" + where);
+          block.variables.put(let[0], let[1].trim());
+          break;
+        case "method":
+        case "strata":
+          if (block != shared && key.equals("method") && !block.ownMethods) {
+            block.ownMethods = true;
+            block.methods.clear();
+          }
+          if (block != shared && key.equals("strata") && !block.ownStrata) {
+            block.ownStrata = true;
+            block.strata.clear();
+          }
+          (key.equals("method") ? block.methods : block.strata).add(words(value).toArray(new String[0]));
+          break;
+        case "model":
+          block = shared.copy();
+          blocks.add(block);
+          final List<String> model = words(value);
+          block.model = model.get(0);
+          block.modelArgs.addAll(model.subList(1, model.size()));
+          break;
+        case "const":
+        case "expect":
+        case "property":
+          if (block == shared)
+            throw new PrismException("Setting " + key + " must be in a block (after a model)" + where);
+          if (key.equals("property")) {
+            if (block.property != null)
+              throw new PrismException("Block of " + block.model + " has more than one property" + where);
+            block.property = value;
+          } else if (key.equals("expect"))
+            block.expected = value;
+          else {
+            final List<String> instance = words(value);
+            if (instance.size() == 1)
+              block.instances.add(new String[]{instance.get(0), null});
+            else if (instance.size() == 3 && instance.get(1).equals("expect"))
+              block.instances.add(new String[]{instance.get(0), instance.get(2)});
+            else
+              throw new PrismException("Invalid instance '" + value + "'" + where);
+          }
+          break;
+        default:
+          throw new PrismException("Unknown setting " + key + where);
+      }
+    }
+
+    final List<Cell> res = new ArrayList<>();
+    for (Block b : blocks) {
+      if (b.property == null)
+        throw new PrismException("Block of " + b.model + " has no property");
+      if (b.methods.isEmpty())
+        throw new PrismException("Block of " + b.model + " has no method");
+      final List<String[]> instances = b.instances.isEmpty() ? Collections.singletonList(new String[]{null, null}) : b.instances;
+      for (String[] instance : instances)
+        for (String[] method : b.methods) {
+          final boolean stratified = Arrays.asList(method).contains("$strata");
+          if (stratified && b.strata.isEmpty())
+            throw new PrismException("Method " + method[0] + " uses $strata, but block of " + b.model + " has no strata");
+          for (String[] strata : stratified ? b.strata : Collections.singletonList((String[]) null)) {
+            final List<String> args = new ArrayList<>();
+            args.add(b.model);
+            args.addAll(b.modelArgs);
+            if (instance[0] != null) {
+              args.add("-const");
+              args.add(instance[0]);
+            }
+            args.add("-pf");
+            args.add(b.property);
+            for (int i = 1; i < method.length; i++)
+              if (method[i].equals("$strata")) {
+                args.add("-strata_size");
+                args.add(strata[0]);
+                for (int j = 1; j < strata.length; j++)
+                  args.add(substitute(strata[j], b.variables));
+              } else
+                args.add(substitute(method[i], b.variables));
+            final String id = b.model + (instance[0] == null ? "" : " " + instance[0]) + " | " + b.property + " | " + method[0] +
+                              (strata == null ? "" : " " + strata[0]);
+            res.add(new Cell(id, args, b.warmup, b.repeat, instance[1] != null ? instance[1] : b.expected));
+          }
+        }
+    }
+    return res;
+  }
+
+  private static String substitute(final String word, final Map<String, String> variables) throws PrismException {
+    final Matcher      m   = VARIABLE.matcher(word);
+    final StringBuffer res = new StringBuffer();
+    while (m.find()) {
+      final String value = variables.get(m.group(1));
+      if (value == null)
+        throw new PrismException("Undefined variable $" + m.group(1) + " in " + word);
+      m.appendReplacement(res, Matcher.quoteReplacement(value));
+    }
+    m.appendTail(res);
+    return res.toString();
+  }
+
+  // ===================================================================================================================================================
+  // Running
+
+  /**
+   * Run a cell ({@code warmup + repeat} times, in this JVM). A run fails if it has no result, its result is an exception, or PrismCL stops with a
+   * fatal error (see {@link PrismCL#setEmbedded(boolean)}).
+   * @param cell the cell
+   * @param log  log of PRISM (only the last run and the failed ones are kept)
+   */
+  static Stats run(final Cell cell, final File log) {
+    final Stats                stats     = new Stats(cell.id);
+    final Summary              time      = new Summary();
+    final Summary              samples   = new Summary();
+    final Summary              wall      = new Summary();
+    final Summary              estimate  = new Summary();
+    final Map<String, Integer> decisions = new TreeMap<>();
+    for (int i = 0; i < cell.warmup + cell.repeat; i++) {
+      final List<String> args = new ArrayList<>(cell.args);
+      args.add("-mainlog");
+      args.add(log.getPath());
+      STMCConfig.reset();
+      Main.lastTime = Double.NaN;
+      Main.lastSamples = Double.NaN;
+      final PrismCL cl    = new PrismCL();
+      final long    start = System.nanoTime();
+      // fatal errors of PrismCL are thrown instead of exiting the JVM, so they only fail this run
+      cl.setEmbedded(true);
+      Object result;
+      try {
+        cl.run(args.toArray(new String[0]));
+        result = cl.getLastResult();
+      } catch (RuntimeException e) {
+        // including PrismCL.Exit
+        result = e;
+      }
+      final double seconds = (System.nanoTime() - start) / 1e9;
+      if (i < cell.warmup)
+        continue;
+      if (result == null || result instanceof Exception) {
+        stats.failures++;
+        final File copy = new File(log.getParentFile(), log.getName().replace(".log", "-" + (i - cell.warmup) + ".log"));
+        if (!log.renameTo(copy))
+          System.err.println("Could not keep the log of a failed run in " + copy);
+        continue;
+      }
+      stats.runs++;
+      wall.add(seconds);
+      time.add(Double.isNaN(Main.lastTime) ? seconds : Main.lastTime);
+      samples.add(Double.isNaN(Main.lastSamples) ? 0 : Main.lastSamples);
+      if (result instanceof Number)
+        estimate.add(((Number) result).doubleValue());
+      else
+        decisions.merge(HypTest.isInterim(result) ? "undecided" : String.valueOf(result), 1, Integer::sum);
+    }
+    stats.time = time.mean();
+    stats.timeSe = time.se();
+    stats.samples = samples.mean();
+    stats.samplesSe = samples.se();
+    stats.wall = wall.mean();
+    stats.estimate = estimate.mean();
+    stats.estimateSe = estimate.se();
+    if (!decisions.isEmpty()) {
+      String reference = cell.expected;
+      stats.reference = "expected";
+      if (reference == null) {
+        reference = Collections.max(decisions.entrySet(), Map.Entry.comparingByValue()).getKey();
+        stats.reference = "majority";
+      }
+      int total = 0, errors = 0;
+      final StringBuilder text = new StringBuilder();
+      for (Map.Entry<String, Integer> e : decisions.entrySet()) {
+        total += e.getValue();
+        if (!e.getKey().equalsIgnoreCase(reference))
+          errors += e.getValue();
+        text.append(text.length() == 0 ? "" : " ").append(e.getKey()).append(':').append(e.getValue());
+      }
+      stats.errorRate = (double) errors / total;
+      stats.decisions = text.toString();
+    }
+    return stats;
+  }
+
+  // ===================================================================================================================================================
+  // Output and baseline
+
+  static final String[] COLUMNS = {"id", "runs", "failures", "time", "time_se", "samples", "samples_se", "wall", "estimate", "estimate_se",
+                                   "decisions", "reference", "error_rate"};
+
+  private static String[] values(final Stats s) {
+    return new String[]{s.id, "" + s.runs, "" + s.failures, "" + s.time, "" + s.timeSe, "" + s.samples, "" + s.samplesSe, "" + s.wall,
+                        "" + s.estimate, "" + s.estimateSe, s.decisions, s.reference, "" + s.errorRate};
+  }
+
+  private static String csvField(final String text) {
+    if (text.indexOf(',') < 0 && text.indexOf('"') < 0)
+      return text;
+    return '"' + text.replace("\"", "\"\"") + '"';
+  }
+
+  private static List<String> csvFields(final String line) {
+    final List<String>  res     = new ArrayList<>();
+    final StringBuilder field   = new StringBuilder();
+    boolean             quoted  = false;
+    for (int i = 0; i < line.length(); i++) {
+      final char c = line.charAt(i);
+      if (quoted && c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+        field.append('"');
+        i++;
+      } else if (c == '"')
+        quoted = !quoted;
+      else if (c == ',' && !quoted) {
+        res.add(field.toString());
+        field.setLength(0);
+      } else
+        field.append(c);
+    }
+    res.add(field.toString());
+    return res;
+  }
+
+  static String toCsv(final Collection<Stats> stats) {
+    final StringBuilder res = new StringBuilder(String.join(",", COLUMNS)).append('\n');
+    for (Stats s : stats) {
+      final String[] values = values(s);
+      for (int i = 0; i < values.length; i++)
+        res.append(i == 0 ? "" : ",").append(csvField(values[i]));
+      res.append('\n');
+    }
+    return res.toString();
+  }
+
+  static String toJson(final Collection<Stats> stats) {
+    final StringBuilder res = new StringBuilder("[");
+    for (Stats s : stats) {
+      res.append(res.length() == 1 ? "\n" : ",\n").append("  {");
+      final String[] values = values(s);
+      for (int i = 0; i < values.length; i++) {
+        res.append(i == 0 ? "" : ", ").append('"').append(COLUMNS[i]).append("\": ");
+        final boolean text = i == 0 || COLUMNS[i].equals("decisions") || COLUMNS[i].equals("reference");
+        if (text)
+          res.append('"').append(values[i].replace("\\", "\\\\").replace("\"", "\\\"")).append('"');
+        else
+          res.append(values[i].equals("NaN") ? "null" : values[i]);
+      }
+      res.append('}');
+    }
+    return res.append("\n]\n").toString();
+  }
+
+  /**
+   * Statistics of the cells in a CSV file written by this runner.
+   * @throws PrismException if the file is not a CSV file of this runner
+   */
+  static Map<String, Stats> fromCsv(final List<String> lines) throws PrismException {
+    if (lines.isEmpty() || !csvFields(lines.get(0)).equals(Arrays.asList(COLUMNS)))
+      throw new PrismException("Baseline is not a CSV file of BenchmarkRunner");
+    final Map<String, Stats> res = new LinkedHashMap<>();
+    for (int i = 1; i < lines.size(); i++) {
+      if (lines.get(i).trim().isEmpty())
+        continue;
+      final List<String> fields = csvFields(lines.get(i));
+      if (fields.size() != COLUMNS.length)
+        throw new PrismException("Invalid line " + (i + 1) + " in the baseline");
+      final Stats s = new Stats(fields.get(0));
+      try {
+        s.runs = Integer.parseInt(fields.get(1));
+        s.failures = Integer.parseInt(fields.get(2));
+        s.time = Double.parseDouble(fields.get(3));
+        s.timeSe = Double.parseDouble(fields.get(4));
+        s.samples = Double.parseDouble(fields.get(5));
+        s.samplesSe = Double.parseDouble(fields.get(6));
+        s.wall = Double.parseDouble(fields.get(7));
+        s.estimate = Double.parseDouble(fields.get(8));
+        s.estimateSe = Double.parseDouble(fields.get(9));
+        s.decisions = fields.get(10);
+        s.reference = fields.get(11);
+        s.errorRate = Double.parseDouble(fields.get(12));
+      } catch (NumberFormatException e) {
+        throw new PrismException("Invalid number in line " + (i + 1) + " of the baseline");
+      }
+      res.put(s.id, s);
+    }
+    return res;
+  }
+
+  private static double square(final double se) {
+    return Double.isNaN(se) ? 0 : se * se;
+  }
+
+  /**
+   * Whether or not {@code after} is significantly larger than {@code before}: it must be larger by more than {@code tolerance} (relative) and more
+   * than two standard errors of the difference.
+   */
+  static boolean slower(final double before, final double beforeSe, final double after, final double afterSe, final double tolerance) {
+    return after > before * (1 + tolerance) && after - before > 2 * Math.sqrt(square(beforeSe) + square(afterSe));
+  }
+
+  /**
+   * Regressions of the cells that are in both the baseline and the current results: slowdowns (in time or number of samples) and additional failed
+   * runs.
+   */
+  static List<String> compare(final Map<String, Stats> baseline, final Collection<Stats> current, final double tolerance) {
+    final List<String> res = new ArrayList<>();
+    for (Stats s : current) {
+      final Stats b = baseline.get(s.id);
+      if (b == null)
+        continue;
+      if (s.failures > b.failures)
+        res.add(s.id + ": " + s.failures + " failed runs (was " + b.failures + ")");
+      if (slower(b.time, b.timeSe, s.time, s.timeSe, tolerance))
+        res.add(String.format("%s: time %.4g s (was %.4g s, %+.1f%%)", s.id, s.time, b.time, 100 * (s.time / b.time - 1)));
+      if (slower(b.samples, b.samplesSe, s.samples, s.samplesSe, tolerance))
+        res.add(String.format("%s: samples %.4g (was %.4g, %+.1f%%)", s.id, s.samples, b.samples, 100 * (s.samples / b.samples - 1)));
+    }
+    return res;
+  }
+
+  private static void write(final File file, final String text) throws IOException {
+    try (PrintWriter out = new PrintWriter(file, StandardCharsets.UTF_8)) {
+      out.print(text);
+    }
+  }
+
+  public static void main(final String[] args) throws PrismException, IOException {
+    String              matrix    = null;
+    String              prefix    = null;
+    String              baseline  = null;
+    double  tolerance = 0.1;
+    Pattern only      = null;
+    for (int i = 0; i < args.length; i++) {
+      if (args[i].startsWith("-") && i + 1 >= args.length)
+        throw new PrismException("Missing value for " + args[i] + " switch");
+      switch (args[i]) {
+        case "-out":
+          prefix = args[++i];
+          break;
+        case "-baseline":
+          baseline = args[++i];
+          break;
+        case "-tolerance":
+          try {
+            tolerance = Double.parseDouble(args[++i]);
+          } catch (NumberFormatException e) {
+            throw new PrismException("Invalid double value for -tolerance switch");
+          }
+          break;
+        case "-only":
+          only = Pattern.compile(args[++i]);
+          break;
+        default:
+          if (matrix != null || args[i].startsWith("-"))
+            throw new PrismException("Usage: BenchmarkRunner <matrix-file> [-out <prefix>] [-baseline <csv-file>] [-tolerance <fraction>] [-only <regex>]");
+          matrix = args[i];
+      }
+    }
+    if (matrix == null)
+      throw new PrismException("Usage: BenchmarkRunner <matrix-file> [-out <prefix>] [-baseline <csv-file>] [-tolerance <fraction>] [-only <regex>]");
+    if (prefix == null)
+      prefix = matrix.replaceFirst("\\.[^./\\\\]*$", "");
+    // read the baseline first, so a mistake is found before running anything (and the baseline is not overwritten by the results)
+    final Map<String, Stats> base = baseline == null ? null : fromCsv(Files.readAllLines(new File(baseline).toPath(), StandardCharsets.UTF_8));
+
+    final List<Cell> cells = new ArrayList<>();
+    for (Cell cell : parse(Files.readAllLines(new File(matrix).toPath(), StandardCharsets.UTF_8)))
+      if (only == null || only.matcher(cell.id).find())
+        cells.add(cell);
+    final File logs = new File(prefix + "-logs");
+    if (!logs.isDirectory() && !logs.mkdirs())
+      throw new PrismException("Could not create folder " + logs);
+
+    final List<Stats> results = new ArrayList<>();
+    for (int i = 0; i < cells.size(); i++) {
+      final Cell cell = cells.get(i);
+      System.out.println("[" + (i + 1) + "/" + cells.size() + "] " + cell.id);
+      final Stats s = run(cell, new File(logs, (i + 1) + ".log"));
+      results.add(s);
+      System.out.println(String.format("    time %.4g s (se %.2g), samples %.4g (se %.2g), %s%s", s.time, s.timeSe, s.samples, s.samplesSe,
+                                       s.decisions.isEmpty() ? "estimate " + s.estimate : s.decisions,
+                                       s.failures == 0 ? "" : ", " + s.failures + " failed runs"));
+      write(new File(prefix + ".csv"), toCsv(results));
+      write(new File(prefix + ".json"), toJson(results));
+    }
+
+    if (base != null) {
+      final List<String> regressions = compare(base, results, tolerance);
+      System.out.println("\nCompared with " + baseline + ": " + (regressions.isEmpty() ? "no regressions" : regressions.size() + " regressions"));
+      for (String line : regressions)
+        System.out.println("    " + line);
+      if (!regressions.isEmpty())
+        System.exit(2);
+    }
+  }
+}
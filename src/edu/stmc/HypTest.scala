@@ -80,8 +80,35 @@ abstract class HypTest extends SimulationMethod {
     * @param iters   The number of iterations (samples) done so far
     * @param sampler The [[Sampler]] object for this simulation
     * @return `true` if the simulation should stop, `false` otherwise
-    * @note This method may continue being called after `true` is returned, e.g. if multiple properties are being simulated simultaneously. */
-  override def shouldStopNow(iters: Int, sampler: Sampler): Boolean
+    * @note
+    *   1. This method may continue being called after `true` is returned, e.g. if multiple properties are being simulated simultaneously.
+    *   1. Added in STMC: tests implement [[shouldStop]] instead. This version only widens `iters` and calls that one. */
+  final override def shouldStopNow(iters: Int, sampler: Sampler): Boolean = shouldStop(iters.toLong, sampler)
+
+  /** Same as the 32-bit `shouldStopNow`, except that the number of iterations is a 64-bit integer (engines call this version).
+    *
+    * @note Added in STMC: tests implement [[shouldStop]] instead. This version only calls that one. */
+  final override def shouldStopNow(iters: Long, sampler: Sampler): Boolean = shouldStop(iters, sampler)
+
+  /** Implementation of both versions of `shouldStopNow` (see the 32-bit one).
+    *
+    * @note Added in STMC. It has another name because [[SimulationMethod]] already implements the 64-bit `shouldStopNow` (by calling the 32-bit one), and a
+    *       concrete member always overrides an abstract one in Scala. So redeclaring that one as abstract would not make tests implement it, and a test
+    *       that did not would recurse between the two versions forever. */
+  def shouldStop(iters: Long, sampler: Sampler): Boolean
+
+  /** Same as [[shouldStop]], except that the outcome of the last sample is given directly. Engines that generate samples
+    * in other threads (so there is no [[Sampler]] holding the current value) use this version.
+    *
+    * @param iters    The number of iterations (samples) done so far
+    * @param positive Whether or not the last sample is positive
+    * @note
+    *   1. Only used for tests whose [[usesBatchMeans]] is `false`.
+    *   1. Default implementation is added in STMC. It updates the test and returns [[completed]]. */
+  def shouldStopNow(iters: Long, positive: Boolean): Boolean = {
+    update(positive)
+    completed
+  }
 
   /** Get an indication of progress so far for simulation, i.e. an approximate value for the percentage of work (samples) done. The value is a multiple of 10
     * in the range [0,100]. This estimate may not be linear (e.g. for CI/ACI where 'iterations' is computed). It is assumed that this method is called ''after''
@@ -91,8 +118,14 @@ abstract class HypTest extends SimulationMethod {
     * @param sampler The [[Sampler]] object for this simulation
     * @note
     *   1. The iteration count may exceed that dictated by this method, e.g. if multiple properties are being simulated simultaneously.
-    *   1. Default implementation is added in STMC and it returns 0. */
-  override def getProgress(iters: Int, sampler: Sampler): Int = 0
+    *   1. Default implementation is added in STMC. It is the share of `iters` in `iters` plus [[expectedSamplesRemaining]] (so `iters` must count
+    *      samples, or batch means when [[usesBatchMeans]] is `true`), and `0` if there is no prediction. */
+  override def getProgress(iters: Long, sampler: Sampler): Int = HypTest.progress(iters, expectedSamplesRemaining)
+
+  /** Same as the 64-bit `getProgress`; it only widens `iters`.
+    *
+    * @note Added in STMC. */
+  final override def getProgress(iters: Int, sampler: Sampler): Int = getProgress(iters.toLong, sampler)
 
   /** Get the (approximate) result for the property that simulation is being used to approximate. This should be a Boolean/Double for bounded/quantitative
     * properties, respectively.
@@ -123,8 +156,80 @@ abstract class HypTest extends SimulationMethod {
     * @param negative Number of samples that are negative.
     * @note
     *   1. Requires `positive >= 0` and `negative >= 0`.
+    *   1. Counts are 64-bit; implementations must not silently wrap around and throw [[ArithmeticException]] instead (eg. using `Math.addExact`).
     *   1. Implementations might add a constraint on the total number of samples. */
-  def update(positive: Int, negative: Int)
+  def update(positive: Long, negative: Long)
+
+  /** Update the test by adding a block of observations packed in a bit vector: the `i`-th observation is positive iff bit `i % 64` of `words(i / 64)` is
+    * set. Observations are consumed in order, and consumption stops right after the first one at which the test is [[completed]]. So the result is the
+    * same as calling `update(positive: Boolean)` for every observation and checking [[completed]] in between, but blocks in which no decision is possible
+    * (see [[mayDecideWithin]]) are applied at once.
+    *
+    * @param words Observations, 64 per word.
+    * @param bits  Number of observations in `words`.
+    * @return Number of consumed observations (`bits` unless the test is completed before the end of the block).
+    * @note
+    *   1. Requires `0 ≤ bits ≤ 64 * words.length`. Bits at index `bits` or higher are ignored.
+    *   1. For a test that uses batch means (see [[HypTest.BatchMeans]]), the whole block is a single batch and its mean is passed to its `updateMean`.
+    *   1. Default implementation is added in STMC. */
+  def update(words: Array[Long], bits: Int): Int = {
+    require(0 <= bits && bits <= 64L * words.length, s"Invalid number of bits $bits for ${words.length} words")
+    if (bits == 0)
+      return 0
+    this match {
+    case test: HypTest.BatchMeans =>
+      test.updateMean(HypTest.countPositives(words, 0, bits) / bits.toDouble)
+      return bits
+    case _ =>
+    }
+    if (completed)
+      return 0
+    val positive = HypTest.countPositives(words, 0, bits)
+    if (!mayDecideWithin(positive, bits - positive)) {
+      update(positive, bits - positive)
+      return bits
+    }
+    // A decision is possible, so consume the block in chunks that are not longer than the decision horizon
+    var i = 0
+    while (i < bits && !completed) {
+      val k = Math.min(decisionHorizon, bits - i).toInt
+      val p = HypTest.countPositives(words, i, i + k)
+      update(p, k - p)
+      i += k
+    }
+    i
+  }
+
+  /** Whether or not the test might be [[completed]] after some non-empty prefix of a block of `positive + negative` observations, of which `positive` are
+    * positive, in any order.
+    *
+    * @note
+    *   1. Implementations may return `true` even if no decision is possible (it only costs a slower update), but never `false` if one is possible.
+    *   1. Default implementation is added in STMC and it compares the size of the block with [[decisionHorizon]]. */
+  def mayDecideWithin(positive: Long, negative: Long): Boolean = decisionHorizon <= positive + negative
+
+  /** Whether or not this test consumes one batch mean per iteration instead of individual samples, ie. whether or not it is a [[HypTest.BatchMeans]].
+    *
+    * @note Added in STMC (for callers in Java, and for reports). */
+  final def usesBatchMeans: Boolean = this.isInstanceOf[HypTest.BatchMeans]
+
+  /** Minimum number of further samples (or batches, when [[usesBatchMeans]] is `true`) before this test can possibly be [[completed]]. An engine may
+    * generate that many samples (eg. in parallel) and feed them to the test at once, without asking the stopping rule in between.
+    *
+    * @return `0` if the test is already completed, and a positive number otherwise.
+    * @note
+    *   1. Implementations must never overestimate the actual horizon (underestimating only costs extra checks).
+    *   1. Default implementation is added in STMC and it returns `1` whenever the test is not completed. */
+  def decisionHorizon: Long = if (completed) 0 else 1
+
+  /** Predicted number of further samples (or batches, when [[usesBatchMeans]] is `true`) before this test is [[completed]], assuming that the actual
+    * probability is what the samples taken so far say (eg. Wald's approximation of the average sample number of SPRT, from the current statistic).
+    *
+    * @return `0` if the test is already completed, `NaN` if there is no prediction yet, and infinity if the test is not expected to stop.
+    * @note
+    *   1. Unlike [[decisionHorizon]], this is neither a lower nor an upper bound. It is only meant for progress reports and cost estimates.
+    *   1. Default implementation is added in STMC and it returns `NaN` whenever the test is not completed. */
+  def expectedSamplesRemaining: Double = if (completed) 0 else Double.NaN
 
   /** Whether or not the test is completed. */
   def completed: Boolean
@@ -146,4 +251,128 @@ abstract class HypTest extends SimulationMethod {
     * @note Requires [[completed]] to be `true`. */
   def failed_to_reject: Boolean
 
+  /** Best available answer while the test is not [[completed]] (eg. when sampling is stopped because its budget is exhausted, see
+    * [[STMCConfig.timeBudget]] and [[STMCConfig.sampleBudget]]). Nothing is thrown away: the answer is what the samples taken so far say.
+    *
+    * @note Default implementation is added in STMC and it only reports that there is no answer. */
+  def interim: HypTest.Interim = HypTest.Interim(null, 0, Double.NaN, Double.NaN, Double.NaN, s"$getName gives no partial answer")
+
+}
+
+object HypTest {
+
+  /** A test that consumes one batch mean per iteration (see [[updateMean]]) instead of individual samples. Engines that generate correlated batches of
+    * samples (eg. stratified or antithetic sampling) must not unroll a batch into individual samples for such a test. */
+  trait BatchMeans extends HypTest {
+
+    /** Update the test by adding the mean of a batch of samples (eg. the estimated probability in one iteration of stratified sampling).
+      *
+      * @param mean Mean of the new batch.
+      * @note Requires `0 ≤ mean ≤ 1`. */
+    def updateMean(mean: Double): Unit
+
+  }
+
+  /** Answer of a test that is not completed (see [[HypTest.interim]]).
+    *
+    * @param result   What [[HypTest.getResult]] would return if the test were decided the way the samples currently lean (`null` if unknown).
+    * @param samples  Number of samples (or batch means, for tests that use them) taken so far.
+    * @param estimate Estimated probability.
+    * @param low      Lower end of the confidence interval of the probability.
+    * @param high     Upper end of the confidence interval of the probability.
+    * @param details  Test specific statistics (eg. the current log-likelihood ratio and the error bound achieved so far). */
+  final case class Interim(result: AnyRef, samples: Long, estimate: Double, low: Double, high: Double, details: String) {
+    override def toString: String = s"$result (undecided after $samples samples, estimate: $estimate, interval: [$low, $high], $details)"
+  }
+
+  /** Whether or not `result` (of a property) is the partial answer of a test that was not decided (for callers in Java). */
+  def isInterim(result: AnyRef): Boolean = result.isInstanceOf[Interim]
+
+  /** Result of a binary test whose status is `status` (ie. `!rejected`). */
+  def binaryResult(status: CompResult.Binary, LB: Boolean): AnyRef =
+    Boolean.box(!(if (LB) status eq CompResult.Binary.SMALLER else status eq CompResult.Binary.LARGER))
+
+  /** Wilson score interval of a probability with confidence `1 - α`, after `n` positive samples out of `N`. It is `[0, 1]` if `N` is `0`. */
+  def interval(N: Long, n: Long, alpha: Double): (Double, Double) =
+    if (N == 0) (0.0, 1.0)
+    else {
+      val z = cern.jet.stat.Probability.normalInverse(1 - alpha / 2)
+      val p = n / N.toDouble
+      val d = 1 + z * z / N
+      val center = (p + z * z / (2 * N)) / d
+      val half = z * Math.sqrt(p * (1 - p) / N + z * z / (4.0 * N * N)) / d
+      (Math.max(0, center - half), Math.min(1, center + half))
+    }
+
+  /** Normal interval of a probability with confidence `1 - α`, from the mean and sample variance of `iter` batch means. It is `[0, 1]` if `iter < 2`. */
+  def interval(mean: Double, variance: Double, iter: Long, alpha: Double): (Double, Double) =
+    if (iter < 2) (0.0, 1.0)
+    else {
+      val half = cern.jet.stat.Probability.normalInverse(1 - alpha / 2) * Math.sqrt(variance / iter)
+      (Math.max(0, mean - half), Math.min(1, mean + half))
+    }
+
+  /** Progress (a multiple of 10 in `[0, 100]`) of a test that has taken `done` samples and is predicted to take `remaining` more. It is `100` only if
+    * `remaining` is `0`, and it is `0` if there is no prediction (`remaining` is `NaN`). */
+  def progress(done: Long, remaining: Double): Int =
+    if (remaining == 0) 100
+    else if (remaining.isNaN || done <= 0) 0
+    else 10 * Math.min(9, Math.floor(10 * done / (done + remaining)).toInt)
+
+  /** Expected time until a random walk that starts at `x`, and moves by `drift` on average with variance `variance` per step, leaves `(lower, upper)`.
+    * The walk is approximated by a Brownian motion (so overshoots are ignored, as in Wald's approximations). It is infinity if the walk is not expected to
+    * leave. */
+  def exitTime(x: Double, lower: Double, upper: Double, drift: Double, variance: Double): Double =
+    if (x <= lower || x >= upper) 0
+    else if (variance <= 0) {
+      if (drift > 0) (upper - x) / drift else if (drift < 0) (lower - x) / drift else Double.PositiveInfinity
+    } else {
+      val a = x - lower
+      val w = upper - lower
+      val k = 2 * drift / variance
+      if (Math.abs(k * w) < 1e-9) a * (upper - x) / variance
+      else {
+        // probability of leaving through `upper` (the exponents are kept non-positive)
+        val pu = if (k > 0) Math.expm1(-k * a) / Math.expm1(-k * w) else Math.exp(-k * (a - w)) * Math.expm1(k * a) / Math.expm1(k * w)
+        // Wald's identity: the expected displacement is the drift times the expected time
+        (pu * (upper - x) + (1 - pu) * (lower - x)) / drift
+      }
+    }
+
+  /** Kullback-Leibler divergence of a Bernoulli distribution with mean `q` from one with mean `p` (requires `0 < p < 1` and `0 < q < 1`). */
+  def kl(p: Double, q: Double): Double = p * Math.log(p / q) + (1 - p) * Math.log((1 - p) / (1 - q))
+
+  /** Predicted number of further samples before a statistic that grows like `N` times the divergence of the estimated probability from `threshold` (such
+    * as a generalized likelihood ratio or a log Bayes factor) reaches `logL` or `logU`, after `n` positives out of `N` samples (`NaN` if `N` is `0`). */
+  def samplesToBound(N: Long, n: Long, threshold: Double, logT: Double, logL: Double, logU: Double): Double =
+    if (N == 0) Double.NaN
+    else {
+      val distance = (if (logT >= 0) logU else -logL) - Math.abs(logT)
+      if (distance <= 0) 0 else distance / kl((n + 0.5) / (N + 1), threshold)
+    }
+
+  /** Number of samples after which a confidence interval whose half-width is `z * sqrt((variance + extra / N) / N)` is at most `delta`. */
+  def samplesForWidth(z: Double, variance: Double, extra: Double, delta: Double): Double =
+    (z * z * variance + Math.sqrt(z * z * z * z * variance * variance + 4 * delta * delta * z * z * extra)) / (2 * delta * delta)
+
+  /** Number of set bits at indices `from` (inclusive) to `until` (exclusive) of a packed bit vector (see `HypTest.update(words, bits)`). */
+  def countPositives(words: Array[Long], from: Int, until: Int): Int = {
+    if (from >= until)
+      return 0
+    val first = from >>> 6
+    val last = (until - 1) >>> 6
+    var count = 0
+    var w = first
+    while (w <= last) {
+      var word = words(w)
+      if (w == first)
+        word &= -1L << (from & 63)
+      if (w == last)
+        word &= -1L >>> (63 - ((until - 1) & 63))
+      count += java.lang.Long.bitCount(word)
+      w += 1
+    }
+    count
+  }
+
 }
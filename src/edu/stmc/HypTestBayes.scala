@@ -0,0 +1,260 @@
+/*+++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+ + STMC - Statistical Model Checker                                                               +
+ +                                                                                                +
+ + Copyright (C) 2019                                                                             +
+ + Authors:                                                                                       +
+ +   Nima Roohi <nroohi@ucsd.edu> (University of California San Diego)                            +
+ +                                                                                                +
+ + This program is free software: you can redistribute it and/or modify it under the terms        +
+ + of the GNU General Public License as published by the Free Software Foundation, either         +
+ + version 3 of the License, or (at your option) any later version.                               +
+ +                                                                                                +
+ + This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;      +
+ + without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.      +
+ + See the GNU General Public License for more details.                                           +
+ +                                                                                                +
+ + You should have received a copy of the GNU General Public License along with this program.     +
+ + If not, see <https://www.gnu.org/licenses/>.                                                   +
+ +++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++*/
+
+package edu.stmc
+
+import cern.jet.stat.Probability
+import parser.ast.{Expression, ExpressionProb}
+import prism.PrismException
+import simulator.sampler.Sampler
+
+import scala.math.log
+
+/** Bayesian Sequential Hypothesis Test with a Beta prior
+  *
+  * The prior of the actual probability `p` is `Beta(a, b)`, so after `n` positive samples out of `N` the posterior is `Beta(a + n, b + N - n)`. The test
+  * statistic is the Bayes factor of `p > θ` against `p < θ`, ie. the posterior odds divided by the prior odds. Same as [[HypTestGLRT]], it is compared
+  * against `log(β / (1 - α))` and `log((1 - β) / α)`.
+  *
+  * @note
+  *   1. See ''A Bayesian Approach to Model Checking Biological Systems, by Sumit K. Jha et. al. (2009)'' for a reference to this method.
+  *   1. An informed prior (eg. the posterior of a previous run on a similar model) can reduce the expected number of samples substantially. The uniform
+  * prior `Beta(1, 1)` is used by default.
+  *   1. Method [[init]] must be called before this test can be actually performed.
+  *   1. Probabilistic guarantees in this class ignore numerical errors caused by floating point arithmetic.
+  *   1. Error probabilities are Bayesian: they are averaged over the prior. If the prior puts very little weight near the actual probability, the error
+  * for that particular probability can be larger than the input parameters.
+  * @constructor Create an uninitialized instance of this method. */
+final class HypTestBayes() extends HypTest {
+
+  // Input parameters
+  private[this] var threshold: Double = _
+  private[this] var alpha: Double = _
+  private[this] var beta: Double = _
+  private[this] var priorA: Double = _
+  private[this] var priorB: Double = _
+  private[this] var LB: Boolean = _
+
+  // Computed initially based on the input parameters
+  private[this] var logL: Double = _
+  private[this] var logU: Double = _
+  private[this] var logPriorOdds: Double = _
+
+  // Test statistic
+  private[this] var N: Long = 0 // Total number of samples
+  private[this] var n: Long = 0 // Number of positive samples
+
+  /** Initialize or reset this to a hypothesis test in which the null hypothesis is `p < θ` and the alternative hypothesis is `p > θ`, where `p` is
+    * the actual probability, and `θ` is the input threshold.
+    *
+    * @param threshold Input Threshold
+    * @param alpha     Type I  (aka `false positive`) error probability (the probability of incorrectly     rejecting the null hypothesis).
+    * @param beta      Type II (aka `false negative`) error probability (the probability of incorrectly not rejecting the null hypothesis).
+    * @param priorA    First parameter of the Beta prior (pseudo-count of positive samples).
+    * @param priorB    Second parameter of the Beta prior (pseudo-count of negative samples).
+    * @param LB        Whether or not the null and alternative hypotheses should be swapped (`true` means they should).
+    * @note The following requirements must be met (`θ` refers to the input threshold):
+    *   - 0 < θ < 1
+    *   - 0 < α < 0.5
+    *   - 0 < β < 0.5
+    *   - 0 < priorA
+    *   - 0 < priorB
+    * @see [[status(N*]], [[rejected]], [[failed_to_reject]] */
+  def init(threshold: Double, alpha: Double, beta: Double, priorA: Double = 1, priorB: Double = 1, LB: Boolean = true): HypTestBayes = {
+    require(0 < threshold && threshold < 1, s"Invalid threshold $threshold")
+    require(0 < alpha && alpha < 0.5, s"Invalid type I error $alpha")
+    require(0 < beta && beta < 0.5, s"Invalid type II error $beta")
+    require(0 < priorA && 0 < priorB, s"Invalid prior Beta($priorA, $priorB)")
+
+    this.threshold = threshold
+    this.priorA = priorA
+    this.priorB = priorB
+    this.LB = LB
+    if (LB) {
+      this.alpha = beta
+      this.beta = alpha
+    } else {
+      this.alpha = alpha
+      this.beta = beta
+    }
+
+    // Lower and upper bounds after which the null hypothesis won't/will be rejected
+    logL = log(this.beta / (1 - this.alpha))
+    logU = log((1 - this.beta) / this.alpha)
+    assert(logL < 0, s"Lower-bound log is not negative $logL")
+    assert(logU > 0, s"Upper-bound log is not positive $logU")
+
+    logPriorOdds = logOdds(priorA, priorB)
+    assert(java.lang.Double.isFinite(logPriorOdds), s"Prior puts (almost) all its weight on one side of the threshold ($logPriorOdds)")
+
+    this
+  }
+
+  private def reset(threshold: Double,
+                    alpha: Double, beta: Double,
+                    priorA: Double, priorB: Double, LB: Boolean,
+                    logL: Double, logU: Double, logPriorOdds: Double,
+                    N: Long, n: Long): HypTestBayes = {
+    this.threshold = threshold
+    this.alpha = alpha
+    this.beta = beta
+    this.priorA = priorA
+    this.priorB = priorB
+    this.LB = LB
+    this.logL = logL
+    this.logU = logU
+    this.logPriorOdds = logPriorOdds
+    this.N = N
+    this.n = n
+    this
+  }
+
+  /** Log of the odds of `p > θ` when `p` has distribution `Beta(a, b)`. */
+  private[this] def logOdds(a: Double, b: Double): Double =
+    log(Probability.betaComplemented(a, b, threshold)) - log(Probability.beta(a, b, threshold))
+
+  //------------------------------------------------------------------------------------------------------------------------------------------------------------
+
+  // SimulationMethod Methods
+
+  override def reset(): Unit = {
+    N = 0
+    n = 0
+  }
+
+  override def getName: String = "Bayes"
+  override def getFullName: String = "Bayesian Sequential Hypothesis Test"
+  override def getParametersString: String =
+    s"threshold: $threshold, alpha: $alpha, beta: $beta, prior: Beta($priorA, $priorB), LB: $LB, logL: $logL, logU: $logU, logPriorOdds: $logPriorOdds"
+
+  override def getResultExplanation(sampler: Sampler): String = {
+    val a = posteriorA
+    val b = posteriorB
+    s"$getParametersString, N: $N, n: $n, posterior: Beta($a, $b), posterior-mean: ${a / (a + b)}, " +
+    s"P(p > $threshold | samples): ${Probability.betaComplemented(a, b, threshold)}, logBayesFactor: $logBayesFactor"
+  }
+
+  override def clone: HypTestBayes = new HypTestBayes().reset(threshold, alpha, beta, priorA, priorB, LB, logL, logU, logPriorOdds, N, n)
+
+  override def setExpression(expr: Expression): Unit =
+    if (!expr.isInstanceOf[ExpressionProb])
+      throw new PrismException(s"Can only handle expressions of type ExpressionProp. However, type of '$expr' is ${expr.getClass.getName}")
+    else {
+      val expr2 = expr.asInstanceOf[ExpressionProb]
+      val threshold = expr2.getBound.evaluateDouble
+      val op = expr2.getRelOp
+      init(threshold, STMCConfig.alpha, STMCConfig.beta, STMCConfig.priorA, STMCConfig.priorB, op.isLowerBound)
+    }
+
+  /** @note Nothing is sampled before the first iteration, so the value of `sampler` is ignored when `iters` is zero. */
+  override def shouldStop(iters: Long, sampler: Sampler): Boolean = {
+    if (iters > 0)
+      update(sampler.getCurrentValue.asInstanceOf[Boolean])
+    completed
+  }
+
+  override def getMissingParameter: java.lang.Integer =
+  // `SimulationMethod` requires the return type to be either an Integer or a Double object.
+    status match {
+    case CompResult.Binary.SMALLER   => Int.box(-1)
+    case CompResult.Binary.LARGER    => Int.box(+1)
+    case CompResult.Binary.UNDECIDED => throw new PrismException("Missing parameter not computed yet")
+    }
+
+  //------------------------------------------------------------------------------------------------------------------------------------------------------------
+
+  // HypTest Methods
+
+  /** @note No restriction on total number of samples (other than the range of `Long`). */
+  override def update(positive: Boolean): Unit = {
+    N += 1
+    if (positive)
+      n += 1
+  }
+
+  /** @note
+    *   1. Requires `positive >= 0` and `negative >= 0`.
+    *   1. Throws [[ArithmeticException]] if total number of samples exceeds 2^^63^^-1. */
+  override def update(positive: Long, negative: Long): Unit = {
+    N = Math.addExact(N, Math.addExact(positive, negative))
+    n = Math.addExact(n, positive)
+  }
+
+  /** First parameter of the posterior. */
+  def posteriorA: Double = priorA + n
+
+  /** Second parameter of the posterior. */
+  def posteriorB: Double = priorB + (N - n)
+
+  /** Log of the Bayes factor of `p > θ` against `p < θ`. */
+  def logBayesFactor: Double = logOdds(posteriorA, posteriorB) - logPriorOdds
+
+  /** @note
+    *   1. Requires `n ≤ N`
+    *   1. The following (Bayesian) probabilistic guarantees are made (if [[LB]] is `true` then swap `α` and `β`):
+    *      a. if the actual probability is smaller than `θ` then the probability of returning [[CompResult.Binary.LARGER]]  is at most `α`.
+    *      a. if the actual probability is larger  than `θ` then the probability of returning [[CompResult.Binary.SMALLER]] is at most `β`.
+    * @see [[init]] where all the parameters are set */
+  def status(N: Long, n: Long): CompResult.Binary = {
+    val logT = logOdds(priorA + n, priorB + (N - n)) - logPriorOdds
+    if (logT >= logU) CompResult.Binary.LARGER
+    else if (logT <= logL) CompResult.Binary.SMALLER
+    else CompResult.Binary.UNDECIDED
+  }
+
+  /** Same as [[status(N*]], but input parameter is taken from the current instance */
+  @inline
+  def status: CompResult.Binary = status(N, n)
+
+  override def completed: Boolean = status ne CompResult.Binary.UNDECIDED
+
+  /** The log Bayes factor grows like `N` times the divergence of `n/N` from `θ` (see [[HypTest.samplesToBound]]). */
+  override def expectedSamplesRemaining: Double =
+    if (completed) 0
+    else HypTest.samplesToBound(N, n, threshold, logBayesFactor, logL, logU)
+
+  /** @return `false` */
+  override def too_close: Boolean = false
+
+  /** @note
+    *   1. [[completed]] should be `true`.
+    *   1. The following (Bayesian) probabilistic guarantees are made:
+    *      a. When [[LB]] is `true`:  if the actual probability is larger  than θ then the probability of returning `true` is at most `α`.
+    *      a. When [[LB]] is `false`: if the actual probability is smaller than θ then the probability of returning `true` is at most `α`. */
+  override def rejected: Boolean =
+    if (LB) status eq CompResult.Binary.SMALLER
+    else status eq CompResult.Binary.LARGER
+
+  /** @note
+    *   1. [[completed]] should be `true`.
+    *   1. The following (Bayesian) probabilistic guarantees are made:
+    *      a. When [[LB]] is `true`:  if the actual probability is smaller than θ then the probability of returning `true` is at most `β`.
+    *      a. When [[LB]] is `false`: if the actual probability is larger  than θ then the probability of returning `true` is at most `β`. */
+  override def failed_to_reject: Boolean = !rejected
+
+  /** Leans towards the side of `θ` that the Bayes factor favors. The achieved (Bayesian) error bound is the posterior probability of the other side. */
+  override def interim: HypTest.Interim = {
+    val lean = if (logBayesFactor >= 0) CompResult.Binary.LARGER else CompResult.Binary.SMALLER
+    val larger = Probability.betaComplemented(posteriorA, posteriorB, threshold)
+    val (low, high) = HypTest.interval(N, n, Math.min(alpha, beta))
+    HypTest.Interim(HypTest.binaryResult(lean, LB), N, n / N.toDouble, low, high,
+                    s"logBayesFactor: $logBayesFactor, logL: $logL, logU: $logU, error bound: ${Math.min(larger, 1 - larger)}")
+  }
+
+}
@@ -0,0 +1,185 @@
+/*+++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+ + STMC - Statistical Model Checker                                                               +
+ +                                                                                                +
+ + Copyright (C) 2019                                                                             +
+ + Authors:                                                                                       +
+ +   Nima Roohi <nroohi@ucsd.edu> (University of California San Diego)                            +
+ +                                                                                                +
+ + This program is free software: you can redistribute it and/or modify it under the terms        +
+ + of the GNU General Public License as published by the Free Software Foundation, either         +
+ + version 3 of the License, or (at your option) any later version.                               +
+ +                                                                                                +
+ + This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;      +
+ + without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.      +
+ + See the GNU General Public License for more details.                                           +
+ +                                                                                                +
+ + You should have received a copy of the GNU General Public License along with this program.     +
+ + If not, see <https://www.gnu.org/licenses/>.                                                   +
+ +++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++*/
+
+package edu.stmc
+
+import parser.ast.{Expression, ExpressionProb}
+import prism.PrismException
+import simulator.sampler.Sampler
+
+/** Sequential fixed-width confidence interval (estimation of quantitative properties such as `P=?[...]`)
+  *
+  * Sampling stops at the first `N ≥ minSamples` for which `z,,α/2,,^^2^^ (s^^2^^ + 1/N) / N ≤ δ^^2^^`, where `s^^2^^` is the sample variance, `z,,α/2,,`
+  * is the `1 - α/2` quantile of the standard normal distribution, and `δ` is the half-width of the requested interval.
+  *
+  * @note
+  *   1. See ''On the Asymptotic Theory of Fixed-Width Sequential Confidence Intervals for the Mean, by Y. S. Chow and Herbert Robbins (1965)'' for a
+  * reference to this method.
+  *   1. Method [[init]] must be called before this test can be actually performed.
+  *   1. Probabilistic guarantees in this class ignore numerical errors caused by floating point arithmetic.
+  *   1. This is not a hypothesis test. It extends [[HypTest]] so that engines can feed it the same way. Its result is the estimated probability and
+  * [[rejected]], [[failed_to_reject]] and [[too_close]] are all `false`.
+  * @constructor Create an uninitialized instance of this method. */
+final class HypTestCI() extends HypTest {
+
+  // Input parameters
+  private[this] var alpha: Double = _
+  private[this] var delta: Double = _
+  private[this] var minSamples: Long = _
+
+  // Computed initially based on the input parameters
+  private[this] var z: Double = _
+
+  // Test statistic
+  private[this] var N: Long = 0 // Total number of samples
+  private[this] var n: Long = 0 // Number of positive samples
+
+  /** Initialize or reset this to an estimation in which the actual probability is within `δ` of the returned mean with probability at least `1 - α`
+    * (asymptotically, as `δ` goes to 0).
+    *
+    * @param alpha      One minus the confidence level.
+    * @param delta      Half of the width of the confidence interval.
+    * @param minSamples Minimum number of samples required to stop.
+    * @note The following requirements must be met:
+    *   - 0 < α < 0.5
+    *   - 0 < δ < 0.5
+    *   - minSamples > 0
+    * @see [[completed]], [[mean]] */
+  def init(alpha: Double, delta: Double, minSamples: Long): HypTestCI = {
+    require(0 < alpha && alpha < 0.5, s"Invalid error probability $alpha")
+    require(0 < delta && delta < 0.5, s"Invalid half-width $delta")
+    require(minSamples > 0, s"Invalid minimum number of samples $minSamples")
+    this.alpha = alpha
+    this.delta = delta
+    this.minSamples = minSamples
+    z = cern.jet.stat.Probability.normalInverse(1 - alpha / 2)
+    assert(z > 0, s"Normal quantile ($z) is not positive")
+    this
+  }
+
+  private def reset(alpha: Double, delta: Double, minSamples: Long, z: Double, N: Long, n: Long): HypTestCI = {
+    this.alpha = alpha
+    this.delta = delta
+    this.minSamples = minSamples
+    this.z = z
+    this.N = N
+    this.n = n
+    this
+  }
+
+  //------------------------------------------------------------------------------------------------------------------------------------------------------------
+
+  // SimulationMethod Methods
+
+  override def reset(): Unit = {
+    N = 0
+    n = 0
+  }
+
+  override def getName: String = "CI"
+  override def getFullName: String = "Sequential Confidence Interval"
+  override def getParametersString: String = s"alpha: $alpha, delta: $delta, minSamples: $minSamples, z: $z"
+
+  override def getResultExplanation(sampler: Sampler): String =
+    s"$getParametersString, N: $N, n: $n, mean: $mean, half-width: $halfWidth, interval: [${mean - halfWidth}, ${mean + halfWidth}]"
+
+  override def clone: HypTestCI = new HypTestCI().reset(alpha, delta, minSamples, z, N, n)
+
+  override def setExpression(expr: Expression): Unit =
+    if (!expr.isInstanceOf[ExpressionProb])
+      throw new PrismException(s"Can only handle expressions of type ExpressionProp. However, type of '$expr' is ${expr.getClass.getName}")
+    else if (expr.asInstanceOf[ExpressionProb].getBound != null)
+      throw new PrismException(s"Can only estimate quantitative (=?) properties. However, '$expr' has a bound")
+    else
+      init(STMCConfig.alpha, STMCConfig.delta, STMCConfig.minIters.toLong)
+
+  /** @note Nothing is sampled before the first iteration, so the value of `sampler` is ignored when `iters` is zero. */
+  override def shouldStop(iters: Long, sampler: Sampler): Boolean = {
+    if (iters > 0)
+      update(sampler.getCurrentValue.asInstanceOf[Boolean])
+    completed
+  }
+
+  override def getMissingParameter: java.lang.Double =
+  // `SimulationMethod` requires the return type to be either an Integer or a Double object.
+    if (completed) Double.box(halfWidth)
+    else throw new PrismException("Missing parameter not computed yet")
+
+  @throws[PrismException]
+  override def getResult(sampler: Sampler): AnyRef = Double.box(mean)
+
+  //------------------------------------------------------------------------------------------------------------------------------------------------------------
+
+  // HypTest Methods
+
+  /** @note No restriction on total number of samples (other than the range of `Long`). */
+  override def update(positive: Boolean): Unit = {
+    N += 1
+    if (positive)
+      n += 1
+  }
+
+  /** @note
+    *   1. Requires `positive >= 0` and `negative >= 0`.
+    *   1. Throws [[ArithmeticException]] if total number of samples exceeds 2^^63^^-1. */
+  override def update(positive: Long, negative: Long): Unit = {
+    N = Math.addExact(N, Math.addExact(positive, negative))
+    n = Math.addExact(n, positive)
+  }
+
+  /** Estimated probability (`0` if there is no sample). */
+  def mean: Double = if (N == 0) 0 else n / N.toDouble
+
+  /** Half-width of the current confidence interval (infinity if there are less than two samples). */
+  def halfWidth: Double =
+    if (N < 2) Double.PositiveInfinity
+    else {
+      val mu = mean
+      val variance = mu * (1 - mu) * N / (N - 1)
+      z * Math.sqrt((variance + 1.0 / N) / N)
+    }
+
+  /** Since the half-width is at least `z / N`, no decision is made before `max(minSamples, z / δ)` samples are taken. */
+  override def decisionHorizon: Long =
+    if (completed) 0
+    else Math.max(1, Math.max(minSamples, Math.floor(z / delta).toLong) - N)
+
+  override def completed: Boolean = N >= minSamples && halfWidth <= delta
+
+  /** Number of samples whose half-width is `δ` if the variance stays what it is now (see [[halfWidth]]), and at least `minSamples`. `NaN` before two
+    * samples are taken. */
+  override def expectedSamplesRemaining: Double =
+    if (completed) 0
+    else if (N < 2) Double.NaN
+    else Math.max(minSamples, HypTest.samplesForWidth(z, mean * (1 - mean) * N / (N - 1), 1, delta)) - N
+
+  /** @return `false` */
+  override def too_close: Boolean = false
+
+  /** @return `false` */
+  override def rejected: Boolean = false
+
+  /** @return `false` */
+  override def failed_to_reject: Boolean = false
+
+  /** The current (wider than requested) confidence interval. */
+  override def interim: HypTest.Interim =
+    HypTest.Interim(Double.box(mean), N, mean, Math.max(0, mean - halfWidth), Math.min(1, mean + halfWidth), s"half-width: $halfWidth (requested: $delta)")
+
+}
@@ -0,0 +1,195 @@
+/*+++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+ + STMC - Statistical Model Checker                                                               +
+ +                                                                                                +
+ + Copyright (C) 2019                                                                             +
+ + Authors:                                                                                       +
+ +   Nima Roohi <nroohi@ucsd.edu> (University of California San Diego)                            +
+ +                                                                                                +
+ + This program is free software: you can redistribute it and/or modify it under the terms        +
+ + of the GNU General Public License as published by the Free Software Foundation, either         +
+ + version 3 of the License, or (at your option) any later version.                               +
+ +                                                                                                +
+ + This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;      +
+ + without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.      +
+ + See the GNU General Public License for more details.                                           +
+ +                                                                                                +
+ + You should have received a copy of the GNU General Public License along with this program.     +
+ + If not, see <https://www.gnu.org/licenses/>.                                                   +
+ +++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++*/
+
+package edu.stmc
+
+import parser.ast.{Expression, ExpressionProb}
+import prism.PrismException
+import simulator.sampler.Sampler
+
+/** Stratified Sequential Confidence Interval (estimation of quantitative properties such as `P=?[...]` using antithetic, stratified or adaptive samples)
+  *
+  * Each iteration of the stratified engine contributes one batch mean. Sampling stops at the first `N ≥ minIters` for which
+  * `z,,α/2,,^^2^^ (s^^2^^ + a,,N,,) / N ≤ δ^^2^^`, where `N` is the number of batches, `s^^2^^` is the sample variance of batch means, `z,,α/2,,` is the
+  * `1 - α/2` quantile of the standard normal distribution, `δ` is the half-width of the requested interval, and `a,,N,, = 1 / (K N)` for batches of `K`
+  * samples.
+  *
+  * @note
+  *   1. See ''On the Asymptotic Theory of Fixed-Width Sequential Confidence Intervals for the Mean, by Y. S. Chow and Herbert Robbins (1965)'' for a
+  * reference to this method. The term `a,,N,,` only prevents early termination when the sample variance is (close to) zero. It is scaled by the batch
+  * size since the variance of a batch mean is at most `1 / (4 K)`.
+  *   1. Method [[init]] must be called before this test can be actually performed.
+  *   1. Probabilistic guarantees in this class ignore numerical errors caused by floating point arithmetic.
+  *   1. This is not a hypothesis test. It extends [[HypTest]] so that engines can feed it the same way. Its result is the estimated probability and
+  * [[rejected]], [[failed_to_reject]] and [[too_close]] are all `false`. */
+final class HypTestCIStratified extends HypTest with HypTest.BatchMeans {
+
+  // Input parameters
+  private[this] var alpha: Double = _
+  private[this] var delta: Double = _
+  private[this] var batchSize: Int = _
+
+  // Computed initially based on the input parameters
+  private[this] var z: Double = _
+
+  // Test statistic
+  // https://en.wikipedia.org/wiki/Algorithms_for_calculating_variance
+  private[this] var mean: Double = _ // mean accumulates the mean of the entire data set
+  private[this] var M2: Double = _ // M2 aggregates the squared distance from the mean
+  private[this] var iter: Long = _
+
+  /** Initialize or reset this to an estimation in which the actual probability is within `δ` of the returned mean with probability at least `1 - α`
+    * (asymptotically, as `δ` goes to 0).
+    *
+    * @param alpha     One minus the confidence level.
+    * @param delta     Half of the width of the confidence interval.
+    * @param batchSize Number of samples that are summarized in every batch mean.
+    * @note The following requirements must be met:
+    *   - 0 < α < 0.5
+    *   - 0 < δ < 0.5
+    *   - batchSize > 0
+    * @see [[completed]], [[estimate]] */
+  def init(alpha: Double, delta: Double, batchSize: Int): HypTestCIStratified = {
+    require(0 < alpha && alpha < 0.5, s"Invalid error probability $alpha")
+    require(0 < delta && delta < 0.5, s"Invalid half-width $delta")
+    require(batchSize > 0, s"Invalid batch size $batchSize")
+    this.alpha = alpha
+    this.delta = delta
+    this.batchSize = batchSize
+    z = cern.jet.stat.Probability.normalInverse(1 - alpha / 2)
+    assert(z > 0, s"Normal quantile ($z) is not positive")
+
+    iter = 0
+
+    this
+  }
+
+  private def reset(alpha: Double, delta: Double, batchSize: Int, z: Double,
+                    mean: Double, M2: Double, iter: Long): HypTestCIStratified = {
+    this.alpha = alpha
+    this.delta = delta
+    this.batchSize = batchSize
+    this.z = z
+    this.mean = mean
+    this.M2 = M2
+    this.iter = iter
+    this
+  }
+
+  //------------------------------------------------------------------------------------------------------------------------------------------------------------
+
+  // SimulationMethod Methods
+
+  override def reset(): Unit = {
+    mean = 0
+    M2 = 0
+    iter = 0
+  }
+  private[this] val name = STMCConfig.samplingMethod match {
+  case NameSmplMethod.ANTITHETIC => "Antithetic"
+  case NameSmplMethod.ADAPTIVE   => "Adaptive"
+  case _                         => "Stratified"
+  }
+  override def getName: String = s"${name}CI"
+  override def getFullName: String = s"$name Sequential Confidence Interval"
+  override def getParametersString: String =
+    s"alpha: $alpha, delta: $delta, z: $z, batch-size: $batchSize, strata-sizes: ${STMCConfig.strataSizes.mkString("[", ",", "]")}, strata-size: ${STMCConfig.strataTotalSize}" +
+    (if (STMCConfig.samplingMethod == NameSmplMethod.ADAPTIVE) s", adaptive-factor: ${STMCConfig.adaptiveFactor}" else "")
+
+  override def getResultExplanation(sampler: Sampler): String =
+    s"$getParametersString, mean: $mean, M2: $M2, iter: $iter, half-width: $halfWidth, interval: [${mean - halfWidth}, ${mean + halfWidth}]"
+
+  override def clone: HypTestCIStratified = new HypTestCIStratified().reset(alpha, delta, batchSize, z, mean, M2, iter)
+
+  override def setExpression(expr: Expression): Unit =
+    if (!expr.isInstanceOf[ExpressionProb])
+      throw new PrismException(s"Can only handle expressions of type ExpressionProp. However, type of '$expr' is ${expr.getClass.getName}")
+    else if (expr.asInstanceOf[ExpressionProb].getBound != null)
+      throw new PrismException(s"Can only estimate quantitative (=?) properties. However, '$expr' has a bound")
+    else {
+      val batchSize =
+        if (STMCConfig.samplingMethod == NameSmplMethod.ADAPTIVE) STMCConfig.strataTotalSize * STMCConfig.adaptiveFactor
+        else STMCConfig.strataTotalSize
+      init(STMCConfig.alpha, STMCConfig.delta, batchSize)
+    }
+
+  override def shouldStop(iters: Long, sampler: Sampler): Boolean = iters >= STMCConfig.minIters && completed
+
+  override def getMissingParameter: java.lang.Double =
+  // `SimulationMethod` requires the return type to be either an Integer or a Double object.
+    if (completed) Double.box(halfWidth)
+    else throw new PrismException("Missing parameter not computed yet")
+
+  @throws[PrismException]
+  override def getResult(sampler: Sampler): AnyRef = Double.box(mean)
+
+  //------------------------------------------------------------------------------------------------------------------------------------------------------------
+
+  // HypTest Methods
+
+  /** @note No restriction on total number of samples. */
+  override def update(positive: Boolean): Unit = updateMean(if (positive) 1 else 0)
+
+  /** @note
+    *   1. Requires `positive >= 0` and `positive + negative > 0`.
+    *   1. No restriction on total number of samples */
+  override def update(positive: Long, negative: Long): Unit = updateMean(positive / (positive + negative).toDouble)
+
+  /** @note No restriction on total number of batches. */
+  override def updateMean(m: Double): Unit = {
+    // See https://en.wikipedia.org/wiki/Algorithms_for_calculating_variance
+    iter += 1
+    val delta = m - mean
+    mean += delta / iter
+    val delta2 = m - mean
+    M2 += delta * delta2
+  }
+
+  /** Estimated probability (mean of all batch means, `0` if there is no batch). */
+  def estimate: Double = mean
+
+  /** Half-width of the current confidence interval (infinity if there are less than two batches). */
+  def halfWidth: Double =
+    if (iter < 2) Double.PositiveInfinity
+    else z * Math.sqrt((M2 / (iter - 1) + 1.0 / (batchSize.toDouble * iter)) / iter)
+
+  override def completed: Boolean = halfWidth <= delta
+
+  /** Number of batches whose half-width is `δ` if the variance of batch means stays what it is now (see [[halfWidth]]). `NaN` before two batches are
+    * taken. */
+  override def expectedSamplesRemaining: Double =
+    if (completed) 0
+    else if (iter < 2) Double.NaN
+    else Math.max(0, HypTest.samplesForWidth(z, M2 / (iter - 1), 1.0 / batchSize, delta) - iter)
+
+  /** @return `false` */
+  override def too_close: Boolean = false
+
+  /** @return `false` */
+  override def rejected: Boolean = false
+
+  /** @return `false` */
+  override def failed_to_reject: Boolean = false
+
+  /** The current (wider than requested) confidence interval. */
+  override def interim: HypTest.Interim =
+    HypTest.Interim(Double.box(estimate), iter, estimate, Math.max(0, estimate - halfWidth), Math.min(1, estimate + halfWidth),
+                    s"half-width: $halfWidth (requested: $delta)")
+
+}
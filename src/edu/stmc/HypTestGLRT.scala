@@ -56,8 +56,25 @@ final class HypTestGLRT() extends HypTest {
   private[this] var logP1: Double = _
 
   // Test statistic
-  private[this] var N: Int = 0 // Total number of samples
-  private[this] var n: Int = 0 // Number of positive samples
+  private[this] var N: Long = 0 // Total number of samples
+  private[this] var n: Long = 0 // Number of positive samples
+
+  // For a fixed `N`, the statistic is increasing in `n`, and for a fixed `n` it is non-increasing in `N`. So the smallest `n` that is LARGER (`N + 1` if
+  // there is none) and the largest `n` that is SMALLER (`-1` if there is none) are non-decreasing in `N`, and each of them grows by at most one per sample.
+  // The following bounds are kept lazily, so that most calls to `status` are only a few integer comparisons:
+  //   - the smallest LARGER `n` was `uLow` when there were `uN` samples, so the test cannot be LARGER while `n < uLow` (for the current and every later
+  //     `N`), and it is now in `[uLow, uLow + (N - uN)]`, and
+  //   - the largest SMALLER `n` was `lHigh` when there were `lN` samples, so the test cannot be SMALLER while `n > lHigh + (N - lN)`, and it is now in
+  //     `[lHigh, lHigh + (N - lN)]`.
+  // Bounds are refreshed (see `computeStatus`) by a galloping search from the end of their range that they can only have moved to. Its cost is logarithmic
+  // in how far they moved, which is at most the number of samples since the last refresh, so the amortized cost per sample is constant. `uN` (`lN`) is `0`
+  // until the first refresh, when `uLow` (`lHigh`) is not the exact bound yet.
+  private[this] var uLow: Long = 0
+  private[this] var uN: Long = 0
+  private[this] var lHigh: Long = 0
+  private[this] var lN: Long = 0
+  // Result of `status` for the current `N` and `n` (`null` if it is not computed yet)
+  private[this] var cached: CompResult.Binary = _
 
   /** Initialize or reset this to a hypothesis test in which the null hypothesis is `p < θ` and the alternative hypothesis is `p > θ`, where `p` is
     * the actual probability, and `θ` is the input threshold.
@@ -102,6 +119,8 @@ final class HypTestGLRT() extends HypTest {
     assert(java.lang.Double.isFinite(logP0), s"logP0 ($logP0) is not a finite number")
     assert(java.lang.Double.isFinite(logP1), s"logP1 ($logP1) is not a finite number")
 
+    resetBounds()
+
     this
   }
 
@@ -109,7 +128,7 @@ final class HypTestGLRT() extends HypTest {
                     alpha: Double, beta: Double,
                     minSamples: Int, LB: Boolean,
                     logL: Double, logU: Double, logP0: Double, logP1: Double,
-                    N: Int, n: Int): HypTestGLRT = {
+                    N: Long, n: Long): HypTestGLRT = {
     this.threshold = threshold
     this.alpha = alpha
     this.beta = beta
@@ -121,9 +140,18 @@ final class HypTestGLRT() extends HypTest {
     this.logP1 = logP1
     this.N = N
     this.n = n
+    resetBounds()
     this
   }
 
+  private[this] def resetBounds(): Unit = {
+    uLow = 0
+    uN = 0
+    lHigh = 0
+    lN = 0
+    cached = null
+  }
+
   //------------------------------------------------------------------------------------------------------------------------------------------------------------
 
   // SimulationMethod Methods
@@ -131,6 +159,7 @@ final class HypTestGLRT() extends HypTest {
   override def reset(): Unit = {
     N = 0
     n = 0
+    resetBounds()
   }
 
   override def getName: String = "GLRT"
@@ -152,7 +181,7 @@ final class HypTestGLRT() extends HypTest {
       init(threshold, STMCConfig.alpha, STMCConfig.beta, STMCConfig.minIters, op.isLowerBound)
     }
 
-  override def shouldStopNow(iters: Int, sampler: Sampler): Boolean = {
+  override def shouldStop(iters: Long, sampler: Sampler): Boolean = {
     update(sampler.getCurrentValue.asInstanceOf[Boolean])
     completed
   }
@@ -169,19 +198,40 @@ final class HypTestGLRT() extends HypTest {
 
   // HypTest Methods
 
-  /** @note At the time of entering this function, total number of samples must be at most 2^^31^^-2. */
+  /** @note At the time of entering this function, total number of samples must be at most 2^^63^^-2. */
   override def update(positive: Boolean): Unit = {
     N += 1
     if (positive)
       n += 1
+    cached = null
   }
 
   /** @note
     *   1. Requires `positive >= 0` and `negative >= 0`.
-    *   1. At the time of entering this function, total number of samples plus `positive` plus `negative` must be at most 2^^31^^-1. */
-  override def update(positive: Int, negative: Int): Unit = {
-    N += positive + negative
-    n += positive
+    *   1. Throws [[ArithmeticException]] if total number of samples plus `positive` plus `negative` exceeds 2^^63^^-1. */
+  override def update(positive: Long, negative: Long): Unit = {
+    N = Math.addExact(N, Math.addExact(positive, negative))
+    n = Math.addExact(n, positive)
+    cached = null
+  }
+
+  /** @note No decision is made before `minSamples` samples are taken. Moreover, reaching `LARGER` takes at least `uLow - n` positive samples, and
+    *       reaching `SMALLER` takes at least `n - lHigh - (N - lN)` samples. */
+  override def decisionHorizon: Long =
+    if (completed) 0
+    else Math.max(1, Math.max(minSamples - N, Math.min(uLow - n, n - lHigh - (N - lN))))
+
+  /** After a prefix of the block, `n` is at most `n + positive` and `n - (N - lN)` is at least its current value minus `negative`. So the cached bounds tell
+    * whether `LARGER` or `SMALLER` is reachable inside the block. */
+  override def mayDecideWithin(positive: Long, negative: Long): Boolean =
+    N + positive + negative >= minSamples && (n + positive >= uLow || n - (N - lN) - negative <= lHigh)
+
+  /** Signed generalized log-likelihood ratio of `p = n/N` against `p = θ` (positive iff `n/N ≥ θ`), where `0 log 0 = 0`. */
+  private[this] def llr(N: Long, n: Long): Double = {
+    val mu = n / N.toDouble
+    val pos = if (n == 0) 0.0 else n * (log(mu) - logP0)
+    val neg = if (n == N) 0.0 else (N - n) * (log(1 - mu) - logP1)
+    if (mu >= threshold) pos + neg else -(pos + neg)
   }
 
   /** @note
@@ -191,35 +241,95 @@ final class HypTestGLRT() extends HypTest {
     *      a. if the actual probability is strictly smaller than `θ` then the probability of returning [[CompResult.Binary.LARGER]]  would be at most `α`.
     *      a. if the actual probability is strictly larger  than `θ` then the probability of returning [[CompResult.Binary.SMALLER]] would be at most `β`.
     * @see [[init]] where all the parameters are set */
-  def status(N: Int, n: Int): CompResult.Binary = {
+  def status(N: Long, n: Long): CompResult.Binary = {
     if (N < minSamples) return CompResult.Binary.UNDECIDED
-    val mu = n / N.toDouble
-    if (mu <= 0 || 1 <= mu) return CompResult.Binary.UNDECIDED
-    val logMu0 = log(mu)
-    val logMu1 = log(1 - mu)
-    assert(java.lang.Double.isFinite(logMu0), s"logMu0 ($logMu0) is not a finite number")
-    assert(java.lang.Double.isFinite(logMu1), s"logMu1 ($logMu1) is not a finite number")
-    val `N-n` = N - n
-    val exp = n * logP0 + `N-n` * logP1
-    val logT = if (mu >= threshold) n * logMu0 + `N-n` * logMu1 - exp
-               else exp - n * logMu0 + `N-n` * logMu1
+    val logT = llr(N, n)
     if (logT >= logU) CompResult.Binary.LARGER
     else if (logT <= logL) CompResult.Binary.SMALLER
     else CompResult.Binary.UNDECIDED
   }
 
-  /** Same as [[status(n*]], but input parameter is taken from the current instance */
-  @inline
-  def status: CompResult.Binary = status(N, n)
+  /** Same as [[status(n*]], but input parameter is taken from the current instance.
+    *
+    * @note The result is cached until the next update, and the statistic is only computed when `n` is close to one of the bounds. Refreshing the bounds
+    *       takes amortized constant time per sample (and at most logarithmic time in the number of samples). */
+  def status: CompResult.Binary = {
+    if (cached eq null)
+      cached = computeStatus()
+    cached
+  }
+
+  private[this] def computeStatus(): CompResult.Binary = {
+    if (N < minSamples) return CompResult.Binary.UNDECIDED
+    val mayBeLarger = n >= uLow
+    val mayBeSmaller = n <= lHigh + (N - lN)
+    if (!mayBeLarger && !mayBeSmaller) return CompResult.Binary.UNDECIDED
+    val logT = llr(N, n)
+    if (logT >= logU) CompResult.Binary.LARGER
+    else if (logT <= logL) CompResult.Binary.SMALLER
+    else {
+      // `n` is neither LARGER nor SMALLER, so the smallest LARGER is above it, and the largest SMALLER is below it
+      if (mayBeLarger) {
+        uLow = firstLarger(Math.max(uLow, n + 1), if (uN == 0) N + 1 else Math.min(N + 1, uLow + (N - uN)))
+        uN = N
+      }
+      if (mayBeSmaller) {
+        lHigh = lastSmaller(if (lN == 0) -1 else lHigh, if (lN == 0) n - 1 else Math.min(n - 1, lHigh + (N - lN)))
+        lN = N
+      }
+      CompResult.Binary.UNDECIDED
+    }
+  }
+
+  /** Smallest `u` in `[lo, hi]` that is LARGER for the current `N`, given that `hi` is (or is `N + 1`). Galloping from `lo`, then binary search. */
+  private[this] def firstLarger(lo: Long, hi: Long): Long = {
+    var low = lo
+    var high = lo
+    var step = 1L
+    while (high < hi && llr(N, high) < logU) {
+      low = high + 1
+      high = Math.min(hi, high + step)
+      step *= 2
+    }
+    while (low < high) {
+      val mid = low + (high - low) / 2
+      if (llr(N, mid) >= logU) high = mid else low = mid + 1
+    }
+    low
+  }
+
+  /** Largest `l` in `[lo, hi]` that is SMALLER for the current `N`, given that `lo` is (or is `-1`). Galloping from `hi`, then binary search. */
+  private[this] def lastSmaller(lo: Long, hi: Long): Long = {
+    var low = hi
+    var high = hi
+    var step = 1L
+    while (low > lo && llr(N, low) > logL) {
+      high = low - 1
+      low = Math.max(lo, low - step)
+      step *= 2
+    }
+    while (low < high) {
+      val mid = high - (high - low) / 2
+      if (llr(N, mid) <= logL) low = mid else high = mid - 1
+    }
+    low
+  }
 
   override def completed: Boolean = status ne CompResult.Binary.UNDECIDED
 
+  /** The statistic grows like `N` times the divergence of `n/N` from `θ` (see [[HypTest.samplesToBound]]), and no decision is made before `minSamples`
+    * samples are taken. */
+  override def expectedSamplesRemaining: Double =
+    if (completed) 0
+    else if (N == 0) Double.NaN
+    else Math.max(minSamples - N, HypTest.samplesToBound(N, n, threshold, llr(N, n), logL, logU))
+
   /** @return `false`*/
   override def too_close: Boolean = false
 
   /** @note
     *   1. [[completed]] should be `true`.
-    *   1. In the current implementation, the maximum number of samples is 2^^31^^-1.
+    *   1. In the current implementation, the maximum number of samples is 2^^63^^-1.
     *   1. Asymptotic guarantee: as total number of samples goes to infinity,
     *      a. When [[LB]] is `true`:  if the actual probability is strictly larger  than θ then the probability of returning `true` would be at most `α`.
     *      a. When [[LB]] is `false`: if the actual probability is strictly smaller than θ then the probability of returning `true` would be at most `α`. */
@@ -229,10 +339,17 @@ final class HypTestGLRT() extends HypTest {
 
   /** @note
     *   1. [[completed]] should be `true`.
-    *   1. In the current implementation, the maximum number of samples is 2^^31^^-1.
+    *   1. In the current implementation, the maximum number of samples is 2^^63^^-1.
     *   1. Asymptotic guarantee: as total number of samples goes to infinity,
     *      a. When [[LB]] is `true`:  if the actual probability is strictly smaller than θ then the probability of returning `true` would be at most `β`.
     *      a. When [[LB]] is `false`: if the actual probability is strictly larger  than θ then the probability of returning `true` would be at most `β`. */
   override def failed_to_reject: Boolean = !rejected
 
+  /** Leans towards the side of `θ` that `n/N` is on. There is no error bound for the generalized statistic, so only the statistic is reported. */
+  override def interim: HypTest.Interim = {
+    val lean = if (N > 0 && n >= threshold * N) CompResult.Binary.LARGER else CompResult.Binary.SMALLER
+    val (low, high) = HypTest.interval(N, n, Math.min(alpha, beta))
+    HypTest.Interim(HypTest.binaryResult(lean, LB), N, n / N.toDouble, low, high, s"logT: ${if (N == 0) 0.0 else llr(N, n)}, logL: $logL, logU: $logU")
+  }
+
 }
@@ -0,0 +1,251 @@
+/*+++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+ + STMC - Statistical Model Checker                                                               +
+ +                                                                                                +
+ + Copyright (C) 2019                                                                             +
+ + Authors:                                                                                       +
+ +   Nima Roohi <nroohi@ucsd.edu> (University of California San Diego)                            +
+ +                                                                                                +
+ + This program is free software: you can redistribute it and/or modify it under the terms        +
+ + of the GNU General Public License as published by the Free Software Foundation, either         +
+ + version 3 of the License, or (at your option) any later version.                               +
+ +                                                                                                +
+ + This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;      +
+ + without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.      +
+ + See the GNU General Public License for more details.                                           +
+ +                                                                                                +
+ + You should have received a copy of the GNU General Public License along with this program.     +
+ + If not, see <https://www.gnu.org/licenses/>.                                                   +
+ +++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++*/
+
+package edu.stmc
+
+import parser.ast.{Expression, ExpressionProb}
+import prism.PrismException
+import simulator.sampler.Sampler
+
+import scala.math.log
+
+/** Stratified Generalized Likelihood Ratio Test
+  *
+  * Same as [[HypTestGLRT]], except that the test statistic is computed from batch means (eg. one estimated probability per iteration of stratified or
+  * antithetic sampling). Batch means are approximately normally distributed, so the generalized log-likelihood ratio of `p = x̄` against `p = θ` is
+  * `N (x̄ - θ)^^2^^ / (2 s^^2^^)`, where `N` is the number of batches, `x̄` is their mean, and `s^^2^^` is their sample variance. The statistic is given the
+  * sign of `x̄ - θ`, and compared against the same bounds as in [[HypTestGLRT]].
+  *
+  * @note
+  *   1. Method [[init]] must be called before this test can be actually performed.
+  *   1. Probabilistic guarantees in this class ignore numerical errors caused by floating point arithmetic.
+  *   1. Same as [[HypTestGLRT]], probabilistic guarantees are asymptotic. Therefore, minimum number of iterations ([[STMCConfig.minIters]]) must be large
+  * enough for the variance of batch means to be estimated reasonably. */
+final class HypTestGLRTStratified extends HypTest with HypTest.BatchMeans {
+
+  // Input parameters
+  private[this] var threshold: Double = _
+  private[this] var alpha: Double = _
+  private[this] var beta: Double = _
+  private[this] var LB: Boolean = _
+
+  // Computed initially based on the input parameters
+  private[this] var logL: Double = _
+  private[this] var logU: Double = _
+
+  // Test statistic
+  // https://en.wikipedia.org/wiki/Algorithms_for_calculating_variance
+  private[this] var mean: Double = _ // mean accumulates the mean of the entire data set
+  private[this] var M2: Double = _ // M2 aggregates the squared distance from the mean
+  private[this] var iter: Long = _
+
+  /** Initialize or reset this to a hypothesis test in which the null hypothesis is `p < θ` and the alternative hypothesis is `p > θ`, where `p` is
+    * the actual probability, and `θ` is the input threshold.
+    *
+    * @param threshold Input Threshold
+    * @param alpha     Type I  (aka `false positive`) error probability (the probability of incorrectly     rejecting the null hypothesis).
+    * @param beta      Type II (aka `false negative`) error probability (the probability of incorrectly not rejecting the null hypothesis).
+    * @param LB        Whether or not the null and alternative hypotheses should be swapped (`true` means they should).
+    * @note The following requirements must be met (`θ` refers to the input threshold):
+    *   - 0 < θ < 1
+    *   - 0 < α < 0.5
+    *   - 0 < β < 0.5
+    * @see [[status(mean*]], [[rejected]], [[failed_to_reject]] */
+  def init(threshold: Double, alpha: Double, beta: Double, LB: Boolean = true): HypTestGLRTStratified = {
+    require(0 < threshold && threshold < 1, s"Invalid threshold $threshold")
+    require(0 < alpha && alpha < 0.5, s"Invalid type I error $alpha")
+    require(0 < beta && beta < 0.5, s"Invalid type II error $beta")
+
+    this.threshold = threshold
+    this.LB = LB
+    if (LB) {
+      this.alpha = beta
+      this.beta = alpha
+    } else {
+      this.alpha = alpha
+      this.beta = beta
+    }
+
+    // Lower and upper bounds after which the null hypothesis won't/will be rejected
+    logL = log(this.beta / (1 - this.alpha))
+    logU = log((1 - this.beta) / this.alpha)
+    assert(logL < 0, s"Lower-bound log is not negative $logL")
+    assert(logU > 0, s"Upper-bound log is not positive $logU")
+
+    iter = 0
+
+    this
+  }
+
+  private def reset(threshold: Double,
+                    alpha: Double, beta: Double,
+                    LB: Boolean,
+                    logL: Double, logU: Double,
+                    mean: Double, M2: Double, iter: Long): HypTestGLRTStratified = {
+    this.threshold = threshold
+    this.alpha = alpha
+    this.beta = beta
+    this.LB = LB
+    this.logL = logL
+    this.logU = logU
+    this.mean = mean
+    this.M2 = M2
+    this.iter = iter
+    this
+  }
+
+  //------------------------------------------------------------------------------------------------------------------------------------------------------------
+
+  // SimulationMethod Methods
+
+  override def reset(): Unit = {
+    mean = 0
+    M2 = 0
+    iter = 0
+  }
+  private[this] val name = STMCConfig.samplingMethod match {
+  case NameSmplMethod.ANTITHETIC => "Antithetic"
+  case NameSmplMethod.ADAPTIVE   => "Adaptive"
+  case _                         => "Stratified"
+  }
+  override def getName: String = s"${name}GLRT"
+  override def getFullName: String = s"$name Generalized Likelihood Ratio Test"
+  override def getParametersString: String =
+    s"threshold: $threshold, alpha: $alpha, beta: $beta, LB: $LB, logL: $logL, logU: $logU, strata-sizes: ${STMCConfig.strataSizes.mkString("[", ",", "]")}, strata-size: ${STMCConfig.strataTotalSize}" +
+    (if (STMCConfig.samplingMethod == NameSmplMethod.ADAPTIVE) s", adaptive-factor: ${STMCConfig.adaptiveFactor}" else "")
+
+  override def getResultExplanation(sampler: Sampler): String = s"$getParametersString, mean: $mean, M2: $M2, iter: $iter"
+
+  override def clone: HypTestGLRTStratified = new HypTestGLRTStratified().reset(threshold, alpha, beta, LB, logL, logU, mean, M2, iter)
+
+  override def setExpression(expr: Expression): Unit =
+    if (!expr.isInstanceOf[ExpressionProb])
+      throw new PrismException(s"Can only handle expressions of type ExpressionProp. However, type of '$expr' is ${expr.getClass.getName}")
+    else {
+      val expr2 = expr.asInstanceOf[ExpressionProb]
+      val threshold = expr2.getBound.evaluateDouble
+      val op = expr2.getRelOp
+      init(threshold, STMCConfig.alpha, STMCConfig.beta, op.isLowerBound)
+    }
+
+  override def shouldStop(iters: Long, sampler: Sampler): Boolean = iters >= STMCConfig.minIters && completed
+
+  override def getMissingParameter: java.lang.Integer =
+  // `SimulationMethod` requires the return type to be either an Integer or a Double object.
+    status match {
+    case CompResult.Binary.SMALLER   => Int.box(-1)
+    case CompResult.Binary.LARGER    => Int.box(+1)
+    case CompResult.Binary.UNDECIDED => throw new PrismException("Missing parameter not computed yet")
+    }
+
+  //------------------------------------------------------------------------------------------------------------------------------------------------------------
+
+  // HypTest Methods
+
+  /** @note No restriction on total number of samples. */
+  override def update(positive: Boolean): Unit = update(1, 0)
+
+  /** @note
+    *   1. Requires `positive >= 0`.
+    *   1. No restriction on total number of samples
+    *   1. Value of `negative` is ignored (it is assumed to be [[STMCConfig.strataTotalSize]] - `positive`) */
+  override def update(positive: Long, negative: Long): Unit = updateMean(positive / STMCConfig.strataTotalSize.toDouble)
+
+  /** @note No restriction on total number of batches. */
+  override def updateMean(m: Double): Unit = {
+    // See https://en.wikipedia.org/wiki/Algorithms_for_calculating_variance
+    iter += 1
+    val delta = m - mean
+    mean += delta / iter
+    val delta2 = m - mean
+    M2 += delta * delta2
+  }
+
+  /** @note
+    *   1. Requires at least two batches (otherwise, [[CompResult.Binary.UNDECIDED]] is returned).
+    *   1. If all the batch means are equal, the statistic is either infinite (if they are not equal to `θ`) or undefined (in which case
+    * [[CompResult.Binary.UNDECIDED]] is returned).
+    *   1. Asymptotic guarantees: as total number of batches goes to infinity, the following probabilistic guarantees are made (if [[LB]] is `true` then
+    * swap `α` and `β`):
+    *      a. if the actual probability is strictly smaller than `θ` then the probability of returning [[CompResult.Binary.LARGER]]  would be at most `α`.
+    *      a. if the actual probability is strictly larger  than `θ` then the probability of returning [[CompResult.Binary.SMALLER]] would be at most `β`.
+    * @see [[init]] where all the parameters are set */
+  def status(mean: Double, M2: Double, iter: Long): CompResult.Binary = {
+    if (iter < 2) return CompResult.Binary.UNDECIDED
+    val logT = this.logT(mean, M2, iter)
+    if (logT >= logU) CompResult.Binary.LARGER
+    else if (logT <= logL) CompResult.Binary.SMALLER
+    else CompResult.Binary.UNDECIDED
+  }
+
+  /** Signed statistic `N (x̄ - θ)^^2^^ / (2 s^^2^^)` (positive iff `x̄ ≥ θ`) of `iter` batches whose mean is `mean` and whose sum of squared distances
+    * from the mean is `M2` (requires `iter ≥ 2`). */
+  private[this] def logT(mean: Double, M2: Double, iter: Long): Double = {
+    val variance = M2 / (iter - 1)
+    val diff = mean - threshold
+    Math.signum(diff) * iter * diff * diff / (2 * variance)
+  }
+
+  /** Same as [[status(mean*]], but input parameter is taken from the current instance */
+  @inline
+  def status: CompResult.Binary = status(mean, M2, iter)
+
+  override def completed: Boolean = status ne CompResult.Binary.UNDECIDED
+
+  /** The statistic grows by `(mean - θ)^^2^^ / (2 variance)` per batch (taking the running mean and variance of the batch means as the actual ones). `NaN`
+    * before two batches are taken. */
+  override def expectedSamplesRemaining: Double =
+    if (completed) 0
+    else if (iter < 2) Double.NaN
+    else {
+      val variance = M2 / (iter - 1)
+      val diff = mean - threshold
+      val logT = this.logT(mean, M2, iter)
+      Math.max(0, (if (logT >= 0) logU else -logL) - Math.abs(logT)) * 2 * variance / (diff * diff)
+    }
+
+  /** @return `false` */
+  override def too_close: Boolean = false
+
+  /** @note
+    *   1. [[completed]] should be `true`.
+    *   1. Asymptotic guarantee: as total number of batches goes to infinity,
+    *      a. When [[LB]] is `true`:  if the actual probability is strictly larger  than θ then the probability of returning `true` would be at most `α`.
+    *      a. When [[LB]] is `false`: if the actual probability is strictly smaller than θ then the probability of returning `true` would be at most `α`. */
+  override def rejected: Boolean =
+    if (LB) status eq CompResult.Binary.SMALLER
+    else status eq CompResult.Binary.LARGER
+
+  /** @note
+    *   1. [[completed]] should be `true`.
+    *   1. Asymptotic guarantee: as total number of batches goes to infinity,
+    *      a. When [[LB]] is `true`:  if the actual probability is strictly smaller than θ then the probability of returning `true` would be at most `β`.
+    *      a. When [[LB]] is `false`: if the actual probability is strictly larger  than θ then the probability of returning `true` would be at most `β`. */
+  override def failed_to_reject: Boolean = !rejected
+
+  /** Leans towards the side of `θ` that the mean is on. There is no error bound for the generalized statistic, so only the statistic is reported. */
+  override def interim: HypTest.Interim = {
+    val lean = if (mean >= threshold) CompResult.Binary.LARGER else CompResult.Binary.SMALLER
+    val variance = if (iter < 2) Double.NaN else M2 / (iter - 1)
+    val (low, high) = HypTest.interval(mean, variance, iter, Math.min(alpha, beta))
+    HypTest.Interim(HypTest.binaryResult(lean, LB), iter, mean, low, high,
+                    s"logT: ${if (iter < 2) 0.0 else logT(mean, M2, iter)}, logL: $logL, logU: $logU")
+  }
+
+}
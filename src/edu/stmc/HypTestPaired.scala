@@ -0,0 +1,203 @@
+/*+++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+ + STMC - Statistical Model Checker                                                               +
+ +                                                                                                +
+ + Copyright (C) 2019                                                                             +
+ + Authors:                                                                                       +
+ +   Nima Roohi <nroohi@ucsd.edu> (University of California San Diego)                            +
+ +                                                                                                +
+ + This program is free software: you can redistribute it and/or modify it under the terms        +
+ + of the GNU General Public License as published by the Free Software Foundation, either         +
+ + version 3 of the License, or (at your option) any later version.                               +
+ +                                                                                                +
+ + This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;      +
+ + without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.      +
+ + See the GNU General Public License for more details.                                           +
+ +                                                                                                +
+ + You should have received a copy of the GNU General Public License along with this program.     +
+ + If not, see <https://www.gnu.org/licenses/>.                                                   +
+ +++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++*/
+
+package edu.stmc
+
+import parser.ast.{Expression, ExpressionProb}
+import prism.PrismException
+import simulator.sampler.Sampler
+
+/** Paired comparison of the probability of a property in a base model and in a few variants of it (see [[STMCConfig.crnConstants]]).
+  *
+  * Paths of the base model and of the variants are driven by common random numbers, so the outcomes `X` (in the base model) and `Xv` (in variant `v`) of
+  * the same path are strongly correlated whenever the variant does not change much. Every variant has its own [[HypTestSPRTTernaryStratified]] which
+  * consumes batch means of `(1 + Xv - X) / 2`. The expected value of that is `1/2 + (pv - p) / 2`, so the test uses threshold `1/2` and half of the input
+  * indifference region. Its variance is small when pairs agree most of the time, so the test decides much sooner than comparing two independent runs.
+  *
+  * Result of every variant is one of
+  *   - `-1`: probability of the property is smaller in the variant,
+  *   - `0`:  no significant change (ie. the difference is less than `δ`),
+  *   - `+1`: probability of the property is larger in the variant.
+  *
+  * @note
+  *   1. The threshold of the property itself is not used.
+  *   1. Method [[init]] (or [[setExpression]]) must be called before this test can be actually performed.
+  *   1. Probabilistic guarantees of [[HypTestSPRTTernaryStratified]] hold for every variant separately.
+  * @constructor Create a paired test for the given variants (whose names are only used in reports). */
+final class HypTestPaired private(private[this] val tests: Array[HypTestSPRTTernaryStratified],
+                                  private[this] val variants: Array[String]) extends HypTest with HypTest.BatchMeans {
+
+  require(tests.nonEmpty, "No variant to compare with")
+
+  def this(variants: Array[String]) = this(variants.map(_ => new HypTestSPRTTernaryStratified), variants)
+
+  private[this] val decided = Array.ofDim[Boolean](tests.length)
+  private[this] var remaining = tests.length
+
+  private def reset(decided: Array[Boolean], remaining: Int): HypTestPaired = {
+    Array.copy(decided, 0, this.decided, 0, decided.length)
+    this.remaining = remaining
+    this
+  }
+
+  /** Initialize or reset this test.
+    *
+    * @param alpha Type I   error probability of every variant (the probability of incorrectly calling it larger).
+    * @param beta  Type II  error probability of every variant (the probability of incorrectly calling it smaller).
+    * @param gamma Type III error probability of every variant (the probability of incorrectly calling it too close).
+    * @param delta Half of the size of indifference region (on the difference of probabilities).
+    * @note The following requirements must be met:
+    *   - 0 < α < 0.5
+    *   - 0 < β < 0.5
+    *   - 0 < γ < 0.5
+    *   - 0 < δ < 0.5 */
+  def init(alpha: Double, beta: Double, gamma: Double, delta: Double): HypTestPaired = {
+    tests.foreach(_.init(0.5, alpha, beta, gamma, delta / 2, LB = false))
+    reset()
+    this
+  }
+
+  /** Number of variants (excluding the base model). */
+  def size: Int = tests.length
+
+  /** Result of the `i`-th variant (see the class documentation).
+    *
+    * @note Requires the test of the variant to be completed. */
+  def verdict(i: Int): Int = tests(i).status match {
+  case CompResult.Ternary.SMALLER   => -1
+  case CompResult.Ternary.TOO_CLOSE => 0
+  case CompResult.Ternary.LARGER    => +1
+  case CompResult.Ternary.UNDECIDED => throw new PrismException(s"Comparison with ${variants(i)} is not decided yet")
+  }
+
+  //------------------------------------------------------------------------------------------------------------------------------------------------------------
+
+  // SimulationMethod Methods
+
+  override def reset(): Unit = {
+    tests.foreach(_.reset())
+    for (i <- tests.indices)
+      decided(i) = false
+    remaining = tests.length
+  }
+
+  override def getName: String = s"Paired${tests.head.getName}"
+  override def getFullName: String = s"Paired ${tests.head.getFullName} (common random numbers)"
+  override def getParametersString: String = s"variants: ${variants.mkString("[", "; ", "]")}, ${tests.head.getParametersString}"
+
+  override def getResultExplanation(sampler: Sampler): String =
+    tests.indices.map(i => s"${variants(i)}: (${tests(i).getResultExplanation(sampler)})").mkString(", ")
+
+  override def clone: HypTestPaired = new HypTestPaired(tests.map(_.clone), variants).reset(decided, remaining)
+
+  override def setExpression(expr: Expression): Unit =
+    if (!expr.isInstanceOf[ExpressionProb])
+      throw new PrismException(s"Can only handle expressions of type ExpressionProp. However, type of '$expr' is ${expr.getClass.getName}")
+    else
+      init(STMCConfig.alpha, STMCConfig.beta, STMCConfig.gamma, STMCConfig.delta)
+
+  /** @note Variants that are already decided are not called anymore. */
+  override def shouldStop(iters: Long, sampler: Sampler): Boolean = {
+    var i = 0
+    while (i < tests.length) {
+      if (!decided(i) && tests(i).shouldStopNow(iters, sampler)) {
+        decided(i) = true
+        remaining -= 1
+      }
+      i += 1
+    }
+    remaining == 0
+  }
+
+  /** @return Number of decided variants. */
+  override def getMissingParameter: java.lang.Integer =
+  // `SimulationMethod` requires the return type to be either an Integer or a Double object.
+    Int.box(tests.length - remaining)
+
+  /** @return Result of the only variant, or the list of results of all variants (see the class documentation). */
+  @throws[PrismException]
+  override def getResult(sampler: Sampler): AnyRef =
+    if (tests.length == 1) Int.box(verdict(0))
+    else java.util.Arrays.asList(tests.indices.map(i => Int.box(verdict(i))): _*)
+
+  //------------------------------------------------------------------------------------------------------------------------------------------------------------
+
+  // HypTest Methods
+
+  /** Pass the same paired observation (ie. a sample of `(1 + Xv - X) / 2` that is either 0 or 1) to every variant that is not decided yet, as a batch mean.
+    *
+    * @note Meant for a single variant, or for variants that are known to agree (see [[updateMean(variant*]] otherwise). */
+  override def update(positive: Boolean): Unit = updateMean(if (positive) 1 else 0)
+
+  /** Pass the same block of paired observations to every variant that is not decided yet, as a single batch mean (see [[update(positive:Boolean)*]]).
+    *
+    * @note Requires `positive + negative > 0`. */
+  override def update(positive: Long, negative: Long): Unit = updateMean(positive / (positive + negative).toDouble)
+
+  /** Pass the same batch mean of the paired differences to every variant that is not decided yet (see [[update(positive:Boolean)*]]). */
+  override def updateMean(mean: Double): Unit = {
+    var i = 0
+    while (i < tests.length) {
+      updateMean(i, mean)
+      i += 1
+    }
+  }
+
+  /** Pass the next batch mean of the paired differences (ie. `(1 + Xv - X) / 2`) to the test of a variant.
+    *
+    * @note Ignored if the variant is already decided. */
+  def updateMean(variant: Int, mean: Double): Unit =
+    if (!decided(variant))
+      tests(variant).updateMean(mean)
+
+  /** Whether or not every variant is decided. */
+  override def completed: Boolean = remaining == 0
+
+  /** Every variant must be decided, so the prediction is the largest prediction of the variants that are not decided yet. */
+  override def expectedSamplesRemaining: Double = {
+    var res = 0.0
+    for (i <- tests.indices if !decided(i))
+      res = Math.max(res, tests(i).expectedSamplesRemaining)
+    res
+  }
+
+  /** Whether or not no variant changes the probability significantly. */
+  override def too_close: Boolean = tests.forall(_.too_close)
+
+  /** Whether or not some variant changes the probability significantly. */
+  override def rejected: Boolean = !too_close
+
+  /** Whether or not no variant changes the probability significantly. */
+  override def failed_to_reject: Boolean = too_close
+
+  /** Every variant that is not decided yet leans the way its test leans (see [[HypTestSPRTTernaryStratified.leaning]]). The estimate and the interval are
+    * of `(1 + pv - p) / 2` in the first variant. */
+  override def interim: HypTest.Interim = {
+    def code(i: Int) = if (decided(i)) verdict(i) else tests(i).leaning match {
+    case CompResult.Ternary.SMALLER => -1
+    case CompResult.Ternary.LARGER  => +1
+    case _                          => 0
+    }
+    val result = if (tests.length == 1) Int.box(code(0)) else java.util.Arrays.asList(tests.indices.map(i => Int.box(code(i))): _*)
+    val first = tests.head.interim
+    HypTest.Interim(result, first.samples, first.estimate, first.low, first.high,
+                    tests.indices.map(i => s"${variants(i)}: ${if (decided(i)) "decided" else s"error bound: ${tests(i).errorBound}"}").mkString(", "))
+  }
+
+}
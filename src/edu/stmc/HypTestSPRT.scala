@@ -54,6 +54,11 @@ final class HypTestSPRT() extends HypTest {
 
   // Test statistic
   private[this] var logT = 0.0
+  private[this] var N: Long = 0 // Total number of samples (only reported, see `interim`)
+  private[this] var n: Long = 0 // Number of positive samples (only reported, see `interim`)
+
+  // Number of samples that can be taken before the stopping rule has to be checked again (see `decisionHorizon`)
+  private[this] var pending = 0L
 
   /** Initialize or reset this to a hypothesis test in which the null hypothesis is `p = θ - δ` and the alternative hypothesis is `p = θ + δ`, where `p` is
     * the actual probability, `θ` is the input threshold, and `δ` is the half of the size of indifference region.
@@ -106,6 +111,8 @@ final class HypTestSPRT() extends HypTest {
     assert(logL + q0 < logL, s"logL ($logL) is too much smaller than q0 ($q0)")
     assert(logU - q1 < logU, s"logU ($logU) is too much bigger than q1 ($q1)")
 
+    pending = 0
+
     this
   }
 
@@ -113,7 +120,7 @@ final class HypTestSPRT() extends HypTest {
                     alpha: Double, beta: Double, delta: Double,
                     LB: Boolean,
                     q0: Double, q1: Double,
-                    logL: Double, logU: Double, logT: Double): HypTestSPRT = {
+                    logL: Double, logU: Double, logT: Double, N: Long, n: Long, pending: Long): HypTestSPRT = {
     this.threshold = threshold
     this.alpha = alpha
     this.beta = beta
@@ -124,6 +131,9 @@ final class HypTestSPRT() extends HypTest {
     this.logL = logL
     this.logU = logU
     this.logT = logT
+    this.N = N
+    this.n = n
+    this.pending = pending
     this
   }
 
@@ -131,7 +141,12 @@ final class HypTestSPRT() extends HypTest {
 
   // SimulationMethod Methods
 
-  override def reset(): Unit = logT = 0
+  override def reset(): Unit = {
+    logT = 0
+    N = 0
+    n = 0
+    pending = 0
+  }
   override def getName: String = "SPRT"
   override def getFullName: String = "Sequential Probability Ratio Test"
   override def getParametersString: String =
@@ -139,7 +154,7 @@ final class HypTestSPRT() extends HypTest {
 
   override def getResultExplanation(sampler: Sampler): String = s"$getParametersString, logT: $logT"
 
-  override def clone: HypTestSPRT = new HypTestSPRT().reset(threshold, alpha, beta, delta, LB, q0, q1, logL, logU, logT)
+  override def clone: HypTestSPRT = new HypTestSPRT().reset(threshold, alpha, beta, delta, LB, q0, q1, logL, logU, logT, N, n, pending)
 
   override def setExpression(expr: Expression): Unit =
     if (!expr.isInstanceOf[ExpressionProb])
@@ -151,9 +166,15 @@ final class HypTestSPRT() extends HypTest {
       init(threshold, STMCConfig.alpha, STMCConfig.beta, STMCConfig.delta, op.isLowerBound)
     }
 
-  override def shouldStopNow(iters: Int, sampler: Sampler): Boolean = {
+  /** @note The stopping rule is not checked again until [[decisionHorizon]] more samples are taken. */
+  override def shouldStop(iters: Long, sampler: Sampler): Boolean = {
     update(sampler.getCurrentValue.asInstanceOf[Boolean])
-    completed
+    if (pending > 0) false
+    else if (completed) true
+    else {
+      pending = decisionHorizon
+      false
+    }
   }
 
   override def getMissingParameter: java.lang.Integer =
@@ -169,12 +190,38 @@ final class HypTestSPRT() extends HypTest {
   // HypTest Methods
 
   /** @note No restriction on total number of samples. */
-  override def update(positive: Boolean): Unit = if (positive) logT += q1 else logT += q0
+  override def update(positive: Boolean): Unit = {
+    if (positive) logT += q1 else logT += q0
+    N += 1
+    if (positive)
+      n += 1
+    pending -= 1
+    // events are only taken at powers of two, so the estimate is not computed for the other samples
+    if ((N & (N - 1)) == 0)
+      SamplingEvents.statistic(this, N, 1, n / N.toDouble, logT, logL, logU)
+  }
 
   /** @note
     *   1. Requires `positive >= 0` and `negative >= 0`.
     *   1. No restriction on total number of samples */
-  override def update(positive: Int, negative: Int): Unit = logT += positive * q1 + negative * q0
+  override def update(positive: Long, negative: Long): Unit = {
+    logT += positive * q1 + negative * q0
+    N += positive + negative
+    n += positive
+    pending -= positive + negative
+    if (N > 0)
+      SamplingEvents.statistic(this, N, positive + negative, n / N.toDouble, logT, logL, logU)
+  }
+
+  /** Since `q0 < 0 < q1`, reaching `logU` takes at least `(logU - logT) / q1` samples and reaching `logL` takes at least `(logL - logT) / q0` samples.
+    * The smaller one is rounded down, so floating point errors can only underestimate the horizon. */
+  override def decisionHorizon: Long =
+    if (completed) 0
+    else Math.max(1, Math.floor(Math.min((logU - logT) / q1, (logL - logT) / q0)).toLong)
+
+  /** Every prefix of the block moves the statistic to somewhere between `logT + negative * q0` and `logT + positive * q1`. */
+  override def mayDecideWithin(positive: Long, negative: Long): Boolean =
+    logT + positive * q1 >= logU || logT + negative * q0 <= logL
 
   /** @note The following probabilistic guarantees are made (if [[LB]] is `true` then swap `α` and `β`):
     *   1. If the actual probability is at most  `θ - δ` then the probability of returning [[CompResult.Binary.LARGER]]  is at most `α`.
@@ -191,6 +238,14 @@ final class HypTestSPRT() extends HypTest {
 
   override def completed: Boolean = status ne CompResult.Binary.UNDECIDED
 
+  /** Wald's approximation: `logT` is a random walk with steps `q1` and `q0`, whose probabilities are estimated from the samples taken so far. */
+  override def expectedSamplesRemaining: Double =
+    if (completed) 0
+    else {
+      val p = (n + 0.5) / (N + 1)
+      HypTest.exitTime(logT, logL, logU, p * q1 + (1 - p) * q0, p * (1 - p) * (q1 - q0) * (q1 - q0))
+    }
+
   /** @return `false` */
   override def too_close: Boolean = false
 
@@ -210,4 +265,16 @@ final class HypTestSPRT() extends HypTest {
     *      a. When [[LB]] is `true`:  if the actual probability is at most  `θ - δ` then the probability of returning `true` is at most `β`. */
   override def failed_to_reject: Boolean = !rejected
 
+  /** Status the test currently leans towards (ie. the side of `0` that `logT` is on). */
+  def leaning: CompResult.Binary = if (logT >= 0) CompResult.Binary.LARGER else CompResult.Binary.SMALLER
+
+  /** Error bound achieved by deciding [[leaning]] now. The likelihood ratio is a non-negative martingale with mean `1` under the hypothesis it is evidence
+    * against, so it ever reaches `exp(|logT|)` with probability at most `exp(-|logT|)` (Ville's inequality). */
+  def errorBound: Double = Math.min(1, Math.exp(-Math.abs(logT)))
+
+  override def interim: HypTest.Interim = {
+    val (low, high) = HypTest.interval(N, n, Math.min(alpha, beta))
+    HypTest.Interim(HypTest.binaryResult(leaning, LB), N, n / N.toDouble, low, high, s"logT: $logT, logL: $logL, logU: $logU, error bound: $errorBound")
+  }
+
 }
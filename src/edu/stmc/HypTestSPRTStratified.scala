@@ -30,7 +30,7 @@ import simulator.sampler.Sampler
   *   ([[https://doi.org/10.1007/s10703-019-00339-8 DOI: 10.1007/s10703-019-00339-8]]) for a reference to this method.
   *   1. Method [[init]] must be called before this test can be actually performed.
   *   1. Probabilistic guarantees in this class ignore numerical errors caused by floating point arithmetic. */
-final class HypTestSPRTStratified extends HypTest {
+final class HypTestSPRTStratified extends HypTest with HypTest.BatchMeans {
 
   // Input parameters
   private[this] var threshold: Double = _
@@ -47,7 +47,7 @@ final class HypTestSPRTStratified extends HypTest {
   // https://en.wikipedia.org/wiki/Algorithms_for_calculating_variance
   private[this] var mean: Double = _ // mean accumulates the mean of the entire data set
   private[this] var M2: Double = _ // M2 aggregates the squared distance from the mean
-  private[this] var iter: Int = _
+  private[this] var iter: Long = _
 
   /** Initialize or reset this to a hypothesis test in which the null hypothesis is `p = θ - δ` and the alternative hypothesis is `p = θ + δ`, where `p` is
     * the actual probability, `θ` is the input threshold, and `δ` is the half of the size of indifference region.
@@ -99,7 +99,7 @@ final class HypTestSPRTStratified extends HypTest {
                     alpha: Double, beta: Double, delta: Double,
                     LB: Boolean,
                     logL: Double, logU: Double,
-                    mean: Double, M2: Double, iter: Int): HypTestSPRTStratified = {
+                    mean: Double, M2: Double, iter: Long): HypTestSPRTStratified = {
     this.threshold = threshold
     this.alpha = alpha
     this.beta = beta
@@ -122,11 +122,16 @@ final class HypTestSPRTStratified extends HypTest {
     M2 = 0
     iter = 0
   }
-  private[this] val name = if(STMCConfig.samplingMethod == NameSmplMethod.ANTITHETIC) "Antithetic" else "Stratified"
+  private[this] val name = STMCConfig.samplingMethod match {
+  case NameSmplMethod.ANTITHETIC => "Antithetic"
+  case NameSmplMethod.ADAPTIVE   => "Adaptive"
+  case _                         => "Stratified"
+  }
   override def getName: String = s"${name}SPRT"
   override def getFullName: String = s"$name Sequential Probability Ratio Test"
   override def getParametersString: String =
-    s"threshold: $threshold, alpha: $alpha, beta: $beta, delta: $delta, LB: $LB, logL: $logL, logU: $logU, strata-sizes: ${STMCConfig.strataSizes.mkString("[", ",", "]")}, strata-size: ${STMCConfig.strataTotalSize}"
+    s"threshold: $threshold, alpha: $alpha, beta: $beta, delta: $delta, LB: $LB, logL: $logL, logU: $logU, strata-sizes: ${STMCConfig.strataSizes.mkString("[", ",", "]")}, strata-size: ${STMCConfig.strataTotalSize}" +
+    (if (STMCConfig.samplingMethod == NameSmplMethod.ADAPTIVE) s", adaptive-factor: ${STMCConfig.adaptiveFactor}" else "")
 
   override def getResultExplanation(sampler: Sampler): String = s"$getParametersString, mean: $mean, M2: $M2, iter: $iter"
 
@@ -142,7 +147,7 @@ final class HypTestSPRTStratified extends HypTest {
       init(threshold, STMCConfig.alpha, STMCConfig.beta, STMCConfig.delta, op.isLowerBound)
     }
 
-  override def shouldStopNow(iters: Int, sampler: Sampler): Boolean = iters >= STMCConfig.minIters && completed
+  override def shouldStop(iters: Long, sampler: Sampler): Boolean = iters >= STMCConfig.minIters && completed
 
   override def getMissingParameter: java.lang.Integer =
   // `SimulationMethod` requires the return type to be either an Integer or a Double object.
@@ -163,31 +168,20 @@ final class HypTestSPRTStratified extends HypTest {
     *   1. Requires `positive >= 0`.
     *   1. No restriction on total number of samples
     *   1. Value of `negative` is ignored (it is assumed to be [[STMCConfig.strataTotalSize]] - `positive`) */
-  override def update(positive: Int, negative: Int): Unit = {
+  override def update(positive: Long, negative: Long): Unit = updateMean(positive / STMCConfig.strataTotalSize.toDouble)
+
+  /** @note No restriction on total number of batches. */
+  override def updateMean(m: Double): Unit = {
     // See https://en.wikipedia.org/wiki/Algorithms_for_calculating_variance
     iter += 1
-
-    val m = positive / STMCConfig.strataTotalSize.toDouble
     val delta = m - mean
     mean += delta / iter
     val delta2 = m - mean
     M2 += delta * delta2
-
-//    println(f"$positive%2d, ${positive/4096.0}%1.7f, $mean%1.7f, ${(M2/(iter-1))}")
-
-//    val Y = positive
-//    val blockSize = STMCConfig.strataTotalSize.toDouble
-//    v(Y) += 1
-//    var mu = 0.0
-//    var sig2 = 0.0
-//    for (i <- v.indices) mu += i * v(i) / iter.toDouble / blockSize
-//    for (i <- v.indices) sig2 += (i * i) / (blockSize * blockSize) * v(i) / iter
-//    sig2 -= mu * mu
-//    mean = mu
-//    M2 = sig2 * (iter-1)
-//    print(s"\n$iter: pos:$positive, v:${v.mkString("[", ",", "]")}, mean=$mean, var=$variance")
+    // bounds of `logT` are the bounds of `status` multiplied by `2δ` (see `logT`), and events are only taken at powers of two
+    if ((iter & (iter - 1)) == 0)
+      SamplingEvents.statistic(this, iter, 1, mean, logT, 2 * this.delta * logL, 2 * this.delta * logU)
   }
-//  val v = Array.ofDim[Int](STMCConfig.strataTotalSize + 1)
 
   @inline
   private[this] def variance = M2 / (iter-1) // sample variance (iter must be at least 2)
@@ -197,7 +191,7 @@ final class HypTestSPRTStratified extends HypTest {
     *   1. If the actual probability is at most  `θ - δ` then the probability of returning [[CompResult.Binary.LARGER]]  is at most `α`.
     *   1. If the actual probability is at least `θ + δ` then the probability of returning [[CompResult.Binary.SMALLER]] is at most `β`.
     * @see [[init]] where all the parameters are set */
-  def status(mean: Double, M2: Double, iter: Int): CompResult.Binary = {
+  def status(mean: Double, M2: Double, iter: Long): CompResult.Binary = {
     if (mean - threshold < variance * logL / iter) CompResult.Binary.SMALLER
     else if (mean - threshold > variance * logU / iter) CompResult.Binary.LARGER
     else CompResult.Binary.UNDECIDED
@@ -209,6 +203,13 @@ final class HypTestSPRTStratified extends HypTest {
 
   override def completed: Boolean = status ne CompResult.Binary.UNDECIDED
 
+  /** [[status(mean*]] compares `iter (mean - θ) / variance` with `logL` and `logU`. This is a random walk whose steps have mean `(mean - θ) / variance`
+    * and variance `1 / variance` (taking the running mean and variance of the batch means as the actual ones). `NaN` before two batches are taken. */
+  override def expectedSamplesRemaining: Double =
+    if (completed) 0
+    else if (iter < 2 || variance <= 0) Double.NaN
+    else HypTest.exitTime(iter * (mean - threshold) / variance, logL, logU, (mean - threshold) / variance, 1 / variance)
+
   /** @return `false` */
   override def too_close: Boolean = false
 
@@ -228,4 +229,18 @@ final class HypTestSPRTStratified extends HypTest {
     *      a. When [[LB]] is `true`:  if the actual probability is at most  `θ - δ` then the probability of returning `true` is at most `β`. */
   override def failed_to_reject: Boolean = !rejected
 
+  /** Status the test currently leans towards (ie. the side of `θ` that the mean is on). */
+  def leaning: CompResult.Binary = if (mean >= threshold) CompResult.Binary.LARGER else CompResult.Binary.SMALLER
+
+  /** Log-likelihood ratio that [[status(mean*]] compares with the bounds (`2δ` times the statistic it uses). */
+  private[this] def logT: Double = if (iter < 2) 0 else 2 * delta * (mean - threshold) * iter / variance
+
+  /** Error bound achieved by deciding [[leaning]] now (same as [[HypTestSPRT.errorBound]], with batch means taken as normally distributed). */
+  def errorBound: Double = Math.min(1, Math.exp(-Math.abs(logT)))
+
+  override def interim: HypTest.Interim = {
+    val (low, high) = HypTest.interval(mean, variance, iter, Math.min(alpha, beta))
+    HypTest.Interim(HypTest.binaryResult(leaning, LB), iter, mean, low, high, s"logT: $logT, error bound: $errorBound")
+  }
+
 }
@@ -39,10 +39,11 @@ import simulator.sampler.Sampler
   *   1. See [[HypTestSPRT]] for a comment on actual error probabilities. */
 final class HypTestSPRTTernary private(private[this] var lb: HypTestSPRT,
                                        private[this] var ub: HypTestSPRT,
-                                       private[this] var LB: Boolean) extends HypTest {
+                                       private[this] var LB: Boolean,
+                                       private[this] var pending: Long) extends HypTest {
 
   /** Create an uninitialized instance of this method. */
-  def this() = this(new HypTestSPRT, new HypTestSPRT, false)
+  def this() = this(new HypTestSPRT, new HypTestSPRT, false, 0)
 
   /** Initialize or reset this to a hypothesis test in which the null hypothesis is `p = θ - δ` and the alternative hypothesis is `p = θ + δ`, where `p` is
     * the actual probability, `θ` is the input threshold, and `δ` is the half of the size of indifference region.
@@ -72,6 +73,7 @@ final class HypTestSPRTTernary private(private[this] var lb: HypTestSPRT,
       lb.init(threshold - half_delta, gamma, beta, half_delta, LB = false)
       ub.init(threshold + half_delta, alpha, gamma, half_delta, LB = false)
     }
+    pending = 0
     this
   }
 
@@ -82,6 +84,7 @@ final class HypTestSPRTTernary private(private[this] var lb: HypTestSPRT,
   override def reset(): Unit = {
     lb.reset()
     ub.reset()
+    pending = 0
   }
 
   override def getName: String = "TernarySPRT"
@@ -91,7 +94,7 @@ final class HypTestSPRTTernary private(private[this] var lb: HypTestSPRT,
   override def getResultExplanation(sampler: Sampler): String =
     s"lower-bound (${lb.getResultExplanation(sampler)}), upper-bound (${ub.getResultExplanation(sampler)})"
 
-  override def clone: HypTestSPRTTernary = new HypTestSPRTTernary(lb.clone, ub.clone, LB)
+  override def clone: HypTestSPRTTernary = new HypTestSPRTTernary(lb.clone, ub.clone, LB, pending)
 
   override def setExpression(expr: Expression): Unit =
     if (!expr.isInstanceOf[ExpressionProb])
@@ -103,9 +106,15 @@ final class HypTestSPRTTernary private(private[this] var lb: HypTestSPRT,
       init(threshold, STMCConfig.alpha, STMCConfig.beta, STMCConfig.gamma, STMCConfig.delta, op.isLowerBound)
     }
 
-  override def shouldStopNow(iters: Int, sampler: Sampler): Boolean = {
+  /** @note The stopping rule is not checked again until [[decisionHorizon]] more samples are taken. */
+  override def shouldStop(iters: Long, sampler: Sampler): Boolean = {
     update(sampler.getCurrentValue.asInstanceOf[Boolean])
-    completed
+    if (pending > 0) false
+    else if (completed) true
+    else {
+      pending = decisionHorizon
+      false
+    }
   }
 
   override def getMissingParameter: java.lang.Integer =
@@ -128,16 +137,27 @@ final class HypTestSPRTTernary private(private[this] var lb: HypTestSPRT,
   override def update(positive: Boolean): Unit = {
     lb.update(positive)
     ub.update(positive)
+    pending -= 1
   }
 
   /** @note
     *   1. Requires `positive >= 0` and `negative >= 0`.
     *   1. No restriction on total number of samples */
-  override def update(positive: Int, negative: Int): Unit = {
+  override def update(positive: Long, negative: Long): Unit = {
     lb.update(positive, negative)
     ub.update(positive, negative)
+    pending -= positive + negative
   }
 
+  /** Both underlying tests must be decided at the same time, so the horizon is the larger of their horizons. */
+  override def decisionHorizon: Long =
+    if (completed) 0
+    else Math.max(1, Math.max(lb.decisionHorizon, ub.decisionHorizon))
+
+  /** Both underlying tests must be decided after the same prefix of the block. */
+  override def mayDecideWithin(positive: Long, negative: Long): Boolean =
+    lb.mayDecideWithin(positive, negative) && ub.mayDecideWithin(positive, negative)
+
   /** @note The following probabilistic guarantees are made (if `LB` is `true` then swap `α` and `β`):
     *   1. If the actual probability is at most  `θ` then the probability of returning [[CompResult.Ternary.LARGER]]  is at most `α`.
     *   1. If the actual probability is at least `θ` then the probability of returning [[CompResult.Ternary.SMALLER]] is at most `β`.
@@ -156,6 +176,11 @@ final class HypTestSPRTTernary private(private[this] var lb: HypTestSPRT,
 
   override def completed: Boolean = status ne CompResult.Ternary.UNDECIDED
 
+  /** Both underlying tests must be decided, so the prediction is the larger of their predictions. */
+  override def expectedSamplesRemaining: Double =
+    if (completed) 0
+    else Math.max(lb.expectedSamplesRemaining, ub.expectedSamplesRemaining)
+
   /** @note
     *   1. Requires [[completed]] to be `true`.
     *   1. If `θ` is ''not'' strictly within `δ`-neighborhood of the actual probability then the probability of returning `true` is at most `γ`. */
@@ -179,4 +204,16 @@ final class HypTestSPRTTernary private(private[this] var lb: HypTestSPRT,
     if (LB) status eq CompResult.Ternary.LARGER
     else status eq CompResult.Ternary.SMALLER
 
+  /** Leans the way both underlying tests lean. The error bound of that decision is the larger of their error bounds (see [[HypTestSPRT.errorBound]]). */
+  override def interim: HypTest.Interim = {
+    val code = status(lb.leaning, ub.leaning) match {
+    case CompResult.Ternary.SMALLER => -1
+    case CompResult.Ternary.LARGER  => +1
+    case _                          => 0
+    }
+    val samples = lb.interim
+    HypTest.Interim(Int.box(if (LB) code else -code), samples.samples, samples.estimate, samples.low, samples.high,
+                    s"lower-bound error bound: ${lb.errorBound}, upper-bound error bound: ${ub.errorBound}")
+  }
+
 }
@@ -0,0 +1,207 @@
+/*+++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+ + STMC - Statistical Model Checker                                                               +
+ +                                                                                                +
+ + Copyright (C) 2019                                                                             +
+ + Authors:                                                                                       +
+ +   Nima Roohi <nroohi@ucsd.edu> (University of California San Diego)                            +
+ +                                                                                                +
+ + This program is free software: you can redistribute it and/or modify it under the terms        +
+ + of the GNU General Public License as published by the Free Software Foundation, either         +
+ + version 3 of the License, or (at your option) any later version.                               +
+ +                                                                                                +
+ + This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;      +
+ + without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.      +
+ + See the GNU General Public License for more details.                                           +
+ +                                                                                                +
+ + You should have received a copy of the GNU General Public License along with this program.     +
+ + If not, see <https://www.gnu.org/licenses/>.                                                   +
+ +++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++*/
+
+package edu.stmc
+
+import parser.ast.{Expression, ExpressionProb}
+import prism.PrismException
+import simulator.sampler.Sampler
+
+/** Stratified Ternary Sequential Probability Ratio Test
+  *
+  * Same as [[HypTestSPRTTernary]], except that the two underlying tests are [[HypTestSPRTStratified]]. So it consumes batch means (eg. one estimated
+  * probability per iteration of stratified or antithetic sampling) instead of individual samples.
+  *
+  * @note
+  *   1. Method [[init]] must be called before this test can be actually performed.
+  *   1. Probabilistic guarantees in this class ignore numerical errors caused by floating point arithmetic.
+  *   1. See [[HypTestSPRTTernary]] and [[HypTestSPRTStratified]] for references. */
+final class HypTestSPRTTernaryStratified private(private[this] var lb: HypTestSPRTStratified,
+                                                 private[this] var ub: HypTestSPRTStratified,
+                                                 private[this] var LB: Boolean) extends HypTest with HypTest.BatchMeans {
+
+  /** Create an uninitialized instance of this method. */
+  def this() = this(new HypTestSPRTStratified, new HypTestSPRTStratified, false)
+
+  /** Initialize or reset this to a hypothesis test in which the null hypothesis is `p = θ - δ` and the alternative hypothesis is `p = θ + δ`, where `p` is
+    * the actual probability, `θ` is the input threshold, and `δ` is the half of the size of indifference region.
+    *
+    * @param threshold Input Threshold
+    * @param alpha     Type I   (aka `false positive`)  error probability (the probability of incorrectly     rejecting the null hypothesis).
+    * @param beta      Type II  (aka `false negative`)  error probability (the probability of incorrectly not rejecting the null hypothesis).
+    * @param gamma     Type III (aka `false too_close`) error probability (the probability of incorrectly call it too close).
+    * @param delta     Half of the size of indifference region.
+    * @param LB        Whether or not the null and alternative hypotheses should be swapped (`true` means they should).
+    * @note The following requirements must be met (`θ` refers to the input threshold):
+    *   - 0 < θ < 1
+    *   - 0 < α < 0.5
+    *   - 0 < β < 0.5
+    *   - 0 < γ < 0.5
+    *   - 0 < δ < 0.5
+    *   - δ < θ
+    *   - δ < 1 - θ
+    * @see [[status(lb*]], [[too_close]], [[rejected]], [[failed_to_reject]]*/
+  def init(threshold: Double, alpha: Double, beta: Double, gamma: Double, delta: Double, LB: Boolean = true): HypTestSPRTTernaryStratified = {
+    val half_delta = delta / 2
+    this.LB = LB
+    if (LB) {
+      lb.init(threshold - half_delta, gamma, alpha, half_delta, LB = false)
+      ub.init(threshold + half_delta, beta, gamma, half_delta, LB = false)
+    } else {
+      lb.init(threshold - half_delta, gamma, beta, half_delta, LB = false)
+      ub.init(threshold + half_delta, alpha, gamma, half_delta, LB = false)
+    }
+    this
+  }
+
+  //------------------------------------------------------------------------------------------------------------------------------------------------------------
+
+  // SimulationMethod Methods
+
+  override def reset(): Unit = {
+    lb.reset()
+    ub.reset()
+  }
+
+  private[this] val name = STMCConfig.samplingMethod match {
+  case NameSmplMethod.ANTITHETIC => "Antithetic"
+  case NameSmplMethod.ADAPTIVE   => "Adaptive"
+  case _                         => "Stratified"
+  }
+  override def getName: String = s"${name}TernarySPRT"
+  override def getFullName: String = s"$name Ternary Sequential Probability Ratio Test"
+  override def getParametersString: String = s"lower-bound (${lb.getParametersString}), upper-bound (${ub.getParametersString})"
+
+  override def getResultExplanation(sampler: Sampler): String =
+    s"lower-bound (${lb.getResultExplanation(sampler)}), upper-bound (${ub.getResultExplanation(sampler)})"
+
+  override def clone: HypTestSPRTTernaryStratified = new HypTestSPRTTernaryStratified(lb.clone, ub.clone, LB)
+
+  override def setExpression(expr: Expression): Unit =
+    if (!expr.isInstanceOf[ExpressionProb])
+      throw new PrismException(s"Can only handle expressions of type ExpressionProp. However, type of '$expr' is ${expr.getClass.getName}")
+    else {
+      val expr2 = expr.asInstanceOf[ExpressionProb]
+      val threshold = expr2.getBound.evaluateDouble
+      val op = expr2.getRelOp
+      init(threshold, STMCConfig.alpha, STMCConfig.beta, STMCConfig.gamma, STMCConfig.delta, op.isLowerBound)
+    }
+
+  override def shouldStop(iters: Long, sampler: Sampler): Boolean = iters >= STMCConfig.minIters && completed
+
+  override def getMissingParameter: java.lang.Integer =
+  // `SimulationMethod` requires the return type to be either an Integer or a Double object.
+    status match {
+    case CompResult.Ternary.SMALLER   => Int.box(-1)
+    case CompResult.Ternary.TOO_CLOSE => Int.box(0)
+    case CompResult.Ternary.LARGER    => Int.box(+1)
+    case CompResult.Ternary.UNDECIDED => throw new PrismException("Missing parameter not computed yet")
+    }
+
+  @throws[PrismException]
+  override def getResult(sampler: Sampler): AnyRef = if (LB) getMissingParameter else Int.box(-getMissingParameter)
+
+  //------------------------------------------------------------------------------------------------------------------------------------------------------------
+
+  // HypTest Methods
+
+  /** @note No restriction on total number of samples. */
+  override def update(positive: Boolean): Unit = {
+    lb.update(positive)
+    ub.update(positive)
+  }
+
+  /** @note
+    *   1. Requires `positive >= 0`.
+    *   1. No restriction on total number of samples
+    *   1. Value of `negative` is ignored (it is assumed to be [[STMCConfig.strataTotalSize]] - `positive`) */
+  override def update(positive: Long, negative: Long): Unit = {
+    lb.update(positive, negative)
+    ub.update(positive, negative)
+  }
+
+  /** @note No restriction on total number of batches. */
+  override def updateMean(mean: Double): Unit = {
+    lb.updateMean(mean)
+    ub.updateMean(mean)
+  }
+
+  /** @note The following probabilistic guarantees are made (if `LB` is `true` then swap `α` and `β`):
+    *   1. If the actual probability is at most  `θ` then the probability of returning [[CompResult.Ternary.LARGER]]  is at most `α`.
+    *   1. If the actual probability is at least `θ` then the probability of returning [[CompResult.Ternary.SMALLER]] is at most `β`.
+    *   1. If `θ` is not strictly within `δ`-neighborhood of the actual probability then the probability of returning [[CompResult.Ternary.TOO_CLOSE]]
+    *       is at most `γ`.
+    * @see [[init]] where all the parameters are set */
+  def status(lb: CompResult.Binary, ub: CompResult.Binary): CompResult.Ternary =
+    if ((lb eq CompResult.Binary.UNDECIDED) || (ub eq CompResult.Binary.UNDECIDED)) CompResult.Ternary.UNDECIDED
+    else if (lb != ub) CompResult.Ternary.TOO_CLOSE
+    else if (lb eq CompResult.Binary.SMALLER) CompResult.Ternary.SMALLER
+    else CompResult.Ternary.LARGER
+
+  /** Same as [[status(lb*]], but input parameters are taken from the current instance */
+  @inline
+  def status: CompResult.Ternary = status(lb.status, ub.status)
+
+  override def completed: Boolean = status ne CompResult.Ternary.UNDECIDED
+
+  /** Both underlying tests must be decided, so the prediction is the larger of their predictions. */
+  override def expectedSamplesRemaining: Double =
+    if (completed) 0
+    else Math.max(lb.expectedSamplesRemaining, ub.expectedSamplesRemaining)
+
+  /** @note
+    *   1. Requires [[completed]] to be `true`.
+    *   1. If `θ` is ''not'' strictly within `δ`-neighborhood of the actual probability then the probability of returning `true` is at most `γ`. */
+  override def too_close: Boolean = status eq CompResult.Ternary.TOO_CLOSE
+
+  /** @note
+    *   1. Requires [[completed]] to be `true`.
+    *   1. The following probabilistic guarantees are made:
+    *      a. When `LB` is `true`:  if the actual probability is at least `θ` then the probability of returning `true` is at most `α`.
+    *      a. When `LB` is `false`: if the actual probability is at most  `θ` then the probability of returning `true` is at most `α`. */
+  override def rejected: Boolean =
+    if (LB) status eq CompResult.Ternary.SMALLER
+    else status eq CompResult.Ternary.LARGER
+
+  /** @note
+    *   1. Requires [[completed]] to be `true`.
+    *   1. The following probabilistic guarantees are made:
+    *      a. When `LB` is `false`: if the actual probability is at least `θ` then the probability of returning `true` is at most `β`.
+    *      a. When `LB` is `true`:  if the actual probability is at most  `θ` then the probability of returning `true` is at most `β`. */
+  override def failed_to_reject: Boolean =
+    if (LB) status eq CompResult.Ternary.LARGER
+    else status eq CompResult.Ternary.SMALLER
+
+  /** Status the test currently leans towards (the way both underlying tests lean). */
+  def leaning: CompResult.Ternary = status(lb.leaning, ub.leaning)
+
+  /** Error bound achieved by deciding [[leaning]] now (the larger of the error bounds of the underlying tests). */
+  def errorBound: Double = Math.max(lb.errorBound, ub.errorBound)
+
+  override def interim: HypTest.Interim = {
+    val code = leaning match {
+    case CompResult.Ternary.SMALLER => -1
+    case CompResult.Ternary.LARGER  => +1
+    case _                          => 0
+    }
+    val samples = lb.interim
+    HypTest.Interim(Int.box(if (LB) code else -code), samples.samples, samples.estimate, samples.low, samples.high, s"error bound: $errorBound")
+  }
+
+}
@@ -0,0 +1,235 @@
+/*+++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+ + STMC - Statistical Model Checker                                                               +
+ +                                                                                                +
+ + Copyright (C) 2019                                                                             +
+ + Authors:                                                                                       +
+ +   Nima Roohi <nroohi@ucsd.edu> (University of California San Diego)                            +
+ +                                                                                                +
+ + This program is free software: you can redistribute it and/or modify it under the terms        +
+ + of the GNU General Public License as published by the Free Software Foundation, either         +
+ + version 3 of the License, or (at your option) any later version.                               +
+ +                                                                                                +
+ + This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;      +
+ + without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.      +
+ + See the GNU General Public License for more details.                                           +
+ +                                                                                                +
+ + You should have received a copy of the GNU General Public License along with this program.     +
+ + If not, see <https://www.gnu.org/licenses/>.                                                   +
+ +++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++*/
+
+package edu.stmc
+
+import parser.ast.Expression
+import prism.PrismException
+import simulator.sampler.Sampler
+
+/** A family of tests over a grid of thresholds, all fed by the same stream of samples (or batch means).
+  *
+  * Every update is forwarded to the tests that are not decided yet, and a test is decided (and frozen) as soon as its own [[shouldStopNow]] returns
+  * `true`. Sampling should stop only when every test in the family is decided. Therefore, a sweep over many thresholds costs roughly as much as its hardest
+  * threshold (the one closest to the actual probability).
+  *
+  * @note
+  *   1. All the tests must be initialized (eg. by calling their `setExpression`) before they are given to this class.
+  *   1. All the tests must agree on [[usesBatchMeans]]. The sweep uses batch means (see [[HypTest.BatchMeans]]) iff they do, so it is created by
+  *      [[HypTestSweep.apply]].
+  *   1. Results must be read per threshold (see [[test]]). [[getResult]] throws an exception.
+  * @constructor Create a sweep over the given (initialized) tests (see [[HypTestSweep.apply]]). */
+sealed class HypTestSweep private(private[this] val tests: Array[HypTest]) extends HypTest {
+
+  require(tests.nonEmpty, "Empty sweep")
+  require(tests.forall(_.usesBatchMeans == tests.head.usesBatchMeans), "Tests in a sweep must agree on whether or not they use batch means")
+
+  private[this] val decided = Array.ofDim[Boolean](tests.length)
+  private[this] val decidedAt = Array.fill[Long](tests.length)(-1)
+  private[this] var remaining = tests.length
+
+  private def reset(decided: Array[Boolean], decidedAt: Array[Long], remaining: Int): HypTestSweep = {
+    Array.copy(decided, 0, this.decided, 0, decided.length)
+    Array.copy(decidedAt, 0, this.decidedAt, 0, decidedAt.length)
+    this.remaining = remaining
+    this
+  }
+
+  /** Number of tests (ie. thresholds) in this sweep. */
+  def size: Int = tests.length
+
+  /** The `i`-th test in this sweep. */
+  def test(i: Int): HypTest = tests(i)
+
+  /** Iteration in which the `i`-th test was decided (`-1` if it is not decided yet). */
+  def decidedIteration(i: Int): Long = decidedAt(i)
+
+  //------------------------------------------------------------------------------------------------------------------------------------------------------------
+
+  // SimulationMethod Methods
+
+  override def reset(): Unit = {
+    tests.foreach(_.reset())
+    for (i <- tests.indices) {
+      decided(i) = false
+      decidedAt(i) = -1
+    }
+    remaining = tests.length
+  }
+
+  override def getName: String = s"Sweep${tests.head.getName}"
+  override def getFullName: String = s"Threshold Sweep of ${tests.head.getFullName}"
+  override def getParametersString: String = s"thresholds: ${tests.length}, ${tests.head.getParametersString}"
+
+  override def getResultExplanation(sampler: Sampler): String =
+    s"decided: ${tests.length - remaining}/${tests.length}, decided-at: ${decidedAt.mkString("[", ",", "]")}"
+
+  override def clone: HypTestSweep = HypTestSweep(tests.map(_.clone.asInstanceOf[HypTest])).reset(decided, decidedAt, remaining)
+
+  override def setExpression(expr: Expression): Unit =
+    throw new PrismException("Tests in a sweep must be initialized individually")
+
+  /** @note Tests that are already decided are not called anymore. */
+  override def shouldStop(iters: Long, sampler: Sampler): Boolean = {
+    var i = 0
+    while (i < tests.length) {
+      if (!decided(i) && tests(i).shouldStopNow(iters, sampler)) {
+        decided(i) = true
+        decidedAt(i) = iters
+        remaining -= 1
+      }
+      i += 1
+    }
+    remaining == 0
+  }
+
+  /** @note Tests that are already decided are not called anymore. */
+  override def shouldStopNow(iters: Long, positive: Boolean): Boolean = {
+    var i = 0
+    while (i < tests.length) {
+      if (!decided(i) && tests(i).shouldStopNow(iters, positive)) {
+        decided(i) = true
+        decidedAt(i) = iters
+        remaining -= 1
+      }
+      i += 1
+    }
+    remaining == 0
+  }
+
+  /** @return Progress of the slowest test that is not decided yet. */
+  override def getProgress(iters: Long, sampler: Sampler): Int = {
+    var progress = 100
+    for (i <- tests.indices if !decided(i))
+      progress = Math.min(progress, tests(i).getProgress(iters, sampler))
+    progress
+  }
+
+  /** @return Number of decided tests. */
+  override def getMissingParameter: java.lang.Integer =
+  // `SimulationMethod` requires the return type to be either an Integer or a Double object.
+    Int.box(tests.length - remaining)
+
+  @throws[PrismException]
+  override def getResult(sampler: Sampler): AnyRef =
+    throw new PrismException("Results of a threshold sweep must be read per threshold")
+
+  //------------------------------------------------------------------------------------------------------------------------------------------------------------
+
+  // HypTest Methods
+
+  override def update(positive: Boolean): Unit = {
+    var i = 0
+    while (i < tests.length) {
+      if (!decided(i))
+        tests(i).update(positive)
+      i += 1
+    }
+  }
+
+  override def update(positive: Long, negative: Long): Unit = {
+    var i = 0
+    while (i < tests.length) {
+      if (!decided(i))
+        tests(i).update(positive, negative)
+      i += 1
+    }
+  }
+
+  /** Tests that are not decided yet consume the block independently, each one up to its own decision. Tests that are completed by the block are decided
+    * (and frozen) right away, at the number of samples (or batch means) they have consumed, so later blocks are not given to them.
+    *
+    * @return Number of observations after which every test is completed (`bits` if some test is not completed by the end of the block). */
+  override def update(words: Array[Long], bits: Int): Int = {
+    var consumed = 0
+    var i = 0
+    while (i < tests.length) {
+      if (!decided(i)) {
+        val c = tests(i).update(words, bits)
+        if (tests(i).completed) {
+          decided(i) = true
+          decidedAt(i) = tests(i).interim.samples
+          remaining -= 1
+          consumed = Math.max(consumed, c)
+        }
+      }
+      i += 1
+    }
+    if (remaining == 0) consumed else bits
+  }
+
+  /** @return Whether or not every test that is not decided yet might be decided inside the block. */
+  override def mayDecideWithin(positive: Long, negative: Long): Boolean =
+    tests.indices.forall(i => decided(i) || tests(i).mayDecideWithin(positive, negative))
+
+  /** Implementation of `updateMean` of a sweep of tests that use batch means (see [[HypTestSweep.apply]]). */
+  private[stmc] def updateMeans(mean: Double): Unit = {
+    var i = 0
+    while (i < tests.length) {
+      if (!decided(i))
+        tests(i).asInstanceOf[HypTest.BatchMeans].updateMean(mean)
+      i += 1
+    }
+  }
+
+  /** @return The smallest horizon among tests that are not decided yet. */
+  override def decisionHorizon: Long = {
+    var horizon = Long.MaxValue
+    for (i <- tests.indices if !decided(i))
+      horizon = Math.min(horizon, tests(i).decisionHorizon)
+    if (remaining == 0) 0 else Math.max(1, horizon)
+  }
+
+  /** Whether or not every test in this sweep is decided. */
+  override def completed: Boolean = remaining == 0
+
+  /** Every test must be decided, so the prediction is the largest prediction of the tests that are not decided yet. */
+  override def expectedSamplesRemaining: Double = {
+    var res = 0.0
+    for (i <- tests.indices if !decided(i))
+      res = Math.max(res, tests(i).expectedSamplesRemaining)
+    res
+  }
+
+  /** Whether or not at least one of the tests is too close to its threshold. */
+  override def too_close: Boolean = tests.exists(_.too_close)
+
+  /** Whether or not every test rejects its null hypothesis. */
+  override def rejected: Boolean = tests.forall(_.rejected)
+
+  /** Whether or not every test fails to reject its null hypothesis. */
+  override def failed_to_reject: Boolean = tests.forall(_.failed_to_reject)
+
+}
+
+object HypTestSweep {
+
+  /** Create a sweep over the given (initialized) tests. It uses batch means iff the tests do (see [[HypTest.BatchMeans]]). */
+  def apply(tests: Array[HypTest]): HypTestSweep =
+    if (tests.nonEmpty && tests.head.usesBatchMeans)
+      new HypTestSweep(tests) with HypTest.BatchMeans {
+        override def updateMean(mean: Double): Unit = updateMeans(mean)
+      }
+    else new HypTestSweep(tests)
+
+  /** Same as [[apply]], for tests that use batch means (so the type of the sweep says so). */
+  def ofBatchMeans(tests: Array[HypTest.BatchMeans]): HypTestSweep with HypTest.BatchMeans =
+    apply(tests.toArray[HypTest]).asInstanceOf[HypTestSweep with HypTest.BatchMeans]
+
+}
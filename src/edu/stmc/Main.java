@@ -40,8 +40,10 @@ public class Main {
       throw new Error("Java version is " + v + " (its feature value is " + v.feature() + "). However, it must be at least 11.");
   }
 
-  private static int repeat       = 1;
-  private static int processCount = 1;
+  private static int    repeat       = 1;
+  private static int    processCount = 1;
+  // File of -result_json (null if it is not given), which Main completes with the runs of all repeats and their summary
+  private static String resultJson   = null;
 
   private static double timeAvg    = 0;
   private static double timeM2     = 0;
@@ -49,6 +51,10 @@ public class Main {
   private static double samplesM2  = 0;
   private static int    iters      = 0;
 
+  // Time and number of samples of the last sampling campaign of this process (read by BenchmarkRunner)
+  static volatile double lastTime    = Double.NaN;
+  static volatile double lastSamples = Double.NaN;
+
   private static void actualUpdateTotal(final double time, final double samples) {
     iters++;
     {
@@ -92,6 +98,8 @@ public class Main {
   });
 
   public static void updateTotal(final double time, final double samples) {
+    lastTime = time;
+    lastSamples = samples;
     try {
       Socket           s   = new Socket("localhost", port);
       DataOutputStream out = new DataOutputStream(s.getOutputStream());
@@ -194,6 +202,11 @@ public class Main {
           case "mainlog":
             hasFileLog = true;
             break;
+          case "result_json":
+            // the switch is kept (it is also handled by PrismCL)
+            if (i + 1 < params.size())
+              resultJson = params.get(i + 1);
+            break;
           case "multithread":
           case "mt":
             params.remove(i);
@@ -230,6 +243,7 @@ public class Main {
     if (hasFileLog && processCount > 1)
       throw new PrismException("Option mainlog is not supported when number of processes (" + processCount + ") is larger than 1");
 
+    ResultJson.setArguments(args);
     final String SEP = "+++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++";
     if (processCount == 1)
       for (int i = 0; i < repeat; i++) {
@@ -237,6 +251,7 @@ public class Main {
           System.out.println(SEP);
         if (repeat > 1)
           System.out.println("Repeat Number: " + i);
+        ResultJson.startRepeat(i);
         PrismCL.main(params.toArray(new String[0]));
       }
     else {
@@ -267,6 +282,11 @@ public class Main {
       // Combining prism command and input arguments to create a new command (used to run different processors).
       List<String> new_args = new ArrayList<>(Arrays.asList(prismCmds));
       new_args.addAll(params);
+      // Every process writes its runs to a file of its own, and they are collected into the file of -result_json
+      int resultJsonAt = -1;
+      for (int i = prismCmds.length; i < new_args.size() - 1; i++)
+        if ("result_json".equals(adjustSwitch(new_args.get(i))))
+          resultJsonAt = i + 1;
 
       ProcessBuilder bld = new ProcessBuilder(new_args);
       bld.redirectErrorStream(true);
@@ -280,14 +300,21 @@ public class Main {
       for (int i = 0; i < repeat; i++) {
         final int  iter    = i;
         final File outFile = File.createTempFile("process-", ".out", dir);
+        final File jsonFile = resultJsonAt < 0 ? null : File.createTempFile("process-", ".json", dir);
+        final List<String> cmd = new ArrayList<>(new_args);
+        if (jsonFile != null)
+          cmd.set(resultJsonAt, jsonFile.getAbsolutePath());
         pool.execute(() -> {
           try {
             final Process process;
             synchronized (bld) {
+              bld.command(cmd);
               bld.redirectOutput(ProcessBuilder.Redirect.to(outFile));
               process = bld.start();
             }
             process.waitFor();
+            if (jsonFile != null)
+              ResultJson.addRepeat(iter, jsonFile);
             // Printing content of a tmp file and deleting it afterwards
             synchronized (Math.class) {
               System.out.println(SEP);
@@ -314,6 +341,8 @@ public class Main {
       System.out.print("Time: average=" + timeAvg + ", standard-error=" + Math.sqrt(timeM2 / (iters - 1) / repeat));
       System.out.println("\nSamples: average=" + samplesAvg + ", standard-error=" + Math.sqrt(samplesM2 / (iters - 1) / repeat));
     }
+    if (resultJson != null)
+      ResultJson.finish(resultJson, iters, timeAvg, Math.sqrt(timeM2 / (iters - 1) / repeat), samplesAvg, Math.sqrt(samplesM2 / (iters - 1) / repeat));
 
   }
 }
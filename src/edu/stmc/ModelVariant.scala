@@ -0,0 +1,108 @@
+/*+++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+ + STMC - Statistical Model Checker                                                               +
+ +                                                                                                +
+ + Copyright (C) 2019                                                                             +
+ + Authors:                                                                                       +
+ +   Nima Roohi <nroohi@ucsd.edu> (University of California San Diego)                            +
+ +                                                                                                +
+ + This program is free software: you can redistribute it and/or modify it under the terms        +
+ + of the GNU General Public License as published by the Free Software Foundation, either         +
+ + version 3 of the License, or (at your option) any later version.                               +
+ +                                                                                                +
+ + This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;      +
+ + without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.      +
+ + See the GNU General Public License for more details.                                           +
+ +                                                                                                +
+ + You should have received a copy of the GNU General Public License along with this program.     +
+ + If not, see <https://www.gnu.org/licenses/>.                                                   +
+ +++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++*/
+
+package edu.stmc
+
+import parser.Values
+import parser.`type`.{TypeBool, TypeDouble, TypeInt}
+import parser.ast.ModulesFile
+import prism.{PrismComponent, PrismException}
+import simulator.Updater
+
+/** Variants of a model in which some of the undefined constants have different values (see [[STMCConfig.crnConstants]] and
+  * [[STMCConfig.reweightConstants]]).
+  *
+  * A variant is specified by a comma separated list of assignments, eg. `MAX=20,N=3`. */
+object ModelVariant {
+
+  /** Copy of `model` (whose constants are already defined) in which some undefined constants are changed according to `spec`.
+    *
+    * @throws PrismException If `spec` is not well-formed, or it assigns a constant that is unknown or defined in the model. */
+  @throws[PrismException]
+  def apply(model: ModulesFile, spec: String): ModulesFile = {
+    val constants = model.getConstantList
+    val base = model.getConstantValues
+    val values = new Values()
+    for (i <- 0 until constants.size if constants.getConstant(i) == null)
+      values.addValue(constants.getConstantName(i), base.getValueOf(constants.getConstantName(i)))
+    for (assignment <- spec.split(',')) {
+      val parts = assignment.split('=')
+      if (parts.length != 2)
+        throw new PrismException(s"Invalid assignment '$assignment' in $spec")
+      val name = parts(0).trim
+      val text = parts(1).trim
+      val i = constants.getConstantIndex(name)
+      if (i < 0)
+        throw new PrismException(s"Unknown constant $name in $spec")
+      if (constants.getConstant(i) != null)
+        throw new PrismException(s"Constant $name is defined in the model and cannot be changed")
+      val value: AnyRef = try constants.getConstantType(i) match {
+      case _: TypeInt    => Int.box(text.toInt)
+      case _: TypeDouble => Double.box(text.toDouble)
+      case _: TypeBool   => Boolean.box(text.toBoolean)
+      case t             => throw new PrismException(s"Constant $name of type $t cannot be changed")
+      } catch {
+        case _: IllegalArgumentException => throw new PrismException(s"Invalid value '$text' for constant $name in $spec")
+      }
+      values.setValue(name, value)
+    }
+    val variant = model.deepCopy().asInstanceOf[ModulesFile]
+    variant.setSomeUndefinedConstants(values)
+    variant
+  }
+
+  /** Updater of a variant (same as the one created by [[simulator.SimulatorEngine]] for the model it loads). */
+  @throws[PrismException]
+  def updater(variant: ModulesFile, parent: PrismComponent): Updater =
+    new Updater(variant.deepCopy().replaceConstants(variant.getConstantValues).simplify().asInstanceOf[ModulesFile], variant.createVarList(), parent)
+
+  /** All the variants of a specification in which some constants are assigned ranges, eg. `pL=0.01:0.01:0.03,N=3` is expanded to `pL=0.01,N=3`,
+    * `pL=0.02,N=3` and `pL=0.03,N=3`. A range is `from:to` (step `1`) or `from:step:to`, and values are computed exactly (in decimal).
+    *
+    * @throws PrismException If a range is not well-formed. */
+  @throws[PrismException]
+  def expand(spec: String): Seq[String] = {
+    val assignments = for (assignment <- spec.split(',').toSeq) yield {
+      val parts = assignment.split('=')
+      if (parts.length != 2)
+        throw new PrismException(s"Invalid assignment '$assignment' in $spec")
+      val name = parts(0).trim
+      val range = parts(1).split(':').map(_.trim)
+      val values = try range match {
+      case Array(value)          => Seq(value)
+      case Array(from, to)       => steps(BigDecimal(from), BigDecimal(1), BigDecimal(to))
+      case Array(from, step, to) => steps(BigDecimal(from), BigDecimal(step), BigDecimal(to))
+      case _                     => throw new PrismException(s"Invalid range '${parts(1)}' in $spec")
+      } catch {
+        case _: NumberFormatException => throw new PrismException(s"Invalid range '${parts(1)}' in $spec")
+      }
+      values.map(v => s"$name=$v")
+    }
+    assignments.foldLeft(Seq("")) { (prefixes, values) =>
+      for (prefix <- prefixes; value <- values) yield if (prefix.isEmpty) value else s"$prefix,$value"
+    }
+  }
+
+  private[this] def steps(from: BigDecimal, step: BigDecimal, to: BigDecimal): Seq[String] = {
+    if (step <= 0 || from > to)
+      throw new PrismException(s"Invalid range $from:$step:$to")
+    Iterator.iterate(from)(_ + step).takeWhile(_ <= to).map(_.bigDecimal.toPlainString).toList
+  }
+
+}
@@ -26,7 +26,12 @@ public enum NameHypTest {
   SPRT,
   GLRT,
   TSPRT,
-  SSPRT;
+  SSPRT,
+  SGLRT,
+  STSPRT,
+  BAYES,
+  CI,
+  SCI;
 
   /** @return String representation of all possible values of this type */
   public static String valuesToString() {
@@ -25,7 +25,8 @@ import java.util.Arrays;
 public enum NameSmplMethod {
   INDEPENDENT,
   ANTITHETIC,
-  STRATIFIED;
+  STRATIFIED,
+  ADAPTIVE;
 
   /** @return String representation of all possible values of this type (all lower-cased) */
   public static String valuesToString() {
@@ -0,0 +1,78 @@
+/*+++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+ + STMC - Statistical Model Checker                                                               +
+ +                                                                                                +
+ + Copyright (C) 2019                                                                             +
+ + Authors:                                                                                       +
+ +   Nima Roohi <nroohi@ucsd.edu> (University of California San Diego)                            +
+ +                                                                                                +
+ + This program is free software: you can redistribute it and/or modify it under the terms        +
+ + of the GNU General Public License as published by the Free Software Foundation, either         +
+ + version 3 of the License, or (at your option) any later version.                               +
+ +                                                                                                +
+ + This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;      +
+ + without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.      +
+ + See the GNU General Public License for more details.                                           +
+ +                                                                                                +
+ + You should have received a copy of the GNU General Public License along with this program.     +
+ + If not, see <https://www.gnu.org/licenses/>.                                                   +
+ +++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++*/
+
+package edu.stmc
+
+import java.util.concurrent.atomic.AtomicLong
+
+/** Lock-free ring buffer with a single producer and a single consumer, whose entries are records of `width` longs. All the memory is allocated in the
+  * constructor.
+  *
+  * The producer [[claim]]s the next free record, writes it directly into [[data]] and [[publish]]es it. The consumer [[peek]]s the oldest published record,
+  * reads it from [[data]] and [[release]]s it.
+  *
+  * @param capacity Maximum number of records in the ring (a power of two).
+  * @param width    Number of longs in every record.
+  * @note Each side must be used by one thread only (but the two sides may be used by different threads). */
+final class OutcomeRing(capacity: Int, val width: Int) {
+
+  require(capacity > 0 && Integer.bitCount(capacity) == 1, s"Capacity $capacity is not a power of two")
+  require(width > 0, s"Invalid width $width")
+
+  private[this] val mask = capacity - 1
+
+  /** Records of the ring. Record `i` occupies indices `[i * width, (i + 1) * width)`. */
+  val data = new Array[Long](capacity * width)
+
+  // Number of released records (only written by the consumer) and number of published records (only written by the producer). Each side keeps a stale copy
+  // of the counter of the other side, and only reads the shared one when the ring looks full (or empty).
+  private[this] val head = new AtomicLong()
+  private[this] val tail = new AtomicLong()
+  private[this] var headCache = 0L
+  private[this] var tailCache = 0L
+
+  /** Producer side: index (in [[data]]) of the next free record, or `-1` if the ring is full. */
+  def claim(): Int = {
+    val t = tail.get
+    if (t - headCache >= capacity) {
+      headCache = head.get
+      if (t - headCache >= capacity)
+        return -1
+    }
+    (t & mask).toInt * width
+  }
+
+  /** Producer side: make the record returned by the last call to [[claim]] visible to the consumer. */
+  def publish(): Unit = tail.lazySet(tail.get + 1)
+
+  /** Consumer side: index (in [[data]]) of the oldest published record, or `-1` if the ring is empty. */
+  def peek(): Int = {
+    val h = head.get
+    if (h >= tailCache) {
+      tailCache = tail.get
+      if (h >= tailCache)
+        return -1
+    }
+    (h & mask).toInt * width
+  }
+
+  /** Consumer side: give the record returned by the last call to [[peek]] back to the producer. */
+  def release(): Unit = head.lazySet(head.get + 1)
+
+}
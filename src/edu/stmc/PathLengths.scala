@@ -0,0 +1,312 @@
+/*+++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+ + STMC - Statistical Model Checker                                                               +
+ +                                                                                                +
+ + Copyright (C) 2019                                                                             +
+ + Authors:                                                                                       +
+ +   Nima Roohi <nroohi@ucsd.edu> (University of California San Diego)                            +
+ +                                                                                                +
+ + This program is free software: you can redistribute it and/or modify it under the terms        +
+ + of the GNU General Public License as published by the Free Software Foundation, either         +
+ + version 3 of the License, or (at your option) any later version.                               +
+ +                                                                                                +
+ + This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;      +
+ + without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.      +
+ + See the GNU General Public License for more details.                                           +
+ +                                                                                                +
+ + You should have received a copy of the GNU General Public License along with this program.     +
+ + If not, see <https://www.gnu.org/licenses/>.                                                   +
+ +++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++*/
+
+package edu.stmc
+
+import prism.{PrismLog, PrismUtils}
+import simulator.sampler.Sampler
+
+/** Histogram of lengths, whose buckets are log-linear (as in HDR histograms): lengths below `2 * SubBuckets` have a bucket each, and every further power of
+  * two is split into `SubBuckets` buckets of the same width. So quantiles are exact for short lengths, and otherwise at most `1 / SubBuckets` above the
+  * exact ones. Buckets are only allocated up to the longest length recorded so far (one bucket per length up to `64`, `32` more per power of two).
+  *
+  * @note Not thread-safe. */
+final class LengthHistogram {
+
+  import LengthHistogram.{bucket, highest}
+
+  private var counts = Array.ofDim[Long](bucket(LengthHistogram.Initial - 1) + 1)
+  private var total = 0L
+  private var sum = 0.0
+  private var least = Long.MaxValue
+  private var most = Long.MinValue
+
+  /** Record a path of `length` steps. */
+  def record(length: Long): Unit = {
+    assert(length >= 0, s"Invalid length $length")
+    val b = bucket(length)
+    if (b >= counts.length)
+      counts = java.util.Arrays.copyOf(counts, Math.max(b + 1, 2 * counts.length))
+    counts(b) += 1
+    total += 1
+    sum += length
+    least = Math.min(least, length)
+    most = Math.max(most, length)
+  }
+
+  /** Add all the lengths of `that` to this histogram. */
+  def merge(that: LengthHistogram): Unit =
+    if (that.count > 0) {
+      if (that.counts.length > counts.length)
+        counts = java.util.Arrays.copyOf(counts, that.counts.length)
+      for (b <- that.counts.indices)
+        counts(b) += that.counts(b)
+      total += that.total
+      sum += that.sum
+      least = Math.min(least, that.least)
+      most = Math.max(most, that.most)
+    }
+
+  /** Number of recorded lengths. */
+  def count: Long = total
+  /** Shortest recorded length (`0` if there is none). */
+  def min: Long = if (total == 0) 0 else least
+  /** Longest recorded length (`0` if there is none). */
+  def max: Long = if (total == 0) 0 else most
+  /** Average of the recorded lengths (`NaN` if there is none). */
+  def mean: Double = if (total == 0) Double.NaN else sum / total
+
+  /** The `q`-quantile of the recorded lengths (ie. the smallest length that is not shorter than `ceil(q * count)` of them), rounded up to the end of its
+    * bucket (but not above [[max]]). It is `0` if no length is recorded. */
+  def quantile(q: Double): Long = {
+    require(q >= 0 && q <= 1, s"Invalid quantile $q")
+    if (total == 0)
+      return 0
+    val rank = Math.max(1L, Math.ceil(q * total).toLong)
+    var seen = counts(0)
+    var b = 0
+    while (seen < rank) {
+      b += 1
+      seen += counts(b)
+    }
+    Math.max(least, Math.min(most, highest(b)))
+  }
+
+  /** Number of recorded lengths that are (certainly) longer than `length`. */
+  def countAbove(length: Long): Long = {
+    var n = 0L
+    for (b <- bucket(Math.max(0L, length)) + 1 until counts.length)
+      n += counts(b)
+    n
+  }
+
+}
+
+object LengthHistogram {
+
+  /** Number of buckets per power of two (so that every bucket is at most `1 / SubBuckets` of its lengths wide). */
+  final val SubBuckets = 32
+
+  // Lengths for which buckets are allocated up front
+  private final val Initial = 256L
+
+  private[this] final val SubBucketBits = Integer.numberOfTrailingZeros(SubBuckets)
+
+  /** Bucket of `length`. */
+  private[stmc] def bucket(length: Long): Int =
+    if (length < 2 * SubBuckets) length.toInt
+    else {
+      val shift = 63 - java.lang.Long.numberOfLeadingZeros(length) - SubBucketBits
+      2 * SubBuckets + (shift - 1) * SubBuckets + (length >>> shift).toInt - SubBuckets
+    }
+
+  /** Shortest length of bucket `b`. */
+  private[stmc] def lowest(b: Int): Long =
+    if (b < 2 * SubBuckets) b
+    else {
+      val shift = (b - 2 * SubBuckets) / SubBuckets + 1
+      ((b - 2 * SubBuckets) % SubBuckets + SubBuckets).toLong << shift
+    }
+
+  /** Longest length of bucket `b`. */
+  private[stmc] def highest(b: Int): Long =
+    if (b < 2 * SubBuckets) b else lowest(b) + (1L << ((b - 2 * SubBuckets) / SubBuckets + 1)) - 1
+
+}
+
+/** Distributions of the lengths of the paths of a sampling campaign: of all paths, of the paths of every stratum (whose first steps are in that stratum, see
+  * [[SimulatorEngineStratified]]), and of the number of steps until the value of every property was known.
+  *
+  * The tail of the lengths is also used to warn about the maximum path length before a path exceeds it (which fails the whole campaign): see [[check]].
+  *
+  * Engines that generate one path at a time track the properties of the current path with [[startPath]], [[step]] and [[endPath]]. Other engines
+  * [[record]] the lengths of paths (and [[recordProperty]] the lengths of their properties) themselves.
+  *
+  * @param samplers Samplers of the properties.
+  * @param strata   Number of strata (`1` unless sampling is stratified).
+  * @note Not thread-safe. */
+final class PathLengths(samplers: Seq[Sampler], strata: Int) {
+  require(strata > 0, s"Invalid number of strata $strata")
+
+  import PathLengths._
+
+  /** Lengths of all paths. */
+  val all = new LengthHistogram()
+  private[this] val properties = Array.fill(samplers.size)(new LengthHistogram())
+  private[this] val strataLengths = if (strata > 1) Array.fill(strata)(new LengthHistogram()) else null
+
+  // Properties whose values are not known yet in the current path (the first `pendingCount` of `pending`)
+  private[this] val propertySamplers = samplers.toArray
+  private[this] val pending = Array.ofDim[Int](samplers.size)
+  private[this] var pendingCount = 0
+
+  // Number of samples at which the tail is checked next (doubled after every check), and whether or not a warning is already given
+  private[this] var nextCheck = MinTailSamples
+  private[this] var warned = false
+
+  /** Number of steps until the value of property `k` was known. */
+  def property(k: Int): LengthHistogram = properties(k)
+
+  /** Lengths of the paths of stratum `h` (of all paths if sampling is not stratified). */
+  def stratum(h: Int): LengthHistogram = if (strataLengths == null) all else strataLengths(h)
+
+  /** Record a path of `length` steps of stratum `h`. */
+  def record(h: Int, length: Long): Unit = {
+    all.record(length)
+    if (strataLengths != null)
+      strataLengths(h).record(length)
+  }
+
+  /** Record that the value of property `k` was known after `length` steps of a path. */
+  def recordProperty(k: Int, length: Long): Unit = properties(k).record(length)
+
+  /** Start tracking a path, on which the samplers in `active` are evaluated (they must be updated with the initial state already). */
+  def startPath(active: java.util.List[Sampler]): Unit = {
+    pendingCount = 0
+    var k = 0
+    while (k < propertySamplers.length) {
+      if (active.contains(propertySamplers(k))) {
+        pending(pendingCount) = k
+        pendingCount += 1
+      }
+      k += 1
+    }
+  }
+
+  /** Check the samplers of the current path after `length` steps (see [[startPath]]). */
+  def step(length: Long): Unit = {
+    var j = 0
+    while (j < pendingCount) {
+      val k = pending(j)
+      if (propertySamplers(k).isCurrentValueKnown) {
+        properties(k).record(length)
+        pendingCount -= 1
+        pending(j) = pending(pendingCount)
+      } else
+        j += 1
+    }
+  }
+
+  /** Finish the current path after `length` steps (see [[startPath]]). Properties whose values are still unknown are recorded with `length` steps. */
+  def endPath(length: Long): Unit = {
+    for (j <- 0 until pendingCount)
+      properties(pending(j)).record(length)
+    pendingCount = 0
+    record(0, length)
+  }
+
+  /** Estimated probability that a path is longer than `limit` steps, or `NaN` if there are less than [[MinTailSamples]] paths.
+    *
+    * Unless some path is already longer, the tail is extrapolated beyond the 99th (and if there are enough paths, beyond the 99.9th) percentile as if it
+    * were exponential, ie. as if every further spread between the 90th and 99th (99th and 99.9th) percentile made paths ten times rarer. The larger of the
+    * two estimates is taken, so a tail that gets heavier is not missed. */
+  def tailProbability(limit: Long): Double = {
+    val n = all.count
+    if (n < MinTailSamples)
+      return Double.NaN
+    val above = all.countAbove(limit)
+    if (above > 0)
+      return above.toDouble / n
+    val q90 = all.quantile(0.9)
+    val q99 = all.quantile(0.99)
+    var p = extrapolate(0.01, q99, q99 - q90, limit)
+    if (n >= 10 * MinTailSamples) {
+      val q999 = all.quantile(0.999)
+      p = Math.max(p, extrapolate(0.001, q999, q999 - q99, limit))
+    }
+    p
+  }
+
+  /** A warning if paths are likely to exceed `limit` steps soon (ie. within ten times the `samples` generated so far), otherwise `null`. The tail is only
+    * checked whenever the number of samples doubles (from [[MinTailSamples]] on), and at most one warning is given. */
+  def check(samples: Long, limit: Long): String = {
+    if (warned || samples < nextCheck)
+      return null
+    while (nextCheck <= samples)
+      nextCheck *= 2
+    val p = tailProbability(limit)
+    if (!(p * samples * 10 >= 1))
+      return null
+    warned = true
+    s"Paths are getting close to the maximum path length ($limit) after $samples samples: median ${all.quantile(0.5)}, 99th percentile " +
+    s"${all.quantile(0.99)}, longest ${all.max}. About one path in ${Math.max(1L, Math.round(1 / p))} is expected to be longer (and sampling fails on " +
+    "the first one). Consider increasing the maximum path length."
+  }
+
+  /** Print the quantiles of all paths, of the properties (if there are several) and of the strata with the longest paths (if sampling is stratified), and
+    * whether the tail of the lengths is heavier than exponential. Properties are labeled by `labels`. */
+  def report(log: PrismLog, labels: java.util.List[_]): Unit = {
+    if (all.count == 0)
+      return
+    log.print(s"Path length quantiles: ${summary(all)}\n")
+    if (properties.length > 1) {
+      log.print("Steps until the value of every property was known:\n")
+      for (k <- properties.indices if properties(k).count > 0)
+        log.print(s"  ${labels.get(k)} : ${summary(properties(k))}\n")
+    }
+    if (strataLengths != null) {
+      val worst = strataLengths.indices.filter(strataLengths(_).count > 0).sortBy(h => -strataLengths(h).quantile(0.99)).take(WorstStrata)
+      log.print("Strata with the longest paths:\n")
+      for (h <- worst)
+        log.print(s"  stratum $h : ${summary(strataLengths(h))} (${strataLengths(h).count} paths)\n")
+    }
+    if (all.count >= 10 * MinTailSamples) {
+      val (q90, q99, q999) = (all.quantile(0.9), all.quantile(0.99), all.quantile(0.999))
+      if (q999 - q99 > HeavyTail * Math.max(1L, q99 - q90))
+        log.print(s"Path lengths have a heavy tail: the spread between the 99th and 99.9th percentile is " +
+                  s"${PrismUtils.formatDouble(2, (q999 - q99).toDouble / Math.max(1L, q99 - q90))} times the spread between the 90th and 99th\n")
+    }
+  }
+
+  /** Quantiles of all paths, of the properties and of the strata (if sampling is stratified), as the fields of a JSON object. */
+  def toJson: String =
+    s""""quantiles": ${json(all)}, "properties": [${properties.map(json).mkString(", ")}]""" +
+    (if (strataLengths == null) "" else s""", "strata": [${strataLengths.map(json).mkString(", ")}]""")
+
+}
+
+object PathLengths {
+
+  /** Quantiles that are reported (and published by [[SamplingMonitor]]). */
+  val Quantiles: Array[Double] = Array(0.5, 0.9, 0.99, 0.999)
+
+  /** Minimum number of paths before the tail is extrapolated (see [[PathLengths.tailProbability]]). */
+  final val MinTailSamples = 1000L
+
+  /** Ratio of the spreads of the tail (see [[PathLengths.report]]) above which it is reported as heavy. */
+  final val HeavyTail = 2.0
+
+  /** Number of strata with the longest paths that are reported. */
+  final val WorstStrata = 3
+
+  // Probability `p` of being longer than `q`, extended to `limit` if every further `spread` makes paths ten times rarer
+  private def extrapolate(p: Double, q: Long, spread: Long, limit: Long): Double =
+    if (limit <= q) p
+    else if (spread <= 0) 0.0
+    else p * Math.pow(10, -(limit - q).toDouble / spread)
+
+  private def summary(h: LengthHistogram): String =
+    s"p50 ${h.quantile(0.5)}, p90 ${h.quantile(0.9)}, p99 ${h.quantile(0.99)}, p99.9 ${h.quantile(0.999)}, max ${h.max}"
+
+  private def json(h: LengthHistogram): String =
+    if (h.count == 0) "null"
+    else s"""{"count": ${h.count}, "p50": ${h.quantile(0.5)}, "p90": ${h.quantile(0.9)}, "p99": ${h.quantile(0.99)}, "p999": ${h.quantile(0.999)}, """ +
+         s""""max": ${h.max}}"""
+
+}
@@ -0,0 +1,123 @@
+/*+++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+ + STMC - Statistical Model Checker                                                               +
+ +                                                                                                +
+ + Copyright (C) 2019                                                                             +
+ + Authors:                                                                                       +
+ +   Nima Roohi <nroohi@ucsd.edu> (University of California San Diego)                            +
+ +                                                                                                +
+ + This program is free software: you can redistribute it and/or modify it under the terms        +
+ + of the GNU General Public License as published by the Free Software Foundation, either         +
+ + version 3 of the License, or (at your option) any later version.                               +
+ +                                                                                                +
+ + This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;      +
+ + without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.      +
+ + See the GNU General Public License for more details.                                           +
+ +                                                                                                +
+ + You should have received a copy of the GNU General Public License along with this program.     +
+ + If not, see <https://www.gnu.org/licenses/>.                                                   +
+ +++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++*/
+
+package edu.stmc
+
+import prism.{PrismLog, PrismUtils}
+
+/** Counters and timers of the phases of sampling (see [[STMCConfig.profile]]).
+  *
+  * Every call of a phase is counted, but only one in every `period` calls is timed (so most calls do not pay for `System.nanoTime`). The time of a phase
+  * is estimated from its timed calls, after subtracting the cost of reading the clock. Phases must not be nested.
+  *
+  * Engines keep a `null` timer when profiling is disabled, so the only cost left in the hot loops is a `null` check.
+  *
+  * @param period Number of calls of a phase per timed call (a power of two). */
+final class PhaseTimer(period: Int) {
+  require(period > 0 && Integer.bitCount(period) == 1, s"period ($period) must be a power of two")
+
+  private[this] val mask = period - 1
+  private[this] val counts = Array.ofDim[Long](PhaseTimer.names.length)
+  private[this] val timed = Array.ofDim[Long](PhaseTimer.names.length)
+  private[this] val nanos = Array.ofDim[Long](PhaseTimer.names.length)
+
+  // Average cost of a call to `System.nanoTime` (which is included in every timed call)
+  private[this] val overhead: Double = {
+    val n = 1000
+    var sum = 0L
+    // the first rounds warm up the clock (only the last one is used)
+    for (_ <- 1 to 3) {
+      sum = 0L
+      for (_ <- 1 to n) {
+        val t0 = System.nanoTime()
+        sum += System.nanoTime() - t0
+      }
+    }
+    sum.toDouble / n
+  }
+
+  /** Start a call of `phase`.
+    *
+    * @return Time to be passed to [[stop]], or `0` if the call is not timed. */
+  def start(phase: Int): Long = {
+    counts(phase) += 1
+    if ((counts(phase) & mask) == 0) System.nanoTime() else 0L
+  }
+
+  /** Finish a call of `phase` that was started at `start` (as returned by [[start]]). */
+  def stop(phase: Int, start: Long): Unit =
+    if (start != 0L) {
+      nanos(phase) += System.nanoTime() - start
+      timed(phase) += 1
+    }
+
+  /** Number of calls of `phase`. */
+  def calls(phase: Int): Long = counts(phase)
+
+  /** Estimated time of a single call of `phase` (in nanoseconds), or `NaN` if no call is timed. */
+  def nanosPerCall(phase: Int): Double =
+    if (timed(phase) == 0) Double.NaN else Math.max(0.0, nanos(phase).toDouble / timed(phase) - overhead)
+
+  /** Estimated total time of `phase` (in seconds). */
+  def seconds(phase: Int): Double = if (timed(phase) == 0) 0.0 else calls(phase) * nanosPerCall(phase) / 1e9
+
+  /** Print a table of the phases, with their calls and times per iteration, and their shares of `totalSeconds` (the time of sampling). */
+  def report(log: PrismLog, iterations: Long, totalSeconds: Double): Unit = {
+    log.print(s"Phase profile (one in $period calls timed, ${PrismUtils.formatDouble(2, overhead)} ns of clock overhead subtracted per call):\n")
+    log.print(f"  ${"phase"}%-12s ${"calls/iter"}%14s ${"ns/call"}%10s ${"ms/iter"}%10s ${"share"}%7s\n")
+    var measured = 0.0
+    for (phase <- PhaseTimer.names.indices if calls(phase) > 0) {
+      val s = seconds(phase)
+      measured += s
+      log.print(f"  ${PhaseTimer.names(phase)}%-12s ${calls(phase).toDouble / iterations}%14.2f ${nanosPerCall(phase)}%10.1f " +
+                f"${1e3 * s / iterations}%10.4f ${100 * s / totalSeconds}%6.1f%%\n")
+    }
+    val other = Math.max(0.0, totalSeconds - measured)
+    log.print(f"  ${"other"}%-12s ${""}%14s ${""}%10s ${1e3 * other / iterations}%10.4f ${100 * other / totalSeconds}%6.1f%%\n")
+  }
+
+}
+
+object PhaseTimer {
+
+  /** Shuffling strata of paths (stratified sampling only). */
+  final val SHUFFLE = 0
+  /** Random numbers used to pick transitions. */
+  final val RNG = 1
+  /** Computing transitions of states (`Updater.calculateTransitions`). */
+  final val TRANSITIONS = 2
+  /** Taking a step: computing the next state and its rewards, and extending the path (`computeTarget` and `addStep`). */
+  final val STEP = 3
+  /** Updating samplers of properties with a new step (`Sampler.update`). */
+  final val SAMPLERS = 4
+  /** Starting new paths (excluding their samplers). */
+  final val INIT = 5
+  /** Updating tests with finished paths and checking whether they are decided. */
+  final val TESTS = 6
+
+  /** Names of the phases (indexed by the constants above). */
+  val names: Array[String] = Array("shuffle", "rng", "transitions", "step", "samplers", "init", "tests")
+
+  /** Number of calls of a phase per timed call. */
+  final val Period = 16
+
+  /** Timer of a new sampling campaign, or `null` if profiling is disabled. */
+  def create(): PhaseTimer = if (STMCConfig.profile) new PhaseTimer(Period) else null
+
+}
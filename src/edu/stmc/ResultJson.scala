@@ -0,0 +1,201 @@
+/*+++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+ + STMC - Statistical Model Checker                                                               +
+ +                                                                                                +
+ + Copyright (C) 2019                                                                             +
+ + Authors:                                                                                       +
+ +   Nima Roohi <nroohi@ucsd.edu> (University of California San Diego)                            +
+ +                                                                                                +
+ + This program is free software: you can redistribute it and/or modify it under the terms        +
+ + of the GNU General Public License as published by the Free Software Foundation, either         +
+ + version 3 of the License, or (at your option) any later version.                               +
+ +                                                                                                +
+ + This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;      +
+ + without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.      +
+ + See the GNU General Public License for more details.                                           +
+ +                                                                                                +
+ + You should have received a copy of the GNU General Public License along with this program.     +
+ + If not, see <https://www.gnu.org/licenses/>.                                                   +
+ +++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++*/
+
+package edu.stmc
+
+import java.io.{File, IOException}
+import java.lang.management.ManagementFactory
+import java.nio.charset.StandardCharsets
+import java.nio.file.Files
+
+import prism.PrismException
+import simulator.method.SimulationMethod
+import simulator.sampler.Sampler
+
+import scala.collection.JavaConverters
+import scala.collection.mutable
+
+/** Machine readable record of the statistical runs of this process (see [[STMCConfig.resultJson]]).
+  *
+  * Engines report every sampling campaign with [[campaign]], and the simulator records the results of its properties with [[record]]. The file is
+  * rewritten at the end of every repeat (see [[finishRepeat]]). [[Main]] adds the command line and the summary of all repeats with [[finish]]. The file
+  * is a single JSON object:
+  * {{{
+  * {"arguments": [...],
+  *  "repeats": [[run, ...], ...],
+  *  "summary": {"campaigns": ..., "time": {"average": ..., "standardError": ...}, "samples": {...}}}
+  * }}}
+  * in which every run is a model checking call of a repeat (its campaign and the parameters, verdict, estimate and final statistic of every property),
+  * written on a line of its own. Numbers that are not finite are written as `null`. */
+object ResultJson {
+
+  // Command line of the process (null if unknown)
+  private[this] var arguments: Array[String] = _
+  // Runs of every repeat (by repeat number)
+  private[this] val repeats = mutable.SortedMap[Int, mutable.ArrayBuffer[String]]()
+  private[this] var repeat = 0
+  // Last campaign that is not recorded yet (null if there is none)
+  private[this] var last: String = _
+
+  /** CPU time of this process (all of its threads) in seconds, or `NaN` if the JVM does not report it. */
+  def cpuSeconds(): Double = ManagementFactory.getOperatingSystemMXBean match {
+    case os: com.sun.management.OperatingSystemMXBean if os.getProcessCpuTime >= 0 => os.getProcessCpuTime / 1e9
+    case _ => Double.NaN
+  }
+
+  /** Set the command line of this process (by [[Main]]). */
+  def setArguments(args: Array[String]): Unit = synchronized { arguments = args.clone() }
+
+  /** Start repeat number `index` of this process (runs recorded from now on belong to it, and runs recorded for it before are dropped). */
+  def startRepeat(index: Int): Unit = synchronized {
+    repeat = index
+    repeats -= index
+    last = null
+  }
+
+  /** Report a sampling campaign of `engine` that took `iterations` iterations (and `samples` samples), `wallSeconds` seconds and `cpuSeconds` seconds of
+    * CPU time. The quantiles of its path lengths are included if `lengths` is not `null`. It is added to the next run that is recorded. Nothing is
+    * reported unless [[STMCConfig.resultJson]] is set. */
+  def campaign(engine: AnyRef, iterations: Long, samples: Long, wallSeconds: Double, cpuSeconds: Double,
+               avgPathLength: Double, minPathLength: Long, maxPathLength: Long, lengths: PathLengths): Unit =
+    if (STMCConfig.resultJson != null) synchronized {
+      last = s""""engine": ${str(engine.getClass.getSimpleName)}, "iterations": $iterations, "samples": $samples, "wallSeconds": ${num(wallSeconds)}, """ +
+             s""""cpuSeconds": ${num(cpuSeconds)}, "pathLength": {"average": ${num(avgPathLength)}, "min": $minPathLength, "max": $maxPathLength""" +
+             (if (lengths == null) "}" else s", ${lengths.toJson}}")
+    }
+
+  /** Record a run whose properties are labeled by `labels` (eg. the property or the values of the constants of an experiment). Nothing is recorded unless
+    * [[STMCConfig.resultJson]] is set. The file is written at the end of the repeat (see [[finishRepeat]]).
+    *
+    * @param samplers Sampler of every property (`null` if it was not simulated).
+    * @param methods  Simulation method that decided every property (`null` if it was not simulated).
+    * @param results  Result of every property (its answer, its [[HypTest.Interim]] answer if it is not decided, or the exception that prevented it). */
+  def record(labels: Array[String], samplers: Array[Sampler], methods: Array[SimulationMethod], results: Array[AnyRef]): Unit =
+    if (STMCConfig.resultJson != null) {
+      val props = labels.indices.map(i => property(labels(i), samplers(i), methods(i), results(i)))
+      synchronized {
+        val campaign = if (last == null) """"engine": null""" else last
+        last = null
+        repeats.getOrElseUpdate(repeat, mutable.ArrayBuffer()) += s"""{$campaign, "parameters": $parameters, "properties": [${props.mkString(", ")}]}"""
+      }
+    }
+
+  /** Write the file of [[STMCConfig.resultJson]] (if it is set) with all the runs so far. Called at the end of every repeat (by [[prism.PrismCL]]).
+    *
+    * @throws PrismException if the file cannot be written. */
+  @throws[PrismException]
+  def finishRepeat(): Unit =
+    if (STMCConfig.resultJson != null)
+      write(STMCConfig.resultJson, null)
+
+  /** Add the runs of repeat number `index`, which were written to `file` by another process (the file is deleted afterwards). Every run is on a line of
+    * its own, so runs are read back without parsing JSON. */
+  def addRepeat(index: Int, file: File): Unit = {
+    val runs =
+      try JavaConverters.asScalaBuffer(Files.readAllLines(file.toPath, StandardCharsets.UTF_8)).map(_.trim.stripSuffix(","))
+                        .filter(_.startsWith("{\"engine\": "))
+      catch {
+        case _: IOException => Seq() // the process failed before recording a run
+      }
+    synchronized { repeats.getOrElseUpdate(index, mutable.ArrayBuffer()) ++= runs }
+    if (!file.delete())
+      file.deleteOnExit()
+  }
+
+  /** Write `file` with all the runs so far, followed by the average and standard error of the time and the number of samples of the campaigns of all
+    * repeats (see [[Main.updateTotal]]). The runs are dropped afterwards. */
+  @throws[PrismException]
+  def finish(file: String, campaigns: Int, timeAvg: Double, timeSe: Double, samplesAvg: Double, samplesSe: Double): Unit =
+    try write(file, s"""{"campaigns": $campaigns, "time": {"average": ${num(timeAvg)}, "standardError": ${num(timeSe)}}, """ +
+                    s""""samples": {"average": ${num(samplesAvg)}, "standardError": ${num(samplesSe)}}}""")
+    finally synchronized {
+      repeats.clear()
+      last = null
+    }
+
+  @throws[PrismException]
+  private[this] def write(file: String, summary: String): Unit = {
+    val text = synchronized {
+      val args = if (arguments == null) "null" else arguments.map(str).mkString("[", ", ", "]")
+      val runs = (0 to (if (repeats.isEmpty) -1 else repeats.lastKey)).map(r => repeats.get(r) match {
+        case Some(rs) if rs.nonEmpty => rs.mkString("[\n    ", ",\n    ", "\n  ]")
+        case _ => "[]"
+      })
+      s"""{"arguments": $args,\n "repeats": [\n  ${runs.mkString(",\n  ")}\n ],\n "summary": ${if (summary == null) "null" else summary}}\n"""
+    }
+    try Files.write(new File(file).toPath, text.getBytes(StandardCharsets.UTF_8))
+    catch {
+      case e: IOException => throw new PrismException(s"Could not write results to $file (${e.getMessage})")
+    }
+  }
+
+  // Parameters of the tests (see STMCConfig)
+  private[this] def parameters: String = {
+    def box(v: AnyRef): String = v match {
+      case null => "null"
+      case d: java.lang.Double => num(d)
+      case n: Number => n.toString
+      case a: Array[Int] => a.mkString("[", ", ", "]")
+      case o => str(o.toString)
+    }
+    s"""{"hypTestMethod": ${box(STMCConfig.hypTestMethod)}, "samplingMethod": ${box(STMCConfig.samplingMethod)}, "alpha": ${box(STMCConfig.alpha)}, """ +
+    s""""beta": ${box(STMCConfig.beta)}, "gamma": ${box(STMCConfig.gamma)}, "delta": ${box(STMCConfig.delta)}, "minIters": ${box(STMCConfig.minIters)}, """ +
+    s""""strataSizes": ${box(STMCConfig.strataSizes)}, "threads": ${STMCConfig.threads}, "timeBudget": ${box(STMCConfig.timeBudget)}, """ +
+    s""""sampleBudget": ${box(STMCConfig.sampleBudget)}}"""
+  }
+
+  private[this] def property(label: String, sampler: Sampler, method: SimulationMethod, result: AnyRef): String = {
+    val fields = mutable.ArrayBuffer(s""""property": ${str(label)}""")
+    result match {
+      case e: Exception => fields += s""""error": ${str(e.getMessage)}"""
+      case HypTest.Interim(answer, _, _, _, _, _) => fields += s""""verdict": ${value(answer)}"""
+      case answer => fields += s""""verdict": ${value(answer)}"""
+    }
+    if (method != null) {
+      fields += s""""method": ${str(method.getName)}, "parameters": ${str(method.getParametersString)}"""
+      method match {
+        case test: HypTest =>
+          val interim = test.interim
+          fields += s""""decided": ${test.completed}, "samples": ${interim.samples}, "estimate": ${num(interim.estimate)}, """ +
+                    s""""interval": [${num(interim.low)}, ${num(interim.high)}], "statistic": ${str(interim.details)}"""
+        case _ =>
+          fields += s""""estimate": ${num(sampler.getMeanValue)}"""
+      }
+      fields += s""""explanation": ${str(try method.getResultExplanation(sampler) catch { case e: PrismException => e.getMessage })}"""
+    }
+    fields.mkString("{", ", ", "}")
+  }
+
+  private[this] def value(v: AnyRef): String = v match {
+    case null => "null"
+    case b: java.lang.Boolean => b.toString
+    case d: java.lang.Double => num(d)
+    case n: Number => n.toString
+    case o => str(o.toString)
+  }
+
+  /** JSON string of `s` (`null` if it is null). */
+  private[stmc] def str(s: String): String =
+    if (s == null) "null"
+    else "\"" + s.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n").replace("\r", "\\r").replace("\t", "\\t") + "\""
+
+  /** JSON number of `d` (`null` if it is not finite). */
+  private[stmc] def num(d: Double): String = if (java.lang.Double.isFinite(d)) d.toString else "null"
+
+}
@@ -29,10 +29,60 @@ public class STMCConfig {
   public static Double gamma = null;
   public static Double delta = null;
 
+  public static double priorA = 1;
+  public static double priorB = 1;
+
   public static Integer minIters    = null;
   public static int[]   strataSizes = null;
   public static int     strataTotalSize = 0;
+  public static int     adaptiveFactor  = 4;
+  public static boolean sweep           = false;
+  public static int     threads         = 1;
+  // Constants of the variants that are compared to the model using common random numbers (eg. "MAX=20"). Empty means no comparison.
+  public static java.util.List<String> crnConstants = new java.util.ArrayList<>();
+  // Constants of the variants whose probabilities are estimated by reweighting paths of the model (eg. "pL=0.01:0.01:0.05"). Empty means no reweighting.
+  public static java.util.List<String> reweightConstants = new java.util.ArrayList<>();
+  // Sampling stops (and undecided tests give their partial answers) after this many seconds or samples. Null means no limit.
+  public static Double timeBudget   = null;
+  public static Long   sampleBudget = null;
+  // Number of samples of a pilot run, after which sampling stops and the predicted cost of every property is printed. Null means no pilot.
+  public static Long   dryRun       = null;
+  // Count and time the phases of the sampling loop (shuffling, random numbers, transitions, samplers, tests, ...), and report them after sampling.
+  public static boolean profile = false;
+  // Publish the status of sampling as an MXBean (edu.stmc:type=SamplingMonitor), and as JSON on http://localhost:<monitorPort>/ unless it is null.
+  public static boolean monitor     = false;
+  public static Integer monitorPort = null;
+  // Write parameters, verdicts, samples, times and final statistics of every run as JSON to this file. Null means no file.
+  public static String resultJson = null;
 
   public static NameSmplMethod samplingMethod = null;
   public static NameHypTest    hypTestMethod  = null;
+
+  /** Restore the default value of every option (so that another command line can be parsed in the same JVM). */
+  public static void reset() {
+    enabled = false;
+    alpha = null;
+    beta = null;
+    gamma = null;
+    delta = null;
+    priorA = 1;
+    priorB = 1;
+    minIters = null;
+    strataSizes = null;
+    strataTotalSize = 0;
+    adaptiveFactor = 4;
+    sweep = false;
+    threads = 1;
+    crnConstants = new java.util.ArrayList<>();
+    reweightConstants = new java.util.ArrayList<>();
+    timeBudget = null;
+    sampleBudget = null;
+    dryRun = null;
+    profile = false;
+    monitor = false;
+    monitorPort = null;
+    resultJson = null;
+    samplingMethod = null;
+    hypTestMethod = null;
+  }
 }
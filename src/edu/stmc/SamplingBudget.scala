@@ -0,0 +1,99 @@
+/*+++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+ + STMC - Statistical Model Checker                                                               +
+ +                                                                                                +
+ + Copyright (C) 2019                                                                             +
+ + Authors:                                                                                       +
+ +   Nima Roohi <nroohi@ucsd.edu> (University of California San Diego)                            +
+ +                                                                                                +
+ + This program is free software: you can redistribute it and/or modify it under the terms        +
+ + of the GNU General Public License as published by the Free Software Foundation, either         +
+ + version 3 of the License, or (at your option) any later version.                               +
+ +                                                                                                +
+ + This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;      +
+ + without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.      +
+ + See the GNU General Public License for more details.                                           +
+ +                                                                                                +
+ + You should have received a copy of the GNU General Public License along with this program.     +
+ + If not, see <https://www.gnu.org/licenses/>.                                                   +
+ +++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++*/
+
+package edu.stmc
+
+import prism.{PrismLog, PrismUtils}
+import simulator.sampler.Sampler
+
+/** Budget of one sampling campaign (see [[STMCConfig.timeBudget]], [[STMCConfig.sampleBudget]] and [[STMCConfig.dryRun]]).
+  *
+  * Engines check it between samples. Once it is exhausted (or [[stop]] is called), they stop sampling cleanly, and every test that is not decided yet
+  * reports its [[HypTest.interim]] answer instead of its result.
+  *
+  * @param seconds Wall-clock budget in seconds (`null` means no limit).
+  * @param samples Maximum number of samples (`null` means no limit). Engines that generate several paths per iteration count all of them.
+  * @constructor Start the clock of a new budget. */
+final class SamplingBudget(seconds: java.lang.Double, samples: java.lang.Long) {
+
+  /** Budget of the current configuration (a dry run is a sample budget, see [[STMCConfig.dryRun]]). */
+  def this() = this(STMCConfig.timeBudget,
+                    if (STMCConfig.dryRun == null) STMCConfig.sampleBudget
+                    else if (STMCConfig.sampleBudget == null) STMCConfig.dryRun
+                    else Long.box(Math.min(STMCConfig.sampleBudget, STMCConfig.dryRun)))
+
+  private[this] val timed = seconds != null
+  private[this] val deadline = if (timed) System.nanoTime() + (seconds * 1e9).toLong else 0L
+  private[this] val maxSamples = if (samples == null) Long.MaxValue else samples.longValue
+
+  @volatile private[this] var stopped = false
+  private[this] var reason: String = _
+
+  /** Ask the engine to stop (eg. by [[simulator.SimulatorEngine.stopSampling]], possibly from another thread). */
+  def stop(): Unit = stopped = true
+
+  /** Whether or not sampling should stop after `samples` samples. Once this returns `true`, it keeps returning `true`. */
+  def exhausted(samples: Long): Boolean = {
+    if (reason == null) {
+      if (stopped) reason = "stopped on request"
+      else if (samples >= maxSamples) reason = s"sample budget of $maxSamples exhausted"
+      else if (timed && System.nanoTime() - deadline >= 0) reason = s"time budget of $seconds seconds exhausted"
+    }
+    reason != null
+  }
+
+  /** Warning to print when sampling is stopped before all the tests are decided (`null` if the budget is not exhausted). */
+  def warning: String =
+    if (reason == null) null
+    else s"Sampling stopped before all the tests were decided ($reason). Undecided tests report the answer they currently lean towards."
+
+}
+
+object SamplingBudget {
+
+  /** Print the predicted cost of every property (see [[HypTest.expectedSamplesRemaining]]), after a pilot of `iterations` iterations (and `samples` samples)
+    * that took `seconds` seconds. Predictions of tests that use batch means are converted to samples and seconds using the number of samples per iteration
+    * and the time per iteration of the pilot. */
+  def predict(log: PrismLog, properties: java.util.List[_], samplers: Seq[Sampler], iterations: Long, samples: Long, seconds: Double): Unit = {
+    log.print(s"\nPredicted cost (from a pilot of $samples samples in $seconds seconds):\n")
+    for ((sampler, i) <- samplers.zipWithIndex) {
+      log.print(s"${properties.get(i)} : ")
+      sampler.getSimulationMethod match {
+      case test: HypTest if test.completed =>
+        log.print(s"${test.getName} is already decided\n")
+      case test: HypTest =>
+        val remaining = test.expectedSamplesRemaining
+        // remaining iterations of the engine
+        val steps = if (test.usesBatchMeans) remaining else remaining * iterations / samples
+        if (remaining.isNaN)
+          log.print(s"${test.getName} gives no prediction yet (consider a longer pilot)\n")
+        else if (remaining.isInfinite)
+          log.print(s"${test.getName} is not expected to stop (the probability seems to be too close to the threshold)\n")
+        else {
+          val more = Math.ceil(steps * samples / iterations).toLong
+          log.print(s"${test.getName} needs about $more more samples (${more + samples} in total) " +
+                    s"and ${PrismUtils.formatDouble(3, steps * seconds / iterations)} more seconds\n")
+        }
+      case method =>
+        log.print(s"${method.getName} gives no prediction\n")
+      }
+    }
+  }
+
+}
@@ -0,0 +1,134 @@
+/*+++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+ + STMC - Statistical Model Checker                                                               +
+ +                                                                                                +
+ + Copyright (C) 2019                                                                             +
+ + Authors:                                                                                       +
+ +   Nima Roohi <nroohi@ucsd.edu> (University of California San Diego)                            +
+ +                                                                                                +
+ + This program is free software: you can redistribute it and/or modify it under the terms        +
+ + of the GNU General Public License as published by the Free Software Foundation, either         +
+ + version 3 of the License, or (at your option) any later version.                               +
+ +                                                                                                +
+ + This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;      +
+ + without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.      +
+ + See the GNU General Public License for more details.                                           +
+ +                                                                                                +
+ + You should have received a copy of the GNU General Public License along with this program.     +
+ + If not, see <https://www.gnu.org/licenses/>.                                                   +
+ +++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++*/
+package edu.stmc
+
+import prism.{PrismException, PrismLog, PrismUtils}
+import simulator.sampler.Sampler
+
+/** Bookkeeping of one sampling campaign, which is the same in every engine: its budget, phase timer, monitor, path lengths and event, the statistics of
+  * path lengths, the progress bar, and what is recorded and printed when sampling stops.
+  *
+  * Engines create it when they start sampling (which starts the clock and the progress bar) and assign its [[budget]], [[timer]] and [[monitor]] to their
+  * own fields (which are cleared by `finishSampling`). Then they call [[path]] after every iteration, [[progress]] whenever they know the progress of their
+  * slowest property, and [[finish]] once they stop.
+  *
+  * @param engine            Engine that samples (named in the event, the monitor and the result file).
+  * @param log               Log of the engine.
+  * @param properties        Properties being sampled.
+  * @param samplers          Samplers of the properties.
+  * @param strata            Number of strata (`1` unless sampling is stratified).
+  * @param pathsPerIteration Number of samples of every iteration (paths in the input model).
+  * @param threads           Number of threads that generate paths (samples generated by other threads are counted by them, see
+  *                          [[SamplingMonitor.generated]]).
+  * @param maxPathLength     Maximum path length of sampling.
+  * @constructor Start a campaign. The transition counters of the engine must be reset before. */
+final class SamplingCampaign(engine: AnyRef, log: PrismLog, properties: java.util.List[_], samplers: Seq[Sampler], strata: Int, pathsPerIteration: Int,
+                             threads: Int, maxPathLength: Long) {
+
+  /** Budget of the campaign. */
+  val budget = new SamplingBudget()
+  /** Phase timer of the campaign (`null` unless profiling is enabled). */
+  val timer: PhaseTimer = PhaseTimer.create()
+  private[this] val event = SamplingEvents.begin(engine)
+  /** Status of the campaign (`null` unless monitoring is enabled). */
+  val monitor: SamplingMonitor = SamplingMonitor.create(engine, properties, samplers, threads)
+  /** Lengths of the paths, which are recorded by the engine. */
+  val lengths = new PathLengths(samplers, strata)
+  if (monitor != null)
+    monitor.track(lengths)
+
+  private[this] var avgPathLength = 0.0
+  private[this] var minPathFound = 0L
+  private[this] var maxPathFound = 0L
+  private[this] var lastPercentageDone = 0
+
+  log.print("\nSampling progress: [")
+  log.flush()
+  private[this] val start = System.currentTimeMillis()
+  private[this] val cpu = ResultJson.cpuSeconds()
+
+  /** Update the statistics of path lengths (and the monitor) with iteration number `iteration` (starting from `1`), whose paths took `length` steps. Its
+    * paths must be recorded in [[lengths]] already. */
+  def path(iteration: Long, length: Long): Unit = {
+    if (iteration > 1 && length > maxPathFound)
+      SamplingEvents.longPath(iteration, length, maxPathFound, avgPathLength)
+    avgPathLength = (avgPathLength * (iteration - 1) + length) / iteration
+    minPathFound = if (iteration == 1) length else Math.min(minPathFound, length)
+    maxPathFound = if (iteration == 1) length else Math.max(maxPathFound, length)
+    val tail = lengths.check(iteration * pathsPerIteration, maxPathLength)
+    if (tail != null)
+      log.printWarning(tail)
+    if (monitor != null) {
+      if (threads == 1)
+        monitor.generated(0, pathsPerIteration)
+      monitor.update(iteration, iteration * pathsPerIteration, avgPathLength, minPathFound, maxPathFound)
+    }
+  }
+
+  /** Show the progress of sampling (of the slowest property, in percent) if it increased. */
+  def progress(percentageDone: Int): Unit =
+    if (percentageDone > lastPercentageDone) {
+      lastPercentageDone = percentageDone
+      log.print(" " + lastPercentageDone + "%")
+      log.flush()
+    }
+
+  /** Finish the campaign after `iterations` iterations: record it (see [[Main.updateTotal]], [[SamplingEvents.end]] and [[ResultJson.campaign]]) and print
+    * its summary.
+    *
+    * @param stoppedEarly     Whether or not sampling stopped because the value of some property was not known at the end of a path.
+    * @param transitionHits   Transition lists of the engine that were found already computed.
+    * @param transitionMisses Transition lists of the engine that were computed.
+    * @param details          A line that is printed after the number of iterations (`null` if there is none).
+    * @throws PrismException if `stoppedEarly`. */
+  @throws[PrismException]
+  def finish(iterations: Long, stoppedEarly: Boolean, transitionHits: Long, transitionMisses: Long, details: String): Unit = {
+    val samples = iterations * pathsPerIteration
+    val stop = System.currentTimeMillis()
+    val time_taken = (stop - start) / 1000.0
+    Main.updateTotal(time_taken, samples)
+    SamplingEvents.end(event, iterations, samples, transitionHits, transitionMisses)
+    ResultJson.campaign(engine, iterations, samples, time_taken, ResultJson.cpuSeconds() - cpu, avgPathLength, minPathFound, maxPathFound, lengths)
+
+    val count = if (pathsPerIteration == 1) s"$iterations iterations" else s"$iterations iterations ($samples samples)"
+    if (stoppedEarly) {
+      log.print(s" ...\n\nSampling terminated early after $count.\n")
+      lengths.report(log, properties)
+      throw new PrismException("One or more of the properties being sampled could not be checked on a sample. Consider increasing the maximum path length")
+    }
+    val warning = budget.warning
+    if (warning == null)
+      log.print(" 100% ]")
+    log.println()
+    log.print("\nSampling complete: ")
+    log.print(s"$count in $time_taken seconds (average ${PrismUtils.formatDouble(2, time_taken / samples)}" +
+              (if (threads > 1) s", $threads threads)\n" else ")\n"))
+    if (details != null)
+      log.print(details + "\n")
+    log.print(s"Path length statistics: average ${PrismUtils.formatDouble(2, avgPathLength)}, min $minPathFound, max $maxPathFound\n")
+    lengths.report(log, properties)
+    if (timer != null)
+      timer.report(log, iterations, time_taken)
+    if (STMCConfig.dryRun != null)
+      SamplingBudget.predict(log, properties, samplers, iterations, samples, time_taken)
+    if (warning != null)
+      log.printWarning(warning)
+  }
+
+}
@@ -0,0 +1,143 @@
+/*+++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+ + STMC - Statistical Model Checker                                                               +
+ +                                                                                                +
+ + Copyright (C) 2019                                                                             +
+ + Authors:                                                                                       +
+ +   Nima Roohi <nroohi@ucsd.edu> (University of California San Diego)                            +
+ +                                                                                                +
+ + This program is free software: you can redistribute it and/or modify it under the terms        +
+ + of the GNU General Public License as published by the Free Software Foundation, either         +
+ + version 3 of the License, or (at your option) any later version.                               +
+ +                                                                                                +
+ + This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;      +
+ + without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.      +
+ + See the GNU General Public License for more details.                                           +
+ +                                                                                                +
+ + You should have received a copy of the GNU General Public License along with this program.     +
+ + If not, see <https://www.gnu.org/licenses/>.                                                   +
+ +++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++*/
+
+package edu.stmc
+
+import java.util.concurrent.atomic.AtomicReferenceArray
+import java.util.concurrent.locks.LockSupport
+
+import edu.stmc.SamplingCoordinator.{Consumer, Generator}
+
+/** Generates samples in multiple threads, and hands them to a single consumer (the decision thread) in an order that does not depend on how long each
+  * sample took to generate.
+  *
+  * Sample slots are assigned to workers round-robin: worker `w` generates slots `w+1`, `w+1+workers`, `w+1+2*workers`, ... in this order, and publishes
+  * them in its own [[OutcomeRing]]. The consumer takes slot `s` from the ring of worker `(s-1) % workers`, so it sees the samples strictly in slot order (the
+  * rings act as a reorder buffer). Rings are bounded, so a worker cannot run arbitrarily far ahead of the slowest one. Samples are records of `width` longs
+  * that are written and read in place, so there are no locks and no allocation per sample. Once the consumer is done, outstanding work is cancelled.
+  *
+  * @param workers  Number of worker threads.
+  * @param capacity Maximum number of samples each worker generates ahead of the consumer (a power of two).
+  * @param width    Number of longs in every sample.
+  * @note Consuming samples in the order they are completed is ''not'' safe for sequential tests: short paths tend to finish first, so the test would see a
+  *       biased sample whenever the outcome is correlated with the length of the path (which breaks the error guarantees of tests like SPRT). */
+final class SamplingCoordinator(workers: Int, capacity: Int, width: Int) {
+
+  require(workers > 0, s"Invalid number of workers $workers")
+
+  private[this] val rings = Array.fill(workers)(new OutcomeRing(capacity, width))
+  // Exception thrown by the generator of every worker (the worker does not publish anything after that)
+  private[this] val failures = new AtomicReferenceArray[Throwable](workers)
+
+  @volatile private[this] var stopped = false
+
+  /** Whether or not the consumer is done. Generators should check this to give up on a long sample as soon as possible. */
+  def cancelled: Boolean = stopped
+
+  /** Generate and consume samples until the consumer asks to stop.
+    *
+    * @param generators `generators(w)` generates the samples of worker `w`. It is only called in the thread of that worker.
+    * @param consumer   Called in the current thread for every slot (starting from `1`), in slot order. Returns `true` to stop.
+    * @return Number of consumed samples.
+    * @note
+    *   1. If a generator throws, the exception is rethrown here when the consumer reaches the slot of the failed sample (so all the samples before that
+    *      slot are consumed first, as if they were generated sequentially).
+    *   1. A coordinator can only be run once. */
+  def run(generators: Array[Generator], consumer: Consumer): Long = {
+    require(generators.length == workers, s"Expected $workers generators but received ${generators.length}")
+    val threads = Array.tabulate(workers) { w =>
+      val thread = new Thread(() => produce(w, generators(w)), s"stmc-sampler-$w")
+      thread.setDaemon(true)
+      thread
+    }
+    threads.foreach(_.start())
+
+    var slot = 0L
+    try {
+      var done = false
+      while (!done) {
+        slot += 1
+        val w = ((slot - 1) % workers).toInt
+        val ring = rings(w)
+        var offset = ring.peek()
+        var spins = 0
+        while (offset < 0) {
+          val failure = failures.get(w)
+          // the failure is set after the last record is published, so look at the ring once more
+          if (failure != null && ring.peek() < 0)
+            throw failure
+          idle(spins)
+          spins += 1
+          offset = ring.peek()
+        }
+        done = consumer.consume(slot, ring.data, offset)
+        ring.release()
+      }
+      slot
+    } finally {
+      stopped = true
+      threads.foreach(_.join())
+    }
+  }
+
+  private[this] def produce(w: Int, generator: Generator): Unit = {
+    val ring = rings(w)
+    try {
+      while (!stopped) {
+        var offset = ring.claim()
+        var spins = 0
+        while (offset < 0 && !stopped) {
+          idle(spins)
+          spins += 1
+          offset = ring.claim()
+        }
+        if (!stopped) {
+          generator.generate(ring.data, offset)
+          ring.publish()
+        }
+      }
+    } catch {
+      case e: Throwable => failures.set(w, e)
+    }
+  }
+
+  /** Busy-wait for a short while, then yield, and then sleep for a few microseconds at a time (so a stop signal is still noticed quickly). */
+  private[this] def idle(spins: Int): Unit =
+    if (spins < 64) Thread.onSpinWait()
+    else if (spins < 128) Thread.`yield`()
+    else LockSupport.parkNanos(10000)
+
+}
+
+object SamplingCoordinator {
+
+  /** Generates the samples of one worker. */
+  trait Generator {
+    /** Write the next sample into `out(offset)`, ..., `out(offset + width - 1)`. */
+    def generate(out: Array[Long], offset: Int): Unit
+  }
+
+  /** Consumes samples in slot order. */
+  trait Consumer {
+    /** Consume the sample of `slot` stored in `in(offset)`, ..., `in(offset + width - 1)`, and return `true` to stop. The sample must not be used after this
+      * method returns. */
+    def consume(slot: Long, in: Array[Long], offset: Int): Boolean
+  }
+
+}
@@ -0,0 +1,190 @@
+/*+++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+ + STMC - Statistical Model Checker                                                               +
+ +                                                                                                +
+ + Copyright (C) 2019                                                                             +
+ + Authors:                                                                                       +
+ +   Nima Roohi <nroohi@ucsd.edu> (University of California San Diego)                            +
+ +                                                                                                +
+ + This program is free software: you can redistribute it and/or modify it under the terms        +
+ + of the GNU General Public License as published by the Free Software Foundation, either         +
+ + version 3 of the License, or (at your option) any later version.                               +
+ +                                                                                                +
+ + This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;      +
+ + without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.      +
+ + See the GNU General Public License for more details.                                           +
+ +                                                                                                +
+ + You should have received a copy of the GNU General Public License along with this program.     +
+ + If not, see <https://www.gnu.org/licenses/>.                                                   +
+ +++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++*/
+package edu.stmc;
+
+import jdk.jfr.*;
+import prism.PrismException;
+import simulator.sampler.Sampler;
+
+/**
+ * Java Flight Recorder events of sampling campaigns, so that they can be correlated with GC and CPU events (eg. in JDK Mission Control).
+ * <p>
+ * Every event is created and checked with {@code isEnabled} before its fields are computed, so when nothing is being recorded an event only costs an
+ * allocation (which the JIT usually removes). Events are named {@code edu.stmc.*} and can be enabled one by one in a JFR settings file.
+ */
+public final class SamplingEvents {
+  private SamplingEvents() { }
+
+  @Name("edu.stmc.SamplingCampaign")
+  @Label("Sampling Campaign")
+  @Category({"STMC", "Sampling"})
+  @Description("A sampling campaign of a simulator engine (from the first to the last sample)")
+  @StackTrace(false)
+  public static final class Campaign extends Event {
+    @Label("Engine") public String engine;
+    @Label("Iterations") public long iterations;
+    @Label("Samples") public long samples;
+    @Label("Transition List Hits") @Description("Calls that found the transitions of the current state already computed")
+    public long transitionHits;
+    @Label("Transition List Misses") @Description("Calls that computed the transitions of the current state")
+    public long transitionMisses;
+  }
+
+  @Name("edu.stmc.StratifiedIteration")
+  @Label("Stratified Iteration")
+  @Category({"STMC", "Sampling"})
+  @Description("Outcome of one property in one iteration of stratified sampling")
+  @StackTrace(false)
+  public static final class Iteration extends Event {
+    @Label("Iteration") public long iteration;
+    @Label("Property") public int property;
+    @Label("Paths") public int paths;
+    @Label("Positives") public int positives;
+    @Label("Batch Mean") public double batchMean;
+    @Label("Variance") @Description("Sample variance of the batch means of the property recorded so far")
+    public double variance;
+  }
+
+  @Name("edu.stmc.SPRTStatistic")
+  @Label("SPRT Statistic")
+  @Category({"STMC", "Tests"})
+  @Description("Snapshot of the log-likelihood ratio of an SPRT and its bounds (taken whenever the number of samples reaches a power of two)")
+  @StackTrace(false)
+  public static final class Statistic extends Event {
+    @Label("Test") public String test;
+    @Label("Samples") @Description("Samples (or batch means, for tests that use them) taken so far")
+    public long samples;
+    @Label("Estimate") public double estimate;
+    @Label("logT") public double logT;
+    @Label("logL") public double logL;
+    @Label("logU") public double logU;
+  }
+
+  @Name("edu.stmc.Decision")
+  @Label("Decision")
+  @Category({"STMC", "Tests"})
+  @Description("A test is decided, so its property is retired from sampling")
+  @StackTrace(false)
+  public static final class Decision extends Event {
+    @Label("Property") public String property;
+    @Label("Test") public String test;
+    @Label("Samples") @Description("Samples (or iterations, for engines that generate several paths per iteration) taken so far")
+    public long samples;
+    @Label("Result") public String result;
+  }
+
+  @Name("edu.stmc.LongPath")
+  @Label("Long Path")
+  @Category({"STMC", "Sampling"})
+  @Description("A path (or iteration of stratified sampling) that is longer than every earlier one of its campaign")
+  @StackTrace(false)
+  public static final class LongPath extends Event {
+    @Label("Sample") public long sample;
+    @Label("Length") public long length;
+    @Label("Previous Maximum") public long previousMax;
+    @Label("Average") @Description("Average length of the earlier paths") public double average;
+  }
+
+  /** Start a campaign of {@code engine} (the returned event is given to {@link #end}). */
+  public static Campaign begin(Object engine) {
+    Campaign event = new Campaign();
+    if (event.isEnabled()) {
+      event.engine = engine.getClass().getSimpleName();
+      event.begin();
+    }
+    return event;
+  }
+
+  /** Finish a campaign that was started by {@link #begin}. */
+  public static void end(Campaign event, long iterations, long samples, long transitionHits, long transitionMisses) {
+    if (event.shouldCommit()) {
+      event.iterations = iterations;
+      event.samples = samples;
+      event.transitionHits = transitionHits;
+      event.transitionMisses = transitionMisses;
+      event.commit();
+    }
+  }
+
+  // type of Iteration events (whose settings tell whether or not they are recorded)
+  private static final EventType ITERATION = EventType.getEventType(Iteration.class);
+
+  /** Whether or not {@link Iteration} events are recorded, so that callers can skip computing fields that are only reported (eg. variances). */
+  public static boolean iterationEnabled() {
+    return ITERATION.isEnabled();
+  }
+
+  /** Record the outcome of {@code property} (its index) in iteration {@code iteration} of stratified sampling. */
+  public static void iteration(long iteration, int property, int paths, int positives, double batchMean, double variance) {
+    Iteration event = new Iteration();
+    if (event.isEnabled()) {
+      event.iteration = iteration;
+      event.property = property;
+      event.paths = paths;
+      event.positives = positives;
+      event.batchMean = batchMean;
+      event.variance = variance;
+      event.commit();
+    }
+  }
+
+  /** Record a snapshot of an SPRT, if the number of samples has just reached a power of two (ie. {@code samples - added < 2^k <= samples}). */
+  public static void statistic(HypTest test, long samples, long added, double estimate, double logT, double logL, double logU) {
+    if (Long.highestOneBit(samples) <= samples - added)
+      return;
+    Statistic event = new Statistic();
+    if (event.isEnabled()) {
+      event.test = test.getName();
+      event.samples = samples;
+      event.estimate = estimate;
+      event.logT = logT;
+      event.logL = logL;
+      event.logU = logU;
+      event.commit();
+    }
+  }
+
+  /** Record that {@code test} of {@code property} is decided after {@code samples} samples. */
+  public static void decision(Object property, HypTest test, Sampler sampler, long samples) {
+    Decision event = new Decision();
+    if (event.isEnabled()) {
+      event.property = String.valueOf(property);
+      event.test = test.getName();
+      event.samples = samples;
+      try {
+        event.result = String.valueOf(test.getResult(sampler));
+      } catch (PrismException e) {
+        event.result = e.getMessage();
+      }
+      event.commit();
+    }
+  }
+
+  /** Record that sample {@code sample} (counted from 1) is longer than the earlier ones, whose maximum and average lengths are given. */
+  public static void longPath(long sample, long length, long previousMax, double average) {
+    LongPath event = new LongPath();
+    if (event.isEnabled()) {
+      event.sample = sample;
+      event.length = length;
+      event.previousMax = previousMax;
+      event.average = average;
+      event.commit();
+    }
+  }
+}
@@ -0,0 +1,266 @@
+/*+++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+ + STMC - Statistical Model Checker                                                               +
+ +                                                                                                +
+ + Copyright (C) 2019                                                                             +
+ + Authors:                                                                                       +
+ +   Nima Roohi <nroohi@ucsd.edu> (University of California San Diego)                            +
+ +                                                                                                +
+ + This program is free software: you can redistribute it and/or modify it under the terms        +
+ + of the GNU General Public License as published by the Free Software Foundation, either         +
+ + version 3 of the License, or (at your option) any later version.                               +
+ +                                                                                                +
+ + This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;      +
+ + without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.      +
+ + See the GNU General Public License for more details.                                           +
+ +                                                                                                +
+ + You should have received a copy of the GNU General Public License along with this program.     +
+ + If not, see <https://www.gnu.org/licenses/>.                                                   +
+ +++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++*/
+
+package edu.stmc
+
+import java.io.IOException
+import java.lang.management.ManagementFactory
+import java.net.{InetAddress, InetSocketAddress}
+import java.nio.charset.StandardCharsets
+import java.util.concurrent.atomic.AtomicLongArray
+
+import com.sun.net.httpserver.{HttpExchange, HttpServer}
+import javax.management.ObjectName
+import prism.PrismException
+import simulator.sampler.Sampler
+
+/** Live status of a sampling campaign (see [[SamplingMonitor]]). */
+trait SamplingMonitorMXBean {
+  /** Class of the engine (eg. `SimulatorEngineStratified`). */
+  def getEngine: String
+  /** Whether or not sampling is finished (after which the status does not change anymore). */
+  def isFinished: Boolean
+  /** Seconds since sampling started (until it finished). */
+  def getElapsedSeconds: Double
+  /** Iterations so far (an iteration of stratified sampling generates several paths). */
+  def getIterations: Long
+  /** Samples (paths) so far. */
+  def getSamples: Long
+  /** Samples per second (on average since sampling started). */
+  def getSamplesPerSecond: Double
+  def getAveragePathLength: Double
+  def getMinPathLength: Long
+  def getMaxPathLength: Long
+  /** Median, 90th, 99th and 99.9th percentile of path lengths (see [[PathLengths.Quantiles]]), or an empty array if they are not tracked. */
+  def getPathLengthQuantiles: Array[Long]
+  /** Properties being sampled (the arrays of the following getters are indexed the same way). */
+  def getProperties: Array[String]
+  /** Names of the tests of the properties. */
+  def getTests: Array[String]
+  /** Whether or not the tests are decided. */
+  def getDecided: Array[Boolean]
+  /** Estimated probabilities of the properties. */
+  def getEstimates: Array[Double]
+  /** Test statistics, compared with their bounds (eg. the log-likelihood ratio of SPRT, its bounds and the error bound achieved so far). */
+  def getStatistics: Array[String]
+  /** Lower bounds on the number of samples (or batch means) the tests need before they can be decided (see [[HypTest.decisionHorizon]]). */
+  def getMinSamplesRemaining: Array[Long]
+  /** Predicted numbers of further samples (or batch means) before the tests are decided (see [[HypTest.expectedSamplesRemaining]]). */
+  def getExpectedSamplesRemaining: Array[Double]
+  /** Predicted seconds before the tests are decided (at the rate of their samples so far). */
+  def getSecondsRemaining: Array[Double]
+  /** Samples generated by every thread (only one thread unless sampling is parallel). */
+  def getThreadSamples: Array[Long]
+  /** Samples per second of every thread (on average since sampling started). */
+  def getThreadSamplesPerSecond: Array[Double]
+}
+
+/** Status of a sampling campaign, read while sampling from JMX (and from a local HTTP endpoint, see [[STMCConfig.monitorPort]]).
+  *
+  * The engine publishes its counters after every iteration (see [[update]]). Tests are only read by the thread of the engine, at most once per
+  * [[SamplingMonitor.SnapshotMillis]] milliseconds, and readers only see these snapshots. So the tests need not be thread-safe.
+  *
+  * @param engine     Class of the engine.
+  * @param properties Properties being sampled.
+  * @param tests      Tests of the properties (`null` for properties that are not checked by a [[HypTest]]).
+  * @param threads    Number of threads that generate samples. */
+final class SamplingMonitor(engine: String, properties: Array[String], tests: Array[HypTest], threads: Int) extends SamplingMonitorMXBean {
+  require(properties.length == tests.length, s"${properties.length} properties, but ${tests.length} tests")
+  require(threads > 0, s"Invalid number of threads $threads")
+
+  import SamplingMonitor.{Snapshot, Stride}
+
+  private[this] val start = System.nanoTime()
+  @volatile private[this] var end = 0L // `0` until sampling is finished
+  @volatile private[this] var iterations = 0L
+  @volatile private[this] var samples = 0L
+  @volatile private[this] var avgPathLength = 0.0
+  @volatile private[this] var minPathLength = 0L
+  @volatile private[this] var maxPathLength = 0L
+  @volatile private[this] var lengths: PathLengths = _
+  @volatile private[this] var snapshot: Snapshot = take()
+  private[this] var nextSnapshot = start + SamplingMonitor.SnapshotMillis * 1000000L
+  // Every thread only writes its own slot (slots are `Stride` longs apart, so they are not on the same cache line)
+  private[this] val threadSamples = new AtomicLongArray(threads * Stride)
+
+  /** Publish the counters of the engine (by the thread of the engine, after every iteration). Tests are read if their snapshot is old enough. */
+  def update(iterations: Long, samples: Long, avgPathLength: Double, minPathLength: Long, maxPathLength: Long): Unit = {
+    this.iterations = iterations
+    this.samples = samples
+    this.avgPathLength = avgPathLength
+    this.minPathLength = minPathLength
+    this.maxPathLength = maxPathLength
+    val now = System.nanoTime()
+    if (now - nextSnapshot >= 0) {
+      snapshot = take()
+      nextSnapshot = now + SamplingMonitor.SnapshotMillis * 1000000L
+    }
+  }
+
+  /** Publish the quantiles of `lengths` in the snapshots (which are taken by the thread of the engine, the only one that updates `lengths`). */
+  def track(lengths: PathLengths): Unit = this.lengths = lengths
+
+  /** Count `count` samples generated by `thread` (by that thread only). */
+  def generated(thread: Int, count: Long): Unit = threadSamples.lazySet(thread * Stride, threadSamples.get(thread * Stride) + count)
+
+  /** Take the last snapshot of the tests and stop the clock (by the thread of the engine). */
+  def finish(): Unit = {
+    snapshot = take()
+    end = System.nanoTime()
+  }
+
+  private[this] def take(): Snapshot = {
+    val snapshot = new Snapshot(tests.length)
+    for (i <- tests.indices if tests(i) != null) {
+      val interim = tests(i).interim
+      snapshot.tests(i) = tests(i).getName
+      snapshot.decided(i) = tests(i).completed
+      snapshot.estimates(i) = interim.estimate
+      snapshot.statistics(i) = interim.details
+      snapshot.remaining(i) = tests(i).decisionHorizon
+      snapshot.expected(i) = tests(i).expectedSamplesRemaining
+      snapshot.seconds(i) = if (interim.samples > 0) snapshot.expected(i) * (System.nanoTime() - start) / 1e9 / interim.samples else Double.NaN
+    }
+    if (lengths != null && lengths.all.count > 0)
+      snapshot.quantiles = PathLengths.Quantiles.map(lengths.all.quantile)
+    snapshot
+  }
+
+  override def getEngine: String = engine
+  override def isFinished: Boolean = end != 0
+  override def getElapsedSeconds: Double = ((if (end == 0) System.nanoTime() else end) - start) / 1e9
+  override def getIterations: Long = iterations
+  override def getSamples: Long = samples
+  override def getSamplesPerSecond: Double = samples / getElapsedSeconds
+  override def getAveragePathLength: Double = avgPathLength
+  override def getMinPathLength: Long = minPathLength
+  override def getMaxPathLength: Long = maxPathLength
+  override def getPathLengthQuantiles: Array[Long] = snapshot.quantiles.clone()
+  override def getProperties: Array[String] = properties.clone()
+  override def getTests: Array[String] = snapshot.tests.clone()
+  override def getDecided: Array[Boolean] = snapshot.decided.clone()
+  override def getEstimates: Array[Double] = snapshot.estimates.clone()
+  override def getStatistics: Array[String] = snapshot.statistics.clone()
+  override def getMinSamplesRemaining: Array[Long] = snapshot.remaining.clone()
+  override def getExpectedSamplesRemaining: Array[Double] = snapshot.expected.clone()
+  override def getSecondsRemaining: Array[Double] = snapshot.seconds.clone()
+  override def getThreadSamples: Array[Long] = Array.tabulate(threads)(t => threadSamples.get(t * Stride))
+  override def getThreadSamplesPerSecond: Array[Double] = {
+    val seconds = getElapsedSeconds
+    getThreadSamples.map(_ / seconds)
+  }
+
+  /** Status as a JSON object (served by the HTTP endpoint). */
+  def toJson: String = {
+    import ResultJson.{num, str}
+    val last = snapshot
+    val props = for (i <- properties.indices) yield
+      s"""{"property": ${str(properties(i))}, "test": ${str(last.tests(i))}, "decided": ${last.decided(i)}, "estimate": ${num(last.estimates(i))}, """ +
+      s""""statistic": ${str(last.statistics(i))}, "minSamplesRemaining": ${last.remaining(i)}, "expectedSamplesRemaining": ${num(last.expected(i))}, """ +
+      s""""secondsRemaining": ${num(last.seconds(i))}}"""
+    val seconds = getElapsedSeconds
+    s"""{"engine": ${str(engine)}, "finished": $isFinished, "elapsedSeconds": ${num(seconds)}, "iterations": $iterations, "samples": $samples, """ +
+    s""""samplesPerSecond": ${num(samples / seconds)}, "pathLength": {"average": ${num(avgPathLength)}, "min": $minPathLength, "max": $maxPathLength, """ +
+    s""""quantiles": [${last.quantiles.mkString(", ")}]}, """ +
+    s""""threadSamples": [${getThreadSamples.mkString(", ")}], "threadSamplesPerSecond": [${getThreadSamples.map(n => num(n / seconds)).mkString(", ")}], """ +
+    s""""properties": [${props.mkString(", ")}]}""" + "\n"
+  }
+
+}
+
+object SamplingMonitor {
+
+  /** Name of the MXBean of the last sampling campaign. */
+  val Name = new ObjectName("edu.stmc:type=SamplingMonitor")
+
+  /** Minimum time between two snapshots of the tests (in milliseconds). */
+  final val SnapshotMillis = 1000
+
+  // Distance of the counters of two threads (in longs)
+  private final val Stride = 16
+
+  private final class Snapshot(n: Int) {
+    val tests = Array.ofDim[String](n)
+    val decided = Array.ofDim[Boolean](n)
+    val estimates = Array.fill(n)(Double.NaN)
+    val statistics = Array.ofDim[String](n)
+    val remaining = Array.ofDim[Long](n)
+    val expected = Array.fill(n)(Double.NaN)
+    val seconds = Array.fill(n)(Double.NaN)
+    var quantiles: Array[Long] = Array.emptyLongArray
+  }
+
+  // Monitor of the last campaign (it is kept after the campaign is finished, so its final status can still be read)
+  @volatile private[this] var last: SamplingMonitor = _
+  private[this] var server: HttpServer = _
+
+  /** Monitor of a new sampling campaign of `engine`, or `null` if monitoring is disabled (see [[STMCConfig.monitor]]). The monitor replaces the
+    * monitor of the previous campaign (as the MXBean and in the HTTP endpoint).
+    *
+    * @param properties Properties being sampled.
+    * @param samplers   Samplers of the properties (in the same order).
+    * @throws PrismException if the HTTP endpoint cannot be started (eg. its port is in use). */
+  @throws[PrismException]
+  def create(engine: AnyRef, properties: java.util.List[_], samplers: Seq[Sampler], threads: Int): SamplingMonitor =
+    if (!STMCConfig.monitor) null
+    else {
+      val tests = samplers.map(_.getSimulationMethod match {
+        case test: HypTest => test
+        case _ => null
+      }).toArray
+      val monitor = new SamplingMonitor(engine.getClass.getSimpleName, Array.tabulate(properties.size)(properties.get(_).toString), tests, threads)
+      publish(monitor)
+      monitor
+    }
+
+  private def publish(monitor: SamplingMonitor): Unit = synchronized {
+    val mbs = ManagementFactory.getPlatformMBeanServer
+    if (mbs.isRegistered(Name))
+      mbs.unregisterMBean(Name)
+    mbs.registerMBean(monitor, Name)
+    last = monitor
+    if (server == null && STMCConfig.monitorPort != null)
+      server = serve(STMCConfig.monitorPort)
+  }
+
+  /** Serve the status of the last campaign (as JSON) on `http://localhost:port/`. The server only listens on the loopback interface, and its threads do
+    * not keep the JVM alive. */
+  private def serve(port: Int): HttpServer = {
+    val server =
+      try HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress, port), 0)
+      catch {
+        case e: IOException => throw new PrismException(s"Could not start the monitor on port $port (${e.getMessage})")
+      }
+    server.createContext("/", (exchange: HttpExchange) => {
+      val monitor = last
+      val body = (if (monitor == null) "{}\n" else monitor.toJson).getBytes(StandardCharsets.UTF_8)
+      exchange.getResponseHeaders.set("Content-Type", "application/json; charset=utf-8")
+      exchange.sendResponseHeaders(200, body.length)
+      exchange.getResponseBody.write(body)
+      exchange.close()
+    })
+    // the dispatcher thread of the server inherits the daemon flag of the thread that starts it
+    val starter = new Thread(() => server.start(), "stmc-monitor")
+    starter.setDaemon(true)
+    starter.start()
+    starter.join()
+    server
+  }
+
+}
@@ -0,0 +1,148 @@
+/*+++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+ + STMC - Statistical Model Checker                                                               +
+ +                                                                                                +
+ + Copyright (C) 2019                                                                             +
+ + Authors:                                                                                       +
+ +   Nima Roohi <nroohi@ucsd.edu> (University of California San Diego)                            +
+ +                                                                                                +
+ + This program is free software: you can redistribute it and/or modify it under the terms        +
+ + of the GNU General Public License as published by the Free Software Foundation, either         +
+ + version 3 of the License, or (at your option) any later version.                               +
+ +                                                                                                +
+ + This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;      +
+ + without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.      +
+ + See the GNU General Public License for more details.                                           +
+ +                                                                                                +
+ + You should have received a copy of the GNU General Public License along with this program.     +
+ + If not, see <https://www.gnu.org/licenses/>.                                                   +
+ +++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++*/
+
+package edu.stmc
+
+import java.util.function.BooleanSupplier
+
+import parser.State
+import prism.{PrismComponent, PrismException}
+import simulator.SimulatorEngine
+
+/** Independent sampling in multiple threads (see [[STMCConfig.threads]]).
+  *
+  * Every worker has its own [[SimulatorEngine]] (with its own path, updater, random number generator and samplers), and only generates paths. Outcomes are
+  * passed to the hypothesis tests in this thread (which is the only one that touches them) by a [[SamplingCoordinator]], in a fixed order that does not
+  * depend on the length of paths. So the tests see exactly the same kind of sample as in sequential sampling, and their error guarantees hold.
+  *
+  * The outcome of a path is a record of longs: its length (`-1` if some property is not known at the end of the path), followed by the values of the
+  * properties packed 64 per word. */
+final class SimulatorEngineParallel(parent: PrismComponent) extends SimulatorEngine(parent) {
+
+  private[this] val threads = STMCConfig.threads
+  // Maximum number of paths a worker generates ahead of the tests
+  private[this] val capacity = 256
+
+  // Properties whose tests are decided (written only by the decision thread). Workers stop evaluating them whenever `retiredCount` changes.
+  private[this] var retired: Array[Boolean] = _
+  @volatile private[this] var retiredCount = 0
+
+  @throws[PrismException]
+  private[this] def newWorker(): SimulatorEngine = {
+    val engine = new SimulatorEngine(this)
+    engine.createNewOnTheFlyPath(modulesFile)
+    // properties are already processed (labels expanded and constants replaced)
+    for (i <- 0 until properties.size)
+      engine.addProperty(properties.get(i))
+    engine
+  }
+
+  private[this] def generator(engine: SimulatorEngine, coordinator: SamplingCoordinator, worker: Int,
+                              initialState: State, maxPathLength: Long): SamplingCoordinator.Generator = {
+    val monitor = this.monitor
+    val cancelled: BooleanSupplier = () => coordinator.cancelled
+    val words = (properties.size + 63) / 64
+    var seen = 0
+    (out: Array[Long], offset: Int) => {
+      if (seen != retiredCount) {
+        seen = retiredCount
+        for (i <- retired.indices if retired(i))
+          engine.retireProperty(i)
+      }
+      val length = engine.samplePath(initialState, maxPathLength, cancelled)
+      if (monitor != null)
+        monitor.generated(worker, 1)
+      out(offset) = length
+      var w = 1
+      while (w <= words) {
+        out(offset + w) = 0
+        w += 1
+      }
+      if (length >= 0) {
+        var i = 0
+        while (i < properties.size) {
+          if (!retired(i) && engine.queryProperty(i).asInstanceOf[Boolean])
+            out(offset + 1 + (i >>> 6)) |= 1L << (i & 63)
+          i += 1
+        }
+      }
+    }
+  }
+
+  /** State of the sampling campaign is cleared even if sampling fails (see [[finishSampling]]). */
+  @throws[PrismException]
+  override protected def doSampling(initialState: State, maxPathLength: Long): Unit =
+    try sampleProperties(initialState, maxPathLength)
+    finally finishSampling()
+
+  @throws[PrismException]
+  private def sampleProperties(initialState: State, maxPathLength: Long): Unit = {
+    val methods = scalaPropertySamplers.map(_.getSimulationMethod.asInstanceOf[HypTest]).toArray
+    retired = Array.ofDim[Boolean](methods.length)
+    retiredCount = 0
+    // the monitor of the campaign is given to the workers, which count the paths they generate
+    val campaign = new SamplingCampaign(this, mainLog, properties, scalaPropertySamplers, 1, 1, threads, maxPathLength)
+    budget = campaign.budget
+    monitor = campaign.monitor
+    // only the lengths of whole paths are known here (samplers are updated by the workers)
+    val lengths = campaign.lengths
+    val coordinator = new SamplingCoordinator(threads, capacity, 1 + (methods.length + 63) / 64)
+    val generators = Array.tabulate(threads)(w => generator(newWorker(), coordinator, w, initialState, maxPathLength))
+    var stoppedEarly = false
+
+    val iters = coordinator.run(generators, (iter: Long, in: Array[Long], offset: Int) => {
+      val len = in(offset)
+      if (len < 0) {
+        stoppedEarly = true
+        true
+      } else {
+        // update path length statistics
+        lengths.record(0, len)
+        campaign.path(iter, len)
+
+        // decided properties are retired: their results are final, so they are neither updated nor evaluated anymore
+        var i = 0
+        while (i < methods.length) {
+          if (!retired(i) && methods(i).shouldStopNow(iter, (in(offset + 1 + (i >>> 6)) & (1L << (i & 63))) != 0)) {
+            retired(i) = true
+            retiredCount += 1
+            SamplingEvents.decision(properties.get(i), methods(i), scalaPropertySamplers(i), iter)
+          }
+          i += 1
+        }
+        val allDone = retiredCount == methods.length
+        // the budget is checked after every consumed sample (paths that are still being generated are then abandoned)
+        val outOfBudget = !allDone && budget.exhausted(iter)
+
+        // display progress (of slowest property)
+        if (!allDone && !outOfBudget) {
+          var percentageDone = 100
+          for (i <- methods.indices if !retired(i))
+            percentageDone = Math.min(percentageDone, methods(i).getProgress(iter, null))
+          campaign.progress(percentageDone)
+        }
+        allDone || outOfBudget
+      }
+    })
+
+    // transitions are listed by the workers, whose hits and misses are not collected
+    campaign.finish(iters, stoppedEarly, 0, 0, null)
+  }
+
+}
@@ -0,0 +1,200 @@
+/*+++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+ + STMC - Statistical Model Checker                                                               +
+ +                                                                                                +
+ + Copyright (C) 2019                                                                             +
+ + Authors:                                                                                       +
+ +   Nima Roohi <nroohi@ucsd.edu> (University of California San Diego)                            +
+ +                                                                                                +
+ + This program is free software: you can redistribute it and/or modify it under the terms        +
+ + of the GNU General Public License as published by the Free Software Foundation, either         +
+ + version 3 of the License, or (at your option) any later version.                               +
+ +                                                                                                +
+ + This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;      +
+ + without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.      +
+ + See the GNU General Public License for more details.                                           +
+ +                                                                                                +
+ + You should have received a copy of the GNU General Public License along with this program.     +
+ + If not, see <https://www.gnu.org/licenses/>.                                                   +
+ +++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++*/
+
+package edu.stmc
+
+import parser.State
+import prism.{ModelType, PrismComponent, PrismException, PrismNotSupportedException, PrismUtils}
+import simulator.{SimulatorEngine, TransitionList, Updater}
+
+import scala.collection.JavaConverters
+
+/** Independent sampling of a DTMC, in which paths are also reweighted to estimate the probability of properties in variants of the model whose constants
+  * only change transition probabilities (see [[STMCConfig.reweightConstants]]).
+  *
+  * Paths are generated (and the tests are performed) as usual, in the input model (the reference). On every step `s -> s'`, the probability of that step
+  * is also computed in every variant, and the likelihood ratio `w` of the path is the product of `Pv(s -> s') / P(s -> s')` over its steps. For every
+  * variant and property, `sum(w * X) / n` is an unbiased estimate of the probability of the property in that variant (where `X` is the outcome of a path).
+  * Its standard error and effective sample size `sum(w)^2 / sum(w^2)` are reported after sampling. So a whole parametric sweep comes out of a single
+  * simulation campaign.
+  *
+  * @note
+  *   1. Every step that is possible in a variant must be possible in the reference model as well (otherwise estimates are biased downwards). Therefore,
+  *      the reference value should not be extreme (eg. a loss probability of `0`).
+  *   1. Properties are evaluated as in the reference model (ie. constants in properties are not changed).
+  *   1. Estimates get worse (and the effective sample size gets smaller) as variants move away from the reference and as paths get longer. */
+final class SimulatorEngineReweighted(parent: PrismComponent) extends SimulatorEngine(parent) {
+
+  private[this] var names: Array[String] = _
+  private[this] var updaters: Array[Updater] = _
+  // Transitions of the previous state (in the reference model and in a variant)
+  private[this] val referenceTransitions = new TransitionList()
+  private[this] val variantTransitions = new TransitionList()
+
+  // Log of the likelihood ratio of the current path in every variant
+  private[this] var logWeights: Array[Double] = _
+  private[this] var previous: State = _
+  private[this] var target: State = _
+
+  // Sums of w, w^2, w * X and (w * X)^2 (the last two per property and variant)
+  private[this] var sumW: Array[Double] = _
+  private[this] var sumW2: Array[Double] = _
+  private[this] var sumWX: Array[Array[Double]] = _
+  private[this] var sumWX2: Array[Array[Double]] = _
+
+  @throws[PrismException]
+  override def initialisePath(initialState: State): Unit = {
+    super.initialisePath(initialState)
+    if (logWeights != null)
+      java.util.Arrays.fill(logWeights, 0.0)
+  }
+
+  @throws[PrismException]
+  override def automaticTransition(): Boolean = {
+    if (logWeights == null)
+      return super.automaticTransition()
+    previous.copy(path.getCurrentState)
+    if (!super.automaticTransition())
+      return false
+    val next = path.getCurrentState
+    // the transition list of the engine is already computed for the next state (by samplers)
+    updater.calculateTransitions(previous, referenceTransitions)
+    val p = probability(referenceTransitions, previous, next)
+    var v = 0
+    while (v < updaters.length) {
+      updaters(v).calculateTransitions(previous, variantTransitions)
+      logWeights(v) += Math.log(probability(variantTransitions, previous, next)) - Math.log(p)
+      v += 1
+    }
+    true
+  }
+
+  /** Probability of moving from `state` to `next` (summed over all the transitions of `transitions`, which are the ones enabled in `state`). */
+  private[this] def probability(transitions: TransitionList, state: State, next: State): Double = {
+    var sum = 0.0
+    var i = 0
+    while (i < transitions.getNumChoices) {
+      val choice = transitions.getChoice(i)
+      var j = 0
+      while (j < choice.size) {
+        choice.computeTarget(j, state, target)
+        if (target.equals(next))
+          sum += choice.getProbability(j)
+        j += 1
+      }
+      i += 1
+    }
+    sum / transitions.getProbabilitySum
+  }
+
+  /** State of the sampling campaign is cleared even if sampling fails (see [[finishSampling]]). */
+  @throws[PrismException]
+  override protected def doSampling(initialState: State, maxPathLength: Long): Unit =
+    try sampleProperties(initialState, maxPathLength)
+    finally {
+      logWeights = null
+      finishSampling()
+    }
+
+  @throws[PrismException]
+  private def sampleProperties(initialState: State, maxPathLength: Long): Unit = {
+    if (modelType != ModelType.DTMC)
+      throw new PrismNotSupportedException(s"Reweighting is only supported for DTMCs (not $modelType)")
+    names = JavaConverters.asScalaBuffer(STMCConfig.reweightConstants).flatMap(ModelVariant.expand).toArray
+    updaters = names.map(spec => ModelVariant.updater(ModelVariant(modulesFile, spec), this))
+    logWeights = Array.ofDim[Double](names.length)
+    previous = new State(numVars)
+    target = new State(numVars)
+    sumW = Array.ofDim[Double](names.length)
+    sumW2 = Array.ofDim[Double](names.length)
+    sumWX = Array.ofDim[Double](properties.size, names.length)
+    sumWX2 = Array.ofDim[Double](properties.size, names.length)
+
+    val methods = scalaPropertySamplers.map(_.getSimulationMethod.asInstanceOf[HypTest]).toArray
+    val retired = Array.ofDim[Boolean](methods.length)
+    var retiredCount = 0
+
+    var stoppedEarly = false
+    var iters = 0L
+    transitionHits = 0
+    transitionMisses = 0
+    val campaign = new SamplingCampaign(this, mainLog, properties, scalaPropertySamplers, 1, 1, 1, maxPathLength)
+    budget = campaign.budget
+    timer = campaign.timer
+    monitor = campaign.monitor
+
+    while (retiredCount < methods.length && !stoppedEarly && !budget.exhausted(iters)) {
+      iters += 1
+      val len = samplePath(initialState, maxPathLength)
+      if (len < 0)
+        stoppedEarly = true
+      else {
+        // update path length statistics
+        campaign.lengths.record(0, len)
+        campaign.path(iters, len)
+
+        // all properties are reweighted on all paths (not only until their tests are decided)
+        val t0 = if (timer == null) 0L else timer.start(PhaseTimer.TESTS)
+        for (v <- names.indices) {
+          val w = Math.exp(logWeights(v))
+          sumW(v) += w
+          sumW2(v) += w * w
+          for (i <- methods.indices if queryProperty(i).asInstanceOf[Boolean]) {
+            sumWX(i)(v) += w
+            sumWX2(i)(v) += w * w
+          }
+        }
+
+        for (i <- methods.indices if !retired(i) && methods(i).shouldStopNow(iters, queryProperty(i).asInstanceOf[Boolean])) {
+          retired(i) = true
+          retiredCount += 1
+          SamplingEvents.decision(properties.get(i), methods(i), scalaPropertySamplers(i), iters)
+        }
+        if (timer != null)
+          timer.stop(PhaseTimer.TESTS, t0)
+
+        // display progress (of slowest property)
+        var percentageDone = 100
+        for (i <- methods.indices if !retired(i))
+          percentageDone = Math.min(percentageDone, methods(i).getProgress(iters, null))
+        campaign.progress(percentageDone)
+      }
+    }
+
+    campaign.finish(iters, stoppedEarly, transitionHits, transitionMisses, null)
+    report(iters)
+  }
+
+  private[this] def report(n: Long): Unit = {
+    mainLog.println(s"\nReweighted estimates (reference: ${modulesFile.getConstantValues}):")
+    for (i <- 0 until properties.size) {
+      mainLog.println(properties.get(i) + " :")
+      for (v <- names.indices) {
+        val estimate = sumWX(i)(v) / n
+        val se = Math.sqrt(Math.max(0, sumWX2(i)(v) / n - estimate * estimate) / n)
+        val ess = sumW(v) * sumW(v) / sumW2(v)
+        mainLog.println(s"  ${names(v)} : estimate ${PrismUtils.formatDouble(estimate)}, standard error ${PrismUtils.formatDouble(se)}, " +
+                        s"effective sample size ${PrismUtils.formatDouble(2, ess)} (of $n)")
+      }
+    }
+    for (v <- names.indices if sumW(v) * sumW(v) < 0.1 * n * sumW2(v))
+      mainLog.printWarning(s"Effective sample size of ${names(v)} is less than 10% of the number of samples. Its estimates are not reliable.")
+  }
+
+}
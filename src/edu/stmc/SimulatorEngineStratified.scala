@@ -19,12 +19,12 @@
 
 package edu.stmc
 
-import parser.State
 import parser.ast.{Expression, ModulesFile, PropertiesFile}
-import prism.{ModelType, PrismComponent, PrismException, PrismNotSupportedException, PrismUtils}
+import parser.State
+import prism.{ModelType, PrismComponent, PrismException, PrismNotSupportedException}
 import simulator.method.SimulationMethod
 import simulator.sampler.Sampler
-import simulator.{PathOnTheFly, SimulatorEngine, TransitionList}
+import simulator.{PathOnTheFly, SimulatorEngine, TransitionList, Updater}
 
 import util.control.Breaks._
 import scala.collection.JavaConverters
@@ -32,6 +32,8 @@ import scala.collection.JavaConverters
 final class SimulatorEngineStratified(parent: PrismComponent) extends SimulatorEngine(parent) {
 
   private[this] class Stuff {
+    private[stmc] var model: ModulesFile = _
+    private[stmc] var updater: Updater = _
     private[stmc] var path: PathOnTheFly = _
     private[stmc] var currentState: State = _
     private[stmc] var transitionList: TransitionList = _
@@ -40,7 +42,18 @@ final class SimulatorEngineStratified(parent: PrismComponent) extends SimulatorE
     private[stmc] var samplers: List[Sampler] = Nil
   }
 
-  private[this] val stuff = Array.ofDim[Stuff](STMCConfig.strataTotalSize)
+  // Whether or not paths are allocated to strata adaptively (Neyman allocation)
+  private[this] val adaptive = STMCConfig.samplingMethod == NameSmplMethod.ADAPTIVE
+  // Number of strata (in the first `strataSizes.length` steps) and number of paths in every iteration
+  private[this] val strata = STMCConfig.strataTotalSize
+  private[this] val pathCount = if (adaptive) strata * STMCConfig.adaptiveFactor else strata
+
+  // Number of simulated models: the input model, followed by its variants that are compared with it using common random numbers (see `HypTestPaired`)
+  private[this] val variants = 1 + STMCConfig.crnConstants.size
+  private[this] val crn = variants > 1
+
+  // Path `i` of variant `v` is `stuff(v * pathCount + i)`
+  private[this] val stuff = Array.ofDim[Stuff](pathCount * variants)
   for (i <- stuff.indices)
     stuff(i) = new Stuff()
 
@@ -65,7 +78,7 @@ final class SimulatorEngineStratified(parent: PrismComponent) extends SimulatorE
 
   //------------------------------------------------------------------------------------------------------------------------------------------------------------
 
-  private[this] val indices1 = (0 until STMCConfig.strataTotalSize).toArray
+  private[this] val indices1 = (0 until pathCount).toArray
   private[this] var indices2: Array[Int] = _
   private[this] var index1 = 0
   private[this] var index2 = 0
@@ -81,6 +94,77 @@ final class SimulatorEngineStratified(parent: PrismComponent) extends SimulatorE
 
   //------------------------------------------------------------------------------------------------------------------------------------------------------------
 
+  // Neyman allocation (used only in the adaptive mode). Every path is assigned to one of the strata in the first `strataSizes.length` steps. All strata have
+  // the same weight, so the number of paths in each of them is proportional to its (estimated) standard deviation. In the remaining steps, strata are
+  // visited exactly `adaptiveFactor` times (same as stratified sampling with `pathCount` paths per iteration). Standard deviations are estimated from the
+  // first property only (see `SimulatorEngineStratified.allocate`).
+  private[this] val stratumOf = Array.ofDim[Int](pathCount) // Stratum of every path in the current iteration
+  private[this] val allocation = Array.ofDim[Int](strata) // Number of paths in every stratum in the current iteration
+  private[this] val stratumPaths = Array.ofDim[Long](strata) // Total number of paths in every stratum (used to estimate variances)
+  private[this] val stratumPositives = Array.ofDim[Long](strata) // Total number of positive paths in every stratum (of the first property)
+  private[this] var stratumIterPositives: Array[Array[Int]] = _ // Number of positive paths in every stratum in the current iteration (per property)
+
+  // Lengths of the paths and properties of the input model (see `recordLengths`). Step at which the value of property `sid` of path `i` was known in the
+  // current iteration (`knownAt(i * n + sid)` for `n` properties, or `-1`), and stratum of path `i` in its first `strataSizes.length` steps.
+  private[this] var lengths: PathLengths = _
+  private[this] var knownAt: Array[Long] = _
+  private[this] val pathStratum = Array.ofDim[Int](pathCount)
+
+  private[this] def resetAllocation(): Unit =
+    for (h <- 0 until strata) {
+      stratumPaths(h) = 0
+      stratumPositives(h) = 0
+    }
+
+  private[this] def allocate(): Unit = SimulatorEngineStratified.allocate(stratumPaths, stratumPositives, allocation, stratumOf)
+
+  /** Stratified estimate of the probability of property `sid` in the current iteration. */
+  private[this] def batchMean(sid: Int): Double = SimulatorEngineStratified.batchMean(stratumIterPositives(sid), allocation)
+
+  //------------------------------------------------------------------------------------------------------------------------------------------------------------
+
+  // Properties whose tests are decided. Their results are final, so their samplers are not updated anymore (except for the first property in the adaptive
+  // mode, because its samples are also used to estimate variances of strata).
+  private[this] var retired: Array[Boolean] = _
+  @inline private[this] def evaluated(sid: Int): Boolean = !retired(sid) || (adaptive && sid == 0)
+
+  //------------------------------------------------------------------------------------------------------------------------------------------------------------
+
+  // Common random numbers. Paths with the same index in all variants are driven by the same random numbers (including the offsets of their strata), so
+  // their outcomes are paired.
+
+  // Properties as they were given (before constants of the input model were replaced), so that they can be processed again for every variant
+  private[this] val originals = new java.util.IdentityHashMap[Expression, (Expression, PropertiesFile)]()
+
+  @throws[PrismException]
+  override def createNewOnTheFlyPath(modulesFile: ModulesFile): Unit = {
+    originals.clear()
+    super.createNewOnTheFlyPath(modulesFile)
+  }
+
+  @throws[PrismException]
+  override def addProperty(prop: Expression, pf: PropertiesFile): Int = {
+    val index = super.addProperty(prop, pf)
+    originals.put(properties.get(index), (prop, pf))
+    index
+  }
+
+  @inline private[this] def outcome(sampler: Sampler): Int = if (sampler.getCurrentValue.asInstanceOf[Boolean]) 1 else 0
+
+  /** Property `expr` (which is already processed for the input model) processed again for a variant (same as `addProperty` in [[SimulatorEngine]]). */
+  @throws[PrismException]
+  private[this] def variantProperty(expr: Expression, model: ModulesFile): Expression = {
+    val (prop, pf) = originals.get(expr)
+    val labels = if (pf == null) model.getLabelList else pf.getCombinedLabelList
+    var result = prop.deepCopy().expandPropRefsAndLabels(pf, labels).asInstanceOf[Expression]
+    result = result.replaceConstants(model.getConstantValues).asInstanceOf[Expression]
+    if (pf != null)
+      result = result.replaceConstants(pf.getConstantValues).asInstanceOf[Expression]
+    result.simplify().asInstanceOf[Expression]
+  }
+
+  //------------------------------------------------------------------------------------------------------------------------------------------------------------
+
   // Antithetic is similar to stratified and I don't want to spend time one another source file
   private[this] var antitheticCell1: Double = _
   private[this] var antitheticCell2: Double = _
@@ -103,144 +187,302 @@ final class SimulatorEngineStratified(parent: PrismComponent) extends SimulatorE
     super.modelCheckMultipleProperties(modulesFile, propertiesFile, exprs, initialState, maxPathLength, simMethod)
   }
 
+  /** State of the sampling campaign is cleared even if sampling fails (see [[finishSampling]]). */
   @throws[PrismException]
-  override protected def doSampling(initialState: State, maxPathLength: Long): Unit = {
-    if (modelType != ModelType.DTMC)
-      indices2 = (0 until STMCConfig.strataTotalSize).toArray
-    initialize(properties, modulesFile)
-
+  override protected def doSampling(initialState: State, maxPathLength: Long): Unit =
+    try sampleProperties(initialState, maxPathLength)
+    finally {
+      lengths = null
+      knownAt = null
+      finishSampling()
+    }
 
-    mainLog.print("\nSampling progress: [")
-    mainLog.flush()
-    val start = System.currentTimeMillis()
+  @throws[PrismException]
+  private def sampleProperties(initialState: State, maxPathLength: Long): Unit = {
+    startSampling()
+    transitionHits = 0
+    transitionMisses = 0
+    val campaign = new SamplingCampaign(this, mainLog, properties, scalaPropertySamplers, strata, pathCount, 1, maxPathLength)
+    budget = campaign.budget
+    timer = campaign.timer
+    monitor = campaign.monitor
+    lengths = campaign.lengths
+    knownAt = Array.ofDim[Long](pathCount * scalaPropertySamplers.size)
 
-    val ssprt = scalaPropertySamplers.head.getSimulationMethod.isInstanceOf[HypTestSPRTStratified]
     val positives = Array.ofDim[Int](scalaPropertySamplers.size)
+    val differences = Array.ofDim[Int](scalaPropertySamplers.size, variants - 1)
+    // Number, mean and sum of squared distances from the mean of the batch means of every property while `SamplingEvents.Iteration` is recorded (only
+    // reported, so they are not computed otherwise)
+    val countOfMeans = Array.ofDim[Long](scalaPropertySamplers.size)
+    val meanOfMeans = Array.ofDim[Double](scalaPropertySamplers.size)
+    val m2OfMeans = Array.ofDim[Double](scalaPropertySamplers.size)
     var maxPathLengthError = false
 
-    var avgPathLength = 0.0
-    var minPathFound = 0L
-    var maxPathFound = 0L
-
-    var iters = 0
+    var iters = 0L
     var finished = false
 
     breakable {
       while (!finished) {
         finished = true
         iters += 1
+        val len = sampleIteration(maxPathLength)
+        maxPathLengthError = len < 0
+        if (maxPathLengthError)
+          break
 
-        // initialize all paths
-        for (i <- stuff.indices) {
-          initialisePath(i)
-          for (sampler <- stuff(i).samplers)
-            sampler.reset()
-        }
-
-        // simultaneously sample all paths
-        var needMore = true
-        var len = 0L
-        while (needMore) {
-          len += counter.length
-          needMore = false
-          shuffleArr(indices1)
-          shuffleArr(indices2)
-          maxPathLengthError = len > maxPathLength
-          if (maxPathLengthError)
-            break
-          for (i <- stuff.indices) {
-            index1 = indices1(i)
-            index2 = if (indices2 != null) indices2(i) else 0
-            for (step <- counter.indices) {
-              automaticTransition(i, step)
-              for (sampler <- stuff(i).samplers) {
-                sampler.update(stuff(i).path, getTransitionList(i))
-                needMore |= !sampler.isCurrentValueKnown
-              }
-            }
-            stepCounter()
-          }
-        }
-
-        // update path length statistics
-        avgPathLength = (avgPathLength * (iters - 1) + len) / iters
-        minPathFound = if (iters == 1) len else Math.min(minPathFound, len)
-        maxPathFound = if (iters == 1) len else Math.max(maxPathFound, len)
+        // update path length statistics (paths are recorded by `sampleIteration`)
+        campaign.path(iters, len)
 
+        val t0 = if (timer == null) 0L else timer.start(PhaseTimer.TESTS)
         for (i <- positives.indices)
           positives(i) = 0
+        if (adaptive)
+          for (sid <- positives.indices; h <- 0 until strata)
+            stratumIterPositives(sid)(h) = 0
 
-        // find how many positive samples we just took
-        for (stf <- stuff) {
+        // find how many positive samples we just took (in the input model)
+        for (i <- 0 until pathCount) {
           var sid = 0
-          for (sampler <- stf.samplers) {
-            if (sampler.getCurrentValue.asInstanceOf[Boolean])
+          for (sampler <- stuff(i).samplers) {
+            if (evaluated(sid) && sampler.getCurrentValue.asInstanceOf[Boolean]) {
               positives(sid) += 1
+              if (adaptive)
+                stratumIterPositives(sid)(stratumOf(i)) += 1
+            }
             sid += 1
           }
         }
 
+        // sum of paired differences (ie. `1 + Xv - X`) of every variant
+        if (crn) {
+          for (sid <- positives.indices; v <- 1 until variants)
+            differences(sid)(v - 1) = 0
+          for (i <- 0 until pathCount; v <- 1 until variants) {
+            var sid = 0
+            for ((base, sampler) <- stuff(i).samplers.zip(stuff(v * pathCount + i).samplers)) {
+              if (evaluated(sid))
+                differences(sid)(v - 1) += 1 + outcome(sampler) - outcome(base)
+              sid += 1
+            }
+          }
+        }
+
+        // variances of strata are estimated using the first property
+        if (adaptive)
+          for (h <- 0 until strata) {
+            stratumPaths(h) += allocation(h)
+            stratumPositives(h) += stratumIterPositives(0)(h)
+          }
+
+        var sid = 0
         for ((sampler, positive) <- scalaPropertySamplers.zip(positives)) {
-          val smp = sampler.getSimulationMethod
-          // // shouldStopNow will update itself when ssprt is false
-          val adj1 = if (ssprt || !sampler.getCurrentValue.asInstanceOf[Boolean]) 0 else 1
-          val adj2 = if (ssprt) 0 else 1
-          smp.asInstanceOf[HypTest].update(positive - adj1, STMCConfig.strataTotalSize - positive - adj2)
-          finished &= smp.shouldStopNow(iters, sampler)
+          if (!retired(sid)) {
+            val smp = sampler.getSimulationMethod.asInstanceOf[HypTest]
+            val mean = if (adaptive) batchMean(sid) else positive / pathCount.toDouble
+            if (SamplingEvents.iterationEnabled()) {
+              countOfMeans(sid) += 1
+              val delta = mean - meanOfMeans(sid)
+              meanOfMeans(sid) += delta / countOfMeans(sid)
+              m2OfMeans(sid) += delta * (mean - meanOfMeans(sid))
+              val variance = if (countOfMeans(sid) < 2) Double.NaN else m2OfMeans(sid) / (countOfMeans(sid) - 1)
+              SamplingEvents.iteration(iters, sid, pathCount, positive, mean, variance)
+            }
+            if (crn)
+              for (v <- 1 until variants)
+                smp.asInstanceOf[HypTestPaired].updateMean(v - 1, differences(sid)(v - 1) / (2.0 * pathCount))
+            else smp match {
+            case smp: HypTest.BatchMeans => smp.updateMean(mean)
+            case _                       =>
+              // shouldStopNow will update itself with the last sample when the test does not use batch means (never in the adaptive mode)
+              val adj = if (sampler.getCurrentValue.asInstanceOf[Boolean]) 1 else 0
+              smp.update(positive - adj, pathCount - positive - (1 - adj))
+            }
+            retired(sid) = smp.shouldStopNow(iters, sampler)
+            if (retired(sid))
+              SamplingEvents.decision(properties.get(sid), smp, sampler, iters)
+          }
+          finished &= retired(sid)
+          sid += 1
+        }
+        if (timer != null)
+          timer.stop(PhaseTimer.TESTS, t0)
+        // `stuff.length` paths are generated in every iteration
+        if (!finished && budget.exhausted(iters * stuff.length))
+          finished = true
+
+        // display progress (of slowest property)
+        if (!finished) {
+          var percentageDone = 100
+          sid = 0
+          for (sampler <- scalaPropertySamplers) {
+            val smp = sampler.getSimulationMethod.asInstanceOf[HypTest]
+            if (!retired(sid))
+              percentageDone = Math.min(percentageDone, smp.getProgress(if (smp.isInstanceOf[HypTest.BatchMeans]) iters else iters * pathCount, sampler))
+            sid += 1
+          }
+          campaign.progress(percentageDone)
         }
       }
     }
 
     // Print details
-    val samples = iters * STMCConfig.strataTotalSize
-    val stop = System.currentTimeMillis()
-    val time_taken = (stop - start) / 1000.0
-    Main.updateTotal(time_taken, samples)
-    if (!maxPathLengthError) {
-      mainLog.print(" 100% ]")
-      mainLog.println()
-      mainLog.print("\nSampling complete: ")
-      mainLog.print(s"$iters iterations ($samples samples) in $time_taken seconds (average ${PrismUtils.formatDouble(2, time_taken / samples)})\n")
-      mainLog.print(s"Path length statistics: average ${PrismUtils.formatDouble(2, avgPathLength)}, min $minPathFound, max $maxPathFound\n")
-    } else
-        mainLog.print(s" ...\n\nSampling terminated early after $iters iterations ($samples samples).\n")
-
-    if (maxPathLengthError)
-      throw new PrismException("One or more of the properties being sampled could not be checked on a sample. Consider increasing the maximum path length")
+    campaign.finish(iters, maxPathLengthError, transitionHits, transitionMisses,
+                    if (crn) s"Every sample is a path in each of the $variants models (common random numbers)" else null)
+  }
 
+  /** Get ready to generate iterations of the loaded model and properties (see [[sampleIteration]]). Called at the beginning of sampling. */
+  @throws[PrismException]
+  def startSampling(): Unit = {
+    if (modelType != ModelType.DTMC)
+      indices2 = (0 until pathCount).toArray
+    initialize(properties, modulesFile)
+    if (adaptive) {
+      resetAllocation()
+      stratumIterPositives = Array.ofDim[Int](scalaPropertySamplers.size, strata)
+    }
+    retired = Array.ofDim[Boolean](scalaPropertySamplers.size)
   }
 
+  /** Generate the paths of one iteration (all the strata, in the input model and in every variant). Paths are extended together, a step of every path at a
+    * time, until the values of all the properties that are still evaluated are known. Tests are not updated (so this is also used to measure stepping
+    * throughput).
+    *
+    * If sampling records path lengths, every path of the input model is recorded with the number of steps until the values of all its properties were
+    * known (which may be less than the length of the iteration).
+    *
+    * @return Length of the paths, or `-1` if it would exceed `maxPathLength`. */
   @throws[PrismException]
-  private[this] def initialize(exprs: java.util.List[Expression], mf: ModulesFile): Unit = {
+  def sampleIteration(maxPathLength: Long): Long = {
+    if (adaptive)
+      allocate()
+
+    // initialize all paths
     for (i <- stuff.indices) {
-      stuff(i).path = new PathOnTheFly(modulesFile)
-      stuff(i).currentState = new State(numVars)
-      stuff(i).transitionList = new TransitionList()
-      var samplers: List[Sampler] = Nil
-      for (expr <- JavaConverters.asScalaBuffer(exprs)) {
-        val sampler = Sampler.createSampler(expr, mf)
-        samplers = sampler :: samplers
+      initialisePath(i)
+      var sid = 0
+      for (sampler <- stuff(i).samplers) {
+        if (evaluated(sid))
+          sampler.reset()
+        sid += 1
+      }
+    }
+    if (knownAt != null)
+      java.util.Arrays.fill(knownAt, -1L)
+    val props = scalaPropertySamplers.size
+
+    // simultaneously sample all paths
+    var needMore = true
+    var len = 0L
+    while (needMore) {
+      len += counter.length
+      needMore = false
+      val t0 = if (timer == null) 0L else timer.start(PhaseTimer.SHUFFLE)
+      shuffleArr(indices1)
+      shuffleArr(indices2)
+      if (timer != null)
+        timer.stop(PhaseTimer.SHUFFLE, t0)
+      if (len > maxPathLength)
+        return -1
+      for (i <- 0 until pathCount) {
+        index1 = if (adaptive && len == counter.length) stratumOf(i) else indices1(i) % strata
+        if (len == counter.length)
+          pathStratum(i) = index1
+        index2 = if (indices2 != null) indices2(i) % strata else 0
+        for (step <- counter.indices) {
+          automaticTransition(i, step)
+          var id = i
+          while (id < stuff.length) {
+            // transitions of the new state are computed (and timed) before the samplers, which are timed together
+            val transitions = getTransitionList(id)
+            val t1 = if (timer == null) 0L else timer.start(PhaseTimer.SAMPLERS)
+            var sid = 0
+            for (sampler <- stuff(id).samplers) {
+              if (evaluated(sid)) {
+                sampler.update(stuff(id).path, transitions)
+                val known = sampler.isCurrentValueKnown
+                needMore |= !known
+                if (known && id == i && knownAt != null && knownAt(i * props + sid) < 0)
+                  knownAt(i * props + sid) = len - counter.length + step + 1
+              }
+              sid += 1
+            }
+            if (timer != null)
+              timer.stop(PhaseTimer.SAMPLERS, t1)
+            id += pathCount
+          }
+        }
+        stepCounter()
+      }
+    }
+    if (knownAt != null)
+      recordLengths(props)
+    len
+  }
+
+  /** Record the paths of the input model in the current iteration (and the steps until their properties were known). */
+  private[this] def recordLengths(props: Int): Unit =
+    for (i <- 0 until pathCount) {
+      var longest = 0L
+      for (sid <- 0 until props if evaluated(sid)) {
+        lengths.recordProperty(sid, knownAt(i * props + sid))
+        longest = Math.max(longest, knownAt(i * props + sid))
+      }
+      lengths.record(pathStratum(i), longest)
+    }
+
+  /** Number of paths generated by [[sampleIteration]] (in the input model and in every variant). */
+  def pathsPerIteration: Int = stuff.length
+
+  @throws[PrismException]
+  private[this] def initialize(exprs: java.util.List[Expression], mf: ModulesFile): Unit = {
+    for (v <- 0 until variants) {
+      // the input model is already loaded by the super class
+      val model = if (v == 0) mf else ModelVariant(mf, STMCConfig.crnConstants.get(v - 1))
+      val modelUpdater = if (v == 0) updater else ModelVariant.updater(model, this)
+      for (i <- v * pathCount until (v + 1) * pathCount) {
+        stuff(i).model = model
+        stuff(i).updater = modelUpdater
+        stuff(i).path = new PathOnTheFly(model)
+        stuff(i).currentState = new State(numVars)
+        stuff(i).transitionList = new TransitionList()
+        var samplers: List[Sampler] = Nil
+        for (expr <- JavaConverters.asScalaBuffer(exprs)) {
+          val sampler = Sampler.createSampler(if (v == 0) expr else variantProperty(expr, model), model)
+          samplers = sampler :: samplers
+        }
+        // same order as `scalaPropertySamplers`
+        stuff(i).samplers = samplers.reverse
       }
-      stuff(i).samplers = samplers
     }
   }
 
   @throws[PrismException]
   private[this] def initialisePath(id: Int): Unit = {
-    if (modulesFile.getInitialStates == null)
-      stuff(id).currentState.copy(modulesFile.getDefaultInitialState())
+    val t0 = if (timer == null) 0L else timer.start(PhaseTimer.INIT)
+    if (stuff(id).model.getInitialStates == null)
+      stuff(id).currentState.copy(stuff(id).model.getDefaultInitialState())
     else
       throw new PrismException("Random choice of multiple initial states not yet supported")
     // Initialise stored path
-    updater.calculateStateRewards(stuff(id).currentState, tmpStateRewards)
+    stuff(id).updater.calculateStateRewards(stuff(id).currentState, tmpStateRewards)
     stuff(id).path.initialise(stuff(id).currentState, tmpStateRewards)
     // Reset transition list
     stuff(id).transitionListBuilt = false
     stuff(id).transitionListState = null
+    if (timer != null)
+      timer.stop(PhaseTimer.INIT, t0)
+    val transitions = getTransitionList(id)
+    val t1 = if (timer == null) 0L else timer.start(PhaseTimer.SAMPLERS)
+    var sid = 0
     for (sampler <- stuff(id).samplers) {
-      sampler.reset()
-      sampler.update(stuff(id).path, getTransitionList(id))
+      if (evaluated(sid)) {
+        sampler.reset()
+        sampler.update(stuff(id).path, transitions)
+      }
+      sid += 1
     }
+    if (timer != null)
+      timer.stop(PhaseTimer.SAMPLERS, t1)
   }
 
 
@@ -248,25 +490,33 @@ final class SimulatorEngineStratified(parent: PrismComponent) extends SimulatorE
   private[this] def getTransitionList(id: Int): TransitionList = {
     // Compute the current transition list, if required
     if (!stuff(id).transitionListBuilt) {
-      updater.calculateTransitions(stuff(id).currentState, stuff(id).transitionList)
+      val t0 = if (timer == null) 0L else timer.start(PhaseTimer.TRANSITIONS)
+      stuff(id).updater.calculateTransitions(stuff(id).currentState, stuff(id).transitionList)
       stuff(id).transitionListBuilt = true
+      if (timer != null)
+        timer.stop(PhaseTimer.TRANSITIONS, t0)
+      transitionMisses += 1
     }
+    else
+      transitionHits += 1
     stuff(id).transitionList
   }
 
+  /** Take the next step of path `i` in every variant (with the same random numbers). */
   @throws[PrismException]
-  private[this] def automaticTransition(id: Int, step: Int): Boolean = {
+  private[this] def automaticTransition(i: Int, step: Int): Unit = {
+    val t0 = if (timer == null) 0L else timer.start(PhaseTimer.RNG)
     val stepStrataSize = STMCConfig.strataSizes(step)
     val offset: Int = index1 % stepStrataSize
     index1 /= stepStrataSize
+    var d1 = 0.0
+    var d2 = 0.0
     if (STMCConfig.samplingMethod != NameSmplMethod.ANTITHETIC) {
-      val d1 = rng.randomUnifDouble() / stepStrataSize + offset / stepStrataSize.toDouble
-      if (modelType == ModelType.DTMC) automaticTransition(id, d1, 0)
-      else {
+      d1 = rng.randomUnifDouble() / stepStrataSize + offset / stepStrataSize.toDouble
+      if (modelType != ModelType.DTMC) {
         val offset2: Int = index2 % stepStrataSize
         index2 /= stepStrataSize
-        val d2 = rng.randomUnifDouble() / stepStrataSize + offset2 / stepStrataSize.toDouble
-        automaticTransition(id, d1, d2)
+        d2 = rng.randomUnifDouble() / stepStrataSize + offset2 / stepStrataSize.toDouble
       }
     }
     else {
@@ -274,10 +524,21 @@ final class SimulatorEngineStratified(parent: PrismComponent) extends SimulatorE
       if (anti) {
         antitheticCell1 = rng.randomUnifDouble()
         antitheticCell2 = if (modelType == ModelType.DTMC) 0 else rng.randomUnifDouble()
-        automaticTransition(id, antitheticCell1, antitheticCell2)
       }
-      else
-        automaticTransition(id, 1 - antitheticCell1, 1 - antitheticCell2)
+      d1 = if (anti) antitheticCell1 else 1 - antitheticCell1
+      d2 = if (anti) antitheticCell2 else 1 - antitheticCell2
+    }
+    if (timer != null)
+      timer.stop(PhaseTimer.RNG, t0)
+    commonTransition(i, d1, d2)
+  }
+
+  @throws[PrismException]
+  private[this] def commonTransition(i: Int, d1: Double, d2: Double): Unit = {
+    var id = i
+    while (id < stuff.length) {
+      automaticTransition(id, d1, d2)
+      id += pathCount
     }
   }
 
@@ -325,6 +586,7 @@ final class SimulatorEngineStratified(parent: PrismComponent) extends SimulatorE
   @throws[PrismException]
   private[this] def executeTransition(id: Int, i: Int, offset: Int, index: Int): Unit = {
     val transitions = getTransitionList(id)
+    val t0 = if (timer == null) 0L else timer.start(PhaseTimer.STEP)
     // Get corresponding choice and, if required (for full paths), calculate transition index
     val choice = transitions.getChoice(i)
     val actualIndex = if (onTheFly || index != 1) index else transitions.getTotalIndexOfTransition(i, offset)
@@ -338,11 +600,14 @@ final class SimulatorEngineStratified(parent: PrismComponent) extends SimulatorE
     // Reset transition list
     stuff(id).transitionListBuilt = false
     stuff(id).transitionListState = null
+    if (timer != null)
+      timer.stop(PhaseTimer.STEP, t0)
   }
 
   @throws[PrismException]
   private[this] def executeTimedTransition(id: Int, i: Int, offset: Int, time: Double, index: Int): Unit = {
     val transitions = getTransitionList(id)
+    val t0 = if (timer == null) 0L else timer.start(PhaseTimer.STEP)
     // Get corresponding choice and, if required (for full paths), calculate transition index
     val choice = transitions.getChoice(i)
     val actualIndex = if (onTheFly || index != 1) index else transitions.getTotalIndexOfTransition(i, offset)
@@ -356,6 +621,56 @@ final class SimulatorEngineStratified(parent: PrismComponent) extends SimulatorE
     // Reset transition list
     stuff(id).transitionListBuilt = false
     stuff(id).transitionListState = null
+    if (timer != null)
+      timer.stop(PhaseTimer.STEP, t0)
+  }
+
+}
+
+object SimulatorEngineStratified {
+
+  /** Neyman allocation of `stratumOf.length` paths to `allocation.length` strata of the same weight, given the `paths` sampled so far in every stratum and
+    * how many of them were `positives`. Every stratum gets one path, and the remaining paths are distributed proportional to the estimated standard
+    * deviation of strata. Estimates are smoothed by Laplace's rule of succession, so that no stratum is starved just because its first few paths agreed
+    * with each other (or had no variance at all). Rounding is cumulative, so the sum of `allocation` is always the number of paths, and the paths of every
+    * stratum are consecutive in `stratumOf`.
+    *
+    * @note The engine counts `positives` of the first property only, so a single allocation serves all properties, and it is best for the first one. */
+  private[stmc] def allocate(paths: Array[Long], positives: Array[Long], allocation: Array[Int], stratumOf: Array[Int]): Unit = {
+    val strata = allocation.length
+    val pathCount = stratumOf.length
+    require(pathCount >= strata, s"$pathCount paths for $strata strata")
+    var total = 0.0
+    val sd = Array.ofDim[Double](strata)
+    for (h <- 0 until strata) {
+      val p = (positives(h) + 1) / (paths(h) + 2.0)
+      sd(h) = Math.sqrt(p * (1 - p))
+      total += sd(h)
+    }
+    val extra = pathCount - strata
+    var cumulative = 0.0
+    var assigned = 0
+    var i = 0
+    for (h <- 0 until strata) {
+      cumulative += extra * sd(h) / total
+      val upTo = if (h == strata - 1) extra else Math.min(extra, cumulative.toInt)
+      allocation(h) = 1 + upTo - assigned
+      assigned = upTo
+      for (_ <- 0 until allocation(h)) {
+        stratumOf(i) = h
+        i += 1
+      }
+    }
+    assert(i == pathCount, s"Allocated $i paths instead of $pathCount")
+  }
+
+  /** Stratified estimate of a probability in an iteration, given the `positives` of every stratum among its `allocation` paths. All strata have the same
+    * weight, so strata with more paths do not count more. */
+  private[stmc] def batchMean(positives: Array[Int], allocation: Array[Int]): Double = {
+    var sum = 0.0
+    for (h <- allocation.indices)
+      sum += positives(h) / allocation(h).toDouble
+    sum / allocation.length
   }
 
 }
@@ -963,7 +963,12 @@ public class Prism extends PrismComponent implements PrismSettingsListener {
       if (STMCConfig.enabled)
         switch (STMCConfig.samplingMethod) {
           case INDEPENDENT:
-            theSimulator = new SimulatorEngine(this);
+            if (STMCConfig.threads > 1)
+              theSimulator = new SimulatorEngineParallel(this);
+            else if (!STMCConfig.reweightConstants.isEmpty())
+              theSimulator = new SimulatorEngineReweighted(this);
+            else
+              theSimulator = new SimulatorEngine(this);
             break;
           case ANTITHETIC:
             STMCConfig.strataSizes = new int[]{2};
@@ -971,6 +976,7 @@ public class Prism extends PrismComponent implements PrismSettingsListener {
             theSimulator = new SimulatorEngineStratified(this);
             break;
           case STRATIFIED:
+          case ADAPTIVE:
             theSimulator = new SimulatorEngineStratified(this);
             break;
           default:
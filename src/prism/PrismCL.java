@@ -199,6 +199,45 @@ public class PrismCL implements PrismModelListener {
   private String[] paramUpperBounds = null;
   private String[] paramNames       = null;
 
+  // === DOWN ==================================================================================================================================================
+  // result of the last property that was checked (used by BenchmarkRunner)
+  private Object lastResult = null;
+
+  /** Result of the last property that was checked (an exception if checking it failed), or {@code null} if no property is checked. */
+  public Object getLastResult() {
+    return lastResult;
+  }
+
+  // whether PrismCL is run by another program (see BenchmarkRunner), in which case it throws Exit instead of exiting the JVM
+  private boolean embedded = false;
+
+  /** Thrown instead of exiting the JVM when PrismCL is embedded (see {@link #setEmbedded(boolean)}). */
+  public static final class Exit extends RuntimeException {
+    private final int status;
+
+    Exit(int status, String message) {
+      super(message);
+      this.status = status;
+    }
+
+    /** Exit code that PrismCL would have exited the JVM with. */
+    public int getStatus() {
+      return status;
+    }
+  }
+
+  /** Throw {@link Exit} instead of exiting the JVM (on fatal errors, or after switches such as -help), so that PrismCL can be run several times in a JVM. */
+  public void setEmbedded(boolean embedded) {
+    this.embedded = embedded;
+  }
+
+  private void halt(int status, String message) {
+    if (embedded)
+      throw new Exit(status, message);
+    System.exit(status);
+  }
+  // ===  UP  ==================================================================================================================================================
+
   private boolean exactConstants = false;
 
   /**
@@ -411,6 +450,9 @@ public class PrismCL implements PrismModelListener {
 
             // store result of model checking
             results[j].setResult(definedMFConstants, definedPFConstants, res.getResult());
+            // === DOWN ========================================================================================================================================
+            lastResult = res.getResult();
+            // ===  UP  ========================================================================================================================================
 
             // if a counterexample was generated, display it
             Object cex = res.getCounterexample();
@@ -513,6 +555,15 @@ public class PrismCL implements PrismModelListener {
       tmpLog.close();
     }
 
+    // === DOWN ================================================================================================================================================
+    // runs of -result_json are written once per repeat (not after every run)
+    try {
+      ResultJson.finishRepeat();
+    } catch (PrismException e) {
+      error(e.getMessage());
+    }
+    // ===  UP  ================================================================================================================================================
+
     // close down
     closeDown();
   }
@@ -1072,6 +1123,21 @@ public class PrismCL implements PrismModelListener {
       errorAndExit("Invalid integer value for -" + sw + " switch");
     return res;
   }
+  private long parseLong(final String[] args, final int i, final String sw, final Long min /*inclusive*/, final Long max/*inclusive*/) {
+    if (i >= args.length)
+      errorAndExit("Missing value for -" + sw + " switch");
+    long res = 0;
+    try {
+      res = Long.parseLong(args[i]);
+    } catch (NumberFormatException e) {
+      errorAndExit("Invalid integer value for -" + sw + " switch");
+    }
+    if (min != null && min > res)
+      errorAndExit("Invalid integer value for -" + sw + " switch");
+    if (max != null && max < res)
+      errorAndExit("Invalid integer value for -" + sw + " switch");
+    return res;
+  }
   private int[] parseIntArray(final String[] args, final int i, final String sw, final Integer min /*inclusive*/, final Integer max/*inclusive*/) {
     if (i >= args.length)
       errorAndExit("Missing value for -" + sw + " switch");
@@ -1090,6 +1156,24 @@ public class PrismCL implements PrismModelListener {
     }
     return res;
   }
+  private double[] parseDoubleArray(final String[] args, final int i, final String sw, final Double min/*exclusive*/, final Double max/*exclusive*/) {
+    if (i >= args.length)
+      errorAndExit("Missing value for -" + sw + " switch");
+    String[] parts = args[i].split(",");
+    double[] res   = new double[parts.length];
+    for (int j = 0; j < parts.length; j++) {
+      try {
+        res[j] = Double.parseDouble(parts[j].trim());
+      } catch (NumberFormatException e) {
+        errorAndExit("Invalid double value at index " + j + " for -" + sw + " switch");
+      }
+      if (min != null && min >= res[j])
+        errorAndExit("Invalid double value at index " + j + " for -" + sw + " switch");
+      if (max != null && max <= res[j])
+        errorAndExit("Invalid double value at index " + j + " for -" + sw + " switch");
+    }
+    return res;
+  }
   private NameSmplMethod parseSamplingMethod(final String[] args, final int i, final String sw) {
     if (i >= args.length)
       errorAndExit("Missing value for -" + sw + " switch");
@@ -1166,6 +1250,41 @@ public class PrismCL implements PrismModelListener {
           }
 
         }
+        else if (STMCConfig.enabled && ("af".equals(sw) || "adaptive_factor".equals(sw)))
+          STMCConfig.adaptiveFactor = parseInt(args, ++i, sw, 2, null);
+        else if (STMCConfig.enabled && "sweep".equals(sw)) STMCConfig.sweep = true;
+        else if (STMCConfig.enabled && "threads".equals(sw)) STMCConfig.threads = parseInt(args, ++i, sw, 1, null);
+        else if (STMCConfig.enabled && "crn_const".equals(sw)) {
+          if (i == args.length - 1)
+            errorAndExit("Missing value for -" + sw + " switch");
+          STMCConfig.crnConstants.add(args[++i].trim());
+        }
+        else if (STMCConfig.enabled && "reweight".equals(sw)) {
+          if (i == args.length - 1)
+            errorAndExit("Missing value for -" + sw + " switch");
+          STMCConfig.reweightConstants.add(args[++i].trim());
+        }
+        else if (STMCConfig.enabled && "time_budget".equals(sw)) STMCConfig.timeBudget = parseDouble(args, ++i, sw, 0.0, null);
+        else if (STMCConfig.enabled && "sample_budget".equals(sw)) STMCConfig.sampleBudget = parseLong(args, ++i, sw, 1L, null);
+        else if (STMCConfig.enabled && "dry_run".equals(sw)) STMCConfig.dryRun = parseLong(args, ++i, sw, 1L, null);
+        else if (STMCConfig.enabled && "profile".equals(sw)) STMCConfig.profile = true;
+        else if (STMCConfig.enabled && "monitor".equals(sw)) STMCConfig.monitor = true;
+        else if (STMCConfig.enabled && "monitor_port".equals(sw)) {
+          STMCConfig.monitor = true;
+          STMCConfig.monitorPort = parseInt(args, ++i, sw, 1, 65535);
+        }
+        else if (STMCConfig.enabled && "result_json".equals(sw)) {
+          if (i == args.length - 1)
+            errorAndExit("Missing value for -" + sw + " switch");
+          STMCConfig.resultJson = args[++i].trim();
+        }
+        else if (STMCConfig.enabled && "prior".equals(sw)) {
+          double[] prior = parseDoubleArray(args, ++i, sw, 0.0, null);
+          if (prior.length != 2)
+            errorAndExit("Invalid value for -" + sw + " switch (two positive numbers are expected)");
+          STMCConfig.priorA = prior[0];
+          STMCConfig.priorB = prior[1];
+        }
         else if (STMCConfig.enabled && ("sm".equals(sw) || "smp_method".equals(sw)))
           STMCConfig.samplingMethod = parseSamplingMethod(args, ++i, sw);
         else if (STMCConfig.enabled && ("htm".equals(sw) || "hyp_test_method".equals(sw)))
@@ -2346,25 +2465,62 @@ public class PrismCL implements PrismModelListener {
         throw new PrismException(
         "SPRT only supports probability expressions. However, type of the input expression '" + expr + "' is " +
         expr.getClass().getName());
-      final ExpressionProb expr2 = (ExpressionProb) expr;
-      if (!expr2.getBound().isConstant())
-        throw new PrismException("Threshold in the input expression '" + expr + "' is not a constant.");
-      final RelOp  op        = expr2.getRelOp();
-      switch (op) {
-        case LT:
-        case LEQ:
-        case GT:
-        case GEQ:
-          break;
-        default:
-          throw new PrismException("Unsupported relation (" + op + ") in the input expression " + expr);
-      }
       if (STMCConfig.hypTestMethod == null)
         throw new PrismException("Parameter hyp_test_method (htm) is not specified");
+      final boolean estimate = STMCConfig.hypTestMethod == NameHypTest.CI || STMCConfig.hypTestMethod == NameHypTest.SCI;
+      if (estimate && !isQuant)
+        throw new PrismException(STMCConfig.hypTestMethod + " only supports quantitative (=?) properties. However, the input expression is " + expr);
+      if (!estimate && isQuant)
+        throw new PrismException(STMCConfig.hypTestMethod + " does not support quantitative (=?) properties. Use CI or SCI instead");
+      final ExpressionProb expr2 = (ExpressionProb) expr;
+      if (!estimate) {
+        if (!expr2.getBound().isConstant())
+          throw new PrismException("Threshold in the input expression '" + expr + "' is not a constant.");
+        final RelOp op = expr2.getRelOp();
+        switch (op) {
+          case LT:
+          case LEQ:
+          case GT:
+          case GEQ:
+            break;
+          default:
+            throw new PrismException("Unsupported relation (" + op + ") in the input expression " + expr);
+        }
+      }
       if (STMCConfig.alpha == null) throw new PrismException("Parameter alpha is not specified for " + STMCConfig.hypTestMethod);
-      if (STMCConfig.beta == null) throw new PrismException("Parameter beta is not specified for " + STMCConfig.hypTestMethod);
-      if(STMCConfig.samplingMethod == NameSmplMethod.STRATIFIED && STMCConfig.strataSizes == null)
+      if (!estimate && STMCConfig.beta == null) throw new PrismException("Parameter beta is not specified for " + STMCConfig.hypTestMethod);
+      if((STMCConfig.samplingMethod == NameSmplMethod.STRATIFIED || STMCConfig.samplingMethod == NameSmplMethod.ADAPTIVE) && STMCConfig.strataSizes == null)
         throw new PrismException("Option strata_size (ss) has to be specified when stratification is used");
+      final boolean batchMeans = STMCConfig.hypTestMethod == NameHypTest.SSPRT || STMCConfig.hypTestMethod == NameHypTest.SGLRT ||
+                                 STMCConfig.hypTestMethod == NameHypTest.STSPRT || STMCConfig.hypTestMethod == NameHypTest.SCI;
+      if (batchMeans && STMCConfig.samplingMethod == NameSmplMethod.INDEPENDENT)
+        throw new PrismException(STMCConfig.hypTestMethod + " requires antithetic, stratified or adaptive sampling");
+      if (!batchMeans && STMCConfig.samplingMethod == NameSmplMethod.ADAPTIVE)
+        throw new PrismException("Adaptive sampling requires a test that uses batch means (SSPRT, SGLRT, STSPRT or SCI)");
+      if (STMCConfig.threads > 1 && STMCConfig.samplingMethod != NameSmplMethod.INDEPENDENT)
+        throw new PrismException("Option -threads is only supported by independent sampling");
+      if (STMCConfig.threads > 1 && STMCConfig.profile)
+        throw new PrismException("Option -profile is not supported with -threads (phases of the workers are not timed)");
+      if (!STMCConfig.crnConstants.isEmpty()) {
+        if (STMCConfig.hypTestMethod != NameHypTest.STSPRT)
+          throw new PrismException("Option -crn_const is only supported by STSPRT (paired differences are tested by a stratified ternary SPRT)");
+        if (STMCConfig.samplingMethod != NameSmplMethod.STRATIFIED && STMCConfig.samplingMethod != NameSmplMethod.ANTITHETIC)
+          throw new PrismException("Option -crn_const is only supported by antithetic and stratified sampling");
+        if (STMCConfig.sweep)
+          throw new PrismException("Options -crn_const and -sweep cannot be used together");
+      }
+      if (!STMCConfig.reweightConstants.isEmpty()) {
+        if (STMCConfig.samplingMethod != NameSmplMethod.INDEPENDENT || STMCConfig.threads > 1)
+          throw new PrismException("Option -reweight is only supported by independent sampling in a single thread");
+        if (STMCConfig.sweep)
+          throw new PrismException("Options -reweight and -sweep cannot be used together");
+      }
+      if (STMCConfig.samplingMethod == NameSmplMethod.ADAPTIVE) {
+        if (!batchMeans)
+          throw new PrismException("Adaptive stratified sampling is not supported by " + STMCConfig.hypTestMethod);
+        if ((long) STMCConfig.strataTotalSize * STMCConfig.adaptiveFactor > Integer.MAX_VALUE)
+          throw new PrismException("Strata size times adaptive factor is too big");
+      }
       switch (STMCConfig.hypTestMethod) {
         case SPRT:
           if (STMCConfig.delta == null) throw new PrismException("Parameter delta is not specified for SPRT");
@@ -2386,6 +2542,35 @@ public class PrismCL implements PrismModelListener {
           if (STMCConfig.delta    == null) throw new PrismException("Parameter delta is not specified for SSPRT");
           if (STMCConfig.gamma    != null) mainLog.printWarning("Option -gamma is not used for the SSPRT method and is being ignored");
           return new HypTestSPRTStratified();
+        case SGLRT:
+          if (STMCConfig.minIters == null) throw new PrismException("Parameter min_iter is not specified for SGLRT");
+          if (STMCConfig.gamma    != null) mainLog.printWarning("Option -gamma is not used for the SGLRT method and is being ignored");
+          if (STMCConfig.delta    != null) mainLog.printWarning("Option -delta is not used for the SGLRT method and is being ignored");
+          return new HypTestGLRTStratified();
+        case STSPRT:
+          if (STMCConfig.minIters == null) throw new PrismException("Parameter min_iter is not specified for STSPRT");
+          if (STMCConfig.delta    == null) throw new PrismException("Parameter delta is not specified for STSPRT");
+          if (STMCConfig.gamma    == null) throw new PrismException("Parameter gamma is not specified for STSPRT");
+          if (!STMCConfig.crnConstants.isEmpty())
+            return new HypTestPaired(STMCConfig.crnConstants.toArray(new String[0]));
+          return new HypTestSPRTTernaryStratified();
+        case BAYES:
+          if (STMCConfig.gamma    != null) mainLog.printWarning("Option -gamma is not used for the BAYES method and is being ignored");
+          if (STMCConfig.delta    != null) mainLog.printWarning("Option -delta is not used for the BAYES method and is being ignored");
+          if (STMCConfig.minIters != null) mainLog.printWarning("Option -min_iter is not used for the BAYES method and is being ignored");
+          return new HypTestBayes();
+        case CI:
+          if (STMCConfig.minIters == null) throw new PrismException("Parameter min_iter is not specified for CI");
+          if (STMCConfig.delta    == null) throw new PrismException("Parameter delta is not specified for CI");
+          if (STMCConfig.beta     != null) mainLog.printWarning("Option -beta is not used for the CI method and is being ignored");
+          if (STMCConfig.gamma    != null) mainLog.printWarning("Option -gamma is not used for the CI method and is being ignored");
+          return new HypTestCI();
+        case SCI:
+          if (STMCConfig.minIters == null) throw new PrismException("Parameter min_iter is not specified for SCI");
+          if (STMCConfig.delta    == null) throw new PrismException("Parameter delta is not specified for SCI");
+          if (STMCConfig.beta     != null) mainLog.printWarning("Option -beta is not used for the SCI method and is being ignored");
+          if (STMCConfig.gamma    != null) mainLog.printWarning("Option -gamma is not used for the SCI method and is being ignored");
+          return new HypTestCIStratified();
       }
       throw new Error("Must be unreachable");
     }
@@ -2495,16 +2680,53 @@ public class PrismCL implements PrismModelListener {
                     "                                 (otherwise, PRISM will complain and terminate immediately).");
     mainLog.println("-smp_method (or -sm) <name> .... Simulation method. One of " + NameSmplMethod.valuesToString() + ".");
     mainLog.println("-hyp_test_method (or -htm) <name>Hypothesis testing method to use. One of " + NameHypTest.valuesToString() + ".");
-    mainLog.println("-min_iter <n> .................. Minimum number of iterations (when GLRT is used).");
+    mainLog.println("-min_iter <n> .................. Minimum number of iterations (when GLRT, SSPRT, SGLRT, STSPRT, CI or SCI is used).");
     mainLog.println("-strata_size (or -ss) <list> ... Size of strata (when stratification is used). Comma separated non-empty list of positive\n" +
                     "                                 integers. Length specifies how many steps each stratum determines. Multiplication of values\n" +
                     "                                 specifies number of strata. Individual values define number of strata at each step. As an\n" +
                     "                                 example, 2,3 defines 6 as the number of strata, 2 for the number of strata in the first step,\n" +
                     "                                 and 3 for the number of strata in each of the alternatives in the second step.");
+    mainLog.println("-adaptive_factor (or -af) <n> .. Number of paths per stratum on average (when adaptive stratification is used). Every stratum\n" +
+                    "                                 gets at least one path, and the rest are allocated proportional to the estimated standard\n" +
+                    "                                 deviation of strata (Neyman allocation). Standard deviations are estimated from the first\n" +
+                    "                                 property only. Integer value at least 2 (default 4).");
+    mainLog.println("-sweep ......................... Test all the thresholds of an experiment (eg. P<x[...] with -const x=0.1:0.1:0.9) against\n" +
+                    "                                 one stream of samples. Every threshold stops consuming samples as soon as it is decided.");
+    mainLog.println("-threads <n> ................... Number of threads that generate paths (when independent sampling is used, default 1).\n" +
+                    "                                 Paths are passed to the tests in a fixed order (not in the order they are finished), so\n" +
+                    "                                 short paths are not favored and the error guarantees of the tests still hold.");
+    mainLog.println("-crn_const <vals> .............. Compare the model with a variant whose constants are changed to the given values (eg.\n" +
+                    "                                 MAX=20 or MAX=20,N=3). Can be repeated for several variants. All paths of the model and its\n" +
+                    "                                 variants are driven by the same random numbers, and STSPRT is applied to the differences.\n" +
+                    "                                 Result of every variant is -1 (smaller), 0 (no significant change) or +1 (larger).");
+    mainLog.println("-reweight <vals> ............... Also estimate the probability of properties in variants of a DTMC whose constants are changed\n" +
+                    "                                 to the given values (eg. pL=0.01:0.01:0.05). Can be repeated. Paths of the model are reweighted\n" +
+                    "                                 by their likelihood ratio, so no variant is simulated. Estimates, standard errors and effective\n" +
+                    "                                 sample sizes are reported after sampling (when independent sampling is used).");
+    mainLog.println("-time_budget <seconds> ......... Stop sampling after the given number of seconds (a positive double value). Tests that\n" +
+                    "                                 are not decided by then report the answer they lean towards, the number of samples, an\n" +
+                    "                                 estimate with its confidence interval, and the error bound achieved so far.");
+    mainLog.println("-sample_budget <n> ............. Stop sampling after the given number of samples (paths), with the same partial answers as\n" +
+                    "                                 -time_budget.");
+    mainLog.println("-dry_run <n> ................... Only take a pilot of n samples (paths), and predict how many more samples and seconds every\n" +
+                    "                                 property needs (from the samples of the pilot).");
+    mainLog.println("-profile ....................... Count and time the phases of sampling (random numbers, transitions, samplers, tests, ...)\n" +
+                    "                                 and print their calls and times per iteration after sampling. Only one in 16 calls is timed.\n" +
+                    "                                 Supported in a single thread (not with -threads).");
+    mainLog.println("-monitor ....................... Publish the status of sampling (samples per second, path lengths, test statistics and their\n" +
+                    "                                 bounds, samples remaining, per-thread throughput) as the MXBean edu.stmc:type=SamplingMonitor.");
+    mainLog.println("-monitor_port <port> ........... Same as -monitor, and also serve the status as JSON on http://localhost:<port>/ (only on the\n" +
+                    "                                 loopback interface).");
+    mainLog.println("-result_json <file> ............ Write the parameters, verdict, samples, iterations, wall and CPU time, path length statistics\n" +
+                    "                                 and final test statistic of every run to the given file (as JSON, one run per line). With\n" +
+                    "                                 -repeat, runs are grouped by repeat and followed by the average time and samples.");
+    mainLog.println("-prior <a,b> ................... Parameters of the Beta prior (when BAYES is used). Two positive numbers (default 1,1,\n" +
+                    "                                 ie. the uniform prior). Roughly, a and b are pseudo-counts of positive and negative samples.");
     mainLog.println("-alpha <number> ................ Type I   error probability; a double value between 0 and 0.5 (both exclusive).");
     mainLog.println("-beta <number> ................. Type II  error probability; a double value between 0 and 0.5 (both exclusive).");
     mainLog.println("-gamma <number> ................ Type III error probability; a double value between 0 and 0.5 (both exclusive).");
-    mainLog.println("-delta <number> ................ delta parameter; a double value between 0 and 1 (both exclusive).");
+    mainLog.println("-delta <number> ................ delta parameter; a double value between 0 and 1 (both exclusive). For CI and SCI, it is\n" +
+                    "                                 half of the width of the confidence interval (whose confidence is 1 - alpha).");
     mainLog.println();
     mainLog.println("Note that other options might be still used by SPRT or affect its behavior. However, they affect PRISM and SPRT the same\n" +
                     "way. Example of these properties include, but are not limited to: -pf -property -const -javamaxmem -javastack -timeout\n" +
@@ -2715,7 +2937,10 @@ public class PrismCL implements PrismModelListener {
     prism.closeDown(false);
     mainLog.println("\nError: " + s + ".");
     mainLog.flush();
-    System.exit(1);
+    // === DOWN ================================================================================================================================================
+    // System.exit(1);
+    halt(1, s);
+    // ===  UP  ================================================================================================================================================
   }
 
   /**
@@ -2723,7 +2948,10 @@ public class PrismCL implements PrismModelListener {
    */
   private void exit() {
     prism.closeDown(true);
-    System.exit(0);
+    // === DOWN ================================================================================================================================================
+    // System.exit(0);
+    halt(0, null);
+    // ===  UP  ================================================================================================================================================
   }
 
   /**
@@ -2731,7 +2959,10 @@ public class PrismCL implements PrismModelListener {
    */
   private void exit(int i) {
     prism.closeDown(true);
-    System.exit(i);
+    // === DOWN ================================================================================================================================================
+    // System.exit(i);
+    halt(i, null);
+    // ===  UP  ================================================================================================================================================
   }
 
   // main method
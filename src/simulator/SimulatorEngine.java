@@ -28,9 +28,19 @@ package simulator;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 
-import edu.stmc.Main;
+import edu.stmc.HypTest;
+import edu.stmc.HypTestSweep;
+import edu.stmc.PathLengths;
+import edu.stmc.PhaseTimer;
+import edu.stmc.ResultJson;
+import edu.stmc.STMCConfig;
+import edu.stmc.SamplingBudget;
+import edu.stmc.SamplingCampaign;
+import edu.stmc.SamplingEvents;
+import edu.stmc.SamplingMonitor;
 import parser.State;
 import parser.Values;
 import parser.VarList;
@@ -129,6 +139,16 @@ public class SimulatorEngine extends PrismComponent
 	private List<Sampler> propertySamplers;
 	// === DOWN ==================================================================================================================================================
 	public scala.collection.mutable.Buffer<Sampler> scalaPropertySamplers;
+	// Samplers that are still updated on every step (null means all of them). Properties whose tests are decided are retired while sampling.
+	private List<Sampler> activeSamplers;
+	// Budget of the current sampling campaign (null if nothing is being sampled), see stopSampling
+	protected volatile SamplingBudget budget;
+	// Counters and timers of the phases of the current sampling campaign (null unless profiling is enabled), see PhaseTimer
+	protected PhaseTimer timer;
+	// Calls of getTransitionList that found the transitions already computed (hits) or computed them (misses), reported by SamplingEvents.Campaign
+	protected long transitionHits, transitionMisses;
+	// Status of the current sampling campaign, read from JMX and HTTP (null unless monitoring is enabled), see SamplingMonitor
+	protected SamplingMonitor monitor;
 	// ===  UP  ==================================================================================================================================================
 
 	// Current path info
@@ -256,12 +276,19 @@ public class SimulatorEngine extends PrismComponent
 				throw new PrismNotSupportedException("Random choice of multiple initial states not yet supported");
 			}
 		}
+		// === DOWN ================================================================================================================================================
+		long t0 = timer == null ? 0 : timer.start(PhaseTimer.INIT());
+		// ===  UP  ================================================================================================================================================
 		updater.calculateStateRewards(currentState, tmpStateRewards);
 		// Initialise stored path
 		path.initialise(currentState, tmpStateRewards);
 		// Reset transition list
 		transitionListBuilt = false;
 		transitionListState = null;
+		// === DOWN ================================================================================================================================================
+		if (timer != null)
+			timer.stop(PhaseTimer.INIT(), t0);
+		// ===  UP  ================================================================================================================================================
 		// Reset and then update samplers for any loaded properties
 		resetSamplers();
 		updateSamplers();
@@ -324,7 +351,10 @@ public class SimulatorEngine extends PrismComponent
 		switch (modelType) {
 		case DTMC:
 			// Pick a random number to determine choice/transition
-			d = rng.randomUnifDouble();
+			// === DOWN ==============================================================================================================================================
+			// d = rng.randomUnifDouble();
+			d = timedRandomUnifDouble();
+			// ===  UP  ==============================================================================================================================================
 			ref = transitions.new Ref();
 			transitions.getChoiceIndexByProbabilitySum(d, ref);
 			// Execute
@@ -332,10 +362,18 @@ public class SimulatorEngine extends PrismComponent
 			break;
 		case MDP:
 			// Pick a random choice
+			// === DOWN ==============================================================================================================================================
+			long t0 = timer == null ? 0 : timer.start(PhaseTimer.RNG());
 			i = rng.randomUnifInt(numChoices);
+			if (timer != null)
+				timer.stop(PhaseTimer.RNG(), t0);
+			// ===  UP  ==============================================================================================================================================
 			choice = transitions.getChoice(i);
 			// Pick a random transition from this choice
-			d = rng.randomUnifDouble();
+			// === DOWN ==============================================================================================================================================
+			// d = rng.randomUnifDouble();
+			d = timedRandomUnifDouble();
+			// ===  UP  ==============================================================================================================================================
 			j = choice.getIndexByProbabilitySum(d);
 			// Execute
 			executeTransition(i, j, -1);
@@ -344,11 +382,17 @@ public class SimulatorEngine extends PrismComponent
 			// Get sum of all rates
 			r = transitions.getProbabilitySum();
 			// Pick a random number to determine choice/transition
-			d = rng.randomUnifDouble(r);
+			// === DOWN ==============================================================================================================================================
+			// d = rng.randomUnifDouble(r);
+			d = timedRandomUnifDouble(r);
+			// ===  UP  ==============================================================================================================================================
 			ref = transitions.new Ref();
 			transitions.getChoiceIndexByProbabilitySum(d, ref);
 			// Execute
-			executeTimedTransition(ref.i, ref.offset, rng.randomExpDouble(r), -1);
+			// === DOWN ==============================================================================================================================================
+			// executeTimedTransition(ref.i, ref.offset, rng.randomExpDouble(r), -1);
+			executeTimedTransition(ref.i, ref.offset, timedRandomExpDouble(r), -1);
+			// ===  UP  ==============================================================================================================================================
 			break;
 		default:
 			throw new PrismNotSupportedException(modelType + " not supported");
@@ -357,6 +401,47 @@ public class SimulatorEngine extends PrismComponent
 		return true;
 	}
 
+	// === DOWN ==================================================================================================================================================
+	/**
+	 * Uniformly random number in [0, 1) (timed as a phase of sampling, if profiling is enabled).
+	 */
+	private double timedRandomUnifDouble()
+	{
+		if (timer == null)
+			return rng.randomUnifDouble();
+		long t0 = timer.start(PhaseTimer.RNG());
+		double d = rng.randomUnifDouble();
+		timer.stop(PhaseTimer.RNG(), t0);
+		return d;
+	}
+
+	/**
+	 * Uniformly random number in [0, r) (timed as a phase of sampling, if profiling is enabled).
+	 */
+	private double timedRandomUnifDouble(double r)
+	{
+		if (timer == null)
+			return rng.randomUnifDouble(r);
+		long t0 = timer.start(PhaseTimer.RNG());
+		double d = rng.randomUnifDouble(r);
+		timer.stop(PhaseTimer.RNG(), t0);
+		return d;
+	}
+
+	/**
+	 * Exponentially distributed random number with rate r (timed as a phase of sampling, if profiling is enabled).
+	 */
+	private double timedRandomExpDouble(double r)
+	{
+		if (timer == null)
+			return rng.randomExpDouble(r);
+		long t0 = timer.start(PhaseTimer.RNG());
+		double d = rng.randomExpDouble(r);
+		timer.stop(PhaseTimer.RNG(), t0);
+		return d;
+	}
+	// ===  UP  ==================================================================================================================================================
+
 	/**
 	 * Select, at random, n successive transitions and execute them.
 	 * For continuous-time models, the time to be spent in each state before leaving is also picked randomly.
@@ -766,6 +851,7 @@ public class SimulatorEngine extends PrismComponent
 		propertySamplers = new ArrayList<Sampler>();
 		// === DOWN ================================================================================================================================================
 		scalaPropertySamplers = scala.collection.JavaConverters.asScalaBuffer(propertySamplers);
+		activeSamplers = null;
 		// ===  UP  ================================================================================================================================================
 
 	}
@@ -782,6 +868,9 @@ public class SimulatorEngine extends PrismComponent
 	private void executeTransition(int i, int offset, int index) throws PrismException
 	{
 		TransitionList transitions = getTransitionList();
+		// === DOWN ================================================================================================================================================
+		long t0 = timer == null ? 0 : timer.start(PhaseTimer.STEP());
+		// ===  UP  ================================================================================================================================================
 		// Get corresponding choice and, if required (for full paths), calculate transition index
 		Choice choice = transitions.getChoice(i);
 		if (!onTheFly && index == -1)
@@ -800,6 +889,10 @@ public class SimulatorEngine extends PrismComponent
 		// Reset transition list 
 		transitionListBuilt = false;
 		transitionListState = null;
+		// === DOWN ================================================================================================================================================
+		if (timer != null)
+			timer.stop(PhaseTimer.STEP(), t0);
+		// ===  UP  ================================================================================================================================================
 		// Update samplers for any loaded properties
 		updateSamplers();
 		// Update strategy (if loaded)
@@ -821,6 +914,9 @@ public class SimulatorEngine extends PrismComponent
 	private void executeTimedTransition(int i, int offset, double time, int index) throws PrismException
 	{
 		TransitionList transitions = getTransitionList();
+		// === DOWN ================================================================================================================================================
+		long t0 = timer == null ? 0 : timer.start(PhaseTimer.STEP());
+		// ===  UP  ================================================================================================================================================
 		// Get corresponding choice and, if required (for full paths), calculate transition index
 		Choice choice = transitions.getChoice(i);
 		if (!onTheFly && index == -1)
@@ -839,6 +935,10 @@ public class SimulatorEngine extends PrismComponent
 		// Reset transition list 
 		transitionListBuilt = false;
 		transitionListState = null;
+		// === DOWN ================================================================================================================================================
+		if (timer != null)
+			timer.stop(PhaseTimer.STEP(), t0);
+		// ===  UP  ================================================================================================================================================
 		// Update samplers for any loaded properties
 		updateSamplers();
 		// Update strategy (if loaded)
@@ -850,7 +950,10 @@ public class SimulatorEngine extends PrismComponent
 	 */
 	private void resetSamplers() throws PrismLangException
 	{
-		for (Sampler sampler : propertySamplers) {
+		// === DOWN ================================================================================================================================================
+		// for (Sampler sampler : propertySamplers) {
+		for (Sampler sampler : samplersInUse()) {
+		// ===  UP  ================================================================================================================================================
 			sampler.reset();
 		}
 	}
@@ -860,11 +963,44 @@ public class SimulatorEngine extends PrismComponent
 	 */
 	private void updateSamplers() throws PrismException
 	{
-		for (Sampler sampler : propertySamplers) {
+		// === DOWN ================================================================================================================================================
+		// for (Sampler sampler : propertySamplers) {
+		if (timer != null && !samplersInUse().isEmpty()) {
+			// transitions of the new state are computed (and timed) before the samplers, which are timed together
+			TransitionList transitions = getTransitionList();
+			long t0 = timer.start(PhaseTimer.SAMPLERS());
+			for (Sampler sampler : samplersInUse())
+				sampler.update(path, transitions);
+			timer.stop(PhaseTimer.SAMPLERS(), t0);
+			return;
+		}
+		for (Sampler sampler : samplersInUse()) {
+		// ===  UP  ================================================================================================================================================
 			sampler.update(path, getTransitionList());
 		}
 	}
 
+	// === DOWN ==================================================================================================================================================
+	/**
+	 * Samplers that are updated on every step: all of them, except those of retired properties.
+	 */
+	private List<Sampler> samplersInUse()
+	{
+		return activeSamplers != null ? activeSamplers : propertySamplers;
+	}
+
+	/**
+	 * Stop evaluating a property (specified by its index) on generated paths, e.g. because its simulation method has already made a decision.
+	 * Its value in later paths is unspecified. Loading a model, or starting a new round of sampling, makes all the properties active again.
+	 */
+	public void retireProperty(int index)
+	{
+		if (activeSamplers == null)
+			activeSamplers = new ArrayList<Sampler>(propertySamplers);
+		activeSamplers.remove(propertySamplers.get(index));
+	}
+	// ===  UP  ==================================================================================================================================================
+
 	/**
 	 * Recompute the state of samplers for any loaded properties based on the whole current path.
 	 * (Not applicable for on-the-fly paths)
@@ -964,8 +1100,18 @@ public class SimulatorEngine extends PrismComponent
 	{
 		// Compute the current transition list, if required
 		if (!transitionListBuilt) {
+			// === DOWN ==============================================================================================================================================
+			transitionMisses++;
+			long t0 = timer == null ? 0 : timer.start(PhaseTimer.TRANSITIONS());
 			computeTransitionsForCurrentState();
+			if (timer != null)
+				timer.stop(PhaseTimer.TRANSITIONS(), t0);
+			// ===  UP  ==============================================================================================================================================
 		}
+		// === DOWN ================================================================================================================================================
+		else
+			transitionHits++;
+		// ===  UP  ================================================================================================================================================
 		return transitionList;
 	}
 
@@ -1588,7 +1734,14 @@ public class SimulatorEngine extends PrismComponent
 				sm.computeMissingParameterAfterSim();
 				// Extract result from SimulationMethod and store
 				try {
-					results[i] = sm.getResult(sampler);
+					// === DOWN ==================================================================================================================================
+					// results[i] = sm.getResult(sampler);
+					// Tests that are not decided (because sampling was stopped) give the best answer they have instead of throwing the samples away
+					if (sm instanceof HypTest && !((HypTest) sm).completed())
+						results[i] = ((HypTest) sm).interim();
+					else
+						results[i] = sm.getResult(sampler);
+					// ===  UP  ==================================================================================================================================
 				} catch (PrismException e) {
 					results[i] = e;
 				}
@@ -1627,6 +1780,18 @@ public class SimulatorEngine extends PrismComponent
 				mainLog.println(exprs.get(i) + " : " + results[i] + resultNote);
 		}
 
+		// === DOWN ================================================================================================================================================
+		String[] labels = new String[results.length];
+		Sampler[] samplers = new Sampler[results.length];
+		SimulationMethod[] methods = new SimulationMethod[results.length];
+		for (int i = 0; i < results.length; i++) {
+			labels[i] = exprs.get(i).toString();
+			samplers[i] = (indices[i] == -1) ? null : propertySamplers.get(indices[i]);
+			methods[i] = (indices[i] == -1) ? null : samplers[i].getSimulationMethod();
+		}
+		ResultJson.record(labels, samplers, methods, results);
+		// ===  UP  ================================================================================================================================================
+
 		return results;
 	}
 
@@ -1704,6 +1869,13 @@ public class SimulatorEngine extends PrismComponent
 			undefinedConstants.iterateProperty();
 		}
 
+		// === DOWN ================================================================================================================================================
+		// Position of every property in the threshold sweep (null if properties are sampled separately)
+		int[] sweepIndex = null;
+		if (STMCConfig.sweep && validPropsCount > 1)
+			sweepIndex = mergeThresholdSweep(indices);
+		// ===  UP  ================================================================================================================================================
+
 		// As long as there are at least some valid props, do sampling
 		if (validPropsCount > 0) {
 			doSampling(initialState, maxPathLength);
@@ -1717,11 +1889,22 @@ public class SimulatorEngine extends PrismComponent
 				//mainLog.print("Simulation results: mean: " + sampler.getMeanValue());
 				//mainLog.println(", variance: " + sampler.getVariance());
 				SimulationMethod sm = sampler.getSimulationMethod();
+				// === DOWN ========================================================================================================================================
+				if (sweepIndex != null)
+					sm = ((HypTestSweep) sm).test(sweepIndex[i]);
+				// ===  UP  ========================================================================================================================================
 				// Compute/print any missing parameters that need to be done after simulation
 				sm.computeMissingParameterAfterSim();
 				// Extract result from SimulationMethod and store
 				try {
-					results[i] = sm.getResult(sampler);
+					// === DOWN ==================================================================================================================================
+					// results[i] = sm.getResult(sampler);
+					// Tests that are not decided (because sampling was stopped) give the best answer they have instead of throwing the samples away
+					if (sm instanceof HypTest && !((HypTest) sm).completed())
+						results[i] = ((HypTest) sm).interim();
+					else
+						results[i] = sm.getResult(sampler);
+					// ===  UP  ==================================================================================================================================
 				} catch (PrismException e) {
 					results[i] = e;
 				}
@@ -1730,6 +1913,53 @@ public class SimulatorEngine extends PrismComponent
 			resultsCollection.setResult(undefinedConstants.getMFConstantValues(), pfcs[i], results[i]);
 		}
 
+		// === DOWN ================================================================================================================================================
+		String[] labels = new String[n];
+		Sampler[] samplers = new Sampler[n];
+		SimulationMethod[] methods = new SimulationMethod[n];
+		for (int i = 0; i < n; i++) {
+			labels[i] = expr.toString();
+			if (undefinedConstants.getMFConstantValues().getNumValues() > 0)
+				labels[i] += ", " + undefinedConstants.getMFConstantValues();
+			if (pfcs[i].getNumValues() > 0)
+				labels[i] += ", " + pfcs[i];
+			if (indices[i] != -1) {
+				samplers[i] = propertySamplers.get(indices[i]);
+				methods[i] = samplers[i].getSimulationMethod();
+				if (sweepIndex != null)
+					methods[i] = ((HypTestSweep) methods[i]).test(sweepIndex[i]);
+			}
+		}
+		ResultJson.record(labels, samplers, methods, results);
+		// ===  UP  ================================================================================================================================================
+
+		// === DOWN ================================================================================================================================================
+		if (sweepIndex != null) {
+			mainLog.println("\nSimulation method parameters:");
+			for (int i = 0; i < results.length; i++) {
+				mainLog.print(pfcs[i] + " : ");
+				if (indices[i] == -1)
+					mainLog.println("no simulation");
+				else
+					mainLog.println(((HypTestSweep) propertySamplers.get(indices[i]).getSimulationMethod()).test(sweepIndex[i]).getParametersString());
+			}
+			mainLog.println("\nSimulation result details:");
+			for (int i = 0; i < results.length; i++) {
+				mainLog.print(pfcs[i] + " : ");
+				if (indices[i] == -1)
+					mainLog.println("no simulation");
+				else {
+					HypTestSweep sweep = (HypTestSweep) propertySamplers.get(indices[i]).getSimulationMethod();
+					mainLog.println(sweep.test(sweepIndex[i]).getResultExplanation(propertySamplers.get(indices[i])) + ", decided at iteration: " +
+							sweep.decidedIteration(sweepIndex[i]));
+				}
+			}
+			mainLog.println("\nResults:");
+			mainLog.print(resultsCollection.toStringPartial(undefinedConstants.getMFConstantValues(), true, " ", " : ", false));
+			return;
+		}
+		// ===  UP  ================================================================================================================================================
+
 		// Display results to log
 		mainLog.println("\nSimulation method parameters:");
 		for (int i = 0; i < results.length; i++) {
@@ -1745,6 +1975,57 @@ public class SimulatorEngine extends PrismComponent
 		mainLog.print(resultsCollection.toStringPartial(undefinedConstants.getMFConstantValues(), true, " ", " : ", false));
 	}
 
+	// === DOWN ==================================================================================================================================================
+	/**
+	 * Replace the properties of an experiment by a single property whose simulation method is a {@link HypTestSweep}, if every (valid) property is
+	 * the same path formula with a different threshold (eg. {@code P<x[F s=3]} for a range of values of {@code x}). This way, all the thresholds are
+	 * tested against one stream of samples and each of them stops consuming samples as soon as it is decided.
+	 * @param indices Index of the property (and its sampler) for each iteration of the experiment ({@code -1} for invalid ones). On success, all
+	 *                valid entries are changed to the index of the only remaining property.
+	 * @return Position of every iteration of the experiment in the sweep, or null if properties cannot be merged (in which case nothing is changed).
+	 */
+	private int[] mergeThresholdSweep(int[] indices)
+	{
+		int first = -1;
+		String pathFormula = null;
+		List<HypTest> tests = new ArrayList<HypTest>();
+		int[] sweepIndex = new int[indices.length];
+		for (int i = 0; i < indices.length; i++) {
+			sweepIndex[i] = -1;
+			if (indices[i] == -1)
+				continue;
+			Expression prop = properties.get(indices[i]);
+			SimulationMethod sm = propertySamplers.get(indices[i]).getSimulationMethod();
+			if (!(prop instanceof ExpressionProb) || !(sm instanceof HypTest) || sm instanceof HypTestSweep) {
+				mainLog.printWarning("Threshold sweep is only supported for STMC tests on probabilistic properties; thresholds are tested separately.");
+				return null;
+			}
+			String formula = ((ExpressionProb) prop).getExpression().toString();
+			if (first == -1) {
+				first = indices[i];
+				pathFormula = formula;
+			} else if (!formula.equals(pathFormula)) {
+				mainLog.printWarning("Properties of the experiment differ in more than their thresholds; thresholds are tested separately.");
+				return null;
+			}
+			sweepIndex[i] = tests.size();
+			tests.add((HypTest) sm);
+		}
+		// Samplers of the same experiment are added at the end of the list, in order. So removing from the end keeps other indices valid.
+		for (int i = indices.length - 1; i >= 0; i--) {
+			if (indices[i] != -1 && indices[i] != first) {
+				properties.remove(indices[i]);
+				propertySamplers.remove(indices[i]);
+			}
+			if (indices[i] != -1)
+				indices[i] = first;
+		}
+		propertySamplers.get(first).setSimulationMethod(HypTestSweep.apply(tests.toArray(new HypTest[0])));
+		mainLog.println("\nThreshold sweep: " + tests.size() + " thresholds of " + pathFormula + " share one sampler");
+		return sweepIndex;
+	}
+	// ===  UP  ==================================================================================================================================================
+
 	/**
 	 * Execute sampling for the set of currently loaded properties.
 	 * Sample paths are from the specified initial state and maximum length.
@@ -1754,12 +2035,14 @@ public class SimulatorEngine extends PrismComponent
 	 * @param maxPathLength The maximum path length for sampling
 	 */
 	// === DOWN ==================================================================================================================================================
-	// private
-	protected
+	// private void doSampling(State initialState, long maxPathLength) throws PrismException
+	private void sampleProperties(State initialState, long maxPathLength) throws PrismException
 	// ===  UP  ==================================================================================================================================================
-	void doSampling(State initialState, long maxPathLength) throws PrismException
 	{
-		int iters;
+		// === DOWN ==================================================================================================================================================
+		// int iters;
+		long iters;
+		// ===  UP  ==================================================================================================================================================
 		long i;
 		// Flags
 		boolean stoppedEarly = false;
@@ -1768,49 +2051,95 @@ public class SimulatorEngine extends PrismComponent
 		boolean allKnown = false;
 		boolean someUnknownButBounded = false;
 		boolean shouldStopSampling = false;
-		// Path stats
-		double avgPathLength = 0;
-		long minPathFound = 0, maxPathFound = 0;
+		// === DOWN ================================================================================================================================================
+		// // Path stats
+		// double avgPathLength = 0;
+		// long minPathFound = 0, maxPathFound = 0;
+		// ===  UP  ================================================================================================================================================
 		// Progress info
-		int lastPercentageDone = 0;
+		// === DOWN ================================================================================================================================================
+		// int lastPercentageDone = 0;
+		// ===  UP  ================================================================================================================================================
 		int percentageDone = 0;
-		// Timing info
-		long start, stop;
-		double time_taken;
-
-		// Start
-		start = System.currentTimeMillis();
-		mainLog.print("\nSampling progress: [");
-		mainLog.flush();
+		// === DOWN ================================================================================================================================================
+		// // Timing info
+		// long start, stop;
+		// double time_taken;
+		//
+		// // Start
+		// start = System.currentTimeMillis();
+		// mainLog.print("\nSampling progress: [");
+		// mainLog.flush();
+		// ===  UP  ================================================================================================================================================
 
 		// Main sampling loop
 		iters = 0;
+		// === DOWN ================================================================================================================================================
+		// Budget, phase timer, monitor, path lengths, progress and summary of the campaign are kept like in the other engines (the clock starts here)
+		activeSamplers = new ArrayList<Sampler>(propertySamplers);
+		transitionHits = transitionMisses = 0;
+		SamplingCampaign campaign = new SamplingCampaign(this, mainLog, properties, scalaPropertySamplers, 1, 1, 1, maxPathLength);
+		budget = campaign.budget();
+		timer = campaign.timer();
+		monitor = campaign.monitor();
+		PathLengths lengths = campaign.lengths();
+		// ===  UP  ================================================================================================================================================
 		while (!shouldStopSampling) {
 
 			// See if all properties are done; if so, stop sampling
 			allDone = true;
-			for (Sampler sampler : propertySamplers) {
+			// === DOWN ==============================================================================================================================================
+			// for (Sampler sampler : propertySamplers) {
+			// 	if (!sampler.getSimulationMethod().shouldStopNow(iters, sampler))
+			// 		allDone = false;
+			// }
+			// Properties decided by STMC's tests are retired: their results are final, so their samplers are neither updated nor waited for anymore
+			long t0 = timer == null ? 0 : timer.start(PhaseTimer.TESTS());
+			for (Iterator<Sampler> it = activeSamplers.iterator(); it.hasNext();) {
+				Sampler sampler = it.next();
 				if (!sampler.getSimulationMethod().shouldStopNow(iters, sampler))
 					allDone = false;
+				else if (sampler.getSimulationMethod() instanceof HypTest) {
+					it.remove();
+					SamplingEvents.decision(properties.get(propertySamplers.indexOf(sampler)), (HypTest) sampler.getSimulationMethod(), sampler, iters);
+				}
 			}
+			if (timer != null)
+				timer.stop(PhaseTimer.TESTS(), t0);
+			// ===  UP  ==============================================================================================================================================
 			if (allDone)
 				break;
+			// === DOWN ==============================================================================================================================================
+			if (budget.exhausted(iters)) {
+				shouldStopSampling = true;
+				break;
+			}
+			// ===  UP  ==============================================================================================================================================
 
 			// Display progress (of slowest property)
 			percentageDone = 100;
-			for (Sampler sampler : propertySamplers) {
+			// === DOWN ==============================================================================================================================================
+			// for (Sampler sampler : propertySamplers) {
+			for (Sampler sampler : activeSamplers) {
+			// ===  UP  ==============================================================================================================================================
 				percentageDone = Math.min(percentageDone, sampler.getSimulationMethod().getProgress(iters, sampler));
 			}
-			if (percentageDone > lastPercentageDone) {
-				lastPercentageDone = percentageDone;
-				mainLog.print(" " + lastPercentageDone + "%");
-				mainLog.flush();
-			}
+			// === DOWN ==============================================================================================================================================
+			// if (percentageDone > lastPercentageDone) {
+			// 	lastPercentageDone = percentageDone;
+			// 	mainLog.print(" " + lastPercentageDone + "%");
+			// 	mainLog.flush();
+			// }
+			campaign.progress(percentageDone);
+			// ===  UP  ==============================================================================================================================================
 
 			iters++;
 
 			// Start the new path for this iteration (sample)
 			initialisePath(initialState);
+			// === DOWN ==============================================================================================================================================
+			lengths.startPath(activeSamplers);
+			// ===  UP  ==============================================================================================================================================
 
 			// Generate a path
 			allKnown = false;
@@ -1820,13 +2149,19 @@ public class SimulatorEngine extends PrismComponent
 				// Check status of samplers
 				allKnown = true;
 				someUnknownButBounded = false;
-				for (Sampler sampler : propertySamplers) {
+				// === DOWN ==========================================================================================================================================
+				// for (Sampler sampler : propertySamplers) {
+				for (Sampler sampler : activeSamplers) {
+				// ===  UP  ==========================================================================================================================================
 					if (!sampler.isCurrentValueKnown()) {
 						allKnown = false;
 						if (sampler.needsBoundedNumSteps())
 							someUnknownButBounded = true;
 					}
 				}
+				// === DOWN ========================================================================================================================================
+				lengths.step(i);
+				// ===  UP  ========================================================================================================================================
 				// Stop when all answers are known or we have reached max path length
 				// (but don't stop yet if there are "bounded" samplers with unkown values)
 				if ((allKnown || i >= maxPathLength) && !someUnknownButBounded)
@@ -1839,9 +2174,13 @@ public class SimulatorEngine extends PrismComponent
 			// TODO: Detect deadlocks so we can report a warning
 
 			// Update path length statistics
-			avgPathLength = (avgPathLength * (iters - 1) + (i)) / iters;
-			minPathFound = (iters == 1) ? i : Math.min(minPathFound, i);
-			maxPathFound = (iters == 1) ? i : Math.max(maxPathFound, i);
+			// === DOWN ==============================================================================================================================================
+			// avgPathLength = (avgPathLength * (iters - 1) + (i)) / iters;
+			// minPathFound = (iters == 1) ? i : Math.min(minPathFound, i);
+			// maxPathFound = (iters == 1) ? i : Math.max(maxPathFound, i);
+			lengths.endPath(i);
+			campaign.path(iters, i);
+			// ===  UP  ==============================================================================================================================================
 
 			// If not all samplers could produce values, this an error
 			if (!allKnown) {
@@ -1850,52 +2189,149 @@ public class SimulatorEngine extends PrismComponent
 			}
 
 			// Update state of samplers based on last path
-			for (Sampler sampler : propertySamplers) {
+			// === DOWN ==============================================================================================================================================
+			// for (Sampler sampler : propertySamplers) {
+			t0 = timer == null ? 0 : timer.start(PhaseTimer.TESTS());
+			for (Sampler sampler : activeSamplers) {
+			// ===  UP  ==============================================================================================================================================
 				sampler.updateStats();
 			}
+			// === DOWN ==============================================================================================================================================
+			if (timer != null)
+				timer.stop(PhaseTimer.TESTS(), t0);
+			// ===  UP  ==============================================================================================================================================
 		}
-
+		// Print details
 		// === DOWN ================================================================================================================================================
-		stop = System.currentTimeMillis();
-		time_taken = (stop - start) / 1000.0;
-		Main.updateTotal(time_taken, iters);
+		// stop = System.currentTimeMillis();
+		// time_taken = (stop - start) / 1000.0;
+		// Main.updateTotal(time_taken, iters);
+		// if (!stoppedEarly) {
+		// 	if (!shouldStopSampling)
+		// 		mainLog.print(" 100% ]");
+		// 	mainLog.println();
+		// 	mainLog.print("\nSampling complete: ");
+		// 	mainLog.print(iters + " iterations in " + time_taken + " seconds (average " + PrismUtils.formatDouble(2, time_taken / iters) + ")\n");
+		// 	mainLog.print("Path length statistics: average " + PrismUtils.formatDouble(2, avgPathLength) + ", min " + minPathFound + ", max " + maxPathFound
+		// 			+ "\n");
+		// } else {
+		// 	mainLog.print(" ...\n\nSampling terminated early after " + iters + " iterations.\n");
+		// }
+		// The summary ends with the warning of the budget if sampling was stopped (and it throws if stoppedEarly, see below)
+		campaign.finish(iters, stoppedEarly, transitionHits, transitionMisses, null);
 		// ===  UP  ================================================================================================================================================
 
-		// Print details
-		if (!stoppedEarly) {
-			if (!shouldStopSampling)
-				mainLog.print(" 100% ]");
-			mainLog.println();
-			mainLog.print("\nSampling complete: ");
-			mainLog.print(iters + " iterations in " + time_taken + " seconds (average " + PrismUtils.formatDouble(2, time_taken / iters) + ")\n");
-			mainLog.print("Path length statistics: average " + PrismUtils.formatDouble(2, avgPathLength) + ", min " + minPathFound + ", max " + maxPathFound
-					+ "\n");
-		} else {
-			mainLog.print(" ...\n\nSampling terminated early after " + iters + " iterations.\n");
-		}
-
 		// Print a warning if deadlocks occurred at any point
 		if (deadlocksFound)
 			mainLog.printWarning("Deadlocks were found during simulation: self-loops were added.");
 
 		// Print a warning if simulation was stopped by the user
-		if (shouldStopSampling)
-			mainLog.printWarning("Simulation was terminated before completion.");
+		// === DOWN ================================================================================================================================================
+		// if (shouldStopSampling)
+		// 	mainLog.printWarning("Simulation was terminated before completion.");
+		// ===  UP  ================================================================================================================================================
 
 		// write to feedback file with true to indicate that we have finished sampling
 		// Write_Feedback(iteration_counter, numIters, true);
 
-		if (stoppedEarly) {
-			throw new PrismException(
-					"One or more of the properties being sampled could not be checked on a sample. Consider increasing the maximum path length");
+		// === DOWN ================================================================================================================================================
+		// if (stoppedEarly) {
+		// 	throw new PrismException(
+		// 			"One or more of the properties being sampled could not be checked on a sample. Consider increasing the maximum path length");
+		// }
+		// ===  UP  ================================================================================================================================================
+	}
+
+	// === DOWN ==================================================================================================================================================
+	/**
+	 * Execute sampling for the set of currently loaded properties (see {@link #sampleProperties(State, long)}).
+	 * State of the sampling campaign is cleared (see {@link #finishSampling()}) even if sampling fails.
+	 * @param initialState Initial state (if null, is selected randomly)
+	 * @param maxPathLength The maximum path length for sampling
+	 */
+	protected void doSampling(State initialState, long maxPathLength) throws PrismException
+	{
+		try {
+			sampleProperties(initialState, maxPathLength);
+		} finally {
+			finishSampling();
 		}
 	}
 
 	/**
-	 * Halt the sampling algorithm in its tracks (not implemented).
+	 * Clear the state of the current sampling campaign (budget, phase timer and monitor), so that a failed campaign
+	 * neither leaks its monitor nor leaves a stale budget for {@link #stopSampling()}.
+	 */
+	protected void finishSampling()
+	{
+		activeSamplers = null;
+		budget = null;
+		timer = null;
+		if (monitor != null)
+			monitor.finish();
+		monitor = null;
+	}
+
+	/**
+	 * Generate one path (sample) of the loaded model and evaluate the loaded properties on it (see {@link #queryProperty(int)}).
+	 * Unlike {@link #doSampling(State, long)}, simulation methods attached to the properties are not notified,
+	 * so several engines can generate paths for the same methods (e.g. in different threads).
+	 * @param initialState Initial state (if null, is selected randomly)
+	 * @param maxPathLength The maximum path length for sampling
+	 * @return Length of the path, or -1 if the value of some property is not known after {@code maxPathLength} steps
 	 */
+	public long samplePath(State initialState, long maxPathLength) throws PrismException
+	{
+		return samplePath(initialState, maxPathLength, () -> false);
+	}
+
+	/**
+	 * Same as {@link #samplePath(State, long)}, except that generation of the path is abandoned (and -1 is returned)
+	 * as soon as {@code cancelled} returns true. It is checked once per step.
+	 */
+	public long samplePath(State initialState, long maxPathLength, java.util.function.BooleanSupplier cancelled) throws PrismException
+	{
+		initialisePath(initialState);
+		boolean allKnown = false;
+		boolean someUnknownButBounded = false;
+		long i = 0;
+		while ((!allKnown && i < maxPathLength) || someUnknownButBounded) {
+			if (cancelled.getAsBoolean())
+				return -1;
+			allKnown = true;
+			someUnknownButBounded = false;
+			for (Sampler sampler : samplersInUse()) {
+				if (!sampler.isCurrentValueKnown()) {
+					allKnown = false;
+					if (sampler.needsBoundedNumSteps())
+						someUnknownButBounded = true;
+				}
+			}
+			if ((allKnown || i >= maxPathLength) && !someUnknownButBounded)
+				break;
+			automaticTransition();
+			i++;
+		}
+		return allKnown ? i : -1;
+	}
+	// ===  UP  ==================================================================================================================================================
+
+	// === DOWN ==================================================================================================================================================
+	// /**
+	//  * Halt the sampling algorithm in its tracks (not implemented).
+	//  */
+	/**
+	 * Halt the sampling algorithm in its tracks: sampling stops before the next sample (see {@link SamplingBudget#stop()}),
+	 * and the tests that are not decided yet give their partial answers. Does nothing if no sampling is in progress.
+	 */
+	// ===  UP  ==================================================================================================================================================
 	public void stopSampling()
 	{
-		// TODO
+		// === DOWN ================================================================================================================================================
+		// // TODO
+		SamplingBudget current = budget;
+		if (current != null)
+			current.stop();
+		// ===  UP  ================================================================================================================================================
 	}
 }
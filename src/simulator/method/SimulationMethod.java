@@ -118,6 +118,25 @@ public abstract class SimulationMethod implements Cloneable
    */
   public abstract int getProgress(int iters, Sampler sampler);
 
+  // === DOWN ==================================================================================================================================================
+  /**
+   * Same as {@link #shouldStopNow(int, Sampler)}, except that the number of iterations is a 64-bit integer.
+   * Simulation engines call this version. Methods that may run for more than {@link Integer#MAX_VALUE} iterations should override it.
+   * By default, the number of iterations saturates at {@link Integer#MAX_VALUE} and is passed to the 32-bit version.
+   */
+  public boolean shouldStopNow(long iters, Sampler sampler) {
+    return shouldStopNow((int) Math.min(iters, Integer.MAX_VALUE), sampler);
+  }
+
+  /**
+   * Same as {@link #getProgress(int, Sampler)}, except that the number of iterations is a 64-bit integer.
+   * By default, the number of iterations saturates at {@link Integer#MAX_VALUE} and is passed to the 32-bit version.
+   */
+  public int getProgress(long iters, Sampler sampler) {
+    return getProgress((int) Math.min(iters, Integer.MAX_VALUE), sampler);
+  }
+  // ===  UP  ==================================================================================================================================================
+
   /**
    * Get the (approximate) result for the property that simulation is being used to approximate.
    * This should be a Boolean/Double for bounded/quantitative properties, respectively.
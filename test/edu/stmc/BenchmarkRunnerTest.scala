@@ -0,0 +1,125 @@
+/**************************************************************************************************
+ * STMC - Statistical Model Checker                                                               *
+ *                                                                                                *
+ * Copyright (C) 2019                                                                             *
+ * Authors:                                                                                       *
+ *   Nima Roohi <nroohi@ucsd.edu> (University of California San Diego)                            *
+ *                                                                                                *
+ * This program is free software: you can redistribute it and/or modify it under the terms        *
+ * of the GNU General Public License as published by the Free Software Foundation, either         *
+ * version 3 of the License, or (at your option) any later version.                               *
+ *                                                                                                *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;      *
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.      *
+ * See the GNU General Public License for more details.                                           *
+ *                                                                                                *
+ * You should have received a copy of the GNU General Public License along with this program.     *
+ * If not, see <https://www.gnu.org/licenses/>.                                                   *
+ **************************************************************************************************/
+
+package edu.stmc
+
+import org.scalatest.FlatSpec
+import prism.PrismException
+
+import scala.collection.JavaConverters._
+
+class BenchmarkRunnerTest extends FlatSpec {
+
+  private val matrix = Seq(
+    "repeat 3                    # shared settings",
+    "let alpha 0.01",
+    "let min 10",
+    "method SPRT -sim -stmc -smp_method independent -hyp_test_method SPRT -alpha $alpha",
+    "method SSPRT -sim -stmc -smp_method stratified -hyp_test_method SSPRT -alpha $alpha $strata",
+    "strata 2 -min_iter $min",
+    "strata 4,4 -min_iter 5",
+    "",
+    "model ./examples/brp/brp.pm",
+    "const MAX=15,N=4096 expect true",
+    "const MAX=20,N=8192",
+    "property P<0.39[F<100s=3]",
+    "",
+    "model ./examples/polling/poll10.sm",
+    "let min 2",
+    "repeat 5",
+    "expect false",
+    "property P>0.04[!(s=2&a=1)U<1(s=1&a=1)]")
+
+  private def cells(lines: Seq[String]) = BenchmarkRunner.parse(lines.asJava).asScala
+
+  "Matrix" should "have a cell for every instance, method and strata (of stratified methods)" in {
+    val res = cells(matrix)
+    assert(res.map(_.id) == Seq(
+      "./examples/brp/brp.pm MAX=15,N=4096 | P<0.39[F<100s=3] | SPRT",
+      "./examples/brp/brp.pm MAX=15,N=4096 | P<0.39[F<100s=3] | SSPRT 2",
+      "./examples/brp/brp.pm MAX=15,N=4096 | P<0.39[F<100s=3] | SSPRT 4,4",
+      "./examples/brp/brp.pm MAX=20,N=8192 | P<0.39[F<100s=3] | SPRT",
+      "./examples/brp/brp.pm MAX=20,N=8192 | P<0.39[F<100s=3] | SSPRT 2",
+      "./examples/brp/brp.pm MAX=20,N=8192 | P<0.39[F<100s=3] | SSPRT 4,4",
+      "./examples/polling/poll10.sm | P>0.04[!(s=2&a=1)U<1(s=1&a=1)] | SPRT",
+      "./examples/polling/poll10.sm | P>0.04[!(s=2&a=1)U<1(s=1&a=1)] | SSPRT 2",
+      "./examples/polling/poll10.sm | P>0.04[!(s=2&a=1)U<1(s=1&a=1)] | SSPRT 4,4"))
+    assert(res.map(_.repeat) == Seq(3, 3, 3, 3, 3, 3, 5, 5, 5))
+    assert(res.map(_.expected) == Seq("true", "true", "true", null, null, null, "false", "false", "false"))
+  }
+
+  it should "replace variables and strata in the options of methods" in {
+    val res = cells(matrix)
+    assert(res(1).args.asScala == Seq("./examples/brp/brp.pm", "-const", "MAX=15,N=4096", "-pf", "P<0.39[F<100s=3]",
+                                      "-sim", "-stmc", "-smp_method", "stratified", "-hyp_test_method", "SSPRT", "-alpha", "0.01",
+                                      "-strata_size", "2", "-min_iter", "10"))
+    assert(res(7).args.asScala.takeRight(4) == Seq("-strata_size", "2", "-min_iter", "2"))
+  }
+
+  it should "be rejected when it is not well-formed" in {
+    assertThrows[PrismException](cells(Seq("model a.pm", "method M -sim")))
+    assertThrows[PrismException](cells(Seq("method M -sim", "model a.pm")))
+    assertThrows[PrismException](cells(Seq("method M -alpha $alpha", "model a.pm", "property P<0.5[F x=1]")))
+    assertThrows[PrismException](cells(Seq("method M $strata", "model a.pm", "property P<0.5[F x=1]")))
+    assertThrows[PrismException](cells(Seq("const N=1", "method M -sim", "model a.pm", "property P<0.5[F x=1]")))
+    assertThrows[PrismException](cells(Seq("repeat 0")))
+    assertThrows[PrismException](cells(Seq("repeats 1")))
+  }
+
+  "Statistics" should "be read back from their CSV file" in {
+    val s = new BenchmarkRunner.Stats("a.pm N=1,M=2 | P<0.5[F \"done\"] | SPRT")
+    s.runs = 20
+    s.time = 1.5
+    s.timeSe = 0.1
+    s.samples = 1000
+    s.samplesSe = 50
+    s.decisions = "false:1 true:19"
+    s.reference = "majority"
+    s.errorRate = 0.05
+    val res = BenchmarkRunner.fromCsv(BenchmarkRunner.toCsv(Seq(s).asJava).split('\n').toList.asJava).get(s.id)
+    assert(res.runs == 20 && res.time == 1.5 && res.timeSe == 0.1 && res.samples == 1000 && res.samplesSe == 50)
+    assert(res.decisions == s.decisions && res.reference == s.reference && res.errorRate == 0.05 && res.wall.isNaN)
+  }
+
+  "Comparison with a baseline" should "only report significant slowdowns" in {
+    assert(BenchmarkRunner.slower(1.0, 0.01, 1.2, 0.01, 0.1))
+    assert(!BenchmarkRunner.slower(1.0, 0.01, 1.05, 0.01, 0.1))     // within the tolerance
+    assert(!BenchmarkRunner.slower(1.0, 0.2, 1.2, 0.2, 0.1))        // within the standard errors
+    assert(!BenchmarkRunner.slower(1.0, 0.01, 0.5, 0.01, 0.1))      // faster
+    assert(BenchmarkRunner.slower(1.0, Double.NaN, 1.2, Double.NaN, 0.1))
+  }
+
+  it should "report slowdowns and new failures of cells that are in the baseline" in {
+    def stats(id: String, time: Double, samples: Double, failures: Int) = {
+      val s = new BenchmarkRunner.Stats(id)
+      s.time = time
+      s.samples = samples
+      s.failures = failures
+      s
+    }
+    val baseline = Map("a" -> stats("a", 1, 100, 0), "b" -> stats("b", 1, 100, 0)).asJava
+    val current = Seq(stats("a", 2, 100, 0), stats("b", 1, 300, 1), stats("c", 9, 900, 9))
+    val res = BenchmarkRunner.compare(baseline, current.asJava, 0.1).asScala
+    assert(res.size == 3)
+    assert(res.exists(_.startsWith("a: time")))
+    assert(res.exists(_.startsWith("b: samples")))
+    assert(res.exists(_.startsWith("b: 1 failed runs")))
+  }
+
+}
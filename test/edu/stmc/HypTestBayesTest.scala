@@ -0,0 +1,82 @@
+/**************************************************************************************************
+ * STMC - Statistical Model Checker                                                               *
+ *                                                                                                *
+ * Copyright (C) 2019                                                                             *
+ * Authors:                                                                                       *
+ *   Nima Roohi <nroohi@ucsd.edu> (University of California San Diego)                            *
+ *                                                                                                *
+ * This program is free software: you can redistribute it and/or modify it under the terms        *
+ * of the GNU General Public License as published by the Free Software Foundation, either         *
+ * version 3 of the License, or (at your option) any later version.                               *
+ *                                                                                                *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;      *
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.      *
+ * See the GNU General Public License for more details.                                           *
+ *                                                                                                *
+ * You should have received a copy of the GNU General Public License along with this program.     *
+ * If not, see <https://www.gnu.org/licenses/>.                                                   *
+ **************************************************************************************************/
+
+package edu.stmc
+
+import java.util.concurrent.ThreadLocalRandom
+
+import org.scalatest.FlatSpec
+
+class HypTestBayesTest extends FlatSpec {
+
+  private def run(threshold: Double, alpha: Double, beta: Double, LB: Boolean, priorA: Double = 1, priorB: Double = 1) = {
+    val test = new HypTestBayes().init(threshold, alpha, beta, priorA, priorB, LB)
+    val rnd = ThreadLocalRandom.current()
+    while (!test.completed)
+      test.update(rnd.nextBoolean())
+    test
+  }
+
+  private def test(threshold: Double, alpha: Double, beta: Double, LB: Boolean, priorA: Double = 1, priorB: Double = 1) =
+    run(threshold, alpha, beta, LB, priorA, priorB).status
+
+  private def testR(threshold: Double, alpha: Double, beta: Double, LB: Boolean) =
+    run(threshold, alpha, beta, LB).rejected
+
+  private val r1000 = (1 to 1000).par
+
+  "Bayes" should "returns SMALLER (ie rejects) very few times when lower-bound (θ) is smaller than the actual probability" in {
+    assert(50 > r1000.count(_ => test(0.40, 0.01, 0.01, LB = true) == CompResult.Binary.SMALLER))
+    assert(50 > r1000.count(_ => test(0.40, 0.01, 0.20, LB = true) == CompResult.Binary.SMALLER))
+    assert(50 > r1000.count(_ => test(0.30, 0.01, 0.45, LB = true) == CompResult.Binary.SMALLER))
+    assert(50 > r1000.count(_ => test(0.40, 0.01, 0.01, LB = true, 2, 8) == CompResult.Binary.SMALLER))
+
+    assert(50 > r1000.count(_ => testR(0.40, 0.01, 0.01, LB = true)))
+    assert(50 > r1000.count(_ => testR(0.40, 0.01, 0.20, LB = true)))
+    assert(50 > r1000.count(_ => testR(0.30, 0.01, 0.45, LB = true)))
+  }
+
+  it should "returns LARGER (ie rejects) very few times when upper-bound (θ) is larger than the actual probability" in {
+    assert(50 > r1000.count(_ => test(0.60, 0.01, 0.01, LB = false) == CompResult.Binary.LARGER))
+    assert(50 > r1000.count(_ => test(0.60, 0.01, 0.20, LB = false) == CompResult.Binary.LARGER))
+    assert(50 > r1000.count(_ => test(0.70, 0.01, 0.45, LB = false) == CompResult.Binary.LARGER))
+    assert(50 > r1000.count(_ => test(0.60, 0.01, 0.01, LB = false, 8, 2) == CompResult.Binary.LARGER))
+
+    assert(50 > r1000.count(_ => testR(0.60, 0.01, 0.01, LB = false)))
+    assert(50 > r1000.count(_ => testR(0.60, 0.01, 0.20, LB = false)))
+    assert(50 > r1000.count(_ => testR(0.70, 0.01, 0.45, LB = false)))
+  }
+
+  it should "treat batched and individual updates the same way" in {
+    val t1 = new HypTestBayes().init(0.3, 0.05, 0.05, 2, 3)
+    val t2 = new HypTestBayes().init(0.3, 0.05, 0.05, 2, 3)
+    (1 to 7).foreach(_ => t1.update(true))
+    (1 to 5).foreach(_ => t1.update(false))
+    t2.update(7, 5)
+    assert(t1.posteriorA == 9 && t1.posteriorB == 8)
+    assert(t2.posteriorA == 9 && t2.posteriorB == 8)
+    assert(t1.logBayesFactor == t2.logBayesFactor)
+  }
+
+  it should "start from a Bayes factor of one" in {
+    assert(new HypTestBayes().init(0.3, 0.05, 0.05, 2, 3).logBayesFactor == 0)
+    assert(!new HypTestBayes().init(0.3, 0.05, 0.05, 2, 3).completed)
+  }
+
+}
@@ -0,0 +1,132 @@
+/**************************************************************************************************
+ * STMC - Statistical Model Checker                                                               *
+ *                                                                                                *
+ * Copyright (C) 2019                                                                             *
+ * Authors:                                                                                       *
+ *   Nima Roohi <nroohi@ucsd.edu> (University of California San Diego)                            *
+ *                                                                                                *
+ * This program is free software: you can redistribute it and/or modify it under the terms        *
+ * of the GNU General Public License as published by the Free Software Foundation, either         *
+ * version 3 of the License, or (at your option) any later version.                               *
+ *                                                                                                *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;      *
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.      *
+ * See the GNU General Public License for more details.                                           *
+ *                                                                                                *
+ * You should have received a copy of the GNU General Public License along with this program.     *
+ * If not, see <https://www.gnu.org/licenses/>.                                                   *
+ **************************************************************************************************/
+
+package edu.stmc
+
+import java.util.concurrent.ThreadLocalRandom
+
+import org.scalatest.FlatSpec
+
+class HypTestBlockTest extends FlatSpec {
+
+  /** `bits` random observations (each one is positive with probability `p`), packed 64 per word. */
+  private def block(p: Double, bits: Int): Array[Long] = {
+    val rnd = ThreadLocalRandom.current()
+    val words = Array.ofDim[Long]((bits + 63) / 64)
+    for (i <- 0 until bits if rnd.nextDouble() < p)
+      words(i >>> 6) |= 1L << (i & 63)
+    words
+  }
+
+  private def bit(words: Array[Long], i: Int) = (words(i >>> 6) & (1L << (i & 63))) != 0
+
+  /** Feeds the same blocks to `blocked` at once and to `single` one observation at a time, and checks that they stop at the same observation. */
+  private def same(blocked: HypTest, single: HypTest, p: Double, bits: Int = 1000): Boolean = {
+    var done = false
+    while (!done) {
+      val words = block(p, bits)
+      val consumed = blocked.update(words, bits)
+      var i = 0
+      while (i < bits && !single.completed) {
+        single.update(bit(words, i))
+        i += 1
+      }
+      if (consumed != i || blocked.completed != single.completed)
+        return false
+      done = single.completed
+    }
+    blocked.rejected == single.rejected && blocked.too_close == single.too_close
+  }
+
+  private val r100 = (1 to 100).par
+
+  "Packed bits" should "be counted correctly in every range" in {
+    val words = block(0.5, 200)
+    for (from <- 0 to 200; until <- from to 200)
+      assert(HypTest.countPositives(words, from, until) == (from until until).count(bit(words, _)))
+  }
+
+  "Block updates" should "stop at the same observation as single updates in SPRT" in {
+    for (p <- Seq(0.3, 0.45, 0.5, 0.55, 0.7))
+      assert(r100.forall(_ => same(new HypTestSPRT().init(0.5, 0.01, 0.01, 0.05), new HypTestSPRT().init(0.5, 0.01, 0.01, 0.05), p)))
+  }
+
+  it should "stop at the same observation as single updates in ternary SPRT" in {
+    for (p <- Seq(0.3, 0.5, 0.7))
+      assert(r100.forall(_ =>
+        same(new HypTestSPRTTernary().init(0.5, 0.01, 0.01, 0.01, 0.05), new HypTestSPRTTernary().init(0.5, 0.01, 0.01, 0.01, 0.05), p)))
+  }
+
+  it should "stop at the same observation as single updates in GLRT" in {
+    for (p <- Seq(0.3, 0.45, 0.5, 0.55, 0.7))
+      assert(r100.forall(_ => same(new HypTestGLRT().init(0.5, 0.01, 0.01, 50), new HypTestGLRT().init(0.5, 0.01, 0.01, 50), p)))
+  }
+
+  it should "stop at the same observation as single updates in Bayes and CI" in {
+    for (p <- Seq(0.3, 0.5, 0.7)) {
+      assert(r100.forall(_ => same(new HypTestBayes().init(0.5, 0.01, 0.01), new HypTestBayes().init(0.5, 0.01, 0.01), p)))
+      assert(r100.forall(_ => same(new HypTestCI().init(0.05, 0.05, 10), new HypTestCI().init(0.05, 0.05, 10), p)))
+    }
+  }
+
+  it should "decide every threshold of a sweep at the same observation as single samples" in {
+    def sweep() = HypTestSweep(Array(0.3, 0.45, 0.5, 0.55, 0.7).map(t => new HypTestSPRT().init(t, 0.01, 0.01, 0.05, LB = false): HypTest))
+    for (_ <- 1 to 20) {
+      val blocked = sweep()
+      val single = sweep()
+      var iters = 0L
+      while (!single.completed) {
+        val words = block(0.5, 256)
+        val consumed = blocked.update(words, 256)
+        var i = 0
+        while (i < 256 && !single.completed) {
+          iters += 1
+          single.shouldStopNow(iters, bit(words, i))
+          i += 1
+        }
+        assert(blocked.completed == single.completed)
+        if (blocked.completed)
+          assert(consumed == i)
+        for (t <- 0 until single.size)
+          assert(blocked.decidedIteration(t) == single.decidedIteration(t))
+      }
+      // decided thresholds are frozen, so later blocks change nothing
+      val samples = (0 until blocked.size).map(blocked.test(_).interim.samples)
+      assert(blocked.update(Array(-1L, -1L), 128) == 0)
+      assert((0 until blocked.size).map(blocked.test(_).interim.samples) == samples)
+    }
+  }
+
+  it should "be applied at once when no decision is possible inside the block" in {
+    val test = new HypTestSPRT().init(0.5, 0.01, 0.01, 0.05)
+    val words = block(0.5, 64)
+    assert(!test.mayDecideWithin(HypTest.countPositives(words, 0, 10), 10 - HypTest.countPositives(words, 0, 10)))
+    assert(test.update(words, 10) == 10)
+    assert(!test.completed)
+  }
+
+  it should "pass the whole block as one batch to tests that use batch means" in {
+    val test = new HypTestSPRTStratified().init(0.5, 0.01, 0.01, 0.05)
+    assert(test.update(Array(-1L), 64) == 64)
+    assert(!test.completed)
+    assert(test.update(Array(-1L), 64) == 64)
+    assert(test.completed)
+  }
+
+}
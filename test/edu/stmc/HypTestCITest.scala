@@ -0,0 +1,99 @@
+/**************************************************************************************************
+ * STMC - Statistical Model Checker                                                               *
+ *                                                                                                *
+ * Copyright (C) 2019                                                                             *
+ * Authors:                                                                                       *
+ *   Nima Roohi <nroohi@ucsd.edu> (University of California San Diego)                            *
+ *                                                                                                *
+ * This program is free software: you can redistribute it and/or modify it under the terms        *
+ * of the GNU General Public License as published by the Free Software Foundation, either         *
+ * version 3 of the License, or (at your option) any later version.                               *
+ *                                                                                                *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;      *
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.      *
+ * See the GNU General Public License for more details.                                           *
+ *                                                                                                *
+ * You should have received a copy of the GNU General Public License along with this program.     *
+ * If not, see <https://www.gnu.org/licenses/>.                                                   *
+ **************************************************************************************************/
+
+package edu.stmc
+
+import java.util.concurrent.ThreadLocalRandom
+
+import org.scalatest.{FlatSpec, Matchers}
+
+class HypTestCITest extends FlatSpec with Matchers {
+
+  private def run(p: Double, alpha: Double, delta: Double, minSamples: Long) = {
+    val test = new HypTestCI().init(alpha, delta, minSamples)
+    val rnd = ThreadLocalRandom.current()
+    while (!test.completed)
+      test.update(rnd.nextDouble() < p)
+    test
+  }
+
+  private def runS(p: Double, alpha: Double, delta: Double, batchSize: Int, minIters: Int) = {
+    val test = new HypTestCIStratified().init(alpha, delta, batchSize)
+    val rnd = ThreadLocalRandom.current()
+    var iter = 0
+    while (iter < minIters || !test.completed) {
+      val positive = (1 to batchSize).count(_ => rnd.nextDouble() < p)
+      test.update(positive, batchSize - positive)
+      iter += 1
+    }
+    test
+  }
+
+  private def miss(p: Double, alpha: Double, delta: Double, minSamples: Long) =
+    Math.abs(run(p, alpha, delta, minSamples).mean - p) > delta
+
+  private def missS(p: Double, alpha: Double, delta: Double, batchSize: Int, minIters: Int) =
+    Math.abs(runS(p, alpha, delta, batchSize, minIters).estimate - p) > delta
+
+  private val r1000 = (1 to 1000).par
+
+  "CI" should "returns an interval that misses the actual probability at most (roughly) α fraction of times" in {
+    assert(80 > r1000.count(_ => miss(0.50, 0.05, 0.05, 10)))
+    assert(80 > r1000.count(_ => miss(0.30, 0.05, 0.05, 10)))
+    assert(80 > r1000.count(_ => miss(0.10, 0.05, 0.02, 10)))
+    assert(30 > r1000.count(_ => miss(0.50, 0.01, 0.05, 10)))
+  }
+
+  it should "not stop before the minimum number of samples" in {
+    assert(run(0.0, 0.05, 0.4, 100).mean == 0)
+    assert(r1000.forall(_ => run(1.0, 0.05, 0.4, 100).getResultExplanation(null).contains("N: 100,")))
+  }
+
+  it should "not stop immediately when all the samples so far agree" in {
+    val test = new HypTestCI().init(0.05, 0.01, 2)
+    (1 to 100).foreach(_ => test.update(true))
+    assert(!test.completed)
+    assert(!test.rejected && !test.failed_to_reject && !test.too_close)
+  }
+
+  "Stratified CI" should "returns an interval that misses the actual probability at most (roughly) α fraction of times" in {
+    assert(80 > r1000.count(_ => missS(0.50, 0.05, 0.05, 16, 10)))
+    assert(80 > r1000.count(_ => missS(0.30, 0.05, 0.02, 16, 10)))
+    assert(80 > r1000.count(_ => missS(0.10, 0.05, 0.02, 4, 10)))
+    assert(30 > r1000.count(_ => missS(0.50, 0.01, 0.05, 16, 10)))
+  }
+
+  it should "not stop before receiving two batches" in {
+    val test = new HypTestCIStratified().init(0.05, 0.4, 16)
+    test.updateMean(0.5)
+    assert(!test.completed)
+    test.updateMean(0.5)
+    assert(test.completed)
+    assert(test.estimate == 0.5)
+  }
+
+  it should "count more than 2^31 samples" in {
+    val test = new HypTestCI().init(0.05, 0.01, 2)
+    test.update(3000000000L, 1000000000L)
+    assert(test.completed)
+    assert(test.getResult(null) == Double.box(0.75))
+    assertThrows[ArithmeticException](test.update(Long.MaxValue, 0))
+  }
+
+}
@@ -102,4 +102,60 @@ class HypTestGLRTTest extends FlatSpec {
     assert(50 > r1000.count(_ => testF(0.30, 0.49, 0.01, LB = false)))
   }
 
-}
\ No newline at end of file
+  "Cached status of GLRT" should "be the same as the status computed from scratch" in {
+    val rnd = ThreadLocalRandom.current()
+    for (threshold <- Seq(0.1, 0.45, 0.5, 0.9); p <- Seq(0.05, 0.45, 0.5, 0.55, 0.95)) {
+      val test = new HypTestGLRT().init(threshold, 0.01, 0.01, 20, LB = false)
+      var N = 0
+      var n = 0
+      while (N < 20000) {
+        val positive = rnd.nextDouble() < p
+        test.update(positive)
+        N += 1
+        if (positive)
+          n += 1
+        assert(test.status == test.status(N, n), s"threshold: $threshold, N: $N, n: $n")
+      }
+    }
+  }
+
+  it should "be the same as the status computed from scratch when it is read after blocks of samples" in {
+    val rnd = ThreadLocalRandom.current()
+    for (threshold <- Seq(0.1, 0.5, 0.9); p <- Seq(0.05, 0.5, 0.55, 0.95); gap <- Seq(7, 100)) {
+      val test = new HypTestGLRT().init(threshold, 0.01, 0.01, 20, LB = true)
+      var N = 0L
+      var n = 0L
+      while (N < 20000) {
+        val block = 1 + rnd.nextInt(gap)
+        val positive = (0 until block).count(_ => rnd.nextDouble() < p)
+        test.update(positive, block - positive)
+        N += block
+        n += positive
+        assert(test.status == test.status(N, n), s"threshold: $threshold, gap: $gap, N: $N, n: $n")
+      }
+    }
+  }
+
+  "GLRT" should "make a decision even if all the samples agree" in {
+    val test = new HypTestGLRT().init(0.5, 0.01, 0.01, 2, LB = false)
+    while (!test.completed)
+      test.update(false)
+    assert(test.status == CompResult.Binary.SMALLER)
+  }
+
+  it should "count more than 2^31 samples" in {
+    val test = new HypTestGLRT().init(0.5, 0.01, 0.01, 2, LB = false)
+    test.update(3000000000L, 3000000000L)
+    assert(test.status == CompResult.Binary.UNDECIDED)
+    test.update(100000000L, 0)
+    assert(test.status == CompResult.Binary.LARGER)
+    assert(test.status == test.status(6100000000L, 3100000000L))
+  }
+
+  it should "throw instead of wrapping around when the number of samples overflows" in {
+    val test = new HypTestGLRT().init(0.5, 0.01, 0.01, 2, LB = false)
+    test.update(Long.MaxValue - 1, 0)
+    assertThrows[ArithmeticException](test.update(1, 1))
+  }
+
+}
@@ -0,0 +1,96 @@
+/**************************************************************************************************
+ * STMC - Statistical Model Checker                                                               *
+ *                                                                                                *
+ * Copyright (C) 2019                                                                             *
+ * Authors:                                                                                       *
+ *   Nima Roohi <nroohi@ucsd.edu> (University of California San Diego)                            *
+ *                                                                                                *
+ * This program is free software: you can redistribute it and/or modify it under the terms        *
+ * of the GNU General Public License as published by the Free Software Foundation, either         *
+ * version 3 of the License, or (at your option) any later version.                               *
+ *                                                                                                *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;      *
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.      *
+ * See the GNU General Public License for more details.                                           *
+ *                                                                                                *
+ * You should have received a copy of the GNU General Public License along with this program.     *
+ * If not, see <https://www.gnu.org/licenses/>.                                                   *
+ **************************************************************************************************/
+
+package edu.stmc
+
+import java.util.concurrent.ThreadLocalRandom
+
+import org.scalatest.FlatSpec
+
+class HypTestInterimTest extends FlatSpec {
+
+  /** Feed `test` with `samples` samples that are positive with probability `p`, and return its interim answer. */
+  private def stop(test: HypTest, p: Double, samples: Int): HypTest.Interim = {
+    val rnd = ThreadLocalRandom.current()
+    for (_ <- 1 to samples)
+      test.update(rnd.nextDouble() < p)
+    test.interim
+  }
+
+  private def sprt = new HypTestSPRT().init(0.5, 0.001, 0.001, 0.01, LB = false)
+
+  private val r1000 = (1 to 1000).par
+
+  "Interim answer of SPRT" should "often lean the right way when the test is stopped before it is decided" in {
+    assert(900 < r1000.count(_ => stop(sprt, 0.6, 200).result == Boolean.box(false)))
+    assert(900 < r1000.count(_ => stop(sprt, 0.4, 200).result == Boolean.box(true)))
+  }
+
+  it should "report a confidence interval that often contains the actual probability" in {
+    assert(950 < r1000.count { _ =>
+      val interim = stop(sprt, 0.55, 100)
+      interim.low <= 0.55 && 0.55 <= interim.high
+    })
+  }
+
+  it should "rarely lean the wrong way with a small error bound (ie. the bound holds whenever sampling stops)" in {
+    assert(30 > r1000.count { _ =>
+      val t = new HypTestSPRT().init(0.5, 0.01, 0.01, 0.1, LB = false)
+      stop(t, 0.4, ThreadLocalRandom.current().nextInt(1, 50))
+      t.leaning == CompResult.Binary.LARGER && t.errorBound <= 0.01
+    })
+  }
+
+  it should "count every sample" in {
+    val test = sprt
+    val interim = stop(test, 0.5, 123)
+    assert(interim.samples == 123)
+    assert(!test.completed)
+  }
+
+  "Interim answer of CI" should "be the current (wider) interval" in {
+    val test = new HypTestCI().init(0.05, 0.001, 2)
+    val interim = stop(test, 0.3, 1000)
+    assert(!test.completed)
+    assert(interim.result == Double.box(interim.estimate))
+    assert(interim.low < interim.estimate && interim.estimate < interim.high)
+    assert(interim.high - interim.low > 0.002)
+  }
+
+  "Sampling budget" should "be exhausted after its samples or when it is stopped" in {
+    val samples = new SamplingBudget(null, Long.box(10))
+    assert(!samples.exhausted(9))
+    assert(samples.exhausted(10))
+    assert(samples.exhausted(0))
+    assert(samples.warning != null)
+    val stopped = new SamplingBudget(null, null)
+    assert(!stopped.exhausted(Long.MaxValue))
+    assert(stopped.warning == null)
+    stopped.stop()
+    assert(stopped.exhausted(0))
+  }
+
+  it should "be exhausted after its time" in {
+    val budget = new SamplingBudget(Double.box(0.05), null)
+    assert(!budget.exhausted(0))
+    Thread.sleep(100)
+    assert(budget.exhausted(0))
+  }
+
+}
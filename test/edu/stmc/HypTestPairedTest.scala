@@ -0,0 +1,101 @@
+/**************************************************************************************************
+ * STMC - Statistical Model Checker                                                               *
+ *                                                                                                *
+ * Copyright (C) 2019                                                                             *
+ * Authors:                                                                                       *
+ *   Nima Roohi <nroohi@ucsd.edu> (University of California San Diego)                            *
+ *                                                                                                *
+ * This program is free software: you can redistribute it and/or modify it under the terms        *
+ * of the GNU General Public License as published by the Free Software Foundation, either         *
+ * version 3 of the License, or (at your option) any later version.                               *
+ *                                                                                                *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;      *
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.      *
+ * See the GNU General Public License for more details.                                           *
+ *                                                                                                *
+ * You should have received a copy of the GNU General Public License along with this program.     *
+ * If not, see <https://www.gnu.org/licenses/>.                                                   *
+ **************************************************************************************************/
+
+package edu.stmc
+
+import java.util.concurrent.ThreadLocalRandom
+
+import org.scalatest.FlatSpec
+
+class HypTestPairedTest extends FlatSpec {
+
+  STMCConfig.minIters = 10
+
+  /** Feed the test with batches of `batchSize` pairs, in which the base outcome is positive with probability 0.5. The outcome of the variant is positive
+    * with probability `p`. When `paired` is `true`, it agrees with the base outcome as much as possible (common random numbers), and otherwise it is
+    * independent of it.
+    *
+    * @return The test and the number of batches it took. */
+  private def run(p: Double, paired: Boolean, delta: Double = 0.1, batchSize: Int = 16): (HypTestPaired, Long) = {
+    val test = new HypTestPaired(Array("variant")).init(0.01, 0.01, 0.01, delta)
+    val rnd = ThreadLocalRandom.current()
+    var iter = 0L
+    do {
+      iter += 1
+      var sum = 0
+      for (_ <- 1 to batchSize) {
+        val u = rnd.nextDouble()
+        val x = if (u < 0.5) 1 else 0
+        val xv = if ((if (paired) u else rnd.nextDouble()) < p) 1 else 0
+        sum += 1 + xv - x
+      }
+      test.updateMean(0, sum / (2.0 * batchSize))
+    } while (!test.shouldStopNow(iter, null))
+    (test, iter)
+  }
+
+  private def verdict(p: Double) = run(p, paired = true)._1.verdict(0)
+
+  private val r1000 = (1 to 1000).par
+
+  "Paired test" should "often (ie probability 1-max(α,β)) find no significant change when the variant is the same" in {
+    assert(900 < r1000.count(_ => verdict(0.5) == 0))
+  }
+
+  it should "rarely miss a change that is larger than `δ`" in {
+    assert(50 > r1000.count(_ => verdict(0.65) != +1))
+    assert(50 > r1000.count(_ => verdict(0.35) != -1))
+  }
+
+  it should "need fewer batches with common random numbers than with independent samples" in {
+    val paired = r1000.map(_ => run(0.52, paired = true)._2).sum
+    val independent = r1000.map(_ => run(0.52, paired = false)._2).sum
+    assert(paired * 2 < independent)
+  }
+
+  it should "report the result of every variant" in {
+    val test = new HypTestPaired(Array("MAX=15", "MAX=20")).init(0.01, 0.01, 0.01, 0.1)
+    var iter = 0L
+    do {
+      iter += 1
+      test.updateMean(0, 0.5)
+      test.updateMean(1, if (iter % 2 == 0) 1.0 else 0.9)
+    } while (!test.shouldStopNow(iter, null))
+    assert(test.getResult(null) == java.util.Arrays.asList(Int.box(0), Int.box(+1)))
+    assert(test.getMissingParameter == 2)
+  }
+
+  it should "pass single-stream updates to every variant that is not decided yet" in {
+    val test = new HypTestPaired(Array("MAX=15", "MAX=20")).init(0.01, 0.01, 0.01, 0.1)
+    var iter = 0L
+    do {
+      iter += 1
+      test.updateMean(0.5)
+    } while (!test.shouldStopNow(iter, null))
+    assert(test.getResult(null) == java.util.Arrays.asList(Int.box(0), Int.box(0)))
+    test.reset()
+    iter = 0L
+    do {
+      iter += 1
+      test.update(if (iter % 2 == 0) 10 else 9, if (iter % 2 == 0) 0 else 1)
+    } while (!test.shouldStopNow(iter, null))
+    assert(test.getResult(null) == java.util.Arrays.asList(Int.box(+1), Int.box(+1)))
+  }
+
+}
@@ -0,0 +1,119 @@
+/**************************************************************************************************
+ * STMC - Statistical Model Checker                                                               *
+ *                                                                                                *
+ * Copyright (C) 2019                                                                             *
+ * Authors:                                                                                       *
+ *   Nima Roohi <nroohi@ucsd.edu> (University of California San Diego)                            *
+ *                                                                                                *
+ * This program is free software: you can redistribute it and/or modify it under the terms        *
+ * of the GNU General Public License as published by the Free Software Foundation, either         *
+ * version 3 of the License, or (at your option) any later version.                               *
+ *                                                                                                *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;      *
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.      *
+ * See the GNU General Public License for more details.                                           *
+ *                                                                                                *
+ * You should have received a copy of the GNU General Public License along with this program.     *
+ * If not, see <https://www.gnu.org/licenses/>.                                                   *
+ **************************************************************************************************/
+package edu.stmc
+
+import org.scalatest.{FlatSpec, Matchers}
+
+import scala.util.Random
+
+class HypTestPredictionTest extends FlatSpec with Matchers {
+
+  "Exit time" should "match the closed forms of simple walks" in {
+    // no drift: (upper - x) (x - lower) / variance
+    HypTest.exitTime(0, -1, 1, 0, 1) shouldBe 1.0 +- 1e-12
+    HypTest.exitTime(0.5, -1, 1, 1e-14, 2) shouldBe 0.375 +- 1e-9
+    // no variance: distance over drift
+    HypTest.exitTime(0, -1, 3, 0.5, 0) shouldBe 6.0
+    HypTest.exitTime(0, -1, 3, -0.25, 0) shouldBe 4.0
+    HypTest.exitTime(0, -1, 3, 0, 0) shouldBe Double.PositiveInfinity
+    // strong drift: almost only the distance to one bound matters (in both directions)
+    HypTest.exitTime(0, -100, 10, 1, 1) shouldBe 10.0 +- 1e-6
+    HypTest.exitTime(0, -10, 100, -1, 1) shouldBe 10.0 +- 1e-6
+    HypTest.exitTime(-1, -1, 1, 1, 1) shouldBe 0.0
+  }
+
+  "Progress" should "be the share of the samples taken so far, in steps of 10" in {
+    HypTest.progress(50, 50) shouldBe 50
+    HypTest.progress(99, 1) shouldBe 90
+    HypTest.progress(1, 99) shouldBe 0
+    HypTest.progress(10, 0) shouldBe 100
+    HypTest.progress(10, Double.NaN) shouldBe 0
+    HypTest.progress(10, Double.PositiveInfinity) shouldBe 0
+  }
+
+  "SPRT" should "predict the average number of further samples" in {
+    val test = new HypTestSPRT().init(0.5, 0.01, 0.01, 0.1)
+    test.update(3, 7)
+    val predicted = test.expectedSamplesRemaining
+    val rnd = new Random(1)
+    val reps = 4000
+    var total = 0L
+    for (_ <- 0 until reps) {
+      val t = test.clone
+      while (!t.completed) {
+        t.update(rnd.nextDouble() < 0.3)
+        total += 1
+      }
+    }
+    predicted shouldBe (total.toDouble / reps) +- (0.1 * predicted)
+    test.getProgress(10, null) shouldBe 30
+  }
+
+  "CI" should "predict when the interval is narrow enough" in {
+    val test = new HypTestCI().init(0.05, 0.01, 2)
+    test.expectedSamplesRemaining.isNaN shouldBe true
+    var i = 0L
+    def next(): Unit = {
+      test.update(i % 10 < 3)
+      i += 1
+    }
+    while (i < 1000)
+      next()
+    val predicted = 1000 + test.expectedSamplesRemaining
+    while (!test.completed)
+      next()
+    i.toDouble shouldBe predicted +- (0.01 * predicted)
+    test.expectedSamplesRemaining shouldBe 0.0
+  }
+
+  "Stratified CI" should "predict when the interval of batch means is narrow enough" in {
+    val test = new HypTestCIStratified().init(0.05, 0.005, 16)
+    val rnd = new Random(2)
+    var iter = 0L
+    while (iter < 200) {
+      test.updateMean(0.3 + 0.1 * rnd.nextGaussian())
+      iter += 1
+    }
+    val predicted = iter + test.expectedSamplesRemaining
+    while (!test.completed) {
+      test.updateMean(0.3 + 0.1 * rnd.nextGaussian())
+      iter += 1
+    }
+    iter.toDouble shouldBe predicted +- (0.1 * predicted)
+  }
+
+  "Ternary and sweep tests" should "predict the largest prediction of their tests" in {
+    val ternary = new HypTestSPRTTernary().init(0.5, 0.01, 0.01, 0.01, 0.05)
+    ternary.update(3, 7)
+    ternary.expectedSamplesRemaining should be > 0.0
+    val tests = Array[HypTest](new HypTestSPRT().init(0.3, 0.01, 0.01, 0.05), new HypTestSPRT().init(0.7, 0.01, 0.01, 0.05))
+    val sweep = HypTestSweep(tests)
+    sweep.update(20, 20)
+    sweep.expectedSamplesRemaining shouldBe Math.max(tests(0).expectedSamplesRemaining, tests(1).expectedSamplesRemaining)
+  }
+
+  "Tests without predictions" should "report no progress until they are decided" in {
+    val glrt = new HypTestGLRT().init(0.5, 0.01, 0.01, 10)
+    glrt.expectedSamplesRemaining.isNaN shouldBe true
+    glrt.getProgress(0, null) shouldBe 0
+    glrt.update(8, 2)
+    glrt.expectedSamplesRemaining should be > 0.0
+  }
+
+}
@@ -0,0 +1,72 @@
+/**************************************************************************************************
+ * STMC - Statistical Model Checker                                                               *
+ *                                                                                                *
+ * Copyright (C) 2019                                                                             *
+ * Authors:                                                                                       *
+ *   Nima Roohi <nroohi@ucsd.edu> (University of California San Diego)                            *
+ *                                                                                                *
+ * This program is free software: you can redistribute it and/or modify it under the terms        *
+ * of the GNU General Public License as published by the Free Software Foundation, either         *
+ * version 3 of the License, or (at your option) any later version.                               *
+ *                                                                                                *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;      *
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.      *
+ * See the GNU General Public License for more details.                                           *
+ *                                                                                                *
+ * You should have received a copy of the GNU General Public License along with this program.     *
+ * If not, see <https://www.gnu.org/licenses/>.                                                   *
+ **************************************************************************************************/
+
+package edu.stmc
+
+import java.util.concurrent.ThreadLocalRandom
+
+import org.scalatest.FlatSpec
+
+class HypTestSGLRTTest extends FlatSpec {
+
+  /** Feed the test with means of batches of `batchSize` samples whose actual probability is 0.5. */
+  private def run(threshold: Double, alpha: Double, beta: Double, LB: Boolean, minIters: Int = 20, batchSize: Int = 16) = {
+    val test = new HypTestGLRTStratified().init(threshold, alpha, beta, LB)
+    val rnd = ThreadLocalRandom.current()
+    var iter = 0
+    while (iter < minIters || !test.completed) {
+      test.updateMean((1 to batchSize).count(_ => rnd.nextBoolean()) / batchSize.toDouble)
+      iter += 1
+    }
+    test
+  }
+
+  private def test(threshold: Double, alpha: Double, beta: Double, LB: Boolean) = run(threshold, alpha, beta, LB).status
+
+  private def testR(threshold: Double, alpha: Double, beta: Double, LB: Boolean) = run(threshold, alpha, beta, LB).rejected
+
+  private val r1000 = (1 to 1000).par
+
+  "Stratified GLRT" should "returns SMALLER (ie rejects) very few times when lower-bound (θ) is smaller than the actual probability" in {
+    assert(50 > r1000.count(_ => test(0.45, 0.01, 0.01, LB = true) == CompResult.Binary.SMALLER))
+    assert(50 > r1000.count(_ => test(0.40, 0.01, 0.20, LB = true) == CompResult.Binary.SMALLER))
+    assert(50 > r1000.count(_ => test(0.30, 0.01, 0.45, LB = true) == CompResult.Binary.SMALLER))
+
+    assert(50 > r1000.count(_ => testR(0.45, 0.01, 0.01, LB = true)))
+    assert(50 > r1000.count(_ => testR(0.40, 0.01, 0.20, LB = true)))
+    assert(50 > r1000.count(_ => testR(0.30, 0.01, 0.45, LB = true)))
+  }
+
+  it should "returns LARGER (ie rejects) very few times when upper-bound (θ) is larger than the actual probability" in {
+    assert(50 > r1000.count(_ => test(0.55, 0.01, 0.01, LB = false) == CompResult.Binary.LARGER))
+    assert(50 > r1000.count(_ => test(0.60, 0.01, 0.20, LB = false) == CompResult.Binary.LARGER))
+    assert(50 > r1000.count(_ => test(0.70, 0.01, 0.45, LB = false) == CompResult.Binary.LARGER))
+
+    assert(50 > r1000.count(_ => testR(0.55, 0.01, 0.01, LB = false)))
+    assert(50 > r1000.count(_ => testR(0.60, 0.01, 0.20, LB = false)))
+    assert(50 > r1000.count(_ => testR(0.70, 0.01, 0.45, LB = false)))
+  }
+
+  it should "not make a decision when all batch means are equal to the threshold" in {
+    val test = new HypTestGLRTStratified().init(0.5, 0.01, 0.01, LB = true)
+    (1 to 100).foreach(_ => test.updateMean(0.5))
+    assert(!test.completed)
+  }
+
+}
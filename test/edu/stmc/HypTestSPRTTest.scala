@@ -140,4 +140,33 @@ class HypTestSPRTTest extends FlatSpec with Matchers {
     r10000.count(_ => testF(0.4, 0.05, 0.05, 0.1, LB = false)) should beInRange(300, 700)
   }
 
-}
\ No newline at end of file
+  /** Whether or not the test is completed before the decision horizon it reported (which must never happen). */
+  private def overestimates(test: HypTest): Boolean = {
+    val rnd = ThreadLocalRandom.current()
+    while (!test.completed) {
+      val horizon = test.decisionHorizon
+      assert(horizon > 0)
+      for (_ <- 1L until horizon) {
+        test.update(rnd.nextBoolean())
+        if (test.completed)
+          return true
+      }
+      test.update(rnd.nextBoolean())
+    }
+    test.decisionHorizon != 0
+  }
+
+  "Decision horizon of SPRT" should "never be overestimated" in {
+    assert(r1000.forall(_ => !overestimates(new HypTestSPRT().init(0.5, 0.01, 0.01, 0.01, LB = true))))
+    assert(r1000.forall(_ => !overestimates(new HypTestSPRT().init(0.3, 0.05, 0.20, 0.10, LB = false))))
+    assert(r1000.forall(_ => !overestimates(new HypTestSPRTTernary().init(0.5, 0.05, 0.05, 0.05, 0.05, LB = true))))
+  }
+
+  it should "be larger than one when the test is far from a decision" in {
+    val test = new HypTestSPRT().init(0.5, 0.01, 0.01, 0.01, LB = true)
+    assert(test.decisionHorizon > 100)
+    test.update(true)
+    assert(test.decisionHorizon > 100)
+  }
+
+}
@@ -0,0 +1,65 @@
+/**************************************************************************************************
+ * STMC - Statistical Model Checker                                                               *
+ *                                                                                                *
+ * Copyright (C) 2019                                                                             *
+ * Authors:                                                                                       *
+ *   Nima Roohi <nroohi@ucsd.edu> (University of California San Diego)                            *
+ *                                                                                                *
+ * This program is free software: you can redistribute it and/or modify it under the terms        *
+ * of the GNU General Public License as published by the Free Software Foundation, either         *
+ * version 3 of the License, or (at your option) any later version.                               *
+ *                                                                                                *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;      *
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.      *
+ * See the GNU General Public License for more details.                                           *
+ *                                                                                                *
+ * You should have received a copy of the GNU General Public License along with this program.     *
+ * If not, see <https://www.gnu.org/licenses/>.                                                   *
+ **************************************************************************************************/
+
+package edu.stmc
+
+import java.util.concurrent.ThreadLocalRandom
+
+import org.scalatest.FlatSpec
+
+class HypTestSTSPRTTest extends FlatSpec {
+
+  /** Feed the test with means of batches of `batchSize` samples whose actual probability is 0.5. */
+  private def run(threshold: Double, alpha: Double, beta: Double, gamma: Double, delta: Double, LB: Boolean, minIters: Int = 10, batchSize: Int = 16) = {
+    val test = new HypTestSPRTTernaryStratified().init(threshold, alpha, beta, gamma, delta, LB)
+    val rnd = ThreadLocalRandom.current()
+    var iter = 0
+    while (iter < minIters || !test.completed) {
+      test.updateMean((1 to batchSize).count(_ => rnd.nextBoolean()) / batchSize.toDouble)
+      iter += 1
+    }
+    test
+  }
+
+  private def test(threshold: Double, alpha: Double, beta: Double, gamma: Double, delta: Double, LB: Boolean) =
+    run(threshold, alpha, beta, gamma, delta, LB).status
+
+  private val r1000 = (1 to 1000).par
+
+  "Stratified Ternary SPRT" should "returns TOO_CLOSE very few times when threshold is not strictly within `δ`-neighborhood of the actual probability" in {
+    assert(50 > r1000.count(_ => test(0.40, 0.1, 0.2, 0.01, 0.10, LB = true) == CompResult.Ternary.TOO_CLOSE))
+    assert(50 > r1000.count(_ => test(0.60, 0.1, 0.2, 0.01, 0.10, LB = false) == CompResult.Ternary.TOO_CLOSE))
+  }
+
+  it should "returns SMALLER very few times when lower-bound is correct" in {
+    assert(50 > r1000.count(_ => test(0.45, 0.01, 0.01, 0.20, 0.1, LB = true) == CompResult.Ternary.SMALLER))
+    assert(50 > r1000.count(_ => test(0.40, 0.01, 0.45, 0.40, 0.1, LB = true) == CompResult.Ternary.SMALLER))
+  }
+
+  it should "returns LARGER very few times when upper-bound is correct" in {
+    assert(50 > r1000.count(_ => test(0.55, 0.01, 0.01, 0.20, 0.1, LB = false) == CompResult.Ternary.LARGER))
+    assert(50 > r1000.count(_ => test(0.60, 0.01, 0.45, 0.40, 0.1, LB = false) == CompResult.Ternary.LARGER))
+  }
+
+  it should "often (ie probability 1-max(α,β)) returns TOO_CLOSE when threshold is the actual probability" in {
+    assert(900 < r1000.count(_ => test(0.5, 0.01, 0.01, 0.01, 0.10, LB = true) == CompResult.Ternary.TOO_CLOSE))
+    assert(900 < r1000.count(_ => test(0.5, 0.01, 0.01, 0.01, 0.10, LB = false) == CompResult.Ternary.TOO_CLOSE))
+  }
+
+}
@@ -0,0 +1,81 @@
+/**************************************************************************************************
+ * STMC - Statistical Model Checker                                                               *
+ *                                                                                                *
+ * Copyright (C) 2019                                                                             *
+ * Authors:                                                                                       *
+ *   Nima Roohi <nroohi@ucsd.edu> (University of California San Diego)                            *
+ *                                                                                                *
+ * This program is free software: you can redistribute it and/or modify it under the terms        *
+ * of the GNU General Public License as published by the Free Software Foundation, either         *
+ * version 3 of the License, or (at your option) any later version.                               *
+ *                                                                                                *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;      *
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.      *
+ * See the GNU General Public License for more details.                                           *
+ *                                                                                                *
+ * You should have received a copy of the GNU General Public License along with this program.     *
+ * If not, see <https://www.gnu.org/licenses/>.                                                   *
+ **************************************************************************************************/
+
+package edu.stmc
+
+import java.util.concurrent.ThreadLocalRandom
+
+import org.scalatest.FlatSpec
+
+class HypTestSweepTest extends FlatSpec {
+
+  STMCConfig.minIters = 10
+
+  private val thresholds = Array(0.10, 0.20, 0.30, 0.40, 0.45, 0.55, 0.60, 0.70, 0.80, 0.90)
+
+  /** Sweep over `thresholds` fed with batch means of `batchSize` samples whose actual probability is `p`. */
+  private def run(p: Double, batchSize: Int = 16) = {
+    val sweep = HypTestSweep.ofBatchMeans(thresholds.map(t => new HypTestSPRTStratified().init(t, 0.01, 0.01, 0.04, LB = false): HypTest.BatchMeans))
+    val rnd = ThreadLocalRandom.current()
+    var iters = 0
+    var done = false
+    while (!done) {
+      iters += 1
+      sweep.updateMean((1 to batchSize).count(_ => rnd.nextDouble() < p) / batchSize.toDouble)
+      done = sweep.shouldStopNow(iters, null)
+    }
+    (sweep, iters)
+  }
+
+  private def status(sweep: HypTestSweep, i: Int) = sweep.test(i).asInstanceOf[HypTestSPRTStratified].status
+
+  private val r1000 = (1 to 1000).par
+
+  "Sweep" should "stop only when every threshold is decided" in {
+    val (sweep, iters) = run(0.5)
+    assert(sweep.completed)
+    for (i <- thresholds.indices) {
+      assert(sweep.decidedIteration(i) >= STMCConfig.minIters)
+      assert(sweep.decidedIteration(i) <= iters)
+    }
+    assert(thresholds.indices.exists(sweep.decidedIteration(_) == iters))
+  }
+
+  it should "decide thresholds that are far from the actual probability earlier" in {
+    assert(50 > r1000.count { _ =>
+      val (sweep, _) = run(0.5)
+      sweep.decidedIteration(0) > sweep.decidedIteration(4) || sweep.decidedIteration(9) > sweep.decidedIteration(5)
+    })
+  }
+
+  it should "keep the decision of every threshold that is far from the actual probability" in {
+    assert(50 > r1000.count { _ =>
+      val (sweep, _) = run(0.5)
+      (0 to 3).exists(status(sweep, _) != CompResult.Binary.LARGER) || (5 to 9).exists(status(sweep, _) != CompResult.Binary.SMALLER)
+    })
+  }
+
+  it should "use batch means iff its tests do" in {
+    assert(run(0.5)._1.isInstanceOf[HypTest.BatchMeans])
+    assert(run(0.5)._1.clone.isInstanceOf[HypTest.BatchMeans])
+    assert(!HypTestSweep(Array[HypTest](new HypTestSPRT().init(0.5, 0.01, 0.01, 0.05))).isInstanceOf[HypTest.BatchMeans])
+    assertThrows[IllegalArgumentException](HypTestSweep(Array[HypTest](new HypTestSPRT(), new HypTestSPRTStratified())))
+  }
+
+}
@@ -0,0 +1,220 @@
+/**************************************************************************************************
+ * STMC - Statistical Model Checker                                                               *
+ *                                                                                                *
+ * Copyright (C) 2019                                                                             *
+ * Authors:                                                                                       *
+ *   Nima Roohi <nroohi@ucsd.edu> (University of California San Diego)                            *
+ *                                                                                                *
+ * This program is free software: you can redistribute it and/or modify it under the terms        *
+ * of the GNU General Public License as published by the Free Software Foundation, either         *
+ * version 3 of the License, or (at your option) any later version.                               *
+ *                                                                                                *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;      *
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.      *
+ * See the GNU General Public License for more details.                                           *
+ *                                                                                                *
+ * You should have received a copy of the GNU General Public License along with this program.     *
+ * If not, see <https://www.gnu.org/licenses/>.                                                   *
+ **************************************************************************************************/
+
+package edu.stmc
+
+import java.util.SplittableRandom
+
+/** Parallel Monte Carlo validation of the error rates and average sample numbers of hypothesis tests.
+  *
+  * Every experiment feeds a new test with synthetic samples of a known probability `p` until the test is decided. Tests that take samples one by one
+  * get independent Bernoulli samples. Tests that use batch means get means of batches of `batchSize` samples, one from each of `batchSize` strata whose
+  * probabilities are spread evenly around `p` (like stratified sampling does). Answers are then classified against `p`, and every error rate is reported
+  * with its Wilson interval (see [[HypTest.interval]]).
+  *
+  * Experiments of every cell of a grid (a test and a probability) are split into chunks of [[ChunkSize]] experiments. Every chunk has its own random
+  * generator, derived from the seed, the cell and the chunk. Chunks run in parallel and are merged in order, so results only depend on the seed (not on
+  * the number of threads or on scheduling).
+  *
+  * To validate the default grid (see [[defaultGrid]]), run `edu.stmc.HypTestValidation [experiments [seed]]` from the test classpath. */
+object HypTestValidation {
+
+  /** Number of experiments of a chunk. */
+  final val ChunkSize = 1000
+
+  /** Error probability of the reported intervals (they are `99.9%` intervals, so that a grid of many cells rarely has a false alarm). */
+  final val Alpha = 0.001
+
+  /** A test to validate.
+    *
+    * @param name         Name of the case (in reports).
+    * @param create       New (initialized) instance of the test.
+    * @param threshold    Threshold `θ` of the test.
+    * @param LB           Whether or not `θ` is a lower bound, ie. the null hypothesis is `p ≥ θ` (otherwise it is `p ≤ θ`).
+    * @param alpha        Nominal type I error.
+    * @param beta         Nominal type II error.
+    * @param indifference Half-width of the region around `θ` in which type I and II errors are not bounded (eg. `δ` of SPRT, `0` for ternary tests).
+    * @param gamma        Nominal type III error (answering `TOO_CLOSE` when `θ` is not strictly within `δ` of `p`), or `NaN` for binary tests.
+    * @param delta        `δ` of type III errors.
+    * @param batchSize    Number of strata (and samples) of a batch, for tests that use batch means.
+    * @param spread       Difference between the probabilities of the last and the first stratum of a batch.
+    * @param minIters     Minimum number of samples (or batch means) before the test may stop (see [[STMCConfig.minIters]]). */
+  final case class Case(name: String, create: () => HypTest, threshold: Double, LB: Boolean, alpha: Double, beta: Double, indifference: Double = 0,
+                        gamma: Double = Double.NaN, delta: Double = 0, batchSize: Int = 16, spread: Double = 0, minIters: Int = 1) {
+    override def toString: String = name
+  }
+
+  /** Empirical rate of an error, with its nominal bound.
+    *
+    * @param errors Number of experiments with the error.
+    * @param runs   Number of experiments. */
+  final case class Rate(errors: Long, runs: Long, nominal: Double) {
+    val (low, high) = HypTest.interval(runs, errors, Alpha)
+    def estimate: Double = errors / runs.toDouble
+    /** Whether or not the rate is consistent with its nominal bound (ie. the bound is not below the interval of the rate). */
+    def conforms: Boolean = low <= nominal
+    override def toString: String = f"$estimate%.5f [$low%.5f, $high%.5f] / $nominal%s${if (conforms) "" else " !"}"
+  }
+
+  /** Results of the experiments of a test with probability `p`.
+    *
+    * @param below     Number of experiments whose answer is `p < θ`.
+    * @param above     Number of experiments whose answer is `p > θ`.
+    * @param close     Number of experiments whose answer is `TOO_CLOSE`.
+    * @param undecided Number of experiments that were not decided within the maximum number of samples (and are not counted as errors).
+    * @param samples   Sum of the number of samples of all experiments (batches count as `batchSize` samples).
+    * @param samples2  Sum of the squares of the number of samples of all experiments. */
+  final case class Cell(testCase: Case, p: Double, runs: Long, below: Long, above: Long, close: Long, undecided: Long, samples: Double, samples2: Double) {
+
+    private def atLeast(x: Double, y: Double): Boolean = x >= y - 1e-12
+
+    /** Rate of rejecting the null hypothesis when it holds (outside the indifference region), if defined for `p`. */
+    def typeI: Option[Rate] = {
+      val c = testCase
+      if (c.LB && atLeast(p, c.threshold + c.indifference)) Some(Rate(below, runs, c.alpha))
+      else if (!c.LB && atLeast(c.threshold - c.indifference, p)) Some(Rate(above, runs, c.alpha))
+      else None
+    }
+
+    /** Rate of not rejecting the null hypothesis when it does not hold (outside the indifference region), if defined for `p`. */
+    def typeII: Option[Rate] = {
+      val c = testCase
+      if (c.LB && atLeast(c.threshold - c.indifference, p)) Some(Rate(above, runs, c.beta))
+      else if (!c.LB && atLeast(p, c.threshold + c.indifference)) Some(Rate(below, runs, c.beta))
+      else None
+    }
+
+    /** Rate of answering `TOO_CLOSE` when `θ` is not strictly within `δ` of `p`, if defined for the test and `p`. */
+    def typeIII: Option[Rate] =
+      if (testCase.gamma.isNaN || !atLeast(Math.abs(p - testCase.threshold), testCase.delta)) None
+      else Some(Rate(close, runs, testCase.gamma))
+
+    /** Average sample number. */
+    def asn: Double = samples / runs
+
+    /** Standard error of the average sample number. */
+    def asnError: Double = Math.sqrt(Math.max(0, samples2 / runs - asn * asn) / runs)
+
+    /** Whether or not every error rate that is defined for `p` is consistent with its nominal bound. */
+    def conforms: Boolean = Seq(typeI, typeII, typeIII).flatten.forall(_.conforms)
+
+    def +(that: Cell): Cell =
+      Cell(testCase, p, runs + that.runs, below + that.below, above + that.above, close + that.close, undecided + that.undecided,
+           samples + that.samples, samples2 + that.samples2)
+  }
+
+  /** Run `experiments` experiments for every cell of `grid` (in parallel), with random generators derived from `seed`.
+    *
+    * @param maxSamples Maximum number of samples of an experiment (after which it is counted as undecided). */
+  def run(grid: Seq[(Case, Double)], experiments: Int, seed: Long, maxSamples: Long = 10000000L): IndexedSeq[Cell] = {
+    require(experiments > 0, s"Number of experiments ($experiments) must be positive")
+    val chunks = (experiments + ChunkSize - 1) / ChunkSize
+    val tasks = for (cell <- grid.indices; chunk <- 0 until chunks) yield (cell, chunk)
+    val results = tasks.par.map { case (cell, chunk) =>
+      val (c, p) = grid(cell)
+      val runs = Math.min(ChunkSize, experiments - chunk * ChunkSize)
+      this.chunk(c, p, runs, new SplittableRandom(mix(mix(mix(seed) + cell) + chunk)), maxSamples)
+    }.seq
+    results.grouped(chunks).map(_.reduceLeft(_ + _)).toIndexedSeq
+  }
+
+  private def chunk(c: Case, p: Double, runs: Int, rnd: SplittableRandom, maxSamples: Long): Cell = {
+    val strata = Array.tabulate(c.batchSize)(k => Math.min(1, Math.max(0, p + c.spread * ((k + 0.5) / c.batchSize - 0.5))))
+    var below, above, close, undecided = 0L
+    var samples, samples2 = 0.0
+    for (_ <- 0 until runs) {
+      val test = c.create()
+      var n = 0L
+      test match {
+      case test: HypTest.BatchMeans =>
+        while ((n < c.minIters || !test.completed) && n * c.batchSize < maxSamples) {
+          var positives = 0
+          var k = 0
+          while (k < strata.length) {
+            if (rnd.nextDouble() < strata(k))
+              positives += 1
+            k += 1
+          }
+          test.updateMean(positives / c.batchSize.toDouble)
+          n += 1
+        }
+        n *= c.batchSize
+      case _ =>
+        while ((n < c.minIters || !test.completed) && n < maxSamples) {
+          test.update(rnd.nextDouble() < p)
+          n += 1
+        }
+      }
+      if (!test.completed) undecided += 1
+      else if (test.too_close) close += 1
+      else if (test.rejected == c.LB) below += 1
+      else above += 1
+      samples += n
+      samples2 += n.toDouble * n
+    }
+    Cell(c, p, runs, below, above, close, undecided, samples, samples2)
+  }
+
+  // Finalizer of SplitMix64 (so that nearby seeds give unrelated generators)
+  private def mix(x: Long): Long = {
+    var z = x + 0x9E3779B97F4A7C15L
+    z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L
+    z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL
+    z ^ (z >>> 31)
+  }
+
+  /** Every test (with `θ = 0.5` and error bounds of `0.01`) at probabilities from `0.3` to `0.7`. Tests that are not indifferent around `θ` are not run
+    * at `θ` itself (where they may take arbitrarily many samples). */
+  def defaultGrid: Seq[(Case, Double)] = {
+    val cases = Seq(
+      Case("SPRT (LB)", () => new HypTestSPRT().init(0.5, 0.01, 0.01, 0.05, LB = true), 0.5, LB = true, 0.01, 0.01, indifference = 0.05),
+      Case("SPRT (UB)", () => new HypTestSPRT().init(0.5, 0.01, 0.01, 0.05, LB = false), 0.5, LB = false, 0.01, 0.01, indifference = 0.05),
+      Case("GLRT", () => new HypTestGLRT().init(0.5, 0.01, 0.01, 10), 0.5, LB = true, 0.01, 0.01),
+      Case("BAYES", () => new HypTestBayes().init(0.5, 0.01, 0.01), 0.5, LB = true, 0.01, 0.01),
+      Case("TSPRT", () => new HypTestSPRTTernary().init(0.5, 0.01, 0.01, 0.01, 0.05), 0.5, LB = true, 0.01, 0.01, gamma = 0.01, delta = 0.05),
+      Case("SSPRT", () => new HypTestSPRTStratified().init(0.5, 0.01, 0.01, 0.05), 0.5, LB = true, 0.01, 0.01, indifference = 0.05,
+           spread = 0.4, minIters = 20),
+      Case("SGLRT", () => new HypTestGLRTStratified().init(0.5, 0.01, 0.01), 0.5, LB = true, 0.01, 0.01, spread = 0.4, minIters = 20),
+      Case("STSPRT", () => new HypTestSPRTTernaryStratified().init(0.5, 0.01, 0.01, 0.01, 0.05), 0.5, LB = true, 0.01, 0.01, gamma = 0.01, delta = 0.05,
+           spread = 0.4, minIters = 10))
+    for (c <- cases; p <- Seq(0.3, 0.4, 0.45, 0.5, 0.55, 0.6, 0.7) if p != c.threshold || c.indifference > 0) yield (c, p)
+  }
+
+  /** A line per cell: its error rates (`-` when not defined for `p`, and `!` when not consistent with the nominal bound), and its average sample number
+    * with a `99.9%` interval. */
+  def report(cells: Seq[Cell]): String = {
+    val z = cern.jet.stat.Probability.normalInverse(1 - Alpha / 2)
+    def rate(r: Option[Rate]): String = r.fold("-")(_.toString)
+    cells.map(c =>
+      f"${c.testCase.name}%-10s p: ${c.p}%.3f, runs: ${c.runs}, type I: ${rate(c.typeI)}, type II: ${rate(c.typeII)}, type III: ${rate(c.typeIII)}, " +
+      f"ASN: ${c.asn}%.1f ± ${z * c.asnError}%.1f${if (c.undecided > 0) s", undecided: ${c.undecided}" else ""}"
+    ).mkString("\n")
+  }
+
+  def main(args: Array[String]): Unit = {
+    val experiments = if (args.length > 0) args(0).toInt else 100000
+    val seed = if (args.length > 1) args(1).toLong else 1L
+    val start = System.nanoTime()
+    val cells = run(defaultGrid, experiments, seed)
+    println(report(cells))
+    println(f"${cells.count(!_.conforms)} of ${cells.size} cells have error rates above their nominal bounds " +
+            f"(${experiments.toLong * cells.size} experiments in ${(System.nanoTime() - start) / 1e9}%.1f seconds)")
+  }
+
+}
@@ -0,0 +1,77 @@
+/**************************************************************************************************
+ * STMC - Statistical Model Checker                                                               *
+ *                                                                                                *
+ * Copyright (C) 2019                                                                             *
+ * Authors:                                                                                       *
+ *   Nima Roohi <nroohi@ucsd.edu> (University of California San Diego)                            *
+ *                                                                                                *
+ * This program is free software: you can redistribute it and/or modify it under the terms        *
+ * of the GNU General Public License as published by the Free Software Foundation, either         *
+ * version 3 of the License, or (at your option) any later version.                               *
+ *                                                                                                *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;      *
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.      *
+ * See the GNU General Public License for more details.                                           *
+ *                                                                                                *
+ * You should have received a copy of the GNU General Public License along with this program.     *
+ * If not, see <https://www.gnu.org/licenses/>.                                                   *
+ **************************************************************************************************/
+
+package edu.stmc
+
+import edu.stmc.HypTestValidation.{Case, Rate}
+import org.scalatest.FlatSpec
+
+class HypTestValidationTest extends FlatSpec {
+
+  private val sprtLB = Case("SPRT (LB)", () => new HypTestSPRT().init(0.5, 0.01, 0.01, 0.05, LB = true), 0.5, LB = true, 0.01, 0.01, indifference = 0.05)
+  private val sprtUB = Case("SPRT (UB)", () => new HypTestSPRT().init(0.5, 0.01, 0.01, 0.05, LB = false), 0.5, LB = false, 0.01, 0.01, indifference = 0.05)
+  private val tsprt = Case("TSPRT", () => new HypTestSPRTTernary().init(0.5, 0.01, 0.01, 0.01, 0.05), 0.5, LB = true, 0.01, 0.01, gamma = 0.01, delta = 0.05)
+  private val ssprt = Case("SSPRT", () => new HypTestSPRTStratified().init(0.5, 0.01, 0.01, 0.05), 0.5, LB = true, 0.01, 0.01, indifference = 0.05,
+                           spread = 0.4, minIters = 20)
+
+  private def check(grid: Seq[(Case, Double)]): Unit = {
+    val cells = HypTestValidation.run(grid, 20000, 1)
+    assert(cells.forall(_.conforms), "\n" + HypTestValidation.report(cells))
+    assert(cells.forall(_.undecided == 0))
+  }
+
+  "Validation" should "only depend on the seed" in {
+    val grid = Seq(sprtLB -> 0.55, ssprt -> 0.45)
+    val cells = HypTestValidation.run(grid, 2500, 7)
+    assert(cells == HypTestValidation.run(grid, 2500, 7))
+    assert(cells != HypTestValidation.run(grid, 2500, 8))
+    assert(cells.map(_.runs) == Seq(2500L, 2500L))
+    assert(cells.forall(c => c.below + c.above + c.close + c.undecided == c.runs))
+  }
+
+  it should "classify errors by the side of the threshold and the indifference region" in {
+    val cells = HypTestValidation.run(Seq(sprtLB -> 0.5, sprtLB -> 0.6, sprtUB -> 0.6, tsprt -> 0.52, tsprt -> 0.4), 1000, 1)
+    assert(cells(0).typeI.isEmpty && cells(0).typeII.isEmpty && cells(0).typeIII.isEmpty)
+    assert(cells(1).typeI.contains(Rate(cells(1).below, 1000, 0.01)) && cells(1).typeII.isEmpty)
+    assert(cells(2).typeII.contains(Rate(cells(2).below, 1000, 0.01)) && cells(2).typeI.isEmpty)
+    assert(cells(3).typeI.isDefined && cells(3).typeIII.isEmpty)
+    assert(cells(4).typeII.contains(Rate(cells(4).above, 1000, 0.01)) && cells(4).typeIII.contains(Rate(cells(4).close, 1000, 0.01)))
+    assert(cells(1).asn < cells(0).asn)
+  }
+
+  "Rates" should "conform unless their interval is above the nominal bound" in {
+    assert(Rate(0, 1000, 0.01).conforms)
+    assert(Rate(15, 1000, 0.01).conforms)
+    assert(!Rate(40, 1000, 0.01).conforms)
+    assert(Rate(15, 1000, 0.01).low < 0.015 && 0.015 < Rate(15, 1000, 0.01).high)
+  }
+
+  "SPRT" should "keep its error rates within α and β at the edges of the indifference region" in {
+    check(for (c <- Seq(sprtLB, sprtUB); p <- Seq(0.4, 0.45, 0.55, 0.6)) yield (c, p))
+  }
+
+  "Ternary SPRT" should "keep its error rates (including type III) within their bounds" in {
+    check(Seq(tsprt -> 0.4, tsprt -> 0.45, tsprt -> 0.55, tsprt -> 0.6))
+  }
+
+  "Stratified SPRT" should "keep its error rates within α and β on stratified batch means" in {
+    check(Seq(ssprt -> 0.4, ssprt -> 0.45, ssprt -> 0.55, ssprt -> 0.6))
+  }
+
+}
@@ -0,0 +1,48 @@
+/**************************************************************************************************
+ * STMC - Statistical Model Checker                                                               *
+ *                                                                                                *
+ * Copyright (C) 2019                                                                             *
+ * Authors:                                                                                       *
+ *   Nima Roohi <nroohi@ucsd.edu> (University of California San Diego)                            *
+ *                                                                                                *
+ * This program is free software: you can redistribute it and/or modify it under the terms        *
+ * of the GNU General Public License as published by the Free Software Foundation, either         *
+ * version 3 of the License, or (at your option) any later version.                               *
+ *                                                                                                *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;      *
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.      *
+ * See the GNU General Public License for more details.                                           *
+ *                                                                                                *
+ * You should have received a copy of the GNU General Public License along with this program.     *
+ * If not, see <https://www.gnu.org/licenses/>.                                                   *
+ **************************************************************************************************/
+
+package edu.stmc
+
+import org.scalatest.FlatSpec
+import prism.PrismException
+
+class ModelVariantTest extends FlatSpec {
+
+  "Variant specification" should "be kept as it is when there is no range" in {
+    assert(ModelVariant.expand("MAX=20,N=3") == Seq("MAX=20,N=3"))
+  }
+
+  it should "be expanded exactly when it has ranges" in {
+    assert(ModelVariant.expand("pL=0.01:0.01:0.05") == Seq("pL=0.01", "pL=0.02", "pL=0.03", "pL=0.04", "pL=0.05"))
+    assert(ModelVariant.expand("pL=0.1:0.1:0.3") == Seq("pL=0.1", "pL=0.2", "pL=0.3"))
+    assert(ModelVariant.expand("N=1:3") == Seq("N=1", "N=2", "N=3"))
+  }
+
+  it should "be expanded to the product of its ranges" in {
+    assert(ModelVariant.expand("N=1:2,pL=0.5,M=3:4") == Seq("N=1,pL=0.5,M=3", "N=1,pL=0.5,M=4", "N=2,pL=0.5,M=3", "N=2,pL=0.5,M=4"))
+  }
+
+  it should "be rejected when a range is not well-formed" in {
+    assertThrows[PrismException](ModelVariant.expand("N=3:1"))
+    assertThrows[PrismException](ModelVariant.expand("N=1:0:3"))
+    assertThrows[PrismException](ModelVariant.expand("N=1:x"))
+    assertThrows[PrismException](ModelVariant.expand("N"))
+  }
+
+}
@@ -0,0 +1,121 @@
+/**************************************************************************************************
+ * STMC - Statistical Model Checker                                                               *
+ *                                                                                                *
+ * Copyright (C) 2019                                                                             *
+ * Authors:                                                                                       *
+ *   Nima Roohi <nroohi@ucsd.edu> (University of California San Diego)                            *
+ *                                                                                                *
+ * This program is free software: you can redistribute it and/or modify it under the terms        *
+ * of the GNU General Public License as published by the Free Software Foundation, either         *
+ * version 3 of the License, or (at your option) any later version.                               *
+ *                                                                                                *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;      *
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.      *
+ * See the GNU General Public License for more details.                                           *
+ *                                                                                                *
+ * You should have received a copy of the GNU General Public License along with this program.     *
+ * If not, see <https://www.gnu.org/licenses/>.                                                   *
+ **************************************************************************************************/
+
+package edu.stmc
+
+import org.scalatest.FlatSpec
+import simulator.sampler.Sampler
+
+import scala.util.Random
+
+class PathLengthsTest extends FlatSpec {
+
+  "Length histogram" should "have contiguous buckets of bounded relative width" in {
+    import LengthHistogram.{bucket, highest, lowest}
+    var previous = -1
+    for (length <- (0L to 100000L) ++ Seq(1L << 40, Long.MaxValue - 1, Long.MaxValue)) {
+      val b = bucket(length)
+      assert(lowest(b) <= length && length <= highest(b))
+      assert(length > 100000L || b == previous || b == previous + 1)
+      previous = b
+      if (length >= 2 * LengthHistogram.SubBuckets)
+        assert((highest(b) - lowest(b) + 1).toDouble / lowest(b) <= 1.0 / LengthHistogram.SubBuckets)
+    }
+    assert(highest(bucket(Long.MaxValue)) == Long.MaxValue)
+  }
+
+  it should "estimate quantiles within the width of its buckets" in {
+    val rnd = new Random(7)
+    val lengths = Array.fill(100000)((-200 * Math.log(1 - rnd.nextDouble())).toLong)
+    val histogram = new LengthHistogram()
+    lengths.foreach(histogram.record)
+    val sorted = lengths.sorted
+    assert(histogram.count == lengths.length && histogram.min == sorted.head && histogram.max == sorted.last)
+    assert(Math.abs(histogram.mean - lengths.sum.toDouble / lengths.length) < 1e-6)
+    for (q <- Seq(0.0, 0.1, 0.5, 0.9, 0.99, 0.999, 1.0)) {
+      val exact = sorted(Math.max(0, Math.ceil(q * lengths.length).toInt - 1))
+      val estimate = histogram.quantile(q)
+      assert(estimate >= exact && estimate <= exact * (1 + 1.0 / LengthHistogram.SubBuckets), s"$q: $estimate vs $exact")
+    }
+  }
+
+  it should "be exact for short lengths and merge with other histograms" in {
+    val a = new LengthHistogram()
+    val b = new LengthHistogram()
+    assert(a.quantile(0.5) == 0 && a.mean.isNaN)
+    for (length <- 1 to 10)
+      a.record(length)
+    b.record(5000)
+    a.merge(b)
+    assert(a.count == 11 && a.min == 1 && a.max == 5000)
+    assert(a.quantile(0.5) == 6 && a.quantile(1) == 5000)
+    assert(a.countAbove(9) == 2 && a.countAbove(5000) == 0)
+  }
+
+  "Path lengths" should "record paths by stratum and properties" in {
+    val lengths = new PathLengths(Seq[Sampler](null, null), 4)
+    for (h <- 0 until 4; length <- 1 to 10)
+      lengths.record(h, length * (h + 1))
+    lengths.recordProperty(1, 3)
+    assert(lengths.all.count == 40 && lengths.all.max == 40)
+    assert(lengths.stratum(2).count == 10 && lengths.stratum(2).max == 30)
+    assert(lengths.property(0).count == 0 && lengths.property(1).max == 3)
+    val json = lengths.toJson
+    assert(json.startsWith("\"quantiles\": {\"count\": 40, "))
+    assert(json.contains("\"properties\": [null, {\"count\": 1, "))
+    assert(json.contains("\"strata\": [{\"count\": 10, \"p50\": 5, "))
+    // the whole histogram is also the only stratum if sampling is not stratified
+    val single = new PathLengths(Seq(), 1)
+    single.record(0, 7)
+    assert(single.stratum(0) eq single.all)
+    assert(!single.toJson.contains("strata"))
+  }
+
+  it should "extrapolate an exponential tail" in {
+    val rnd = new Random(11)
+    val lengths = new PathLengths(Seq(), 1)
+    for (_ <- 1 to 20000)
+      lengths.record(0, (-100 * Math.log(1 - rnd.nextDouble())).toLong)
+    // P(L > 1000) = exp(-10) for an exponential distribution with mean 100
+    val p = lengths.tailProbability(1000)
+    assert(p > Math.exp(-10) / 10 && p < Math.exp(-10) * 10, p)
+    assert(lengths.tailProbability(100) > 0.01)
+    assert(new PathLengths(Seq(), 1).tailProbability(100).isNaN)
+  }
+
+  it should "warn once when paths get close to the maximum length" in {
+    val far = new PathLengths(Seq(), 1)
+    val close = new PathLengths(Seq(), 1)
+    val rnd = new Random(13)
+    var warnings = List[String]()
+    for (n <- 1L to 10000L) {
+      val length = (-100 * Math.log(1 - rnd.nextDouble())).toLong
+      far.record(0, length)
+      close.record(0, length)
+      assert(far.check(n, 10000) == null)
+      val warning = close.check(n, 800)
+      if (warning != null)
+        warnings ::= warning
+    }
+    // P(L > 800) = exp(-8) is about one in 3000, so the warning is given as soon as the tail is checked (after 1000 or 2000 samples)
+    assert(warnings.length == 1)
+    assert(warnings.head.matches("Paths are getting close to the maximum path length \\(800\\) after (1000|2000) samples: .*"))
+  }
+
+}
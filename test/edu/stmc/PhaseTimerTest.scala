@@ -0,0 +1,54 @@
+/**************************************************************************************************
+ * STMC - Statistical Model Checker                                                               *
+ *                                                                                                *
+ * Copyright (C) 2019                                                                             *
+ * Authors:                                                                                       *
+ *   Nima Roohi <nroohi@ucsd.edu> (University of California San Diego)                            *
+ *                                                                                                *
+ * This program is free software: you can redistribute it and/or modify it under the terms        *
+ * of the GNU General Public License as published by the Free Software Foundation, either         *
+ * version 3 of the License, or (at your option) any later version.                               *
+ *                                                                                                *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;      *
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.      *
+ * See the GNU General Public License for more details.                                           *
+ *                                                                                                *
+ * You should have received a copy of the GNU General Public License along with this program.     *
+ * If not, see <https://www.gnu.org/licenses/>.                                                   *
+ **************************************************************************************************/
+package edu.stmc
+
+import org.scalatest.FlatSpec
+
+class PhaseTimerTest extends FlatSpec {
+
+  "Phase timer" should "count every call but only time one in every period calls" in {
+    val timer = new PhaseTimer(4)
+    for (_ <- 0 until 10) {
+      val t0 = timer.start(PhaseTimer.RNG)
+      timer.stop(PhaseTimer.RNG, t0)
+    }
+    val starts = for (_ <- 0 until 8) yield timer.start(PhaseTimer.STEP)
+    assert(timer.calls(PhaseTimer.RNG) == 10)
+    assert(timer.calls(PhaseTimer.STEP) == 8)
+    assert(timer.calls(PhaseTimer.TESTS) == 0)
+    assert(starts.count(_ != 0) == 2)
+    assert(timer.nanosPerCall(PhaseTimer.RNG) >= 0)
+    assert(timer.nanosPerCall(PhaseTimer.TESTS).isNaN)
+    assert(timer.seconds(PhaseTimer.TESTS) == 0)
+  }
+
+  it should "only accept powers of two as periods" in {
+    assertThrows[IllegalArgumentException](new PhaseTimer(0))
+    assertThrows[IllegalArgumentException](new PhaseTimer(12))
+  }
+
+  it should "not be created unless profiling is enabled" in {
+    STMCConfig.reset()
+    assert(PhaseTimer.create() == null)
+    STMCConfig.profile = true
+    try assert(PhaseTimer.create() != null)
+    finally STMCConfig.reset()
+  }
+
+}
@@ -0,0 +1,104 @@
+/**************************************************************************************************
+ * STMC - Statistical Model Checker                                                               *
+ *                                                                                                *
+ * Copyright (C) 2019                                                                             *
+ * Authors:                                                                                       *
+ *   Nima Roohi <nroohi@ucsd.edu> (University of California San Diego)                            *
+ *                                                                                                *
+ * This program is free software: you can redistribute it and/or modify it under the terms        *
+ * of the GNU General Public License as published by the Free Software Foundation, either         *
+ * version 3 of the License, or (at your option) any later version.                               *
+ *                                                                                                *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;      *
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.      *
+ * See the GNU General Public License for more details.                                           *
+ *                                                                                                *
+ * You should have received a copy of the GNU General Public License along with this program.     *
+ * If not, see <https://www.gnu.org/licenses/>.                                                   *
+ **************************************************************************************************/
+
+package edu.stmc
+
+import java.io.File
+import java.nio.charset.StandardCharsets
+import java.nio.file.Files
+
+import org.scalatest.FlatSpec
+import prism.PrismException
+import simulator.method.SimulationMethod
+import simulator.sampler.Sampler
+
+import scala.collection.JavaConverters
+
+class ResultJsonTest extends FlatSpec {
+
+  private def lines(file: File): Seq[String] = JavaConverters.asScalaBuffer(Files.readAllLines(file.toPath, StandardCharsets.UTF_8))
+
+  "Result JSON" should "record the campaign and the properties of every run" in {
+    val file = File.createTempFile("result-", ".json")
+    file.deleteOnExit()
+    STMCConfig.reset()
+    STMCConfig.resultJson = file.getPath
+    try {
+      val test = new HypTestSPRT().init(0.5, 0.01, 0.01, 0.05)
+      test.update(30, 10)
+      ResultJson.startRepeat(0)
+      val lengths = new PathLengths(Seq[Sampler](null, null), 1)
+      for (length <- 3 to 40)
+        lengths.record(0, length)
+      lengths.recordProperty(0, 5)
+      ResultJson.campaign(this, 40, 40, 1.5, Double.NaN, 12.25, 3, 40, lengths)
+      ResultJson.record(Array("P>=0.5 [F \"done\"]", "P>=0.9 [F s=3]"), Array[Sampler](null, null), Array[SimulationMethod](test, null),
+                        Array[AnyRef](test.interim, new PrismException("no \"s\"")))
+      // the file is only written at the end of the repeat
+      assert(file.length == 0)
+      ResultJson.finishRepeat()
+      val run = lines(file).map(_.trim.stripSuffix(",")).filter(_.startsWith("{\"engine\": ")).last
+      assert(run.startsWith("{\"engine\": \"ResultJsonTest\", \"iterations\": 40, \"samples\": 40, \"wallSeconds\": 1.5, \"cpuSeconds\": null, "))
+      assert(run.contains("\"pathLength\": {\"average\": 12.25, \"min\": 3, \"max\": 40, \"quantiles\": {\"count\": 38, \"p50\": 21, "))
+      assert(run.contains("\"properties\": [{\"count\": 1, \"p50\": 5, \"p90\": 5, \"p99\": 5, \"p999\": 5, \"max\": 5}, null]}"))
+      assert(run.contains("\"property\": \"P>=0.5 [F \\\"done\\\"]\", \"verdict\": true, \"method\": \"SPRT\""))
+      assert(run.contains(s"\"decided\": ${test.completed}, \"samples\": 40, \"estimate\": 0.75"))
+      assert(run.contains("\"statistic\": \"logT: "))
+      assert(run.contains("{\"property\": \"P>=0.9 [F s=3]\", \"error\": \"no \\\"s\\\"\"}"))
+      // a run without a campaign (eg. when no property could be simulated)
+      ResultJson.record(Array("P>=0.5 [F s=4]"), Array[Sampler](null), Array[SimulationMethod](null), Array[AnyRef](java.lang.Boolean.FALSE))
+      ResultJson.finishRepeat()
+      assert(lines(file).exists(_.contains("{\"engine\": null, \"parameters\": ")))
+      // starting the repeat again drops its runs
+      ResultJson.startRepeat(0)
+      ResultJson.finishRepeat()
+      assert(!lines(file).exists(_.startsWith("    {\"engine\": ")))
+    } finally STMCConfig.reset()
+  }
+
+  it should "not record anything unless its file is set" in {
+    val file = File.createTempFile("result-", ".json")
+    file.deleteOnExit()
+    STMCConfig.reset()
+    ResultJson.startRepeat(0)
+    ResultJson.campaign(this, 40, 40, 1.5, Double.NaN, 12.25, 3, 40, null)
+    ResultJson.record(Array("P>=0.5 [F s=4]"), Array[Sampler](null), Array[SimulationMethod](null), Array[AnyRef](java.lang.Boolean.FALSE))
+    ResultJson.finish(file.getPath, 0, Double.NaN, Double.NaN, Double.NaN, Double.NaN)
+    assert(!lines(file).exists(_.contains("\"engine\": ")))
+  }
+
+  it should "collect the runs of other processes and summarize the repeats" in {
+    val child = File.createTempFile("process-", ".json")
+    val run = "{\"engine\": \"SimulatorEngine\", \"iterations\": 7, \"samples\": 7, \"properties\": []}"
+    Files.write(child.toPath, s"""{"arguments": null,\n "repeats": [\n  [\n    $run\n  ]\n ],\n "summary": null}\n""".getBytes(StandardCharsets.UTF_8))
+    ResultJson.addRepeat(3, child)
+    assert(!child.exists)
+
+    val file = File.createTempFile("result-", ".json")
+    file.deleteOnExit()
+    ResultJson.setArguments(Array("model.pm", "-stmc"))
+    ResultJson.finish(file.getPath, 1, 2.0, Double.NaN, 7, Double.PositiveInfinity)
+    val text = lines(file)
+    assert(text.head == "{\"arguments\": [\"model.pm\", \"-stmc\"],")
+    assert(text.map(_.trim.stripSuffix(",")).contains(run))
+    assert(text.last == " \"summary\": {\"campaigns\": 1, \"time\": {\"average\": 2.0, \"standardError\": null}, " +
+                        "\"samples\": {\"average\": 7.0, \"standardError\": null}}}")
+  }
+
+}
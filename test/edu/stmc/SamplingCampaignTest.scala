@@ -0,0 +1,67 @@
+/**************************************************************************************************
+ * STMC - Statistical Model Checker                                                               *
+ *                                                                                                *
+ * Copyright (C) 2019                                                                             *
+ * Authors:                                                                                       *
+ *   Nima Roohi <nroohi@ucsd.edu> (University of California San Diego)                            *
+ *                                                                                                *
+ * This program is free software: you can redistribute it and/or modify it under the terms        *
+ * of the GNU General Public License as published by the Free Software Foundation, either         *
+ * version 3 of the License, or (at your option) any later version.                               *
+ *                                                                                                *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;      *
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.      *
+ * See the GNU General Public License for more details.                                           *
+ *                                                                                                *
+ * You should have received a copy of the GNU General Public License along with this program.     *
+ * If not, see <https://www.gnu.org/licenses/>.                                                   *
+ **************************************************************************************************/
+package edu.stmc
+
+import java.io.{ByteArrayOutputStream, PrintStream}
+
+import org.scalatest.FlatSpec
+import prism.PrismPrintStreamLog
+import simulator.sampler.Sampler
+
+class SamplingCampaignTest extends FlatSpec {
+
+  private def campaign(pathsPerIteration: Int): (SamplingCampaign, ByteArrayOutputStream) = {
+    val out = new ByteArrayOutputStream()
+    val log = new PrismPrintStreamLog(new PrintStream(out, true))
+    (new SamplingCampaign(this, log, new java.util.ArrayList[String](), Seq[Sampler](), 1, pathsPerIteration, 1, 1000), out)
+  }
+
+  "Sampling campaign" should "keep the statistics of path lengths of every iteration" in {
+    STMCConfig.reset()
+    STMCConfig.monitor = true
+    try {
+      val (c, _) = campaign(4)
+      for ((length, i) <- Seq(5L, 3L, 10L).zipWithIndex) {
+        c.lengths.record(0, length)
+        c.path(i + 1, length)
+      }
+      val m = c.monitor
+      m.finish()
+      assert(m.getIterations == 3 && m.getSamples == 12)
+      assert(m.getAveragePathLength == 6 && m.getMinPathLength == 3 && m.getMaxPathLength == 10)
+      assert(m.getThreadSamples.toSeq == Seq(12L))
+      assert(m.getPathLengthQuantiles.nonEmpty)
+    } finally STMCConfig.reset()
+  }
+
+  it should "only show progress when it increases" in {
+    val (c, out) = campaign(1)
+    for (percentageDone <- Seq(0, 10, 10, 5, 30))
+      c.progress(percentageDone)
+    assert(out.toString == "\nSampling progress: [ 10% 30%")
+  }
+
+  it should "not create a monitor or a timer unless they are enabled" in {
+    STMCConfig.reset()
+    val (c, _) = campaign(1)
+    assert(c.monitor == null && c.timer == null)
+    assert(!c.budget.exhausted(0))
+  }
+
+}
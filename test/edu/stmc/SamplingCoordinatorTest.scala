@@ -0,0 +1,157 @@
+/**************************************************************************************************
+ * STMC - Statistical Model Checker                                                               *
+ *                                                                                                *
+ * Copyright (C) 2019                                                                             *
+ * Authors:                                                                                       *
+ *   Nima Roohi <nroohi@ucsd.edu> (University of California San Diego)                            *
+ *                                                                                                *
+ * This program is free software: you can redistribute it and/or modify it under the terms        *
+ * of the GNU General Public License as published by the Free Software Foundation, either         *
+ * version 3 of the License, or (at your option) any later version.                               *
+ *                                                                                                *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;      *
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.      *
+ * See the GNU General Public License for more details.                                           *
+ *                                                                                                *
+ * You should have received a copy of the GNU General Public License along with this program.     *
+ * If not, see <https://www.gnu.org/licenses/>.                                                   *
+ **************************************************************************************************/
+
+package edu.stmc
+
+import java.util.concurrent.ThreadLocalRandom
+import java.util.concurrent.atomic.AtomicLong
+
+import org.scalatest.FlatSpec
+
+class SamplingCoordinatorTest extends FlatSpec {
+
+  import SamplingCoordinator.{Consumer, Generator}
+
+  /** Generators that write their own slot numbers, after a random delay. */
+  private def slots(workers: Int, calls: AtomicLong = new AtomicLong()): Array[Generator] =
+    Array.tabulate[Generator](workers) { w =>
+      var next = w + 1L
+      (out: Array[Long], offset: Int) => {
+        calls.incrementAndGet()
+        if (ThreadLocalRandom.current().nextInt(4) == 0)
+          Thread.sleep(1)
+        out(offset) = next
+        next += workers
+      }
+    }
+
+  /** Consumer that stops at `last`, and records the last consumed slot in `consumed`. */
+  private def until(last: Long, consumed: AtomicLong = new AtomicLong()): Consumer =
+    (slot: Long, _: Array[Long], _: Int) => {
+      consumed.set(slot)
+      slot == last
+    }
+
+  "Outcome ring" should "return records in the order they are published" in {
+    val ring = new OutcomeRing(4, 2)
+    assert(ring.peek() < 0)
+    for (i <- 0 until 4) {
+      val offset = ring.claim()
+      ring.data(offset) = i
+      ring.data(offset + 1) = -i
+      ring.publish()
+    }
+    assert(ring.claim() < 0)
+    for (i <- 0 until 4) {
+      val offset = ring.peek()
+      assert(ring.data(offset) == i && ring.data(offset + 1) == -i)
+      ring.release()
+    }
+    assert(ring.peek() < 0)
+    assert(ring.claim() >= 0)
+  }
+
+  it should "pass every record from one thread to another exactly once" in {
+    val ring = new OutcomeRing(8, 1)
+    val n = 200000L
+    val producer = new Thread(() => {
+      var i = 1L
+      while (i <= n) {
+        val offset = ring.claim()
+        if (offset >= 0) {
+          ring.data(offset) = i
+          ring.publish()
+          i += 1
+        }
+      }
+    })
+    producer.start()
+    var expected = 1L
+    while (expected <= n) {
+      val offset = ring.peek()
+      if (offset >= 0) {
+        assert(ring.data(offset) == expected)
+        ring.release()
+        expected += 1
+      }
+    }
+    producer.join()
+  }
+
+  "Sampling coordinator" should "pass samples to the consumer in slot order" in {
+    for (workers <- Seq(1, 2, 3, 8)) {
+      val coordinator = new SamplingCoordinator(workers, 4, 1)
+      val consumed = coordinator.run(slots(workers), (slot: Long, in: Array[Long], offset: Int) => {
+        assert(slot == in(offset))
+        slot == 500
+      })
+      assert(consumed == 500)
+    }
+  }
+
+  it should "see the same samples no matter how long they take to generate" in {
+    // positive samples are slow, so the first samples to be finished are mostly negative
+    val workers = 4
+    val generators = Array.tabulate[Generator](workers) { w =>
+      var next = w.toLong
+      (out: Array[Long], offset: Int) => {
+        val positive = next % 2 == 0
+        next += workers
+        if (positive)
+          Thread.sleep(2)
+        out(offset) = if (positive) 1 else 0
+      }
+    }
+    var positives = 0
+    new SamplingCoordinator(workers, 8, 1).run(generators, (slot: Long, in: Array[Long], offset: Int) => {
+      positives += in(offset).toInt
+      slot == 200
+    })
+    assert(positives == 100)
+  }
+
+  it should "cancel outstanding work once the consumer is done" in {
+    val calls = new AtomicLong()
+    val coordinator = new SamplingCoordinator(4, 4, 1)
+    coordinator.run(slots(4, calls), until(100))
+    assert(coordinator.cancelled)
+    val after = calls.get()
+    // every worker is at most `capacity` samples ahead, plus the one it was generating
+    assert(after <= 100 + 4 * (4 + 1))
+    Thread.sleep(20)
+    assert(calls.get() == after)
+  }
+
+  it should "rethrow an error when the consumer reaches its slot" in {
+    val workers = 3
+    val generators = Array.tabulate[Generator](workers) { w =>
+      var next = w + 1L
+      (out: Array[Long], offset: Int) => {
+        if (next == 8)
+          throw new IllegalStateException("failed")
+        out(offset) = next
+        next += workers
+      }
+    }
+    val consumed = new AtomicLong()
+    assertThrows[IllegalStateException](new SamplingCoordinator(workers, 4, 1).run(generators, until(Long.MaxValue, consumed)))
+    assert(consumed.get == 7)
+  }
+
+}
@@ -0,0 +1,85 @@
+/**************************************************************************************************
+ * STMC - Statistical Model Checker                                                               *
+ *                                                                                                *
+ * Copyright (C) 2019                                                                             *
+ * Authors:                                                                                       *
+ *   Nima Roohi <nroohi@ucsd.edu> (University of California San Diego)                            *
+ *                                                                                                *
+ * This program is free software: you can redistribute it and/or modify it under the terms        *
+ * of the GNU General Public License as published by the Free Software Foundation, either         *
+ * version 3 of the License, or (at your option) any later version.                               *
+ *                                                                                                *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;      *
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.      *
+ * See the GNU General Public License for more details.                                           *
+ *                                                                                                *
+ * You should have received a copy of the GNU General Public License along with this program.     *
+ * If not, see <https://www.gnu.org/licenses/>.                                                   *
+ **************************************************************************************************/
+package edu.stmc
+
+import java.nio.file.Files
+
+import jdk.jfr.Recording
+import jdk.jfr.consumer.{RecordedEvent, RecordingFile}
+import org.scalatest.FlatSpec
+
+import scala.collection.JavaConverters
+
+class SamplingEventsTest extends FlatSpec {
+
+  /** Events named `name` that are committed while `body` runs. */
+  private def record(name: String)(body: => Unit): Seq[RecordedEvent] = {
+    val recording = new Recording()
+    recording.enable(name)
+    recording.start()
+    body
+    recording.stop()
+    val file = Files.createTempFile("stmc", ".jfr")
+    try {
+      recording.dump(file)
+      JavaConverters.asScalaBuffer(RecordingFile.readAllEvents(file)).filter(_.getEventType.getName == name)
+    } finally {
+      recording.close()
+      Files.delete(file)
+    }
+  }
+
+  "SPRT" should "take a snapshot of its statistic whenever the number of samples reaches a power of two" in {
+    val test = new HypTestSPRT().init(0.5, 0.01, 0.01, 0.01)
+    val events = record("edu.stmc.SPRTStatistic") {
+      for (i <- 0 until 100)
+        test.update(i % 2 == 0)
+      test.update(20, 30)
+    }
+    assert(events.map(_.getLong("samples")) == Seq(1L, 2L, 4L, 8L, 16L, 32L, 64L, 150L))
+    assert(events.forall(_.getString("test") == "SPRT"))
+    assert(events.head.getDouble("estimate") == 1.0)
+  }
+
+  "Decision" should "report the property, the test and its result" in {
+    val test = new HypTestSPRT().init(0.5, 0.01, 0.01, 0.1)
+    while (!test.completed)
+      test.update(true)
+    val events = record("edu.stmc.Decision") {
+      SamplingEvents.decision("P>=0.5 [F s=3]", test, null, 42)
+    }
+    assert(events.size == 1)
+    assert(events.head.getString("property") == "P>=0.5 [F s=3]")
+    assert(events.head.getLong("samples") == 42)
+    assert(events.head.getString("result") == String.valueOf(test.getResult(null)))
+  }
+
+  "Stratified iterations" should "only be computed while they are recorded" in {
+    assert(!SamplingEvents.iterationEnabled())
+    var enabled = false
+    val events = record("edu.stmc.StratifiedIteration") {
+      enabled = SamplingEvents.iterationEnabled()
+      SamplingEvents.iteration(1, 0, 16, 5, 5 / 16.0, Double.NaN)
+    }
+    assert(enabled)
+    assert(!SamplingEvents.iterationEnabled())
+    assert(events.map(_.getInt("positives")) == Seq(5))
+  }
+
+}
@@ -0,0 +1,103 @@
+/**************************************************************************************************
+ * STMC - Statistical Model Checker                                                               *
+ *                                                                                                *
+ * Copyright (C) 2019                                                                             *
+ * Authors:                                                                                       *
+ *   Nima Roohi <nroohi@ucsd.edu> (University of California San Diego)                            *
+ *                                                                                                *
+ * This program is free software: you can redistribute it and/or modify it under the terms        *
+ * of the GNU General Public License as published by the Free Software Foundation, either         *
+ * version 3 of the License, or (at your option) any later version.                               *
+ *                                                                                                *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;      *
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.      *
+ * See the GNU General Public License for more details.                                           *
+ *                                                                                                *
+ * You should have received a copy of the GNU General Public License along with this program.     *
+ * If not, see <https://www.gnu.org/licenses/>.                                                   *
+ **************************************************************************************************/
+package edu.stmc
+
+import java.lang.management.ManagementFactory
+
+import javax.management.ObjectName
+import org.scalatest.FlatSpec
+
+class SamplingMonitorTest extends FlatSpec {
+
+  private def monitor(): (SamplingMonitor, HypTestSPRT) = {
+    val test = new HypTestSPRT().init(0.5, 0.01, 0.01, 0.01)
+    (new SamplingMonitor("SimulatorEngine", Array("P>=0.5 [F \"done\"]", "P=? [F s=3]"), Array(test, null), 2), test)
+  }
+
+  "Sampling monitor" should "publish the counters of the engine and the status of its tests" in {
+    val (m, test) = monitor()
+    for (i <- 1 to 100) {
+      test.update(i % 4 != 0)
+      m.generated(i % 2, 1)
+      m.update(i, i, 10.5, 3, 20)
+    }
+    m.finish()
+    assert(m.isFinished)
+    assert(m.getSamples == 100 && m.getIterations == 100)
+    assert(m.getAveragePathLength == 10.5 && m.getMinPathLength == 3 && m.getMaxPathLength == 20)
+    assert(m.getThreadSamples.toSeq == Seq(50L, 50L))
+    assert(m.getTests.toSeq == Seq("SPRT", null))
+    assert(m.getDecided.toSeq == Seq(test.completed, false))
+    assert(m.getEstimates()(0) == 0.75 && m.getEstimates()(1).isNaN)
+    assert(m.getStatistics()(0).contains("logT"))
+    assert(m.getMinSamplesRemaining()(0) == test.decisionHorizon)
+    assert(m.getExpectedSamplesRemaining()(0) == test.expectedSamplesRemaining)
+    assert(m.getExpectedSamplesRemaining()(1).isNaN && m.getSecondsRemaining()(1).isNaN)
+    // the clock is stopped when sampling is finished
+    assert(m.getElapsedSeconds == m.getElapsedSeconds)
+  }
+
+  it should "only read the tests when it takes a snapshot" in {
+    val (m, test) = monitor()
+    test.update(true)
+    m.update(1, 1, 1, 1, 1)
+    // the first snapshot (taken when the monitor is created) is at most `SnapshotMillis` old
+    assert(m.getEstimates()(0).isNaN)
+    m.finish()
+    assert(m.getEstimates()(0) == 1.0)
+  }
+
+  it should "publish the quantiles of path lengths it tracks" in {
+    val (m, _) = monitor()
+    assert(m.getPathLengthQuantiles.isEmpty)
+    val lengths = new PathLengths(Seq(null, null), 1)
+    m.track(lengths)
+    for (length <- 1 to 1000)
+      lengths.record(0, length)
+    m.finish()
+    assert(m.getPathLengthQuantiles.toSeq == PathLengths.Quantiles.toSeq.map(lengths.all.quantile))
+    assert(m.toJson.contains(s"\"quantiles\": [${m.getPathLengthQuantiles.mkString(", ")}]"))
+  }
+
+  it should "be a valid MXBean" in {
+    val (m, _) = monitor()
+    val name = new ObjectName("edu.stmc:type=SamplingMonitorTest")
+    val mbs = ManagementFactory.getPlatformMBeanServer
+    mbs.registerMBean(m, name)
+    try {
+      m.update(7, 14, 2.0, 1, 3)
+      assert(mbs.getAttribute(name, "Samples") == 14L)
+      assert(mbs.getAttribute(name, "Properties").asInstanceOf[Array[String]].length == 2)
+      assert(mbs.getAttribute(name, "Finished") == false)
+    } finally mbs.unregisterMBean(name)
+  }
+
+  it should "describe its status as JSON" in {
+    val (m, _) = monitor()
+    m.update(3, 6, 2.5, 1, 4)
+    m.finish()
+    val json = m.toJson
+    assert(json.startsWith("{\"engine\": \"SimulatorEngine\", \"finished\": true"))
+    assert(json.contains("\"samples\": 6"))
+    assert(json.contains("\"pathLength\": {\"average\": 2.5, \"min\": 1, \"max\": 4, \"quantiles\": []}"))
+    assert(json.contains("\"property\": \"P>=0.5 [F \\\"done\\\"]\""))
+    assert(json.contains("\"estimate\": null"))
+  }
+
+}
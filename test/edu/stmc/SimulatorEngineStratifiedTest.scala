@@ -0,0 +1,72 @@
+/**************************************************************************************************
+ * STMC - Statistical Model Checker                                                               *
+ *                                                                                                *
+ * Copyright (C) 2019                                                                             *
+ * Authors:                                                                                       *
+ *   Nima Roohi <nroohi@ucsd.edu> (University of California San Diego)                            *
+ *                                                                                                *
+ * This program is free software: you can redistribute it and/or modify it under the terms        *
+ * of the GNU General Public License as published by the Free Software Foundation, either         *
+ * version 3 of the License, or (at your option) any later version.                               *
+ *                                                                                                *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;      *
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.      *
+ * See the GNU General Public License for more details.                                           *
+ *                                                                                                *
+ * You should have received a copy of the GNU General Public License along with this program.     *
+ * If not, see <https://www.gnu.org/licenses/>.                                                   *
+ **************************************************************************************************/
+
+package edu.stmc
+
+import org.scalatest.FlatSpec
+
+class SimulatorEngineStratifiedTest extends FlatSpec {
+
+  import SimulatorEngineStratified.{allocate, batchMean}
+
+  private def allocation(paths: Seq[Long], positives: Seq[Long], pathCount: Int): (Array[Int], Array[Int]) = {
+    val allocation = Array.ofDim[Int](paths.length)
+    val stratumOf = Array.ofDim[Int](pathCount)
+    allocate(paths.toArray, positives.toArray, allocation, stratumOf)
+    (allocation, stratumOf)
+  }
+
+  "Neyman allocation" should "split paths evenly among strata with the same variance" in {
+    val (a, stratumOf) = allocation(Seq(0, 0, 0, 0), Seq(0, 0, 0, 0), 16)
+    assert(a.toSeq == Seq(4, 4, 4, 4))
+    assert(stratumOf.toSeq == (0 until 16).map(_ / 4))
+  }
+
+  it should "give more paths to strata with larger standard deviations" in {
+    // estimated probabilities 0.5, about 0.01 and 0.1 (after Laplace's smoothing), so standard deviations are about 0.5, 0.1 and 0.3
+    val (a, _) = allocation(Seq(1000, 1000, 1000), Seq(500, 9, 99), 30)
+    assert(a.sum == 30)
+    assert(a(0) > a(2) && a(2) > a(1))
+    // one path for every stratum, and the other 27 proportional to the standard deviations (rounded cumulatively)
+    assert(a.toSeq == Seq(16, 3, 11))
+  }
+
+  it should "keep a path for strata without variance" in {
+    val (a, stratumOf) = allocation(Seq(10000, 10000, 10000, 10000), Seq(0, 10000, 5000, 5000), 40)
+    assert(a.sum == 40)
+    assert(a(0) >= 1 && a(1) >= 1)
+    assert(a(0) < 3 && a(1) < 3 && a(2) > 15 && a(3) > 15)
+    // paths of every stratum are consecutive
+    assert(stratumOf.toSeq == a.indices.flatMap(h => Seq.fill(a(h))(h)))
+  }
+
+  it should "allocate one path per stratum if there are no others" in {
+    val (a, _) = allocation(Seq(5, 0, 9), Seq(5, 0, 1), 3)
+    assert(a.toSeq == Seq(1, 1, 1))
+    assertThrows[IllegalArgumentException](allocation(Seq(0, 0), Seq(0, 0), 1))
+  }
+
+  "Batch mean" should "give every stratum the same weight" in {
+    // 1 of 1 paths in the first stratum and 1 of 9 in the second: (1 + 1/9) / 2, not 2/10
+    assert(Math.abs(batchMean(Array(1, 1), Array(1, 9)) - (1 + 1.0 / 9) / 2) < 1e-12)
+    assert(batchMean(Array(0, 0, 0), Array(2, 3, 4)) == 0.0)
+    assert(batchMean(Array(2, 3, 4), Array(2, 3, 4)) == 1.0)
+  }
+
+}